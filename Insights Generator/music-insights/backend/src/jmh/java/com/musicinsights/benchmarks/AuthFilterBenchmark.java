@@ -0,0 +1,103 @@
+package com.musicinsights.benchmarks;
+
+import com.musicinsights.cache.VerifiedTokenCache;
+import com.musicinsights.filter.AuthenticationFilter;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.SecretKey;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.SecurityContext;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AuthenticationFilter#filter} on requests carrying a bearer token,
+ * verifying the token's signature and claims on every request and answering
+ * repeat tokens from the {@link VerifiedTokenCache}. Requests cycle through
+ * {@code tokens} distinct sessions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthFilterBenchmark {
+    @Param({"100"})
+    public int tokens;
+
+    private AuthenticationFilter verifying;
+    private AuthenticationFilter cached;
+    private ContainerRequest[] requests;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+        verifying = new AuthenticationFilter(key, new VerifiedTokenCache(0));
+        cached = new AuthenticationFilter(key, new VerifiedTokenCache(tokens * 2));
+        requests = new ContainerRequest[tokens];
+        for (int i = 0; i < tokens; i++) {
+            requests[i] = request(token(key, "user" + i));
+            verifying.filter(requests[i]);
+            if (requests[i].getAbortResponse() != null) {
+                throw new IllegalStateException("Token rejected: " + requests[i].getAbortResponse().getStatus());
+            }
+        }
+    }
+
+    @Benchmark
+    public SecurityContext verify() throws IOException {
+        return filter(verifying);
+    }
+
+    @Benchmark
+    public SecurityContext cachedToken() throws IOException {
+        return filter(cached);
+    }
+
+    private SecurityContext filter(AuthenticationFilter filter) throws IOException {
+        ContainerRequest request = requests[next];
+        next = next + 1 == requests.length ? 0 : next + 1;
+        filter.filter(request);
+        return request.getSecurityContext();
+    }
+
+    private static String token(SecretKey key, String username) {
+        Date now = new Date();
+        return Jwts.builder()
+                .setSubject(username)
+                .claim("roles", Arrays.asList("USER"))
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(key, SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    private static ContainerRequest request(String token) {
+        ContainerRequest request = new ContainerRequest(URI.create("http://localhost:8080/api/"),
+                URI.create("http://localhost:8080/api/analyze/health"), "GET", null, new MapPropertiesDelegate(),
+                new ResourceConfig());
+        request.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        return request;
+    }
+}
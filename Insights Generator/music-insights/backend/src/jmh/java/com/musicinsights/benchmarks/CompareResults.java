@@ -0,0 +1,111 @@
+package com.musicinsights.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files, such as runs on two commits, printing
+ * each benchmark's score in both with the change between them. Run with
+ *
+ * <pre>
+ * mvn -q -Pbenchmarks compile exec:java@compare -Dexec.args="baseline.json target/benchmarks/jmh-result.json"
+ * </pre>
+ *
+ * <p>A change is marked {@code *} when it is larger than the two scores'
+ * error margins combined. Allocation per operation is compared as well when
+ * both runs used {@code -prof gc}.</p>
+ */
+public final class CompareResults {
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private CompareResults() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompareResults <baseline.json> <candidate.json>");
+            System.exit(2);
+        }
+        Map<String, JsonObject> baseline = read(args[0]);
+        Map<String, JsonObject> candidate = read(args[1]);
+
+        System.out.printf("%-72s %14s %14s %9s %12s%n", "benchmark", "baseline", "candidate", "change", "unit");
+        for (Map.Entry<String, JsonObject> entry : candidate.entrySet()) {
+            JsonObject before = baseline.get(entry.getKey());
+            JsonObject after = entry.getValue();
+            JsonObject afterMetric = after.getAsJsonObject("primaryMetric");
+            if (before == null) {
+                System.out.printf("%-72s %14s %14.3f %9s %12s%n", entry.getKey(), "-",
+                        afterMetric.get("score").getAsDouble(), "new", afterMetric.get("scoreUnit").getAsString());
+                continue;
+            }
+            print(entry.getKey(), before.getAsJsonObject("primaryMetric"), afterMetric);
+            JsonObject beforeAllocation = secondary(before, ALLOCATION);
+            JsonObject afterAllocation = secondary(after, ALLOCATION);
+            if (beforeAllocation != null && afterAllocation != null) {
+                print("  " + ALLOCATION, beforeAllocation, afterAllocation);
+            }
+        }
+        for (String name : baseline.keySet()) {
+            if (!candidate.containsKey(name)) {
+                System.out.printf("%-72s %14s %14s %9s%n", name, "", "-", "removed");
+            }
+        }
+    }
+
+    private static void print(String label, JsonObject before, JsonObject after) {
+        double from = before.get("score").getAsDouble();
+        double to = after.get("score").getAsDouble();
+        double change = from == 0 ? 0 : (to - from) / from * 100;
+        boolean significant = Math.abs(to - from) > error(before) + error(after);
+        System.out.printf("%-72s %14.3f %14.3f %+8.1f%%%s %11s%n", label, from, to, change,
+                significant ? "*" : " ", after.get("scoreUnit").getAsString());
+    }
+
+    private static double error(JsonObject metric) {
+        JsonElement error = metric.get("scoreError");
+        // A single measurement iteration reports its error as "NaN"
+        return error == null || !error.isJsonPrimitive() || !error.getAsJsonPrimitive().isNumber()
+                || Double.isNaN(error.getAsDouble()) ? 0 : error.getAsDouble();
+    }
+
+    private static JsonObject secondary(JsonObject result, String name) {
+        JsonObject metrics = result.getAsJsonObject("secondaryMetrics");
+        return metrics != null && metrics.has(name) ? metrics.getAsJsonObject(name) : null;
+    }
+
+    /**
+     * @return Results by benchmark name and parameters, in file order
+     */
+    private static Map<String, JsonObject> read(String file) throws IOException {
+        Map<String, JsonObject> results = new LinkedHashMap<>();
+        try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            JsonArray array = JsonParser.parseReader(reader).getAsJsonArray();
+            for (JsonElement element : array) {
+                JsonObject result = element.getAsJsonObject();
+                String name = result.get("benchmark").getAsString()
+                        .replace("com.musicinsights.benchmarks.", "")
+                        .replace("com.musicinsights.", "");
+                JsonObject params = result.getAsJsonObject("params");
+                if (params != null) {
+                    Map<String, String> sorted = new TreeMap<>();
+                    params.entrySet().forEach(param -> sorted.put(param.getKey(), param.getValue().getAsString()));
+                    name += sorted.toString().replace('{', '(').replace('}', ')');
+                }
+                results.put(name, result);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,112 @@
+package com.musicinsights.benchmarks;
+
+import com.musicinsights.audio.ByteBufferChannel;
+import com.musicinsights.audio.FeatureAccumulator;
+import com.musicinsights.audio.ParallelFeatureAnalyzer;
+import com.musicinsights.audio.PcmFrameReader;
+import com.musicinsights.audio.StftEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The feature pass of {@code AnalysisServiceImpl} over a synthetic 16-bit
+ * stereo 44.1 kHz WAV file of {@code seconds} length: a chord with a
+ * percussive click on every beat and some noise. Measured both as the
+ * sequential STFT pass used for streamed uploads and as the segmented parallel
+ * pass used for long in-memory ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeatureExtractionBenchmark {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int CHANNELS = 2;
+    private static final double BEATS_PER_SECOND = 2;
+    private static final double[] CHORD_HZ = {220.0, 261.63, 329.63};
+
+    @Param({"180"})
+    public int seconds;
+
+    @Param({"30"})
+    public int segmentSeconds;
+
+    private ByteBuffer wav;
+    private ForkJoinPool pool;
+    private ParallelFeatureAnalyzer parallelAnalyzer;
+
+    @Setup
+    public void setUp() {
+        wav = synthesize(seconds);
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        parallelAnalyzer = new ParallelFeatureAnalyzer(pool, segmentSeconds);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public FeatureAccumulator sequential() throws IOException {
+        StftEngine engine = new StftEngine();
+        PcmFrameReader reader = new PcmFrameReader(new ByteBufferChannel(wav.duplicate()), engine.getHopSize());
+        reader.format();
+        int sampleRate = reader.decimateTo(StftEngine.ANALYSIS_SAMPLE_RATE);
+        FeatureAccumulator accumulator = new FeatureAccumulator(sampleRate, engine.getFftSize(), engine.getHopSize());
+        engine.process(reader, accumulator, 0);
+        return accumulator;
+    }
+
+    @Benchmark
+    public FeatureAccumulator parallel() throws IOException {
+        return parallelAnalyzer.analyze(wav.duplicate());
+    }
+
+    private static ByteBuffer synthesize(int seconds) {
+        int frames = seconds * SAMPLE_RATE;
+        int dataLength = frames * CHANNELS * 2;
+        ByteBuffer buffer = ByteBuffer.allocate(44 + dataLength).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x46464952).putInt(36 + dataLength).putInt(0x45564157);
+        buffer.putInt(0x20746d66).putInt(16).putShort((short) 1).putShort((short) CHANNELS)
+                .putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * CHANNELS * 2)
+                .putShort((short) (CHANNELS * 2)).putShort((short) 16);
+        buffer.putInt(0x61746164).putInt(dataLength);
+
+        Random random = new Random(42);
+        int beatFrames = (int) (SAMPLE_RATE / BEATS_PER_SECOND);
+        for (int i = 0; i < frames; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            double sample = 0;
+            for (double hz : CHORD_HZ) {
+                sample += 0.15 * Math.sin(2 * Math.PI * hz * t);
+            }
+            double sinceBeat = (double) (i % beatFrames) / SAMPLE_RATE;
+            sample += 0.4 * Math.exp(-sinceBeat * 60) * (random.nextDouble() * 2 - 1);
+            sample += 0.01 * (random.nextDouble() * 2 - 1);
+            short value = (short) Math.round(Math.max(-1, Math.min(1, sample)) * Short.MAX_VALUE);
+            buffer.putShort(value).putShort(value);
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,82 @@
+package com.musicinsights.benchmarks;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.musicinsights.json.JsonWriters;
+import com.musicinsights.model.TrackAnalysis;
+import com.musicinsights.tools.ResponseSerializationReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing an upload's analysis as JSON, as a {@code HashMap} through Jackson's
+ * reflective serializer and as a {@link TrackAnalysis} through its own
+ * {@code writeJson}. The payloads are built once, so only serialization is
+ * measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+    // Jersey's Jackson provider shares one mapper in the same way
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final CountingSink sink = new CountingSink();
+    private Map<String, Object> analysisMap;
+    private TrackAnalysis analysis;
+
+    @Setup
+    public void setUp() {
+        analysisMap = ResponseSerializationReport.analysisMap(new Random(7));
+        analysis = ResponseSerializationReport.analysis(new Random(7));
+    }
+
+    @Benchmark
+    public long analysisMap() throws IOException {
+        sink.count = 0;
+        mapper.writeValue(sink, analysisMap);
+        return sink.count;
+    }
+
+    @Benchmark
+    public long analysisWriteJson() throws IOException {
+        sink.count = 0;
+        try (JsonGenerator json = JsonWriters.generator(sink)) {
+            analysis.writeJson(json);
+        }
+        return sink.count;
+    }
+
+    /**
+     * Discards what is written, counting the bytes.
+     */
+    private static final class CountingSink extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
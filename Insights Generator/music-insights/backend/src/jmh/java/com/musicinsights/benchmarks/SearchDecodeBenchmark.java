@@ -0,0 +1,63 @@
+package com.musicinsights.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.musicinsights.json.InsightsJsonDecoder;
+import com.musicinsights.model.TrackAnalysis;
+import com.musicinsights.tools.SearchDecodeAllocationReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a Python search response of {@code tracks} results, through a
+ * String and a Gson tree of maps as the service used to, and streamed by
+ * {@link InsightsJsonDecoder} into typed models as {@code PythonAnalyticsClient}
+ * does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchDecodeBenchmark {
+    private static final Type RESULT_TYPE = new TypeToken<List<Map<String, Object>>>() {}.getType();
+
+    @Param({"20"})
+    public int tracks;
+
+    private final Gson gson = new Gson();
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = SearchDecodeAllocationReport.samplePayload(tracks);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> gsonMapTree() {
+        return gson.fromJson(new String(payload, StandardCharsets.UTF_8), RESULT_TYPE);
+    }
+
+    @Benchmark
+    public List<TrackAnalysis> streamingDecoder() throws IOException {
+        return InsightsJsonDecoder.readTracks(new ByteArrayInputStream(payload));
+    }
+}
@@ -0,0 +1,44 @@
+package com.musicinsights.resource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MusicResource#isCompressedAudio} and {@link MusicResource#isValidAudioFile}
+ * over a mix of uploads: accepted by content type, accepted by extension alone,
+ * compressed, and rejected. Lives in the resource package to reach the
+ * package-private checks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UploadValidationBenchmark {
+    private final String[] fileNames = {"Song", "Live Set.WAV", "recording.m4a", "notes.txt"};
+    private final String[] contentTypes = {"audio/wav", null, "application/octet-stream", "text/plain"};
+
+    @Benchmark
+    @OperationsPerInvocation(4)
+    public int isValidAudioFile() {
+        int valid = 0;
+        for (int i = 0; i < fileNames.length; i++) {
+            if (!MusicResource.isCompressedAudio(fileNames[i], contentTypes[i])
+                    && MusicResource.isValidAudioFile(fileNames[i], contentTypes[i])) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+}
@@ -0,0 +1,150 @@
+package com.musicinsights.tools;
+
+import com.musicinsights.cache.VerifiedTokenCache;
+import com.musicinsights.filter.AuthenticationFilter;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ResourceConfig;
+
+import javax.crypto.SecretKey;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.HttpHeaders;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures time and bytes allocated per authenticated request in
+ * {@link AuthenticationFilter}: the old filter, which built a parser and
+ * verified the token twice, the filter verifying once with its shared parser,
+ * and the filter answering repeat tokens from {@link VerifiedTokenCache}. Run
+ * with
+ *
+ * <pre>
+ * mvn -q -Pbenchmarks compile exec:java -Dexec.mainClass=com.musicinsights.tools.AuthFilterReport \
+ *     -Dexec.args="--requests 200000 --tokens 100 --rounds 5"
+ * </pre>
+ *
+ * <p>Requests cycle through a number of distinct sessions' tokens. Rounds of
+ * all cases are interleaved so that each runs against the same JIT profile,
+ * and the best round of each is reported.</p>
+ */
+public final class AuthFilterReport {
+
+    private AuthFilterReport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int requests = HnswRecallReport.intArg(args, "--requests", 200000);
+        int tokens = HnswRecallReport.intArg(args, "--tokens", 100);
+        int rounds = HnswRecallReport.intArg(args, "--rounds", 5);
+
+        SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+        ContainerRequest[] sessions = new ContainerRequest[tokens];
+        for (int i = 0; i < tokens; i++) {
+            sessions[i] = request(token(key, "user" + i));
+        }
+
+        Case[] cases = {
+            new Case("two parses, new parser each", oldFilter(key), requests),
+            new Case("one parse, shared parser", new AuthenticationFilter(key, new VerifiedTokenCache(0)), requests),
+            new Case("verified-token cache", new AuthenticationFilter(key, new VerifiedTokenCache(tokens * 2)),
+                    requests),
+        };
+        for (Case c : cases) {
+            c.run(sessions);
+        }
+        for (int round = 0; round < rounds; round++) {
+            for (Case c : cases) {
+                c.run(sessions);
+            }
+        }
+
+        System.out.printf("Auth filter report: %d requests over %d tokens, best of %d rounds%n%n",
+                requests, tokens, rounds);
+        System.out.printf("%-30s %12s %14s %14s%n", "filter", "ns/request", "bytes/request", "requests/s");
+        for (Case c : cases) {
+            System.out.printf("%-30s %12d %14d %14.0f%n", c.label, c.bestNanos / c.requests,
+                    c.allocated / c.requests, c.requests / (c.bestNanos / 1e9));
+        }
+    }
+
+    private static String token(SecretKey key, String username) {
+        Date now = new Date();
+        return Jwts.builder()
+                .setSubject(username)
+                .claim("roles", Arrays.asList("USER"))
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(key, SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    private static ContainerRequest request(String token) {
+        ContainerRequest request = new ContainerRequest(URI.create("http://localhost:8080/api/"),
+                URI.create("http://localhost:8080/api/analyze/health"), "GET", null, new MapPropertiesDelegate(),
+                new ResourceConfig());
+        request.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        return request;
+    }
+
+    /**
+     * @return The work the filter did per request before it shared a parser and
+     *         verified once: a parser built and the token verified to validate it,
+     *         then both again to read its claims
+     */
+    private static ContainerRequestFilter oldFilter(SecretKey key) {
+        return requestContext -> {
+            String token = requestContext.getHeaderString(HttpHeaders.AUTHORIZATION).substring(6).trim();
+            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
+            Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+            if (claims.getSubject() == null || claims.get("roles", List.class) == null) {
+                throw new IllegalStateException("Token without user");
+            }
+        };
+    }
+
+    /**
+     * One filter, with the best round measured so far.
+     */
+    private static final class Case {
+        private static final com.sun.management.ThreadMXBean THREADS =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        final String label;
+        final ContainerRequestFilter filter;
+        final int requests;
+        long bestNanos = Long.MAX_VALUE;
+        long allocated;
+
+        Case(String label, ContainerRequestFilter filter, int requests) {
+            this.label = label;
+            this.filter = filter;
+            this.requests = requests;
+        }
+
+        void run(ContainerRequest[] sessions) throws IOException {
+            long threadId = Thread.currentThread().getId();
+            long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                ContainerRequest request = sessions[i % sessions.length];
+                filter.filter(request);
+                if (request.getAbortResponse() != null) {
+                    throw new IllegalStateException("Request rejected: " + request.getAbortResponse().getStatus());
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            allocated = THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+            bestNanos = Math.min(bestNanos, elapsed);
+        }
+    }
+}
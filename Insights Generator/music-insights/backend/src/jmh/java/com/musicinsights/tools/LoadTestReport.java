@@ -0,0 +1,391 @@
+package com.musicinsights.tools;
+
+import ch.qos.logback.classic.Level;
+import com.musicinsights.Main;
+import com.musicinsights.config.ApplicationConfig;
+import com.musicinsights.config.TuningConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives constant-rate traffic at the whole application, started in-process by
+ * {@link Main#startServer}, to find the request rate each endpoint saturates
+ * at. Runs offline: the Python analytics service is replaced by a local stub of
+ * {@code /analyze/search} and {@code /analyze/url} that answers after an
+ * injected delay and fails a share of calls. Run with
+ *
+ * <pre>
+ * mvn -q -Pbenchmarks compile exec:java -Dexec.mainClass=com.musicinsights.tools.LoadTestReport \
+ *     -Dexec.args="--endpoints login,search,upload --rates 50,100,200,400 --seconds 10 \
+ *     --stub-latency 50 --stub-errors 0.01"
+ * </pre>
+ *
+ * <p>Traffic follows an open model: request {@code i} of a step is due at
+ * {@code i / rate} seconds and is sent then whether or not earlier requests
+ * have completed, as independent users would. Latency is measured from when
+ * each request was due rather than when it was sent, so a stalled server or
+ * load generator shows up in the percentiles instead of silently lowering the
+ * offered rate (coordinated omission). The uncorrected p99, from the actual
+ * send, is printed alongside for comparison.</p>
+ *
+ * <p>Each endpoint is warmed up at the first rate before its steps are
+ * measured. Searches cycle through {@code --search-keys} distinct queries so
+ * that they miss the search cache, and every upload differs in its last sample
+ * so that it misses the analysis cache. The load generator shares the machine
+ * with the server, so pin one or the other with {@code taskset} when the cores
+ * are few. Application logging is off unless {@code --log-level} sets it.</p>
+ */
+public final class LoadTestReport {
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private LoadTestReport() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] endpoints = HnswRecallReport.stringArg(args, "--endpoints", "login,search,upload").split(",");
+        int[] rates = HnswRecallReport.intsArg(args, "--rates", new int[]{50, 100, 200});
+        int seconds = HnswRecallReport.intArg(args, "--seconds", 10);
+        int warmupSeconds = HnswRecallReport.intArg(args, "--warmup", 3);
+        int timeoutSeconds = HnswRecallReport.intArg(args, "--timeout", 30);
+        int stubLatencyMs = HnswRecallReport.intArg(args, "--stub-latency", 50);
+        double stubErrors = HnswRecallReport.doubleArg(args, "--stub-errors", 0.0);
+        int searchKeys = HnswRecallReport.intArg(args, "--search-keys", 1_000_000);
+        int uploadSeconds = HnswRecallReport.intArg(args, "--upload-seconds", 5);
+        String logLevel = HnswRecallReport.stringArg(args, "--log-level", "OFF");
+
+        // Per-request logging would otherwise dominate the profile; failures are counted instead
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME))
+                .setLevel(Level.toLevel(logLevel, Level.OFF));
+
+        StubAnalytics stub = new StubAnalytics(stubLatencyMs, stubErrors);
+        URI root = URI.create("http://localhost:" + freePort() + "/api");
+        URI base = URI.create(root + "/");
+        ResourceConfig rc = Main.createResourceConfig().register(new AbstractBinder() {
+            @Override
+            protected void configure() {
+                bind(new StubbedConfig(stub.uri())).to(ApplicationConfig.class).ranked(1);
+            }
+        });
+        org.glassfish.grizzly.http.server.HttpServer server = Main.startServer(root, rc, new TuningConfig());
+
+        ExecutorService clientThreads = Executors.newFixedThreadPool(
+                Math.max(4, Runtime.getRuntime().availableProcessors()));
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientThreads)
+                .build();
+        Duration timeout = Duration.ofSeconds(timeoutSeconds);
+        try {
+            String token = login(client, base);
+            System.out.printf("Load test report: %d s per step, stub latency %d ms, stub errors %.1f%%, %d cores, "
+                            + "JDK %s%n%n", seconds, stubLatencyMs, stubErrors * 100,
+                    Runtime.getRuntime().availableProcessors(), System.getProperty("java.version"));
+            System.out.printf("%-8s %9s %10s %9s %9s %10s %12s %8s%n",
+                    "endpoint", "offered/s", "achieved/s", "p50 ms", "p99 ms", "p99.9 ms", "raw p99 ms", "errors");
+            for (String name : endpoints) {
+                Target target = target(name.trim(), base, token, timeout, searchKeys, uploadSeconds);
+                run(client, target, rates[0], warmupSeconds);
+                for (int rate : rates) {
+                    Step step = run(client, target, rate, seconds);
+                    System.out.printf("%-8s %9d %10.1f %9.1f %9.1f %10.1f %12.1f %8d%n", name.trim(), rate,
+                            step.achievedRate(), step.corrected[0] / 1e6, step.corrected[1] / 1e6,
+                            step.corrected[2] / 1e6, step.raw[1] / 1e6, step.errors);
+                }
+            }
+        } finally {
+            server.shutdownNow();
+            clientThreads.shutdownNow();
+            stub.stop();
+        }
+    }
+
+    /**
+     * Send {@code rate} requests a second for {@code seconds}, then wait for all
+     * of them to complete.
+     */
+    private static Step run(HttpClient client, Target target, int rate, int seconds) throws InterruptedException {
+        int total = rate * seconds;
+        long[] corrected = new long[total];
+        long[] raw = new long[total];
+        AtomicInteger errors = new AtomicInteger();
+        AtomicLong lastEnd = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(total);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long due = start + Math.round(i * 1e9 / rate);
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            int index = i;
+            long sent = System.nanoTime();
+            client.sendAsync(target.request(i), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        long end = System.nanoTime();
+                        corrected[index] = end - due;
+                        raw[index] = end - sent;
+                        if (failure != null || response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                        lastEnd.accumulateAndGet(end, Math::max);
+                        done.countDown();
+                    });
+        }
+        done.await();
+        return new Step(corrected, raw, total - errors.get(), errors.get(), lastEnd.get() - start);
+    }
+
+    private static String login(HttpClient client, URI base) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(loginRequest(base, Duration.ofSeconds(30)),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed: " + response.statusCode() + " " + response.body());
+        }
+        return response.body().replaceAll(".*\"token\"\\s*:\\s*\"([^\"]+)\".*", "$1");
+    }
+
+    private static HttpRequest loginRequest(URI base, Duration timeout) {
+        return HttpRequest.newBuilder(base.resolve("auth/login"))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"admin\",\"password\":\"admin123\"}"))
+                .build();
+    }
+
+    private static Target target(String name, URI base, String token, Duration timeout, int searchKeys,
+                                 int uploadSeconds) {
+        String authorization = "Bearer " + token;
+        switch (name) {
+            case "login":
+                HttpRequest login = loginRequest(base, timeout);
+                return index -> login;
+            case "search":
+                return index -> HttpRequest.newBuilder(base.resolve("analyze/search?q=load+" + index % searchKeys))
+                        .timeout(timeout)
+                        .header("Authorization", authorization)
+                        .GET()
+                        .build();
+            case "url":
+                return index -> HttpRequest.newBuilder(base.resolve("analyze/url"))
+                        .timeout(timeout)
+                        .header("Authorization", authorization)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "{\"url\":\"https://open.spotify.com/track/load" + index % searchKeys + "\"}"))
+                        .build();
+            case "upload":
+                return new UploadTarget(base, authorization, timeout, uploadSeconds);
+            default:
+                throw new IllegalArgumentException("Unknown endpoint: " + name + " (login, search, url or upload)");
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private interface Target {
+        HttpRequest request(int index);
+    }
+
+    /**
+     * Multipart uploads of a synthetic WAV file, each with a distinct last
+     * sample. The shared bytes are sent from one array rather than copied.
+     */
+    private static final class UploadTarget implements Target {
+        private static final String BOUNDARY = "musicinsights-load-test";
+        private static final int SAMPLE_RATE = 22050;
+
+        private final URI uri;
+        private final String authorization;
+        private final Duration timeout;
+        private final byte[] head;
+        private final byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        UploadTarget(URI base, String authorization, Duration timeout, int seconds) {
+            this.uri = base.resolve("analyze/upload");
+            this.authorization = authorization;
+            this.timeout = timeout;
+            byte[] partHeader = ("--" + BOUNDARY + "\r\n"
+                    + "Content-Disposition: form-data; name=\"file\"; filename=\"load-test.wav\"\r\n"
+                    + "Content-Type: audio/wav\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            byte[] wav = synthesize(seconds);
+            // Everything but the last 16-bit sample, which each request sets
+            this.head = new byte[partHeader.length + wav.length - 2];
+            System.arraycopy(partHeader, 0, head, 0, partHeader.length);
+            System.arraycopy(wav, 0, head, partHeader.length, wav.length - 2);
+        }
+
+        @Override
+        public HttpRequest request(int index) {
+            byte[] lastSample = {(byte) index, (byte) (index >>> 8)};
+            return HttpRequest.newBuilder(uri)
+                    .timeout(timeout)
+                    .header("Authorization", authorization)
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .POST(HttpRequest.BodyPublishers.ofByteArrays(Arrays.asList(head, lastSample, tail)))
+                    .build();
+        }
+
+        /**
+         * @return A 16-bit mono WAV file of a chord with a click on every beat
+         */
+        private static byte[] synthesize(int seconds) {
+            int samples = seconds * SAMPLE_RATE;
+            ByteBuffer wav = ByteBuffer.allocate(44 + samples * 2).order(ByteOrder.LITTLE_ENDIAN);
+            wav.putInt(0x46464952).putInt(36 + samples * 2).putInt(0x45564157);
+            wav.putInt(0x20746d66).putInt(16).putShort((short) 1).putShort((short) 1)
+                    .putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * 2).putShort((short) 2).putShort((short) 16);
+            wav.putInt(0x61746164).putInt(samples * 2);
+            Random random = new Random(42);
+            int beat = SAMPLE_RATE / 2;
+            for (int i = 0; i < samples; i++) {
+                double t = (double) i / SAMPLE_RATE;
+                double sample = 0.2 * Math.sin(2 * Math.PI * 220 * t) + 0.2 * Math.sin(2 * Math.PI * 329.63 * t)
+                        + 0.4 * Math.exp(-(i % beat) * 60.0 / SAMPLE_RATE) * (random.nextDouble() * 2 - 1);
+                wav.putShort((short) Math.round(Math.max(-1, Math.min(1, sample)) * Short.MAX_VALUE));
+            }
+            return wav.array();
+        }
+    }
+
+    /**
+     * Latencies of one step, with the percentiles taken.
+     */
+    private static final class Step {
+        final long[] corrected;
+        final long[] raw;
+        final int successes;
+        final int errors;
+        final long elapsedNanos;
+
+        Step(long[] corrected, long[] raw, int successes, int errors, long elapsedNanos) {
+            this.corrected = quantiles(corrected);
+            this.raw = quantiles(raw);
+            this.successes = successes;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return Successful responses a second, from the first request due to the last response
+         */
+        double achievedRate() {
+            return successes / (elapsedNanos / 1e9);
+        }
+
+        private static long[] quantiles(long[] latencies) {
+            Arrays.sort(latencies);
+            long[] values = new long[QUANTILES.length];
+            for (int i = 0; i < QUANTILES.length; i++) {
+                int rank = (int) Math.ceil(QUANTILES[i] * latencies.length) - 1;
+                values[i] = latencies[Math.max(0, Math.min(latencies.length - 1, rank))];
+            }
+            return values;
+        }
+    }
+
+    /**
+     * The application's configuration with the analytics service pointed at the stub.
+     */
+    private static final class StubbedConfig extends ApplicationConfig {
+        private final String pythonServiceUrl;
+
+        StubbedConfig(URI pythonServiceUrl) {
+            this.pythonServiceUrl = pythonServiceUrl.toString();
+        }
+
+        @Override
+        public String getPythonServiceUrl() {
+            return pythonServiceUrl;
+        }
+    }
+
+    /**
+     * Stands in for the Python analytics service: answers searches and URL
+     * analyses with canned results after a delay, and fails a share of calls
+     * with a 500.
+     */
+    private static final class StubAnalytics {
+        private final HttpServer server;
+        private final ExecutorService threads = Executors.newCachedThreadPool();
+        private final int latencyMs;
+        private final double errorRate;
+        private final byte[] searchBody = SearchDecodeAllocationReport.samplePayload(20);
+        private final byte[] trackBody;
+        private final byte[] errorBody = "{\"detail\":\"Injected failure\"}".getBytes(StandardCharsets.UTF_8);
+
+        StubAnalytics(int latencyMs, double errorRate) throws IOException {
+            this.latencyMs = latencyMs;
+            this.errorRate = errorRate;
+            // One search result is shaped like a URL analysis
+            byte[] single = SearchDecodeAllocationReport.samplePayload(1);
+            this.trackBody = Arrays.copyOfRange(single, 1, single.length - 1);
+
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+            server.createContext("/analyze/search", exchange -> respond(exchange, searchBody));
+            server.createContext("/analyze/url", exchange -> respond(exchange, trackBody));
+            server.setExecutor(threads);
+            server.start();
+        }
+
+        private void respond(HttpExchange exchange, byte[] body) throws IOException {
+            try (InputStream in = exchange.getRequestBody()) {
+                in.readAllBytes();
+                if (latencyMs > 0) {
+                    Thread.sleep(latencyMs);
+                }
+                boolean fail = ThreadLocalRandom.current().nextDouble() < errorRate;
+                byte[] response = fail ? errorBody : body;
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(fail ? 500 : 200, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        }
+
+        URI uri() {
+            return URI.create("http://localhost:" + server.getAddress().getPort());
+        }
+
+        void stop() {
+            server.stop(0);
+            threads.shutdownNow();
+        }
+    }
+}
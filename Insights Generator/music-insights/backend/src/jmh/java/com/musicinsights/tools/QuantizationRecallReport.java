@@ -0,0 +1,197 @@
+package com.musicinsights.tools;
+
+import com.musicinsights.similarity.FloatVectorStore;
+import com.musicinsights.similarity.HnswIndex;
+import com.musicinsights.similarity.Neighbor;
+import com.musicinsights.similarity.ProductQuantizedStore;
+import com.musicinsights.similarity.ProductQuantizer;
+import com.musicinsights.similarity.ScalarQuantizedStore;
+import com.musicinsights.similarity.ScalarQuantizer;
+import com.musicinsights.similarity.VectorStore;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the memory saved and the recall lost by compressing similarity
+ * vectors, with and without exact re-ranking of the top candidates.
+ *
+ * <p>Each store is scanned exhaustively with asymmetric distances, so the recall
+ * loss is due to quantization alone; the last rows repeat the 8x product
+ * quantizer inside an HNSW graph. Vectors are the same Gaussian mixture as
+ * {@link HnswRecallReport}. Bytes per track leave out the codebooks, which are
+ * shared by the whole catalog (at most 256 KB per subspace with distance tables).
+ * Re-ranking keeps a float32 copy of every vector next to its code, so the
+ * re-ranked columns cost the float32 bytes per track on top of the code's.
+ * Run with</p>
+ *
+ * <pre>
+ * mvn -q -Pbenchmarks compile exec:java -Dexec.mainClass=com.musicinsights.tools.QuantizationRecallReport \
+ *     -Dexec.args="--tracks 100000 --dims 12,64 --k 10 --rerank 50"
+ * </pre>
+ */
+public final class QuantizationRecallReport {
+
+    private QuantizationRecallReport() {
+    }
+
+    public static void main(String[] args) {
+        int tracks = HnswRecallReport.intArg(args, "--tracks", 50_000);
+        int[] dimensionsList = HnswRecallReport.intsArg(args, "--dims", new int[]{12, 64});
+        int queries = HnswRecallReport.intArg(args, "--queries", 200);
+        int k = HnswRecallReport.intArg(args, "--k", 10);
+        int rerank = HnswRecallReport.intArg(args, "--rerank", 50);
+        int trainSize = HnswRecallReport.intArg(args, "--train", 10_000);
+
+        for (int dims : dimensionsList) {
+            Random random = new Random(7);
+            float[][] data = HnswRecallReport.mixture(random, tracks, dims);
+            float[][] queryVectors = HnswRecallReport.mixture(random, queries, dims);
+            float[][] training = Arrays.copyOf(data, Math.min(trainSize, tracks));
+            int[][] truth = new int[queries][];
+            for (int q = 0; q < queries; q++) {
+                truth[q] = HnswRecallReport.bruteForce(data, queryVectors[q], k);
+            }
+
+            System.out.printf("%nQuantization report: %d tracks, %d dims, %d queries, k=%d, re-rank top %d%n%n",
+                    tracks, dims, queries, k, rerank);
+            System.out.printf("%-22s %12s %12s %9s %9s %12s %12s %12s%n",
+                    "store", "bytes/track", "compression", "recall", "ms/query", "bytes+rr", "recall+rr", "ms+rr");
+
+            FloatVectorStore exact = fill(new FloatVectorStore(dims, false), data);
+            FloatVectorStore offHeap = fill(new FloatVectorStore(dims, true), data);
+            double floatBytes = 4.0 * dims;
+            report("float32", exact, null, floatBytes, floatBytes, queryVectors, truth, k, rerank);
+            report("int8", fill(new ScalarQuantizedStore(ScalarQuantizer.train(training)), data), offHeap,
+                    dims, floatBytes, queryVectors, truth, k, rerank);
+            ProductQuantizer eightfold = null;
+            for (int subspaces : new int[]{dims / 2, dims / 4}) {
+                if (subspaces < 1) {
+                    continue;
+                }
+                ProductQuantizer quantizer = ProductQuantizer.train(training, subspaces, 20, 17);
+                if (eightfold == null) {
+                    eightfold = quantizer;
+                }
+                report("pq " + subspaces + "x8 bit", fill(new ProductQuantizedStore(quantizer), data), offHeap,
+                        subspaces, floatBytes, queryVectors, truth, k, rerank);
+            }
+
+            if (eightfold != null) {
+                System.out.printf("%nHNSW (m=16, ef=%d) over pq %dx8 bit:%n", Math.max(64, rerank), eightfold.subspaces());
+                HnswIndex plain = new HnswIndex(new ProductQuantizedStore(eightfold), null, 16, 200, Math.max(64, rerank));
+                HnswIndex reranked = new HnswIndex(new ProductQuantizedStore(eightfold),
+                        new FloatVectorStore(dims, true), 16, 200, Math.max(64, rerank));
+                for (float[] vector : data) {
+                    plain.add(vector);
+                    reranked.add(vector);
+                }
+                graphReport("without re-ranking", plain, queryVectors, truth, k);
+                graphReport("re-ranked off-heap", reranked, queryVectors, truth, k);
+            }
+        }
+    }
+
+    private static <S extends VectorStore> S fill(S store, float[][] data) {
+        for (float[] vector : data) {
+            store.add(vector);
+        }
+        return store;
+    }
+
+    /**
+     * @param perTrack Bytes stored per track, not counting codebooks shared by the catalog
+     */
+    private static void report(String name, VectorStore store, VectorStore exact, double perTrack, double floatBytes,
+                               float[][] queries, int[][] truth, int k, int rerank) {
+        long start = System.nanoTime();
+        int found = 0;
+        for (int q = 0; q < queries.length; q++) {
+            found += overlap(truth[q], scan(store, queries[q], k));
+        }
+        double ms = (System.nanoTime() - start) / 1e6 / queries.length;
+
+        String rerankedBytes = "-";
+        String reranked = "-";
+        String rerankedMs = "-";
+        if (exact != null) {
+            rerankedBytes = String.format("%.1f", perTrack + floatBytes);
+            long rerankStart = System.nanoTime();
+            int rerankFound = 0;
+            for (int q = 0; q < queries.length; q++) {
+                int[] candidates = scan(store, queries[q], Math.max(k, rerank));
+                rerankFound += overlap(truth[q], rescore(exact, queries[q], candidates, k));
+            }
+            reranked = String.format("%.4f", (double) rerankFound / (queries.length * k));
+            rerankedMs = String.format("%.3f", (System.nanoTime() - rerankStart) / 1e6 / queries.length);
+        }
+        System.out.printf("%-22s %12.1f %11.1fx %9.4f %9.3f %12s %12s %12s%n", name, perTrack, floatBytes / perTrack,
+                (double) found / (queries.length * k), ms, rerankedBytes, reranked, rerankedMs);
+    }
+
+    private static void graphReport(String name, HnswIndex index, float[][] queries, int[][] truth, int k) {
+        long start = System.nanoTime();
+        int found = 0;
+        for (int q = 0; q < queries.length; q++) {
+            List<Neighbor> result = index.search(queries[q], k);
+            found += HnswRecallReport.overlap(truth[q], result);
+        }
+        System.out.printf("  %-20s recall %.4f, %.3f ms/query, %.1f bytes/track with the graph%n", name,
+                (double) found / (queries.length * k), (System.nanoTime() - start) / 1e6 / queries.length,
+                (double) index.getMemoryBytes() / index.size());
+    }
+
+    /**
+     * @return The {@code n} nearest nodes by the store's distance, nearest first
+     */
+    private static int[] scan(VectorStore store, float[] query, int n) {
+        VectorStore.QueryScorer scorer = store.scorer(query);
+        int[] best = new int[n];
+        float[] bestDistance = new float[n];
+        Arrays.fill(bestDistance, Float.MAX_VALUE);
+        for (int node = 0; node < store.size(); node++) {
+            float d = scorer.distance(node);
+            if (d < bestDistance[n - 1]) {
+                int j = n - 1;
+                while (j > 0 && bestDistance[j - 1] > d) {
+                    bestDistance[j] = bestDistance[j - 1];
+                    best[j] = best[j - 1];
+                    j--;
+                }
+                bestDistance[j] = d;
+                best[j] = node;
+            }
+        }
+        return best;
+    }
+
+    private static int[] rescore(VectorStore exact, float[] query, int[] candidates, int k) {
+        VectorStore.QueryScorer scorer = exact.scorer(query);
+        float[] distances = new float[candidates.length];
+        Integer[] order = new Integer[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            distances[i] = scorer.distance(candidates[i]);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(distances[a], distances[b]));
+        int[] result = new int[Math.min(k, candidates.length)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = candidates[order[i]];
+        }
+        return result;
+    }
+
+    private static int overlap(int[] truth, int[] result) {
+        int found = 0;
+        for (int node : result) {
+            for (int t : truth) {
+                if (t == node) {
+                    found++;
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+}
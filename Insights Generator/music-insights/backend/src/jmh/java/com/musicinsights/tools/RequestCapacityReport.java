@@ -0,0 +1,206 @@
+package com.musicinsights.tools;
+
+import com.musicinsights.Main;
+import com.musicinsights.concurrent.VirtualThreads;
+import com.musicinsights.config.TuningConfig;
+import com.sun.net.httpserver.HttpServer;
+import org.glassfish.jersey.server.ResourceConfig;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how many requests the server handles at once when each one blocks on
+ * a slow backend, for the worker pool and for virtual threads.
+ *
+ * <p>A stub backend answers every call after a fixed delay, standing in for a
+ * slow Python analytics service. A test resource calls it with a blocking JAX-RS
+ * client, as {@code MusicServiceImpl} does, and the report fires all requests at
+ * once. With the worker pool, backend calls in flight are capped at the pool
+ * size and the rest of the requests queue; with virtual threads every request
+ * can wait on the backend at the same time. Run with</p>
+ *
+ * <pre>
+ * mvn -q -Pbenchmarks compile exec:java -Dexec.mainClass=com.musicinsights.tools.RequestCapacityReport \
+ *     -Dexec.args="--requests 1000 --delay 250 --workers 0,64 --modes pool,virtual"
+ * </pre>
+ *
+ * <p>A worker count of 0 keeps Grizzly's default pool size. Virtual threads need
+ * JDK 21 or later; on older JDKs that row falls back to the pool.</p>
+ */
+public final class RequestCapacityReport {
+
+    private RequestCapacityReport() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int requests = HnswRecallReport.intArg(args, "--requests", 400);
+        int delayMs = HnswRecallReport.intArg(args, "--delay", 250);
+        int[] workerCounts = HnswRecallReport.intsArg(args, "--workers", new int[]{0});
+        String[] modes = HnswRecallReport.stringArg(args, "--modes", "pool,virtual").split(",");
+
+        SlowBackend backend = new SlowBackend(delayMs, requests);
+        System.out.printf("Request capacity report: %d concurrent requests, backend delay %d ms, JDK %s%n%n",
+                requests, delayMs, System.getProperty("java.version"));
+        System.out.printf("%-22s %8s %9s %10s %9s %9s %9s %7s%n",
+                "mode", "workers", "in flight", "wall s", "req/s", "p50 ms", "p99 ms", "errors");
+        try {
+            for (String modeName : modes) {
+                Main.ExecutionMode mode = Main.ExecutionMode.valueOf(modeName.trim().toUpperCase());
+                int[] counts = mode == Main.ExecutionMode.VIRTUAL ? new int[]{0} : workerCounts;
+                for (int workers : counts) {
+                    String label = mode == Main.ExecutionMode.VIRTUAL && !VirtualThreads.isSupported()
+                            ? "virtual (unavailable)" : mode.name().toLowerCase();
+                    run(label, mode, workers, backend, requests);
+                }
+            }
+        } finally {
+            backend.stop();
+        }
+    }
+
+    private static void run(String label, Main.ExecutionMode mode, int workers, SlowBackend backend, int requests)
+            throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("server.executionMode", mode.name());
+        properties.setProperty("server.workerThreads", String.valueOf(workers));
+        URI base = URI.create("http://localhost:" + freePort() + "/api");
+        ResourceConfig rc = new ResourceConfig().register(new BackendCallResource(backend.uri()));
+        org.glassfish.grizzly.http.server.HttpServer server = Main.startServer(base, rc, new TuningConfig(properties));
+
+        ExecutorService clientThreads = Executors.newFixedThreadPool(4);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientThreads)
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(base.resolve("/api/backend")).build();
+        backend.resetPeak();
+        try {
+            long[] latencies = new long[requests];
+            AtomicInteger errors = new AtomicInteger();
+            List<CompletableFuture<?>> calls = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                int index = i;
+                long sent = System.nanoTime();
+                calls.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .handle((response, failure) -> {
+                            latencies[index] = System.nanoTime() - sent;
+                            if (failure != null || response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                            return null;
+                        }));
+            }
+            CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).join();
+            double wallSeconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            System.out.printf("%-22s %8s %9d %10.2f %9.1f %9.0f %9.0f %7d%n", label,
+                    workers > 0 ? String.valueOf(workers) : "default", backend.peak(), wallSeconds,
+                    requests / wallSeconds, latencies[requests / 2] / 1e6,
+                    latencies[Math.min(requests - 1, (int) (requests * 0.99))] / 1e6, errors.get());
+        } finally {
+            clientThreads.shutdownNow();
+            server.shutdownNow();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Test resource that makes one blocking call to the backend per request.
+     */
+    @Path("/backend")
+    public static class BackendCallResource {
+        private final Client client = ClientBuilder.newClient();
+        private final URI backend;
+
+        BackendCallResource(URI backend) {
+            this.backend = backend;
+        }
+
+        @GET
+        @Produces(MediaType.APPLICATION_JSON)
+        public String call() {
+            return client.target(backend).request(MediaType.APPLICATION_JSON).get(String.class);
+        }
+    }
+
+    /**
+     * Backend that answers each call after a fixed delay and records the peak
+     * number of calls in flight.
+     */
+    private static final class SlowBackend {
+        private static final byte[] BODY = "{\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+
+        private final HttpServer server;
+        private final ExecutorService threads = Executors.newCachedThreadPool();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peak = new AtomicInteger();
+
+        SlowBackend(int delayMs, int backlog) throws IOException {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), backlog);
+            server.createContext("/", exchange -> {
+                peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(delayMs);
+                    exchange.getResponseHeaders().set("Content-Type", MediaType.APPLICATION_JSON);
+                    exchange.sendResponseHeaders(200, BODY.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(BODY);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.decrementAndGet();
+                    exchange.close();
+                }
+            });
+            server.setExecutor(threads);
+            server.start();
+        }
+
+        URI uri() {
+            return URI.create("http://localhost:" + server.getAddress().getPort() + "/");
+        }
+
+        int peak() {
+            return peak.get();
+        }
+
+        void resetPeak() {
+            peak.set(0);
+        }
+
+        void stop() {
+            server.stop(0);
+            threads.shutdownNow();
+        }
+    }
+}
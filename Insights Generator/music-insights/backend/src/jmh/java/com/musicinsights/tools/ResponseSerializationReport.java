@@ -0,0 +1,276 @@
+package com.musicinsights.tools;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.musicinsights.json.JsonWritable;
+import com.musicinsights.json.JsonWriters;
+import com.musicinsights.model.AudioFeatures;
+import com.musicinsights.model.SearchPage;
+import com.musicinsights.model.SimilarTrack;
+import com.musicinsights.model.TrackAnalysis;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures bytes allocated and throughput of building and writing the analysis
+ * and search responses, for the old {@code HashMap} payloads written by
+ * Jackson's reflective serializer and for the typed models written by their
+ * own {@link JsonWritable#writeJson}. Run with
+ *
+ * <pre>
+ * mvn -q -Pbenchmarks compile exec:java -Dexec.mainClass=com.musicinsights.tools.ResponseSerializationReport \
+ *     -Dexec.args="--iterations 200000 --results 20 --rounds 5"
+ * </pre>
+ *
+ * <p>Each iteration builds the response the way the service does and writes it
+ * to a discarding stream, so the numbers cover the work done per request
+ * between the service and the socket. Rounds of all four cases are interleaved
+ * so that each runs against the same JIT profile, and throughput is the best
+ * round of each. Allocation is read from the HotSpot per-thread allocation
+ * counter.</p>
+ */
+public final class ResponseSerializationReport {
+    private static final String[] KEYS = {"C", "C#", "D", "D#", "E", "F", "F#", "G", "G#", "A", "A#", "B"};
+
+    private ResponseSerializationReport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int iterations = HnswRecallReport.intArg(args, "--iterations", 200000);
+        int results = HnswRecallReport.intArg(args, "--results", 20);
+        int rounds = HnswRecallReport.intArg(args, "--rounds", 5);
+
+        // Jersey's Jackson provider shares one mapper in the same way
+        ObjectMapper mapper = new ObjectMapper();
+        CountingSink sink = new CountingSink();
+
+        Response mapAnalysis = random -> mapper.writeValue(sink, analysisMap(random));
+        Response typedAnalysis = random -> write(analysis(random), sink);
+        Response mapSearch = random -> {
+            List<Map<String, Object>> tracks = new ArrayList<>();
+            for (int i = 0; i < results; i++) {
+                tracks.add(searchResultMap(random, i));
+            }
+            Map<String, Object> page = new HashMap<>();
+            page.put("query", "query");
+            page.put("results", tracks);
+            page.put("count", tracks.size());
+            mapper.writeValue(sink, page);
+        };
+        Response typedSearch = random -> {
+            List<TrackAnalysis> tracks = new ArrayList<>();
+            for (int i = 0; i < results; i++) {
+                tracks.add(searchResult(random, i));
+            }
+            write(new SearchPage("query", tracks), sink);
+        };
+
+        Case[] cases = {
+            new Case("analysis", "HashMap + Jackson", mapAnalysis, iterations),
+            new Case("analysis", "typed + writeJson", typedAnalysis, iterations),
+            new Case("search", "HashMap + Jackson", mapSearch, iterations / results),
+            new Case("search", "typed + writeJson", typedSearch, iterations / results),
+        };
+        for (Case c : cases) {
+            c.run(sink);
+        }
+        for (int round = 0; round < rounds; round++) {
+            for (Case c : cases) {
+                c.run(sink);
+            }
+        }
+
+        System.out.printf("Response serialization report: %d iterations, %d search results, best of %d rounds%n%n",
+                iterations, results, rounds);
+        System.out.printf("%-10s %-22s %12s %14s %14s%n",
+                "response", "payload", "JSON bytes", "bytes alloc", "responses/s");
+        for (Case c : cases) {
+            System.out.printf("%-10s %-22s %12d %14d %14.0f%n", c.response, c.payload, c.jsonBytes / c.iterations,
+                    c.allocated / c.iterations, c.iterations / (c.bestNanos / 1e9));
+        }
+    }
+
+    private static void write(JsonWritable value, OutputStream out) throws IOException {
+        try (JsonGenerator json = JsonWriters.generator(out)) {
+            value.writeJson(json);
+        }
+    }
+
+    // The analysis of an upload: mock descriptive fields with measured features
+
+    public static Map<String, Object> analysisMap(Random random) {
+        Map<String, Object> audioFeatures = new HashMap<>();
+        audioFeatures.put("duration", 180 + random.nextDouble() * 240);
+        audioFeatures.put("tempo", 80 + random.nextDouble() * 100);
+        audioFeatures.put("key", KEYS[random.nextInt(KEYS.length)]);
+        audioFeatures.put("mode", random.nextBoolean() ? "major" : "minor");
+        audioFeatures.put("time_signature", 4);
+        audioFeatures.put("energy", random.nextDouble());
+        audioFeatures.put("danceability", random.nextDouble());
+        audioFeatures.put("valence", random.nextDouble());
+        audioFeatures.put("acousticness", random.nextDouble());
+        audioFeatures.put("instrumentalness", random.nextDouble());
+        audioFeatures.put("liveness", random.nextDouble());
+        audioFeatures.put("speechiness", random.nextDouble());
+        audioFeatures.put("loudness", -30 - random.nextDouble() * 20);
+        audioFeatures.put("spectralCentroid", random.nextDouble() * 4000);
+        audioFeatures.put("spectralRolloff", random.nextDouble() * 8000);
+        audioFeatures.put("spectralFlux", random.nextDouble());
+        audioFeatures.put("zeroCrossingRate", random.nextDouble());
+
+        List<Map<String, Object>> similarTracks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> track = new HashMap<>();
+            track.put("name", "Similar Track " + (i + 1));
+            track.put("artist", "Similar Artist " + (i + 1));
+            track.put("album", "Similar Album " + (i + 1));
+            track.put("match", 0.6 + random.nextDouble() * 0.4);
+            similarTracks.add(track);
+        }
+
+        Map<String, Object> analysis = new HashMap<>();
+        analysis.put("id", "upload_" + Long.toHexString(random.nextLong()));
+        analysis.put("title", "my song");
+        analysis.put("artist", "Queen");
+        analysis.put("album", "Album A");
+        analysis.put("genre", Arrays.asList("Rock", "Classic Rock", "Progressive Rock"));
+        analysis.put("year", 1990 + random.nextInt(35));
+        analysis.put("duration", "3:45");
+        analysis.put("popularity", 30 + random.nextInt(71));
+        analysis.put("audioFeatures", audioFeatures);
+        analysis.put("similarTracks", similarTracks);
+        return analysis;
+    }
+
+    public static TrackAnalysis analysis(Random random) {
+        AudioFeatures audioFeatures = AudioFeatures.builder()
+                .duration(180 + random.nextDouble() * 240)
+                .tempo(80 + random.nextDouble() * 100)
+                .key(KEYS[random.nextInt(KEYS.length)])
+                .mode(random.nextBoolean() ? "major" : "minor")
+                .timeSignature(4)
+                .energy(random.nextDouble())
+                .danceability(random.nextDouble())
+                .valence(random.nextDouble())
+                .acousticness(random.nextDouble())
+                .instrumentalness(random.nextDouble())
+                .liveness(random.nextDouble())
+                .speechiness(random.nextDouble())
+                .loudness(-30 - random.nextDouble() * 20)
+                .spectralCentroid(random.nextDouble() * 4000)
+                .spectralRolloff(random.nextDouble() * 8000)
+                .spectralFlux(random.nextDouble())
+                .zeroCrossingRate(random.nextDouble())
+                .build();
+
+        List<SimilarTrack> similarTracks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            similarTracks.add(new SimilarTrack(null, "Similar Track " + (i + 1), "Similar Artist " + (i + 1),
+                    "Similar Album " + (i + 1), 0.6 + random.nextDouble() * 0.4));
+        }
+
+        return TrackAnalysis.builder()
+                .id("upload_" + Long.toHexString(random.nextLong()))
+                .title("my song")
+                .artist("Queen")
+                .album("Album A")
+                .genre(Arrays.asList("Rock", "Classic Rock", "Progressive Rock"))
+                .year(1990 + random.nextInt(35))
+                .duration("3:45")
+                .popularity(30 + random.nextInt(71))
+                .audioFeatures(audioFeatures)
+                .similarTracks(similarTracks)
+                .build();
+    }
+
+    // A search result: metadata only
+
+    private static Map<String, Object> searchResultMap(Random random, int i) {
+        Map<String, Object> track = new HashMap<>();
+        track.put("id", String.valueOf(i));
+        track.put("title", "query - Track " + i);
+        track.put("artist", "Artist " + random.nextInt(100));
+        track.put("album", "Album " + i);
+        track.put("year", 2000 + random.nextInt(25));
+        track.put("duration", "3:45");
+        return track;
+    }
+
+    private static TrackAnalysis searchResult(Random random, int i) {
+        return TrackAnalysis.builder()
+                .id(String.valueOf(i))
+                .title("query - Track " + i)
+                .artist("Artist " + random.nextInt(100))
+                .album("Album " + i)
+                .year(2000 + random.nextInt(25))
+                .duration("3:45")
+                .build();
+    }
+
+    private interface Response {
+        void write(Random random) throws IOException;
+    }
+
+    /**
+     * One response and payload, with the best round measured so far.
+     */
+    private static final class Case {
+        private static final com.sun.management.ThreadMXBean THREADS =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        final String response;
+        final String payload;
+        final Response task;
+        final int iterations;
+        long bestNanos = Long.MAX_VALUE;
+        long allocated;
+        long jsonBytes;
+
+        Case(String response, String payload, Response task, int iterations) {
+            this.response = response;
+            this.payload = payload;
+            this.task = task;
+            this.iterations = iterations;
+        }
+
+        void run(CountingSink sink) throws IOException {
+            long threadId = Thread.currentThread().getId();
+            Random random = new Random(7);
+            sink.count = 0;
+            long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                task.write(random);
+            }
+            long elapsed = System.nanoTime() - start;
+            allocated = THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+            jsonBytes = sink.count;
+            bestNanos = Math.min(bestNanos, elapsed);
+        }
+    }
+
+    /**
+     * Discards what is written, counting the bytes.
+     */
+    private static final class CountingSink extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.musicinsights.tools;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.musicinsights.json.InsightsJsonDecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures bytes allocated and time per search response decoded, for the old
+ * path (body read into a String, then a Gson tree of maps) and for
+ * {@link InsightsJsonDecoder} streaming into typed models. Run with
+ *
+ * <pre>
+ * mvn -q -Pbenchmarks compile exec:java -Dexec.mainClass=com.musicinsights.tools.SearchDecodeAllocationReport \
+ *     -Dexec.args="--tracks 20 --iterations 20000"
+ * </pre>
+ *
+ * <p>Allocation is read from the HotSpot per-thread allocation counter, so the
+ * report needs a HotSpot-based JDK.</p>
+ */
+public final class SearchDecodeAllocationReport {
+    private static final Type RESULT_TYPE = new TypeToken<List<Map<String, Object>>>() {}.getType();
+
+    private SearchDecodeAllocationReport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int tracks = HnswRecallReport.intArg(args, "--tracks", 20);
+        int iterations = HnswRecallReport.intArg(args, "--iterations", 20000);
+
+        byte[] payload = samplePayload(tracks);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Gson gson = new Gson();
+
+        System.out.printf("Search decode report: %d tracks, %d byte response, %d iterations%n%n",
+                tracks, payload.length, iterations);
+        System.out.printf("%-28s %14s %12s%n", "decoder", "bytes/search", "us/search");
+
+        Decoder mapTree = body -> {
+            String json = new String(body, StandardCharsets.UTF_8);
+            List<Map<String, Object>> results = gson.fromJson(json, RESULT_TYPE);
+            return results.size();
+        };
+        Decoder streaming = body -> InsightsJsonDecoder.readTracks(new ByteArrayInputStream(body)).size();
+
+        // Warm both paths up before measuring either
+        run(mapTree, payload, iterations, threads);
+        run(streaming, payload, iterations, threads);
+        report("String + Gson map tree", run(mapTree, payload, iterations, threads), iterations);
+        report("streaming typed decoder", run(streaming, payload, iterations, threads), iterations);
+    }
+
+    private static long[] run(Decoder decoder, byte[] payload, int iterations,
+                              com.sun.management.ThreadMXBean threads) throws IOException {
+        long threadId = Thread.currentThread().getId();
+        long checksum = 0;
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += decoder.decode(payload);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+        if (checksum == 0) {
+            throw new IllegalStateException("Nothing decoded");
+        }
+        return new long[]{allocated, elapsed};
+    }
+
+    private static void report(String label, long[] result, int iterations) {
+        System.out.printf("%-28s %14d %12.1f%n", label, result[0] / iterations, result[1] / 1000.0 / iterations);
+    }
+
+    /**
+     * @return A search response shaped like the Python service's, with audio features and similar tracks
+     */
+    public static byte[] samplePayload(int tracks) {
+        Random random = new Random(42);
+        String[] keys = {"C", "C#", "D", "D#", "E", "F", "F#", "G", "G#", "A", "A#", "B"};
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (int i = 0; i < tracks; i++) {
+            Map<String, Object> features = new LinkedHashMap<>();
+            features.put("duration", 180 + random.nextInt(240));
+            features.put("tempo", 80 + random.nextDouble() * 100);
+            features.put("key", keys[random.nextInt(keys.length)]);
+            features.put("mode", random.nextBoolean() ? "major" : "minor");
+            features.put("time_signature", 4);
+            for (String name : new String[]{"energy", "danceability", "valence", "acousticness",
+                    "instrumentalness", "liveness", "speechiness"}) {
+                features.put(name, random.nextDouble());
+            }
+            features.put("loudness", -30 - random.nextDouble() * 20);
+
+            List<Map<String, Object>> similar = new ArrayList<>();
+            for (int j = 0; j < 3; j++) {
+                Map<String, Object> track = new LinkedHashMap<>();
+                track.put("name", "Similar Track " + j);
+                track.put("artist", "Similar Artist " + j);
+                track.put("album", "Similar Album " + j);
+                track.put("match", 0.6 + random.nextDouble() * 0.4);
+                similar.add(track);
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("id", "track-" + i);
+            result.put("title", "Track " + i);
+            result.put("artist", "Artist " + random.nextInt(100));
+            result.put("album", "Album " + random.nextInt(100));
+            result.put("genre", List.of("Rock", "Indie"));
+            result.put("year", 1990 + random.nextInt(35));
+            result.put("duration", "3:45");
+            result.put("popularity", random.nextInt(100));
+            result.put("audio_features", features);
+            result.put("similar_tracks", similar);
+            results.add(result);
+        }
+        return new Gson().toJson(results).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private interface Decoder {
+        /**
+         * @return The number of tracks decoded
+         */
+        int decode(byte[] body) throws IOException;
+    }
+}
@@ -1,37 +1,125 @@
 package com.musicinsights;
 
+import com.musicinsights.concurrent.VirtualThreads;
+import com.musicinsights.config.TuningConfig;
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.media.multipart.MultiPartFeature;
+import org.glassfish.jersey.media.multipart.MultiPartProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.URI;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
 
 public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
     
     // Base URI the Grizzly HTTP server will listen on
     public static final String BASE_URI = "http://localhost:8084/api";
+
+    /**
+     * Threads that Jersey requests run on.
+     */
+    public enum ExecutionMode {
+        /** Grizzly's bounded worker thread pool. */
+        POOL,
+        /** A new virtual thread per request, on JDKs that support them; otherwise the pool. */
+        VIRTUAL
+    }
     
     /**
      * Starts Grizzly HTTP server exposing JAX-RS resources defined in this application.
      * @return Grizzly HTTP server.
      */
     public static HttpServer startServer() {
+        // Create and start a new instance of grizzly http server
+        TuningConfig tuning = new TuningConfig();
+        return startServer(URI.create(BASE_URI), createResourceConfig(tuning), tuning);
+    }
+
+    /**
+     * Creates the application: its resources, providers and bindings.
+     * @return Resource config, to which further bindings can be registered.
+     */
+    public static ResourceConfig createResourceConfig() {
+        return createResourceConfig(new TuningConfig());
+    }
+
+    /**
+     * Creates the application: its resources, providers and bindings.
+     * @param tuning Tuning settings, for the multipart reader's buffering.
+     * @return Resource config, to which further bindings can be registered.
+     */
+    public static ResourceConfig createResourceConfig(TuningConfig tuning) {
+        // The multipart reader takes its settings from a resolver, not from application properties
+        MultiPartProperties multiPart = new MultiPartProperties()
+                .bufferThreshold(tuning.getMultipartBufferThreshold())
+                .tempDir(tuning.getMultipartTempDirectory().toString());
+
         // Create a resource config that scans for JAX-RS resources and providers
-        final ResourceConfig rc = new ResourceConfig()
+        return new ResourceConfig()
                 .packages("com.musicinsights.resource")
                 .register(new com.musicinsights.config.ApplicationBinder())
+                .register(com.musicinsights.filter.MetricsRequestFilter.class)
+                .register(com.musicinsights.filter.MetricsResponseFilter.class)
+                .register(com.musicinsights.filter.RequestSizeLimitFilter.class)
                 .register(com.musicinsights.filter.AuthenticationFilter.class)
+                .register(com.musicinsights.filter.AdmissionFilter.class)
                 .register(com.musicinsights.filter.CorsFilter.class)
-                .register(MultiPartFeature.class);
-        
-        // Create and start a new instance of grizzly http server
-        return GrizzlyHttpServerFactory.createHttpServer(URI.create(BASE_URI), rc);
+                .register(com.musicinsights.json.JsonWritableBodyWriter.class)
+                .register(MultiPartFeature.class)
+                .register(multiPart.resolver());
+    }
+
+    /**
+     * Starts a Grizzly HTTP server whose requests run on the threads selected by
+     * {@code server.executionMode}.
+     * @param uri Base URI to listen on.
+     * @param rc Jersey application.
+     * @param tuning Tuning settings.
+     * @return Grizzly HTTP server.
+     */
+    public static HttpServer startServer(URI uri, ResourceConfig rc, TuningConfig tuning) {
+        HttpServer server = GrizzlyHttpServerFactory.createHttpServer(uri, rc, false);
+        ExecutorService virtualThreads = null;
+        if (tuning.getServerExecutionMode() == ExecutionMode.VIRTUAL) {
+            virtualThreads = VirtualThreads.newPerTaskExecutor();
+            if (virtualThreads == null) {
+                logger.warn("Virtual threads need JDK 21 or later (running {}), using the worker pool",
+                        System.getProperty("java.version"));
+            }
+        }
+
+        for (NetworkListener listener : server.getListeners()) {
+            TCPNIOTransport transport = listener.getTransport();
+            if (virtualThreads != null) {
+                // Blocking calls park the virtual thread instead of holding a pooled worker
+                transport.setWorkerThreadPool(virtualThreads);
+            } else if (tuning.getServerWorkerThreads() > 0) {
+                ThreadPoolConfig workers = transport.getWorkerThreadPoolConfig() != null
+                        ? transport.getWorkerThreadPoolConfig().copy()
+                        : ThreadPoolConfig.defaultConfig();
+                transport.setWorkerThreadPoolConfig(workers
+                        .setCorePoolSize(tuning.getServerWorkerThreads())
+                        .setMaxPoolSize(tuning.getServerWorkerThreads()));
+            }
+        }
+
+        try {
+            server.start();
+        } catch (IOException e) {
+            logger.error("Error starting server", e);
+            throw new RuntimeException("Failed to start server", e);
+        }
+        logger.info("Requests run on {}", virtualThreads != null ? "virtual threads" : "the worker pool");
+        return server;
     }
     
     /**
@@ -0,0 +1,43 @@
+package com.musicinsights.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Read-only channel over the remaining bytes of a {@link ByteBuffer}.
+ *
+ * <p>Reads copy directly out of the source buffer, which may be a heap array,
+ * a direct buffer or a memory-mapped file, without any intermediate copy.
+ * The source buffer's position and limit are not modified.</p>
+ */
+public class ByteBufferChannel implements ReadableByteChannel {
+    private final ByteBuffer source;
+    private boolean open = true;
+
+    public ByteBufferChannel(ByteBuffer source) {
+        this.source = source.duplicate();
+    }
+
+    @Override
+    public int read(ByteBuffer dst) {
+        if (!source.hasRemaining()) {
+            return -1;
+        }
+        int n = Math.min(dst.remaining(), source.remaining());
+        int limit = source.limit();
+        source.limit(source.position() + n);
+        dst.put(source);
+        source.limit(limit);
+        return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+}
@@ -0,0 +1,465 @@
+package com.musicinsights.audio;
+
+import java.util.Arrays;
+
+/**
+ * Running statistics over the output of a {@link StftEngine} pass.
+ *
+ * <p>Time-domain sums (RMS, peak, zero crossings) are taken from the samples and
+ * spectral sums (centroid, rolloff, flux, pitch-class energy) from each window.
+ * Onsets are picked from the spectral flux with a causal adaptive threshold and a
+ * one-frame delay. All state is primitive and sized when the accumulator is
+ * created; only the onset list grows, by doubling. Instances are not thread-safe.</p>
+ *
+ * <p>The counting range restricts which samples and windows contribute to the
+ * statistics: a window counts if its last hop falls inside the range. Samples and
+ * windows outside it still update the flux history, so a pass can start a few
+ * hops early to warm up and stay identical to one over the whole stream.</p>
+ */
+public final class FeatureAccumulator implements SpectrumListener {
+    /** Flux frames averaged for the adaptive onset threshold. */
+    public static final int ONSET_HISTORY = 16;
+
+    private static final double ROLLOFF_FRACTION = 0.85;
+    private static final double ONSET_RATIO = 1.5;
+    private static final double ONSET_MINIMUM = 0.02;
+    private static final double CHROMA_MIN_HZ = 65;
+    private static final double CHROMA_MAX_HZ = 2100;
+    private static final double SILENCE = 1e-6;
+
+    // Krumhansl-Kessler key profiles, tonic first
+    private static final double[] MAJOR_PROFILE = {6.35, 2.23, 3.48, 2.33, 4.38, 4.09, 2.52, 5.19, 2.39, 3.66, 2.29, 2.88};
+    private static final double[] MINOR_PROFILE = {6.33, 2.68, 3.52, 5.38, 2.60, 3.53, 2.54, 4.75, 3.98, 2.69, 3.34, 3.17};
+    private static final String[] KEYS = {"C", "C#", "D", "D#", "E", "F", "F#", "G", "G#", "A", "A#", "B"};
+
+    private final int sampleRate;
+    private final int fftSize;
+    private final int hopSize;
+    private final double binHz;
+    private final long countFrom;
+    private final long countTo;
+    private final int[] binPitchClass;
+    private final double[] previousMagnitudes;
+    private final double[] fluxHistory = new double[ONSET_HISTORY];
+
+    // Time domain
+    private long samples;
+    private double sumSquares;
+    private float peak;
+    private long zeroCrossings;
+    private float lastSample;
+    private boolean hasLastSample;
+
+    // Spectral
+    private long frames;
+    private long voicedFrames;
+    private double sumCentroid;
+    private double sumRolloff;
+    private double sumFlux;
+    private final double[] chroma = new double[12];
+
+    // Onset picking state
+    private boolean hasPreviousSpectrum;
+    private long fluxFrames;
+    private double previousFlux;
+    private double previousThreshold;
+    private double olderFlux;
+    private int[] onsets = new int[64];
+    private int onsetCount;
+
+    /**
+     * Accumulator that counts the whole stream.
+     */
+    public FeatureAccumulator(int sampleRate, int fftSize, int hopSize) {
+        this(sampleRate, fftSize, hopSize, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Accumulator that counts samples in {@code [countFrom, countTo)}.
+     */
+    public FeatureAccumulator(int sampleRate, int fftSize, int hopSize, long countFrom, long countTo) {
+        this.sampleRate = sampleRate;
+        this.fftSize = fftSize;
+        this.hopSize = hopSize;
+        this.binHz = (double) sampleRate / fftSize;
+        this.countFrom = countFrom;
+        this.countTo = countTo;
+
+        int bins = fftSize / 2 + 1;
+        this.previousMagnitudes = new double[bins];
+        this.binPitchClass = new int[bins];
+        for (int k = 0; k < bins; k++) {
+            double hz = k * binHz;
+            if (hz < CHROMA_MIN_HZ || hz > CHROMA_MAX_HZ) {
+                binPitchClass[k] = -1;
+            } else {
+                long midi = Math.round(69 + 12 * (Math.log(hz / 440.0) / Math.log(2)));
+                binPitchClass[k] = (int) (midi % 12);
+            }
+        }
+    }
+
+    @Override
+    public void onSamples(float[] frame, int length, long position) {
+        boolean counted = position >= countFrom && position < countTo;
+        double squares = 0;
+        float framePeak = peak;
+        long crossings = 0;
+        float previous = lastSample;
+        boolean hasPrevious = hasLastSample;
+        for (int i = 0; i < length; i++) {
+            float s = frame[i];
+            squares += s * s;
+            float abs = Math.abs(s);
+            if (abs > framePeak) {
+                framePeak = abs;
+            }
+            if (hasPrevious && (s >= 0) != (previous >= 0)) {
+                crossings++;
+            }
+            previous = s;
+            hasPrevious = true;
+        }
+        lastSample = previous;
+        hasLastSample = hasPrevious;
+        if (counted) {
+            sumSquares += squares;
+            peak = framePeak;
+            zeroCrossings += crossings;
+            samples += length;
+        }
+    }
+
+    @Override
+    public void onSpectrum(double[] magnitudes, long frameIndex) {
+        int bins = magnitudes.length;
+        double flux = 0;
+        for (int k = 1; k < bins; k++) {
+            double delta = magnitudes[k] - previousMagnitudes[k];
+            if (delta > 0) {
+                flux += delta;
+            }
+        }
+        if (!hasPreviousSpectrum) {
+            flux = 0;
+            hasPreviousSpectrum = true;
+        }
+        System.arraycopy(magnitudes, 0, previousMagnitudes, 0, bins);
+        pickOnset(flux, frameIndex);
+
+        if (!isCounted(frameIndex)) {
+            return;
+        }
+
+        frames++;
+        sumFlux += flux;
+
+        double total = 0;
+        double weighted = 0;
+        double energy = 0;
+        for (int k = 1; k < bins; k++) {
+            double m = magnitudes[k];
+            total += m;
+            weighted += m * k;
+            energy += m * m;
+            int pc = binPitchClass[k];
+            if (pc >= 0) {
+                chroma[pc] += m * m;
+            }
+        }
+        if (total < SILENCE) {
+            return;
+        }
+        voicedFrames++;
+        sumCentroid += weighted / total * binHz;
+
+        double limit = energy * ROLLOFF_FRACTION;
+        double cumulative = 0;
+        int k = 1;
+        while (k < bins - 1) {
+            cumulative += magnitudes[k] * magnitudes[k];
+            if (cumulative >= limit) {
+                break;
+            }
+            k++;
+        }
+        sumRolloff += k * binHz;
+    }
+
+    /**
+     * Decide whether the previous flux value was an onset: a local maximum above
+     * the mean of the flux values before it, scaled, plus a floor.
+     */
+    private void pickOnset(double flux, long frameIndex) {
+        if (fluxFrames >= 2) {
+            long candidate = frameIndex - 1;
+            if (previousFlux > flux && previousFlux >= olderFlux
+                    && previousFlux > previousThreshold && isCounted(candidate)) {
+                addOnset((int) candidate);
+            }
+        }
+
+        double mean = 0;
+        int history = (int) Math.min(fluxFrames, ONSET_HISTORY);
+        for (int i = 0; i < history; i++) {
+            mean += fluxHistory[i];
+        }
+        mean = history == 0 ? 0 : mean / history;
+
+        olderFlux = previousFlux;
+        previousFlux = flux;
+        previousThreshold = mean * ONSET_RATIO + ONSET_MINIMUM;
+        fluxHistory[(int) (fluxFrames % ONSET_HISTORY)] = flux;
+        fluxFrames++;
+    }
+
+    /**
+     * Add the statistics of an accumulator that counted the range directly after
+     * this one's. Both must have been created with the same sample rate and
+     * window layout.
+     */
+    public void merge(FeatureAccumulator other) {
+        if (other.sampleRate != sampleRate || other.fftSize != fftSize || other.hopSize != hopSize) {
+            throw new IllegalArgumentException("Cannot merge accumulators with different layouts");
+        }
+        samples += other.samples;
+        sumSquares += other.sumSquares;
+        peak = Math.max(peak, other.peak);
+        zeroCrossings += other.zeroCrossings;
+
+        frames += other.frames;
+        voicedFrames += other.voicedFrames;
+        sumCentroid += other.sumCentroid;
+        sumRolloff += other.sumRolloff;
+        sumFlux += other.sumFlux;
+        for (int i = 0; i < chroma.length; i++) {
+            chroma[i] += other.chroma[i];
+        }
+
+        int[] merged = new int[Math.max(64, onsetCount + other.onsetCount)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < onsetCount || j < other.onsetCount) {
+            if (j == other.onsetCount || (i < onsetCount && onsets[i] <= other.onsets[j])) {
+                merged[n++] = onsets[i++];
+            } else {
+                merged[n++] = other.onsets[j++];
+            }
+        }
+        onsets = merged;
+        onsetCount = n;
+    }
+
+    private void addOnset(int frameIndex) {
+        if (onsetCount == onsets.length) {
+            onsets = Arrays.copyOf(onsets, onsetCount * 2);
+        }
+        onsets[onsetCount++] = frameIndex;
+    }
+
+    private boolean isCounted(long frameIndex) {
+        long end = frameIndex * hopSize + fftSize;
+        return end > countFrom && end <= countTo;
+    }
+
+    // Results
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public float getPeak() {
+        return peak;
+    }
+
+    public double getDurationSeconds() {
+        return (double) samples / sampleRate;
+    }
+
+    /**
+     * @return Root-mean-square amplitude over all samples
+     */
+    public double getRms() {
+        return samples == 0 ? 0 : Math.sqrt(sumSquares / samples);
+    }
+
+    /**
+     * @return Loudness in dBFS, floored at -96 dB
+     */
+    public double getLoudnessDb() {
+        double rms = getRms();
+        return rms <= 0 ? -96.0 : Math.max(-96.0, 20 * Math.log10(rms));
+    }
+
+    /**
+     * @return Fraction of adjacent sample pairs that change sign
+     */
+    public double getZeroCrossingRate() {
+        return samples < 2 ? 0 : (double) zeroCrossings / (samples - 1);
+    }
+
+    /**
+     * @return Mean spectral centroid in Hz over non-silent windows
+     */
+    public double getSpectralCentroid() {
+        return voicedFrames == 0 ? 0 : sumCentroid / voicedFrames;
+    }
+
+    /**
+     * @return Mean frequency in Hz below which 85% of the spectral energy lies
+     */
+    public double getSpectralRolloff() {
+        return voicedFrames == 0 ? 0 : sumRolloff / voicedFrames;
+    }
+
+    /**
+     * @return Mean positive spectral flux per window
+     */
+    public double getSpectralFlux() {
+        return frames == 0 ? 0 : sumFlux / frames;
+    }
+
+    /**
+     * @return Window indices of the detected onsets, in ascending order
+     */
+    public int[] getOnsets() {
+        return Arrays.copyOf(onsets, onsetCount);
+    }
+
+    /**
+     * Estimate the tempo from the intervals between onsets. Each onset is paired
+     * with the next few, intervals are folded into 70-180 BPM and the most common
+     * value wins.
+     *
+     * @return Tempo in BPM, or 0 if there are too few onsets
+     */
+    public double getTempo() {
+        if (onsetCount < 4) {
+            return 0;
+        }
+        double framesPerSecond = (double) sampleRate / hopSize;
+        double[] histogram = new double[111];
+        for (int i = 0; i < onsetCount; i++) {
+            for (int j = i + 1; j < Math.min(onsetCount, i + 5); j++) {
+                double seconds = (onsets[j] - onsets[i]) / framesPerSecond;
+                if (seconds < 0.25 || seconds > 2.0) {
+                    continue;
+                }
+                double bpm = 60 / seconds;
+                while (bpm < 70) {
+                    bpm *= 2;
+                }
+                while (bpm >= 180) {
+                    bpm /= 2;
+                }
+                histogram[(int) (bpm - 70)] += 1.0 / (j - i);
+            }
+        }
+        int best = -1;
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] > 0 && (best < 0 || histogram[i] > histogram[best])) {
+                best = i;
+            }
+        }
+        return best < 0 ? 0 : 70 + best + 0.5;
+    }
+
+    /**
+     * @return Fraction of consecutive onset intervals within 10% of a multiple of the beat period
+     */
+    public double getBeatRegularity() {
+        double tempo = getTempo();
+        if (tempo <= 0) {
+            return 0;
+        }
+        double beatFrames = 60 / tempo * sampleRate / hopSize;
+        int regular = 0;
+        for (int i = 1; i < onsetCount; i++) {
+            double beats = (onsets[i] - onsets[i - 1]) / beatFrames;
+            double nearest = Math.max(0.5, Math.round(beats * 2) / 2.0);
+            if (Math.abs(beats - nearest) <= 0.1 * nearest) {
+                regular++;
+            }
+        }
+        return (double) regular / (onsetCount - 1);
+    }
+
+    /**
+     * @return Index of the best-matching key (0 = C ... 11 = B), or -1 without pitched content
+     */
+    public int getKey() {
+        return estimateKey() >> 1;
+    }
+
+    /**
+     * @return true if the best-matching key is major
+     */
+    public boolean isMajor() {
+        int estimate = estimateKey();
+        return estimate < 0 || (estimate & 1) == 0;
+    }
+
+    /**
+     * @return Name of the best-matching key, e.g. "F#", or "C" without pitched content
+     */
+    public String getKeyName() {
+        int key = getKey();
+        return KEYS[key < 0 ? 0 : key];
+    }
+
+    private int estimateKey() {
+        double total = 0;
+        for (double c : chroma) {
+            total += c;
+        }
+        if (total < SILENCE) {
+            return -1;
+        }
+        int best = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int tonic = 0; tonic < 12; tonic++) {
+            double major = correlate(tonic, MAJOR_PROFILE);
+            double minor = correlate(tonic, MINOR_PROFILE);
+            if (major > bestScore) {
+                bestScore = major;
+                best = tonic << 1;
+            }
+            if (minor > bestScore) {
+                bestScore = minor;
+                best = (tonic << 1) | 1;
+            }
+        }
+        return best;
+    }
+
+    private double correlate(int tonic, double[] profile) {
+        double meanChroma = 0;
+        double meanProfile = 0;
+        for (int i = 0; i < 12; i++) {
+            meanChroma += chroma[i];
+            meanProfile += profile[i];
+        }
+        meanChroma /= 12;
+        meanProfile /= 12;
+        double cov = 0;
+        double varChroma = 0;
+        double varProfile = 0;
+        for (int i = 0; i < 12; i++) {
+            double c = chroma[(tonic + i) % 12] - meanChroma;
+            double p = profile[i] - meanProfile;
+            cov += c * p;
+            varChroma += c * c;
+            varProfile += p * p;
+        }
+        return varChroma == 0 ? 0 : cov / Math.sqrt(varChroma * varProfile);
+    }
+}
@@ -0,0 +1,147 @@
+package com.musicinsights.audio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs the STFT feature pass over segments of an in-memory or memory-mapped
+ * audio file in parallel and merges the per-segment statistics.
+ *
+ * <p>Each segment is analyzed from a slice of the buffer by its own
+ * {@link StftEngine} and {@link FeatureAccumulator}. A segment's pass starts
+ * enough hops before its range to fill the analysis window and the onset history,
+ * and reads one hop past it to decide the last onset, so the merged result
+ * matches a sequential pass apart from floating-point summation order.</p>
+ */
+public class ParallelFeatureAnalyzer {
+    private final ForkJoinPool pool;
+    private final int segmentSeconds;
+    private final int fftSize;
+    private final int hopSize;
+
+    public ParallelFeatureAnalyzer(ForkJoinPool pool, int segmentSeconds) {
+        this(pool, segmentSeconds, StftEngine.DEFAULT_FFT_SIZE, StftEngine.DEFAULT_HOP_SIZE);
+    }
+
+    public ParallelFeatureAnalyzer(ForkJoinPool pool, int segmentSeconds, int fftSize, int hopSize) {
+        this.pool = pool;
+        this.segmentSeconds = segmentSeconds;
+        this.fftSize = fftSize;
+        this.hopSize = hopSize;
+    }
+
+    /**
+     * Analyze a complete audio file.
+     *
+     * @param audio The file contents, from the buffer's position to its limit
+     * @return The merged statistics
+     * @throws IOException if the header is malformed or a segment cannot be decoded
+     */
+    public FeatureAccumulator analyze(ByteBuffer audio) throws IOException {
+        PcmFrameReader header = new PcmFrameReader(new ByteBufferChannel(audio), hopSize);
+        PcmFormat format = header.format();
+        int sampleRate = header.decimateTo(StftEngine.ANALYSIS_SAMPLE_RATE);
+        long dataOffset = header.getPosition();
+        long available = audio.remaining() - dataOffset;
+        long dataLength = format.getDataLength() >= 0 ? Math.min(format.getDataLength(), available) : available;
+        long bytesPerSample = (long) format.getBlockAlign() * header.getDecimation();
+        long totalSamples = dataLength / bytesPerSample;
+
+        long segmentSamples = Math.max(1, (long) segmentSeconds * sampleRate / hopSize) * hopSize;
+        int segments = (int) Math.max(1, (totalSamples + segmentSamples - 1) / segmentSamples);
+
+        Plan plan = new Plan(audio, format, sampleRate, dataOffset, dataLength,
+                bytesPerSample, totalSamples, segmentSamples, segments);
+        try {
+            return pool.invoke(new SegmentTask(plan, 0, segments));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private FeatureAccumulator analyzeSegment(Plan plan, int index) throws IOException {
+        long from = index * plan.segmentSamples;
+        boolean last = index == plan.segments - 1;
+        long to = last ? Long.MAX_VALUE : from + plan.segmentSamples;
+
+        long warmUp = fftSize + (FeatureAccumulator.ONSET_HISTORY + 2L) * hopSize;
+        long readFrom = Math.max(0, from - warmUp);
+        long startByte = plan.dataOffset + readFrom * plan.bytesPerSample;
+        long endByte = last
+                ? plan.dataOffset + plan.dataLength
+                : plan.dataOffset + Math.min(plan.totalSamples, to + hopSize) * plan.bytesPerSample;
+
+        ByteBuffer slice = plan.audio.duplicate();
+        slice.position(plan.audio.position() + (int) startByte);
+        slice.limit(plan.audio.position() + (int) endByte);
+
+        PcmFrameReader reader = new PcmFrameReader(new ByteBufferChannel(slice), hopSize,
+                plan.format.withDataLength(endByte - startByte));
+        reader.decimateTo(plan.sampleRate);
+        StftEngine engine = new StftEngine(fftSize, hopSize);
+        FeatureAccumulator accumulator = new FeatureAccumulator(plan.sampleRate, fftSize, hopSize, from, to);
+        engine.process(reader, accumulator, readFrom);
+        return accumulator;
+    }
+
+    private static final class Plan {
+        final ByteBuffer audio;
+        final PcmFormat format;
+        final int sampleRate;
+        final long dataOffset;
+        final long dataLength;
+        final long bytesPerSample;
+        final long totalSamples;
+        final long segmentSamples;
+        final int segments;
+
+        Plan(ByteBuffer audio, PcmFormat format, int sampleRate, long dataOffset,
+             long dataLength, long bytesPerSample, long totalSamples, long segmentSamples, int segments) {
+            this.audio = audio;
+            this.format = format;
+            this.sampleRate = sampleRate;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.bytesPerSample = bytesPerSample;
+            this.totalSamples = totalSamples;
+            this.segmentSamples = segmentSamples;
+            this.segments = segments;
+        }
+    }
+
+    /**
+     * Splits the segment range in halves until one segment is left, then merges
+     * the results left to right.
+     */
+    private final class SegmentTask extends RecursiveTask<FeatureAccumulator> {
+        private final Plan plan;
+        private final int from;
+        private final int to;
+
+        SegmentTask(Plan plan, int from, int to) {
+            this.plan = plan;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected FeatureAccumulator compute() {
+            if (to - from == 1) {
+                try {
+                    return analyzeSegment(plan, from);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int mid = (from + to) >>> 1;
+            SegmentTask right = new SegmentTask(plan, mid, to);
+            right.fork();
+            FeatureAccumulator left = new SegmentTask(plan, from, mid).compute();
+            left.merge(right.join());
+            return left;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.musicinsights.audio;
+
+/**
+ * Describes the sample layout of a PCM stream.
+ */
+public final class PcmFormat {
+
+    /**
+     * Sample encodings understood by {@link PcmFrameReader}.
+     */
+    public enum Encoding {
+        /** Signed little-endian integer samples (8-bit samples are unsigned, as in WAV). */
+        PCM_SIGNED,
+        /** IEEE 754 little-endian float samples. */
+        PCM_FLOAT
+    }
+
+    private final Encoding encoding;
+    private final int sampleRate;
+    private final int channels;
+    private final int bitsPerSample;
+    private final long dataLength;
+
+    public PcmFormat(Encoding encoding, int sampleRate, int channels, int bitsPerSample, long dataLength) {
+        this.encoding = encoding;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.bitsPerSample = bitsPerSample;
+        this.dataLength = dataLength;
+    }
+
+    /**
+     * @return A copy of this format describing {@code length} bytes of sample data
+     */
+    public PcmFormat withDataLength(long length) {
+        return new PcmFormat(encoding, sampleRate, channels, bitsPerSample, length);
+    }
+
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getBitsPerSample() {
+        return bitsPerSample;
+    }
+
+    /**
+     * @return Length of the sample data in bytes, or -1 if unknown
+     */
+    public long getDataLength() {
+        return dataLength;
+    }
+
+    /**
+     * @return Number of bytes holding one sample for every channel
+     */
+    public int getBlockAlign() {
+        return channels * (bitsPerSample / 8);
+    }
+
+    /**
+     * @return Duration in seconds derived from the data length, or -1 if unknown
+     */
+    public double getDurationSeconds() {
+        if (dataLength < 0 || sampleRate <= 0 || getBlockAlign() <= 0) {
+            return -1;
+        }
+        return (double) (dataLength / getBlockAlign()) / sampleRate;
+    }
+
+    @Override
+    public String toString() {
+        return encoding + " " + sampleRate + " Hz, " + bitsPerSample + " bit, " + channels + " ch";
+    }
+}
@@ -0,0 +1,309 @@
+package com.musicinsights.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads fixed-size frames of mono PCM samples from a byte channel.
+ *
+ * <p>The reader parses a RIFF/WAVE header and then decodes the sample data
+ * incrementally through a single buffer allocated up front, so memory use does
+ * not depend on the length of the stream. Multi-channel audio is down-mixed to
+ * mono and scaled to the range [-1, 1]. Streams without a WAV header, such as
+ * MP3 or OGG, are not decoded: {@link #format()} fails with an
+ * {@link UnsupportedAudioFormatException} rather than read them as samples. The
+ * output can optionally be decimated by averaging consecutive samples, which is
+ * how analysis brings 44.1 or 48 kHz material down to about 22 kHz.</p>
+ *
+ * <p>The channel is owned by the caller and is not closed by the reader.
+ * Instances are not thread-safe.</p>
+ */
+public class PcmFrameReader {
+    public static final int DEFAULT_FRAME_SIZE = 1024;
+
+    private static final int RIFF = 0x46464952;
+    private static final int WAVE = 0x45564157;
+    private static final int FMT = 0x20746D66;
+    private static final int DATA = 0x61746164;
+
+    private static final int WAVE_FORMAT_PCM = 1;
+    private static final int WAVE_FORMAT_IEEE_FLOAT = 3;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private static final int MAX_CHANNELS = 8;
+    private static final int MAX_BLOCK_ALIGN = MAX_CHANNELS * 8;
+    private static final int MIN_BUFFER_SIZE = 4096;
+    private static final int MAX_DECIMATION = 8;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    private PcmFormat format;
+    private long dataRemaining = -1;
+    private int decimation = 1;
+    private boolean eof;
+    private long bytesRead;
+
+    public PcmFrameReader(ReadableByteChannel channel) {
+        this(channel, DEFAULT_FRAME_SIZE);
+    }
+
+    public PcmFrameReader(ReadableByteChannel channel, int frameSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(Math.max(MIN_BUFFER_SIZE * MAX_DECIMATION, frameSize * MAX_BLOCK_ALIGN))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        this.buffer.flip();
+    }
+
+    /**
+     * Reader for headerless sample data in a known format, such as a slice of a
+     * larger file. Reading stops after {@code format.getDataLength()} bytes if set.
+     */
+    public PcmFrameReader(ReadableByteChannel channel, int frameSize, PcmFormat format) {
+        this(channel, frameSize);
+        this.format = format;
+        this.dataRemaining = format.getDataLength();
+    }
+
+    /**
+     * Get the format of the stream, parsing the header on first use.
+     *
+     * @return The PCM format
+     * @throws UnsupportedAudioFormatException if the stream is not PCM or float WAV
+     * @throws IOException if the stream cannot be read or has a malformed header
+     */
+    public PcmFormat format() throws IOException {
+        if (format == null) {
+            format = readHeader();
+        }
+        return format;
+    }
+
+    /**
+     * Average every {@code factor} consecutive samples into one, reducing the
+     * output sample rate by that factor. Call before the first {@link #read}.
+     *
+     * @param targetRate The lowest acceptable output rate
+     * @return The resulting output sample rate
+     * @throws IOException if the header cannot be read
+     */
+    public int decimateTo(int targetRate) throws IOException {
+        int rate = format().getSampleRate();
+        decimation = Math.max(1, Math.min(MAX_DECIMATION, rate / targetRate));
+        return rate / decimation;
+    }
+
+    /**
+     * @return Number of input samples averaged into each output sample
+     */
+    public int getDecimation() {
+        return decimation;
+    }
+
+    /**
+     * @return Sample rate of the frames returned by {@link #read}
+     * @throws IOException if the header cannot be read
+     */
+    public int getSampleRate() throws IOException {
+        return format().getSampleRate() / decimation;
+    }
+
+    /**
+     * Read the next frame of mono samples.
+     *
+     * @param frame The destination; up to {@code frame.length} samples are written
+     * @return The number of samples read, or -1 at the end of the stream
+     * @throws IOException if the stream cannot be read
+     */
+    public int read(float[] frame) throws IOException {
+        PcmFormat fmt = format();
+        int blockAlign = fmt.getBlockAlign();
+        int groupBytes = blockAlign * decimation;
+
+        int count = 0;
+        while (count < frame.length) {
+            long remaining = dataRemaining >= 0 ? dataRemaining : Long.MAX_VALUE;
+            if (remaining < blockAlign) {
+                break;
+            }
+            if (buffer.remaining() < groupBytes) {
+                fill((int) Math.min(groupBytes, remaining));
+            }
+            int blocks = (int) (Math.min(buffer.remaining(), remaining) / blockAlign);
+            if (blocks == 0) {
+                break;
+            }
+
+            int groups = Math.min(blocks / decimation, frame.length - count);
+            if (groups == 0) {
+                // Stream ends inside a group: average what is left
+                frame[count++] = decode(blocks * fmt.getChannels());
+                consumed((long) blocks * blockAlign);
+                break;
+            }
+            int samplesPerGroup = decimation * fmt.getChannels();
+            for (int g = 0; g < groups; g++) {
+                frame[count++] = decode(samplesPerGroup);
+            }
+            consumed((long) groups * groupBytes);
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    /**
+     * @return Total number of bytes consumed from the channel so far
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return Offset from the start of the channel of the next byte to be decoded;
+     *         right after {@link #format()} this is the start of the sample data
+     */
+    public long getPosition() {
+        return bytesRead - buffer.remaining();
+    }
+
+    private void consumed(long bytes) {
+        if (dataRemaining >= 0) {
+            dataRemaining -= bytes;
+        }
+    }
+
+    /**
+     * Decode {@code count} interleaved samples and return their mean.
+     */
+    private float decode(int count) {
+        float sum = 0;
+        if (format.getBitsPerSample() == 16 && format.getEncoding() != PcmFormat.Encoding.PCM_FLOAT) {
+            // Fast path for the common case, reading the backing array directly
+            byte[] array = buffer.array();
+            int p = buffer.arrayOffset() + buffer.position();
+            for (int i = 0; i < count; i++) {
+                sum += (short) ((array[p] & 0xFF) | (array[p + 1] << 8));
+                p += 2;
+            }
+            buffer.position(p - buffer.arrayOffset());
+            return sum / (32768.0f * count);
+        }
+        boolean floating = format.getEncoding() == PcmFormat.Encoding.PCM_FLOAT;
+        int bits = format.getBitsPerSample();
+        for (int i = 0; i < count; i++) {
+            sum += readSample(bits, floating);
+        }
+        return sum / count;
+    }
+
+    private float readSample(int bits, boolean floating) {
+        if (floating) {
+            return bits == 64 ? (float) buffer.getDouble() : buffer.getFloat();
+        }
+        switch (bits) {
+            case 8:
+                return ((buffer.get() & 0xFF) - 128) / 128.0f;
+            case 16:
+                return buffer.getShort() / 32768.0f;
+            case 24: {
+                int b0 = buffer.get() & 0xFF;
+                int b1 = buffer.get() & 0xFF;
+                int b2 = buffer.get();
+                return ((b2 << 16) | (b1 << 8) | b0) / 8388608.0f;
+            }
+            default:
+                return buffer.getInt() / 2147483648.0f;
+        }
+    }
+
+    private PcmFormat readHeader() throws IOException {
+        if (!fill(12) || buffer.getInt(buffer.position()) != RIFF
+                || buffer.getInt(buffer.position() + 8) != WAVE) {
+            // Compressed containers would decode as noise
+            throw new UnsupportedAudioFormatException(
+                    "Unsupported audio format: only uncompressed WAV files can be analyzed");
+        }
+        buffer.position(buffer.position() + 12);
+
+        int formatTag = -1;
+        int channels = 0;
+        int sampleRate = 0;
+        int bits = 0;
+
+        while (true) {
+            if (!fill(8)) {
+                throw new IOException("WAV stream ended before the data chunk");
+            }
+            int chunkId = buffer.getInt();
+            long chunkSize = buffer.getInt() & 0xFFFFFFFFL;
+
+            if (chunkId == FMT) {
+                if (chunkSize < 16 || !fill(16)) {
+                    throw new IOException("Malformed WAV fmt chunk");
+                }
+                formatTag = buffer.getShort() & 0xFFFF;
+                channels = buffer.getShort() & 0xFFFF;
+                sampleRate = buffer.getInt();
+                buffer.getInt();   // byte rate
+                buffer.getShort(); // block align, recomputed from channels and bits
+                bits = buffer.getShort() & 0xFFFF;
+                long consumed = 16;
+                if (formatTag == WAVE_FORMAT_EXTENSIBLE && chunkSize >= 26 && fill(10)) {
+                    buffer.position(buffer.position() + 8); // cbSize, valid bits, channel mask
+                    formatTag = buffer.getShort() & 0xFFFF; // first two bytes of the sub-format GUID
+                    consumed += 10;
+                }
+                skip(chunkSize - consumed + (chunkSize & 1));
+            } else if (chunkId == DATA) {
+                if (formatTag < 0) {
+                    throw new IOException("WAV data chunk precedes the fmt chunk");
+                }
+                dataRemaining = (chunkSize == 0 || chunkSize == 0xFFFFFFFFL) ? -1 : chunkSize;
+                return createFormat(formatTag, sampleRate, channels, bits, dataRemaining);
+            } else {
+                skip(chunkSize + (chunkSize & 1));
+            }
+        }
+    }
+
+    private static PcmFormat createFormat(int formatTag, int sampleRate, int channels, int bits,
+                                          long dataLength) throws IOException {
+        if (channels < 1 || channels > MAX_CHANNELS || sampleRate <= 0) {
+            throw new IOException("Unsupported WAV layout: " + channels + " channels at " + sampleRate + " Hz");
+        }
+        if (formatTag == WAVE_FORMAT_PCM && (bits == 8 || bits == 16 || bits == 24 || bits == 32)) {
+            return new PcmFormat(PcmFormat.Encoding.PCM_SIGNED, sampleRate, channels, bits, dataLength);
+        }
+        if (formatTag == WAVE_FORMAT_IEEE_FLOAT && (bits == 32 || bits == 64)) {
+            return new PcmFormat(PcmFormat.Encoding.PCM_FLOAT, sampleRate, channels, bits, dataLength);
+        }
+        throw new UnsupportedAudioFormatException(
+                "Unsupported WAV encoding: format " + formatTag + ", " + bits + " bit");
+    }
+
+    private boolean fill(int required) throws IOException {
+        while (buffer.remaining() < required && !eof) {
+            buffer.compact();
+            int n = channel.read(buffer);
+            buffer.flip();
+            if (n < 0) {
+                eof = true;
+            } else {
+                bytesRead += n;
+            }
+        }
+        return buffer.remaining() >= required;
+    }
+
+    private void skip(long length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining() && !fill(1)) {
+                throw new IOException("WAV stream ended inside a chunk");
+            }
+            int n = (int) Math.min(length, buffer.remaining());
+            buffer.position(buffer.position() + n);
+            length -= n;
+        }
+    }
+}
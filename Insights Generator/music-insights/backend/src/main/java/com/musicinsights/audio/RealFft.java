@@ -0,0 +1,118 @@
+package com.musicinsights.audio;
+
+/**
+ * Forward FFT of real-valued input.
+ *
+ * <p>An N-point real transform is computed as an N/2-point complex radix-2 FFT
+ * of the even/odd sample pairs followed by a split step. All tables and work
+ * arrays are allocated in the constructor; {@link #magnitudes} allocates nothing.
+ * Instances are not thread-safe.</p>
+ */
+public final class RealFft {
+    private final int size;
+    private final int half;
+    private final int[] bitReverse;
+    private final double[] cos;
+    private final double[] sin;
+    private final double[] splitCos;
+    private final double[] splitSin;
+    private final double[] re;
+    private final double[] im;
+
+    /**
+     * @param size Transform size; must be a power of two and at least 4
+     */
+    public RealFft(int size) {
+        if (size < 4 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two >= 4: " + size);
+        }
+        this.size = size;
+        this.half = size / 2;
+        this.re = new double[half];
+        this.im = new double[half];
+
+        this.bitReverse = new int[half];
+        int bits = Integer.numberOfTrailingZeros(half);
+        for (int i = 0; i < half; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+
+        this.cos = new double[half / 2];
+        this.sin = new double[half / 2];
+        for (int k = 0; k < half / 2; k++) {
+            cos[k] = Math.cos(2 * Math.PI * k / half);
+            sin[k] = Math.sin(2 * Math.PI * k / half);
+        }
+
+        this.splitCos = new double[half + 1];
+        this.splitSin = new double[half + 1];
+        for (int k = 0; k <= half; k++) {
+            splitCos[k] = Math.cos(2 * Math.PI * k / size);
+            splitSin[k] = Math.sin(2 * Math.PI * k / size);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Compute the magnitude spectrum of {@code input}.
+     *
+     * @param input {@link #size()} real samples
+     * @param magnitudes Receives {@code size / 2 + 1} bin magnitudes, DC through Nyquist
+     */
+    public void magnitudes(double[] input, double[] magnitudes) {
+        for (int i = 0; i < half; i++) {
+            int j = bitReverse[i];
+            re[j] = input[2 * i];
+            im[j] = input[2 * i + 1];
+        }
+
+        // Radix-2 butterflies; the first pass has a unit twiddle
+        for (int a = 0; a < half; a += 2) {
+            double tr = re[a + 1];
+            double ti = im[a + 1];
+            re[a + 1] = re[a] - tr;
+            im[a + 1] = im[a] - ti;
+            re[a] += tr;
+            im[a] += ti;
+        }
+        for (int span = 4; span <= half; span <<= 1) {
+            int step = half / span;
+            int mid = span >> 1;
+            for (int k = 0; k < mid; k++) {
+                double wr = cos[k * step];
+                double wi = -sin[k * step];
+                for (int a = k; a < half; a += span) {
+                    int b = a + mid;
+                    double tr = re[b] * wr - im[b] * wi;
+                    double ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+
+        // Split the packed transform into the spectrum of the real input
+        for (int k = 0; k <= half; k++) {
+            int a = k == half ? 0 : k;
+            int b = k == 0 ? 0 : half - k;
+            double zr = re[a];
+            double zi = im[a];
+            double cr = re[b];
+            double ci = -im[b];
+            double er = 0.5 * (zr + cr);
+            double ei = 0.5 * (zi + ci);
+            double or = 0.5 * (zi - ci);
+            double oi = -0.5 * (zr - cr);
+            double wr = splitCos[k];
+            double wi = -splitSin[k];
+            double xr = er + or * wr - oi * wi;
+            double xi = ei + or * wi + oi * wr;
+            magnitudes[k] = Math.sqrt(xr * xr + xi * xi);
+        }
+    }
+}
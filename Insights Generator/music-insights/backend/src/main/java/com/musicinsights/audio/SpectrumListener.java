@@ -0,0 +1,28 @@
+package com.musicinsights.audio;
+
+/**
+ * Receives the output of a {@link StftEngine} pass.
+ *
+ * <p>The arrays passed to both callbacks are owned by the engine and reused for
+ * the next frame, so implementations must copy anything they want to keep.</p>
+ */
+public interface SpectrumListener {
+
+    /**
+     * Called for each block of new samples, in stream order.
+     *
+     * @param samples Mono samples scaled to [-1, 1]
+     * @param length Number of valid samples in {@code samples}
+     * @param position Stream position of the first sample, in samples
+     */
+    void onSamples(float[] samples, int length, long position);
+
+    /**
+     * Called for each complete analysis window.
+     *
+     * @param magnitudes Magnitude spectrum, DC through Nyquist, normalised so that a
+     *                   full-scale sine peaks at about 1.0
+     * @param frameIndex Index of the window; window {@code j} starts at sample {@code j * hopSize}
+     */
+    void onSpectrum(double[] magnitudes, long frameIndex);
+}
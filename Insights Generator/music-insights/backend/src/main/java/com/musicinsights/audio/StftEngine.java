@@ -0,0 +1,119 @@
+package com.musicinsights.audio;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Short-time Fourier transform over a PCM stream.
+ *
+ * <p>Samples are read one hop at a time into a sliding Hann-windowed analysis
+ * window. Every buffer is allocated when the engine is created and reused for
+ * each frame, so a pass allocates nothing per frame. An engine can run any number
+ * of passes, one at a time; it is not thread-safe.</p>
+ */
+public final class StftEngine {
+    /** Analysis rate input is decimated to; 22.05 kHz keeps everything below 11 kHz. */
+    public static final int ANALYSIS_SAMPLE_RATE = 22050;
+    public static final int DEFAULT_FFT_SIZE = 1024;
+    public static final int DEFAULT_HOP_SIZE = 512;
+
+    private final int fftSize;
+    private final int hopSize;
+    private final RealFft fft;
+    private final double[] window;
+    private final double scale;
+    private final float[] hop;
+    private final float[] ring;
+    private final double[] windowed;
+    private final double[] magnitudes;
+
+    public StftEngine() {
+        this(DEFAULT_FFT_SIZE, DEFAULT_HOP_SIZE);
+    }
+
+    /**
+     * @param fftSize Window length in samples; a power of two
+     * @param hopSize Samples between window starts; must divide {@code fftSize}
+     */
+    public StftEngine(int fftSize, int hopSize) {
+        if (hopSize <= 0 || fftSize % hopSize != 0) {
+            throw new IllegalArgumentException("Hop size must divide the FFT size: " + hopSize);
+        }
+        this.fftSize = fftSize;
+        this.hopSize = hopSize;
+        this.fft = new RealFft(fftSize);
+        this.window = new double[fftSize];
+        double sum = 0;
+        for (int i = 0; i < fftSize; i++) {
+            window[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / fftSize);
+            sum += window[i];
+        }
+        this.scale = 2.0 / sum;
+        this.hop = new float[hopSize];
+        this.ring = new float[fftSize];
+        this.windowed = new double[fftSize];
+        this.magnitudes = new double[fftSize / 2 + 1];
+    }
+
+    public int getFftSize() {
+        return fftSize;
+    }
+
+    public int getHopSize() {
+        return hopSize;
+    }
+
+    /**
+     * Run the transform over the rest of the reader's stream.
+     *
+     * <p>A window is emitted once {@code fftSize} samples have been read, and then
+     * after every further full hop. A trailing partial hop is passed to
+     * {@link SpectrumListener#onSamples} but does not produce a window.</p>
+     *
+     * @param reader The PCM source
+     * @param listener Receives samples and spectra
+     * @param startPosition Stream position of the reader's first sample; a multiple of the hop size
+     * @throws IOException if the stream cannot be read
+     */
+    public void process(PcmFrameReader reader, SpectrumListener listener, long startPosition) throws IOException {
+        process(reader, listener, startPosition, Long.MAX_VALUE);
+    }
+
+    /**
+     * Run the transform over at most {@code maxSamples} samples of the reader's
+     * stream, rounded up to a whole hop. The rest of the stream is left unread.
+     *
+     * @param reader The PCM source
+     * @param listener Receives samples and spectra
+     * @param startPosition Stream position of the reader's first sample; a multiple of the hop size
+     * @param maxSamples Number of samples after which the pass stops
+     * @throws IOException if the stream cannot be read
+     */
+    public void process(PcmFrameReader reader, SpectrumListener listener, long startPosition,
+                        long maxSamples) throws IOException {
+        Arrays.fill(ring, 0f);
+        long position = startPosition;
+        long read = 0;
+        int n;
+        while (read < maxSamples && (n = reader.read(hop)) > 0) {
+            listener.onSamples(hop, n, position);
+            position += n;
+            read += n;
+            if (n < hopSize) {
+                break;
+            }
+            System.arraycopy(ring, hopSize, ring, 0, fftSize - hopSize);
+            System.arraycopy(hop, 0, ring, fftSize - hopSize, hopSize);
+            if (read >= fftSize) {
+                for (int i = 0; i < fftSize; i++) {
+                    windowed[i] = ring[i] * window[i];
+                }
+                fft.magnitudes(windowed, magnitudes);
+                for (int k = 0; k < magnitudes.length; k++) {
+                    magnitudes[k] *= scale;
+                }
+                listener.onSpectrum(magnitudes, (position - fftSize) / hopSize);
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.musicinsights.audio;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link PcmFrameReader} for audio it cannot decode: anything but
+ * uncompressed PCM or float WAV, such as MP3, OGG or FLAC.
+ */
+public class UnsupportedAudioFormatException extends IOException {
+
+    public UnsupportedAudioFormatException(String message) {
+        super(message);
+    }
+
+    /**
+     * @return The first {@code UnsupportedAudioFormatException} in the cause chain of
+     *         {@code error}, or null if there is none
+     */
+    public static UnsupportedAudioFormatException causeOf(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UnsupportedAudioFormatException) {
+                return (UnsupportedAudioFormatException) cause;
+            }
+        }
+        return null;
+    }
+}
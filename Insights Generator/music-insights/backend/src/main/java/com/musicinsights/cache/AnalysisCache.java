@@ -0,0 +1,298 @@
+package com.musicinsights.cache;
+
+import com.musicinsights.config.TuningConfig;
+import com.musicinsights.json.InsightsJsonDecoder;
+import com.musicinsights.json.JsonWriters;
+import com.musicinsights.model.TrackAnalysis;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Content-addressed cache of upload analysis results, keyed by the SHA-256
+ * digest of the uploaded bytes.
+ *
+ * <p>Results are stored as UTF-8 JSON. The memory tier is an LRU map bounded by
+ * the total size of the stored JSON. When a cache directory is configured, every
+ * result is also written there as {@code <digest>.json}, so results survive
+ * restarts; the directory is bounded by size as well, evicting least recently
+ * used files first. A memory miss that hits the disk promotes the entry back into
+ * memory.</p>
+ */
+public class AnalysisCache {
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisCache.class);
+    private static final String SUFFIX = ".json";
+
+    private final long maxMemoryBytes;
+    private final Path directory;
+    private final long maxDiskBytes;
+
+    // Both maps are in access order and guarded by this
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Inject
+    public AnalysisCache(TuningConfig tuning) {
+        this(tuning.getAnalysisCacheMemoryBytes(), tuning.getAnalysisCacheDirectory(),
+                tuning.getAnalysisCacheDiskBytes());
+    }
+
+    /**
+     * @param maxMemoryBytes Size budget of the memory tier; 0 disables it
+     * @param directory Directory of the disk tier, or null to keep results in memory only
+     * @param maxDiskBytes Size budget of the disk tier
+     */
+    public AnalysisCache(long maxMemoryBytes, Path directory, long maxDiskBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        this.directory = directory != null && openDirectory(directory) ? directory : null;
+    }
+
+    /**
+     * Look up the analysis of previously seen content.
+     *
+     * @param digest The content digest
+     * @return The stored result, or null if the content was not seen before
+     */
+    public TrackAnalysis get(String digest) {
+        byte[] json;
+        synchronized (this) {
+            json = memory.get(digest);
+        }
+        if (json != null) {
+            hits.increment();
+            return decode(json);
+        }
+
+        json = readFromDisk(digest);
+        if (json != null) {
+            TrackAnalysis result = decode(json);
+            if (result != null) {
+                diskHits.increment();
+                putInMemory(digest, json);
+                return result;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Store the analysis of the content with the given digest.
+     *
+     * @param digest The content digest
+     * @param analysis The analysis result
+     */
+    public void put(String digest, TrackAnalysis analysis) {
+        byte[] json = JsonWriters.toBytes(analysis);
+        putInMemory(digest, json);
+        writeToDisk(digest, json);
+    }
+
+    // Statistics
+
+    /**
+     * @return Lookups answered from memory
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Lookups answered from the disk tier
+     */
+    public long getDiskHitCount() {
+        return diskHits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Entries dropped from the memory tier to stay within its budget
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public synchronized int getMemoryEntryCount() {
+        return memory.size();
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    // Memory tier
+
+    private void putInMemory(String digest, byte[] json) {
+        if (json.length > maxMemoryBytes) {
+            return;
+        }
+        synchronized (this) {
+            byte[] previous = memory.put(digest, json);
+            memoryBytes += json.length - (previous == null ? 0 : previous.length);
+            Iterator<byte[]> eldest = memory.values().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                memoryBytes -= eldest.next().length;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private TrackAnalysis decode(byte[] json) {
+        try {
+            return InsightsJsonDecoder.readTrack(new ByteArrayInputStream(json));
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            logger.warn("Discarding unreadable cached analysis: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // Disk tier
+
+    private boolean openDirectory(Path dir) {
+        try {
+            Files.createDirectories(dir);
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+                for (Path file : stream) {
+                    files.add(file);
+                }
+            }
+            // Oldest first, so the access-ordered index starts in LRU order
+            files.sort(Comparator.comparing(AnalysisCache::lastModified));
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long size = Files.size(file);
+                disk.put(name.substring(0, name.length() - SUFFIX.length()), size);
+                diskBytes += size;
+            }
+            logger.info("Analysis cache directory {} holds {} results ({} bytes)", dir, disk.size(), diskBytes);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Analysis cache directory {} is unusable, caching in memory only: {}", dir, e.getMessage());
+            return false;
+        }
+    }
+
+    private byte[] readFromDisk(String digest) {
+        if (directory == null) {
+            return null;
+        }
+        synchronized (this) {
+            if (disk.get(digest) == null) {
+                return null;
+            }
+        }
+        try {
+            return Files.readAllBytes(fileFor(digest));
+        } catch (IOException e) {
+            logger.warn("Failed to read cached analysis {}: {}", digest, e.getMessage());
+            removeFromDisk(digest);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String digest, byte[] json) {
+        if (directory == null || json.length > maxDiskBytes) {
+            return;
+        }
+        Path target = fileFor(digest);
+        try {
+            // Write a temporary file and move it into place so readers never see a partial result
+            Path temp = Files.createTempFile(directory, digest, ".tmp");
+            try {
+                Files.write(temp, json);
+                try {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write cached analysis {}: {}", digest, e.getMessage());
+            return;
+        }
+
+        List<String> expired = new ArrayList<>();
+        synchronized (this) {
+            Long previous = disk.put(digest, (long) json.length);
+            diskBytes += json.length - (previous == null ? 0 : previous);
+            Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+            while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                if (entry.getKey().equals(digest)) {
+                    continue;
+                }
+                diskBytes -= entry.getValue();
+                expired.add(entry.getKey());
+                eldest.remove();
+            }
+        }
+        for (String key : expired) {
+            deleteQuietly(fileFor(key));
+        }
+    }
+
+    private void removeFromDisk(String digest) {
+        synchronized (this) {
+            Long size = disk.remove(digest);
+            if (size != null) {
+                diskBytes -= size;
+            }
+        }
+        deleteQuietly(fileFor(digest));
+    }
+
+    private Path fileFor(String digest) {
+        return directory.resolve(digest + SUFFIX);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete cached analysis {}", file);
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.musicinsights.cache;
+
+/**
+ * Approximate access counts for cache admission: a count-min sketch of 4-bit
+ * counters, sixteen to a {@code long}.
+ *
+ * <p>Each key increments one counter in each of four rows, and its frequency is
+ * the smallest of the four. After a sample of ten accesses per cache entry every
+ * counter is halved, so counts reflect recent popularity rather than all time.
+ * Not thread-safe.</p>
+ */
+class FrequencySketch {
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    private static final int[] SEEDS = {0x97CB_3127, 0xB4B8_2E4D, 0xE4A5_6F3B, 0x8F1B_B35D};
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maxEntries) {
+        int counters = Integer.highestOneBit(Math.max(16, maxEntries) * 4 - 1) << 1;
+        this.table = new long[counters / 16];
+        this.tableMask = table.length - 1;
+        this.sampleSize = Math.max(10, maxEntries * 10);
+    }
+
+    /**
+     * @return Estimated recent accesses of the key, at most 15
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int min = 15;
+        for (int row = 0; row < 4; row++) {
+            int counter = counterIndex(hash, row);
+            int count = (int) ((table[counter >>> 4] >>> ((counter & 15) << 2)) & 0xF);
+            min = Math.min(min, count);
+        }
+        return min;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < 4; row++) {
+            int counter = counterIndex(hash, row);
+            int index = counter >>> 4;
+            int shift = (counter & 15) << 2;
+            if (((table[index] >>> shift) & 0xF) < 15) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private int counterIndex(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[row];
+        h ^= h >>> 17;
+        return h & ((tableMask << 4) | 15);
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x45D9_F3B;
+        return hash ^ (hash >>> 16);
+    }
+}
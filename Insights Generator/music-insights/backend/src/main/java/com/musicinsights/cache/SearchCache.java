@@ -0,0 +1,196 @@
+package com.musicinsights.cache;
+
+import com.musicinsights.concurrent.Futures;
+import com.musicinsights.config.TuningConfig;
+import com.musicinsights.model.TrackAnalysis;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Cache of search results with a time to live, stale-while-revalidate and
+ * stale-if-error.
+ *
+ * <p>A result younger than the TTL is served as is. An older one is still
+ * served at once for the stale-while-revalidate period while a single
+ * background load refreshes it, so popular searches never wait on the search
+ * backend. Past that period the search loads in the foreground; if that load
+ * fails, a result within the stale-if-error period is served instead of the
+ * fallback. Entries are bounded by count with {@link TinyLfuCache}.</p>
+ */
+public class SearchCache {
+    private static final Logger logger = LoggerFactory.getLogger(SearchCache.class);
+
+    private final TinyLfuCache<String, Entry> entries;
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final long staleWhileRevalidateNanos;
+    private final long staleIfErrorNanos;
+    private final LongSupplier nanoTime;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder staleIfErrorHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    @Inject
+    public SearchCache(TuningConfig tuning) {
+        this(tuning.getSearchCacheMaxEntries(), tuning.getSearchCacheTtlSeconds(),
+                tuning.getSearchCacheStaleWhileRevalidateSeconds(), tuning.getSearchCacheStaleIfErrorSeconds());
+    }
+
+    /**
+     * @param maxEntries Maximum number of cached searches; 0 disables the cache
+     * @param ttlSeconds Seconds a result is served without reloading it
+     * @param staleWhileRevalidateSeconds Seconds after the TTL a result is still served while it is refreshed
+     * @param staleIfErrorSeconds Seconds after the TTL a result is served when loading fails
+     */
+    public SearchCache(int maxEntries, long ttlSeconds, long staleWhileRevalidateSeconds, long staleIfErrorSeconds) {
+        this(maxEntries, ttlSeconds, staleWhileRevalidateSeconds, staleIfErrorSeconds, System::nanoTime);
+    }
+
+    SearchCache(int maxEntries, long ttlSeconds, long staleWhileRevalidateSeconds, long staleIfErrorSeconds,
+                LongSupplier nanoTime) {
+        this.enabled = maxEntries > 0;
+        this.entries = new TinyLfuCache<>(Math.max(2, maxEntries));
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.staleWhileRevalidateNanos = TimeUnit.SECONDS.toNanos(staleWhileRevalidateSeconds);
+        this.staleIfErrorNanos = TimeUnit.SECONDS.toNanos(staleIfErrorSeconds);
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Get the results of a search, from the cache or by loading them.
+     *
+     * @param key The normalized search query
+     * @param loader Loads results for the key
+     * @param fallback Results to return when loading fails and nothing usable is cached
+     * @return Search results, shared with other callers
+     */
+    public List<TrackAnalysis> get(String key, Function<String, CompletableFuture<List<TrackAnalysis>>> loader,
+                                         Supplier<List<TrackAnalysis>> fallback) {
+        if (!enabled) {
+            return loadOrFallback(key, loader, fallback);
+        }
+
+        Entry entry = entries.get(key);
+        long age = entry != null ? nanoTime.getAsLong() - entry.loadedAt : Long.MAX_VALUE;
+        if (age < ttlNanos) {
+            hits.increment();
+            return entry.results;
+        }
+        if (age - ttlNanos < staleWhileRevalidateNanos) {
+            staleHits.increment();
+            refresh(key, entry, loader);
+            return entry.results;
+        }
+
+        misses.increment();
+        try {
+            List<TrackAnalysis> results = Futures.await(loader.apply(key));
+            entries.put(key, new Entry(results, nanoTime.getAsLong()));
+            return results;
+        } catch (CompletionException e) {
+            if (entry != null && age - ttlNanos < staleIfErrorNanos) {
+                logger.warn("Search for '{}' failed, serving results from {} s ago: {}", key,
+                        TimeUnit.NANOSECONDS.toSeconds(age), e.getCause().getMessage());
+                staleIfErrorHits.increment();
+                return entry.results;
+            }
+            logger.error("Error searching tracks: {}", e.getCause().getMessage());
+            return fallback.get();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Stale results served while they were refreshed in the background
+     */
+    public long getStaleHitCount() {
+        return staleHits.sum();
+    }
+
+    /**
+     * @return Stale results served because loading failed
+     */
+    public long getStaleIfErrorCount() {
+        return staleIfErrorHits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    public long getEvictionCount() {
+        return entries.getEvictionCount();
+    }
+
+    /**
+     * Start one background load for a stale entry; later callers keep getting
+     * the stale results until it completes.
+     */
+    private void refresh(String key, Entry stale,
+                         Function<String, CompletableFuture<List<TrackAnalysis>>> loader) {
+        if (!stale.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refreshes.increment();
+        try {
+            loader.apply(key).whenComplete((results, failure) -> {
+                if (failure == null) {
+                    entries.put(key, new Entry(results, nanoTime.getAsLong()));
+                } else {
+                    logger.warn("Background refresh of search '{}' failed: {}", key, failure.getMessage());
+                    stale.refreshing.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            stale.refreshing.set(false);
+            throw e;
+        }
+    }
+
+    private List<TrackAnalysis> loadOrFallback(String key,
+                                                     Function<String, CompletableFuture<List<TrackAnalysis>>> loader,
+                                                     Supplier<List<TrackAnalysis>> fallback) {
+        try {
+            return Futures.await(loader.apply(key));
+        } catch (CompletionException e) {
+            logger.error("Error searching tracks: {}", e.getCause().getMessage());
+            return fallback.get();
+        }
+    }
+
+    private static final class Entry {
+        final List<TrackAnalysis> results;
+        final long loadedAt;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(List<TrackAnalysis> results, long loadedAt) {
+            this.results = results;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.musicinsights.cache;
+
+import com.musicinsights.concurrent.SingleFlight;
+import com.musicinsights.config.TuningConfig;
+import com.musicinsights.model.SpotifyToken;
+
+import javax.inject.Inject;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Spotify access tokens by Spotify user ID, so one refresh serves a user until
+ * shortly before the token expires.
+ *
+ * <p>A token is served until {@code refreshMarginSeconds} before its
+ * {@code expires_in}, with {@code expires_in} counted down to what is left.
+ * Concurrent refreshes for the same user share one call to Spotify. Entries are
+ * bounded by count with {@link TinyLfuCache}.</p>
+ */
+public class SpotifyTokenCache {
+    private final TinyLfuCache<String, Entry> entries;
+    private final long refreshMarginNanos;
+    private final LongSupplier nanoTime;
+    private final SingleFlight<String, SpotifyToken> refreshes = new SingleFlight<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Inject
+    public SpotifyTokenCache(TuningConfig tuning) {
+        this(tuning.getSpotifyTokenCacheMaxEntries(), tuning.getSpotifyTokenRefreshMarginSeconds());
+    }
+
+    /**
+     * @param maxEntries Maximum number of users whose tokens are cached
+     * @param refreshMarginSeconds Seconds before a token expires that it is refreshed instead of served
+     */
+    public SpotifyTokenCache(int maxEntries, long refreshMarginSeconds) {
+        this(maxEntries, refreshMarginSeconds, System::nanoTime);
+    }
+
+    SpotifyTokenCache(int maxEntries, long refreshMarginSeconds, LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        this.entries = new TinyLfuCache<>(Math.max(2, maxEntries));
+        this.refreshMarginNanos = TimeUnit.SECONDS.toNanos(refreshMarginSeconds);
+    }
+
+    /**
+     * Get a user's access token, from the cache or by refreshing it.
+     *
+     * @param userId The Spotify user ID
+     * @param refresher Exchanges the user's refresh token for a new access token
+     * @return The access token
+     */
+    public CompletableFuture<SpotifyToken> get(String userId,
+                                               Function<String, CompletableFuture<SpotifyToken>> refresher) {
+        Entry entry = entries.get(userId);
+        if (entry != null) {
+            long remaining = entry.expiresAt - nanoTime.getAsLong();
+            if (remaining > refreshMarginNanos) {
+                hits.increment();
+                return CompletableFuture.completedFuture(new SpotifyToken(entry.token.getAccessToken(),
+                        entry.token.getTokenType(), TimeUnit.NANOSECONDS.toSeconds(remaining)));
+            }
+        }
+
+        misses.increment();
+        return refreshes.execute(userId, () -> refresher.apply(userId).thenApply(token -> {
+            put(userId, token);
+            return token;
+        }));
+    }
+
+    /**
+     * Cache a token just issued for a user.
+     */
+    public void put(String userId, SpotifyToken token) {
+        if (token.getAccessToken() != null && token.getExpiresIn() > 0) {
+            long expiresAt = nanoTime.getAsLong() + TimeUnit.SECONDS.toNanos(token.getExpiresIn());
+            entries.put(userId, new Entry(token, expiresAt));
+        }
+    }
+
+    /**
+     * Forget a user's token, so the next request refreshes it.
+     */
+    public void invalidate(String userId) {
+        entries.remove(userId);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Coalescing of concurrent refreshes, with the number of calls saved
+     */
+    public SingleFlight<String, SpotifyToken> getRefreshFlights() {
+        return refreshes;
+    }
+
+    private static final class Entry {
+        final SpotifyToken token;
+        final long expiresAt;
+
+        Entry(SpotifyToken token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
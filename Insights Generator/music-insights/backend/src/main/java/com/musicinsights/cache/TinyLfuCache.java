@@ -0,0 +1,139 @@
+package com.musicinsights.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded map with W-TinyLFU eviction.
+ *
+ * <p>New entries go to a small LRU window (1% of the capacity). An entry pushed
+ * out of the window only enters the main area if a {@link FrequencySketch} says
+ * it is used more often than the entry it would evict, so a burst of one-off
+ * keys cannot flush popular ones. The main area is a segmented LRU: entries
+ * start on probation and move to the protected segment (80% of the main area)
+ * when read again. All methods are synchronized.</p>
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class TinyLfuCache<K, V> {
+    private final int windowMax;
+    private final int mainMax;
+    private final int protectedMax;
+    private final FrequencySketch sketch;
+
+    // Access-ordered, least recently used first
+    private final LinkedHashMap<K, V> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, V> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, V> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long evictions;
+    private long rejections;
+
+    public TinyLfuCache(int maxEntries) {
+        int capacity = Math.max(2, maxEntries);
+        this.windowMax = Math.max(1, capacity / 100);
+        this.mainMax = capacity - windowMax;
+        this.protectedMax = Math.max(1, mainMax * 4 / 5);
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    /**
+     * @return The value, or null if the key is not cached
+     */
+    public synchronized V get(K key) {
+        sketch.increment(key);
+        V value = window.get(key);
+        if (value != null) {
+            return value;
+        }
+        value = probation.remove(key);
+        if (value != null) {
+            protect(key, value);
+            return value;
+        }
+        return protectedSegment.get(key);
+    }
+
+    /**
+     * Add or replace an entry.
+     */
+    public synchronized void put(K key, V value) {
+        if (window.containsKey(key)) {
+            window.put(key, value);
+        } else if (probation.containsKey(key)) {
+            probation.put(key, value);
+        } else if (protectedSegment.containsKey(key)) {
+            protectedSegment.put(key, value);
+        } else {
+            sketch.increment(key);
+            window.put(key, value);
+            if (window.size() > windowMax) {
+                Map.Entry<K, V> candidate = removeEldest(window);
+                admit(candidate.getKey(), candidate.getValue());
+            }
+        }
+    }
+
+    public synchronized V remove(K key) {
+        V value = window.remove(key);
+        if (value == null) {
+            value = probation.remove(key);
+        }
+        if (value == null) {
+            value = protectedSegment.remove(key);
+        }
+        return value;
+    }
+
+    public synchronized int size() {
+        return window.size() + probation.size() + protectedSegment.size();
+    }
+
+    /**
+     * @return Entries evicted to make room for others
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * @return New entries turned away because they were used less than the entry they would replace
+     */
+    public synchronized long getRejectionCount() {
+        return rejections;
+    }
+
+    private void admit(K key, V value) {
+        if (probation.size() + protectedSegment.size() < mainMax) {
+            probation.put(key, value);
+            return;
+        }
+        LinkedHashMap<K, V> victims = probation.isEmpty() ? protectedSegment : probation;
+        K victim = victims.keySet().iterator().next();
+        if (sketch.frequency(key) > sketch.frequency(victim)) {
+            victims.remove(victim);
+            probation.put(key, value);
+            evictions++;
+        } else {
+            rejections++;
+        }
+    }
+
+    private void protect(K key, V value) {
+        protectedSegment.put(key, value);
+        if (protectedSegment.size() > protectedMax) {
+            Map.Entry<K, V> demoted = removeEldest(protectedSegment);
+            probation.put(demoted.getKey(), demoted.getValue());
+        }
+    }
+
+    private static <K, V> Map.Entry<K, V> removeEldest(LinkedHashMap<K, V> map) {
+        Iterator<Map.Entry<K, V>> eldest = map.entrySet().iterator();
+        Map.Entry<K, V> entry = eldest.next();
+        Map.Entry<K, V> copy = Map.entry(entry.getKey(), entry.getValue());
+        eldest.remove();
+        return copy;
+    }
+}
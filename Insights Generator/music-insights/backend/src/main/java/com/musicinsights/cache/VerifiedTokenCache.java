@@ -0,0 +1,101 @@
+package com.musicinsights.cache;
+
+import com.musicinsights.config.TuningConfig;
+import com.musicinsights.model.UserPrincipal;
+
+import javax.inject.Inject;
+import java.util.Date;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Users of JWT tokens whose signature has already been verified, so repeat
+ * requests with the same token skip decoding and verifying it.
+ *
+ * <p>A token is only found by exact match with one that was verified, and its
+ * entry expires when the token does. Entries are bounded by count with
+ * {@link TinyLfuCache}.</p>
+ */
+public class VerifiedTokenCache {
+    private final TinyLfuCache<String, Entry> entries;
+    private final boolean enabled;
+    private final LongSupplier currentTimeMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Inject
+    public VerifiedTokenCache(TuningConfig tuning) {
+        this(tuning.getTokenCacheMaxEntries());
+    }
+
+    /**
+     * @param maxEntries Maximum number of cached tokens; 0 disables the cache
+     */
+    public VerifiedTokenCache(int maxEntries) {
+        this(maxEntries, System::currentTimeMillis);
+    }
+
+    VerifiedTokenCache(int maxEntries, LongSupplier currentTimeMillis) {
+        this.currentTimeMillis = currentTimeMillis;
+        this.enabled = maxEntries > 0;
+        this.entries = new TinyLfuCache<>(Math.max(2, maxEntries));
+    }
+
+    /**
+     * @param token The compact JWT
+     * @return The user of a verified token that has not expired, or null
+     */
+    public UserPrincipal get(String token) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = entries.get(token);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (currentTimeMillis.getAsLong() >= entry.expiresAt) {
+            entries.remove(token);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.principal;
+    }
+
+    /**
+     * Remember a token whose signature and expiry were just verified.
+     *
+     * @param token The compact JWT
+     * @param principal The token's user
+     * @param expiration The token's {@code exp} claim; tokens without one are not cached
+     */
+    public void put(String token, UserPrincipal principal, Date expiration) {
+        if (enabled && expiration != null) {
+            entries.put(token, new Entry(principal, expiration.getTime()));
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private static final class Entry {
+        final UserPrincipal principal;
+        final long expiresAt;
+
+        Entry(UserPrincipal principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.musicinsights.client;
+
+/**
+ * Thrown when the Python analytics service answers, but with a body that
+ * cannot be decoded. The service is up, so this does not count against its
+ * circuit breaker.
+ */
+public class AnalyticsResponseException extends RuntimeException {
+
+    public AnalyticsResponseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
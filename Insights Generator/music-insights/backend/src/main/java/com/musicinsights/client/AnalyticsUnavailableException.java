@@ -0,0 +1,16 @@
+package com.musicinsights.client;
+
+/**
+ * Thrown when the Python analytics service cannot answer a call: it is down,
+ * too slow, overloaded, or its circuit breaker is open.
+ */
+public class AnalyticsUnavailableException extends RuntimeException {
+
+    public AnalyticsUnavailableException(String message) {
+        super(message);
+    }
+
+    public AnalyticsUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,242 @@
+package com.musicinsights.client;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.MalformedJsonException;
+import com.musicinsights.concurrent.CircuitBreaker;
+import com.musicinsights.concurrent.SingleFlight;
+import com.musicinsights.config.ApplicationConfig;
+import com.musicinsights.config.TuningConfig;
+import com.musicinsights.json.InsightsJsonDecoder;
+import com.musicinsights.metrics.MetricsRegistry;
+import com.musicinsights.model.TrackAnalysis;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Non-blocking client for the Python analytics service.
+ *
+ * <p>Calls share one {@link HttpClient}, which keeps connections to the service
+ * alive between calls. Each route has its own timeout, which covers reading the
+ * body as well as waiting for the headers. A bulkhead caps the calls
+ * in flight, and a circuit breaker refuses calls while the service keeps failing,
+ * so callers get an {@link AnalyticsUnavailableException} at once and can fall
+ * back instead of waiting for a timeout.</p>
+ *
+ * <p>Concurrent searches for the same normalized query share one call.
+ * Responses are decoded from the body stream by {@link InsightsJsonDecoder}; a
+ * body that cannot be decoded fails the call with an
+ * {@link AnalyticsResponseException} and does not count against the breaker.</p>
+ */
+public class PythonAnalyticsClient {
+    private static final Logger logger = LoggerFactory.getLogger(PythonAnalyticsClient.class);
+
+    private final String baseUrl;
+    private final Duration searchTimeout;
+    private final Duration urlTimeout;
+    private final HttpClient httpClient;
+    private final int maxConcurrentCalls;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final MetricsRegistry metrics;
+    private final SingleFlight<String, List<TrackAnalysis>> searches = new SingleFlight<>();
+    private final Gson gson = new Gson();
+
+    @Inject
+    public PythonAnalyticsClient(ApplicationConfig config, TuningConfig tuning, MetricsRegistry metrics) {
+        this(config.getPythonServiceUrl(), Duration.ofMillis(tuning.getPythonConnectTimeoutMillis()),
+                Duration.ofMillis(tuning.getPythonSearchTimeoutMillis()),
+                Duration.ofMillis(tuning.getPythonUrlTimeoutMillis()), tuning.getPythonMaxConcurrentCalls(),
+                new CircuitBreaker("python-analytics", tuning.getPythonCircuitFailureThreshold(),
+                        tuning.getPythonCircuitOpenMillis()), metrics);
+    }
+
+    public PythonAnalyticsClient(String baseUrl, Duration connectTimeout, Duration searchTimeout, Duration urlTimeout,
+                                 int maxConcurrentCalls, CircuitBreaker circuitBreaker, MetricsRegistry metrics) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.searchTimeout = searchTimeout;
+        this.urlTimeout = urlTimeout;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+        this.maxConcurrentCalls = Math.max(1, maxConcurrentCalls);
+        this.bulkhead = new Semaphore(this.maxConcurrentCalls);
+        this.circuitBreaker = circuitBreaker;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Search for tracks. Searches that differ only in case and whitespace are
+     * the same search; if one is already in flight, its result is shared.
+     *
+     * @param query The search query
+     * @return Matching tracks, shared by all callers of the same search
+     */
+    public CompletableFuture<List<TrackAnalysis>> search(String query) {
+        String normalized = normalizeQuery(query);
+        return searches.execute(normalized, () -> {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(
+                            baseUrl + "/analyze/search?q=" + URLEncoder.encode(normalized, StandardCharsets.UTF_8)))
+                    .timeout(searchTimeout)
+                    .header("Accept", "application/json")
+                    .GET()
+                    .build();
+            return send("search", request, searchTimeout, InsightsJsonDecoder::readTracks);
+        });
+    }
+
+    /**
+     * Analyze a track from a URL.
+     *
+     * @param url The URL of the track
+     * @return The analysis results
+     */
+    public CompletableFuture<TrackAnalysis> analyzeUrl(String url) {
+        String body = gson.toJson(Collections.singletonMap("url", url));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/analyze/url"))
+                .timeout(urlTimeout)
+                .header("Accept", "application/json")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return send("url analysis", request, urlTimeout, InsightsJsonDecoder::readTrack);
+    }
+
+    /**
+     * @return Coalescing of concurrent searches, with the number of calls saved
+     */
+    public SingleFlight<String, List<TrackAnalysis>> getSearchFlights() {
+        return searches;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * @return Calls to the service in flight
+     */
+    public int getCallsInFlight() {
+        return maxConcurrentCalls - bulkhead.availablePermits();
+    }
+
+    private <T> CompletableFuture<T> send(String route, HttpRequest request, Duration timeout, Decoder<T> decoder) {
+        if (!bulkhead.tryAcquire()) {
+            return CompletableFuture.failedFuture(
+                    new AnalyticsUnavailableException("Too many concurrent calls to the analytics service"));
+        }
+        long generation = circuitBreaker.tryAcquire();
+        if (generation == CircuitBreaker.REFUSED) {
+            bulkhead.release();
+            return CompletableFuture.failedFuture(
+                    new AnalyticsUnavailableException("Analytics service circuit is open"));
+        }
+
+        long start = System.nanoTime();
+        // Completes once the headers arrive; the body is then decoded as it streams in
+        CompletableFuture<HttpResponse<InputStream>> exchange =
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        CompletableFuture<T> result = new CompletableFuture<>();
+        exchange.thenApply(response -> decode(route, response, decoder))
+                // The request timeout only bounds the wait for headers; this bounds reading the body too
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((value, failure) -> {
+                    bulkhead.release();
+                    metrics.upstreamFinished("python", route, failure == null, System.nanoTime() - start);
+                    if (failure == null) {
+                        circuitBreaker.onSuccess(generation);
+                        result.complete(value);
+                        return;
+                    }
+                    Throwable cause = unwrap(failure);
+                    if (cause instanceof TimeoutException) {
+                        // Stop the decoder waiting on the rest of the body
+                        exchange.thenAccept(response -> closeQuietly(response.body()));
+                        cause = new AnalyticsUnavailableException(
+                                "Analytics " + route + " timed out after " + timeout.toMillis() + " ms", cause);
+                    }
+                    if (isServiceFailure(cause)) {
+                        logger.debug("Analytics {} failed: {}", route, cause.getMessage());
+                        circuitBreaker.onFailure(generation);
+                    } else {
+                        circuitBreaker.onSuccess(generation);
+                    }
+                    result.completeExceptionally(cause);
+                });
+        return result;
+    }
+
+    private static <T> T decode(String route, HttpResponse<InputStream> response, Decoder<T> decoder) {
+        try (InputStream body = response.body()) {
+            if (response.statusCode() >= 500) {
+                throw new AnalyticsUnavailableException(
+                        "Analytics " + route + " failed with status " + response.statusCode());
+            }
+            if (response.statusCode() != 200) {
+                throw new IllegalArgumentException(
+                        "Analytics " + route + " rejected the request with status " + response.statusCode());
+            }
+            try {
+                return decoder.decode(body);
+            } catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+                throw new AnalyticsResponseException("Analytics " + route + " returned a malformed response", e);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+            logger.debug("Could not close analytics response body: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return The query lower-cased, with whitespace trimmed and collapsed
+     */
+    public static String normalizeQuery(String query) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    /**
+     * @return Whether a failure means the service is unhealthy, as opposed to a bad request or response
+     */
+    private static boolean isServiceFailure(Throwable cause) {
+        return cause instanceof IOException || cause instanceof UncheckedIOException
+                || cause instanceof AnalyticsUnavailableException;
+    }
+
+    /**
+     * Decodes a response body.
+     */
+    private interface Decoder<T> {
+        T decode(InputStream body) throws IOException;
+    }
+}
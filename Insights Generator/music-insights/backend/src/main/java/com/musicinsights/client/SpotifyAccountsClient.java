@@ -0,0 +1,147 @@
+package com.musicinsights.client;
+
+import com.google.gson.stream.JsonReader;
+import com.musicinsights.config.ApplicationConfig;
+import com.musicinsights.config.TuningConfig;
+import com.musicinsights.metrics.MetricsRegistry;
+import com.musicinsights.model.SpotifyToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking client for the token endpoint of the Spotify accounts service.
+ *
+ * <p>The accounts URL is configurable so the client can be pointed at a local
+ * stub.</p>
+ */
+public class SpotifyAccountsClient {
+    private static final Logger logger = LoggerFactory.getLogger(SpotifyAccountsClient.class);
+
+    private final String accountsUrl;
+    private final String basicAuthorization;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+    private final MetricsRegistry metrics;
+
+    @Inject
+    public SpotifyAccountsClient(ApplicationConfig config, TuningConfig tuning, MetricsRegistry metrics) {
+        this(tuning.getSpotifyAccountsUrl(), config.getSpotifyClientId(), config.getSpotifyClientSecret(),
+                Duration.ofMillis(tuning.getSpotifyTimeoutMillis()), metrics);
+    }
+
+    /**
+     * @param accountsUrl Base URL of the accounts service, such as {@code https://accounts.spotify.com}
+     */
+    public SpotifyAccountsClient(String accountsUrl, String clientId, String clientSecret, Duration timeout,
+                                 MetricsRegistry metrics) {
+        this.accountsUrl = accountsUrl.endsWith("/") ? accountsUrl.substring(0, accountsUrl.length() - 1) : accountsUrl;
+        this.basicAuthorization = "Basic " + Base64.getEncoder()
+                .encodeToString((clientId + ":" + clientSecret).getBytes(StandardCharsets.UTF_8));
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return Base URL of the accounts service
+     */
+    public String getAccountsUrl() {
+        return accountsUrl;
+    }
+
+    /**
+     * @return The accounts service's token endpoint
+     */
+    public String getTokenUrl() {
+        return accountsUrl + "/api/token";
+    }
+
+    /**
+     * Exchange a refresh token for a new access token.
+     *
+     * @param refreshToken The user's refresh token
+     * @return The access token, with the refresh token that replaces this one if Spotify rotated it;
+     *         fails with {@link SpotifyAccountsException} if Spotify refuses
+     */
+    public CompletableFuture<SpotifyToken> refresh(String refreshToken) {
+        String form = "grant_type=refresh_token&refresh_token="
+                + URLEncoder.encode(refreshToken, StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(getTokenUrl()))
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .header("Authorization", basicAuthorization)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+
+        long start = System.nanoTime();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                .thenApply(response -> {
+                    try (InputStream body = response.body()) {
+                        if (response.statusCode() != 200) {
+                            String error = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                            logger.error("Spotify refresh failed. Status: {} Body: {}", response.statusCode(), error);
+                            throw new SpotifyAccountsException(
+                                    "Spotify refresh failed with status " + response.statusCode(),
+                                    response.statusCode());
+                        }
+                        return readToken(body);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .whenComplete((token, failure) -> metrics.upstreamFinished("spotify_accounts", "refresh",
+                        failure == null, System.nanoTime() - start));
+    }
+
+    private static SpotifyToken readToken(InputStream in) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String accessToken = null;
+            String tokenType = null;
+            long expiresIn = 0;
+            String refreshToken = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "access_token":
+                        accessToken = reader.nextString();
+                        break;
+                    case "token_type":
+                        tokenType = reader.nextString();
+                        break;
+                    case "expires_in":
+                        expiresIn = reader.nextLong();
+                        break;
+                    case "refresh_token":
+                        refreshToken = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (accessToken == null) {
+                throw new IOException("Spotify token response without access_token");
+            }
+            return new SpotifyToken(accessToken, tokenType, expiresIn, refreshToken);
+        }
+    }
+}
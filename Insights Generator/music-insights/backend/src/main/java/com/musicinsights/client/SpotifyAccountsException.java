@@ -0,0 +1,20 @@
+package com.musicinsights.client;
+
+/**
+ * Thrown when the Spotify accounts service refuses or fails a token request.
+ */
+public class SpotifyAccountsException extends RuntimeException {
+    private final int status;
+
+    public SpotifyAccountsException(String message, int status) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * @return The HTTP status the accounts service answered with
+     */
+    public int getStatus() {
+        return status;
+    }
+}
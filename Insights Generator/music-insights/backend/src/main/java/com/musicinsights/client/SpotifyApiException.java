@@ -0,0 +1,21 @@
+package com.musicinsights.client;
+
+/**
+ * Thrown when the Spotify Web API refuses or fails a call, including when it
+ * keeps answering 429 after the allowed retries.
+ */
+public class SpotifyApiException extends RuntimeException {
+    private final int status;
+
+    public SpotifyApiException(String message, int status) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * @return The HTTP status the Web API answered with
+     */
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,387 @@
+package com.musicinsights.client;
+
+import com.musicinsights.concurrent.BoundedExecutor;
+import com.musicinsights.concurrent.TokenBucket;
+import com.musicinsights.config.TuningConfig;
+import com.musicinsights.json.SpotifyJsonDecoder;
+import com.musicinsights.metrics.MetricsRegistry;
+import com.musicinsights.model.AudioFeatures;
+import com.musicinsights.model.TrackAnalysis;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Non-blocking client for the Spotify Web API that stays within its rate
+ * limit.
+ *
+ * <p>Every request takes a permit from a {@link TokenBucket} and is scheduled
+ * for when the permit is due rather than blocking a thread. A {@code 429}
+ * answer pauses the bucket for the {@code Retry-After} it carries, and the
+ * request is retried after it. Lookups of single tracks or audio features are
+ * collected for a short window and sent as one batch request per access token,
+ * up to the endpoint's ID limit. Paged collections fetch the first page, then
+ * request the remaining pages at once and let the bucket pace them.</p>
+ *
+ * <p>The API URL is configurable so the client can be pointed at a local
+ * stub.</p>
+ */
+public class SpotifyWebApiClient {
+    private static final Logger logger = LoggerFactory.getLogger(SpotifyWebApiClient.class);
+    private static final int MAX_TRACK_IDS = 50;
+    private static final int MAX_AUDIO_FEATURE_IDS = 100;
+    private static final int PAGE_SIZE = 50;
+    private static final long DEFAULT_RETRY_AFTER_SECONDS = 1;
+
+    private final String apiUrl;
+    private final int apiPathLength;
+    private final Duration timeout;
+    private final long batchWindowNanos;
+    private final int maxRetries;
+    private final TokenBucket rateLimit;
+    private final HttpClient httpClient;
+    private final MetricsRegistry metrics;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(BoundedExecutor.namedThreads("spotify-api"));
+
+    private final Batcher<TrackAnalysis> tracks;
+    private final Batcher<AudioFeatures> audioFeatures;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    @Inject
+    public SpotifyWebApiClient(TuningConfig tuning, MetricsRegistry metrics) {
+        this(tuning.getSpotifyApiUrl(), Duration.ofMillis(tuning.getSpotifyTimeoutMillis()),
+                new TokenBucket(tuning.getSpotifyApiRequestsPerSecond(), tuning.getSpotifyApiBurst()),
+                tuning.getSpotifyApiBatchWindowMillis(), tuning.getSpotifyApiMaxRetries(), metrics);
+    }
+
+    /**
+     * @param apiUrl Base URL of the Web API, such as {@code https://api.spotify.com/v1}
+     * @param rateLimit Paces every request the client sends
+     * @param batchWindowMillis Milliseconds single lookups are collected before their batch is sent
+     * @param maxRetries Retries of a request answered with 429
+     */
+    public SpotifyWebApiClient(String apiUrl, Duration timeout, TokenBucket rateLimit, long batchWindowMillis,
+                               int maxRetries, MetricsRegistry metrics) {
+        this.apiUrl = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        this.apiPathLength = URI.create(this.apiUrl).getPath().length();
+        this.timeout = timeout;
+        this.rateLimit = rateLimit;
+        this.batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(batchWindowMillis);
+        this.maxRetries = maxRetries;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+        this.metrics = metrics;
+        this.tracks = new Batcher<>("/tracks", MAX_TRACK_IDS, SpotifyJsonDecoder::readTracks);
+        this.audioFeatures = new Batcher<>("/audio-features", MAX_AUDIO_FEATURE_IDS,
+                SpotifyJsonDecoder::readAudioFeatures);
+    }
+
+    /**
+     * Look up a track; lookups made close together share a batch request.
+     *
+     * @return The track's metadata, or null if Spotify does not know the ID
+     */
+    public CompletableFuture<TrackAnalysis> getTrack(String accessToken, String trackId) {
+        return tracks.load(accessToken, trackId);
+    }
+
+    /**
+     * Look up a track's audio features; lookups made close together share a
+     * batch request.
+     *
+     * @return The features, or null if Spotify has none for the ID
+     */
+    public CompletableFuture<AudioFeatures> getAudioFeatures(String accessToken, String trackId) {
+        return audioFeatures.load(accessToken, trackId);
+    }
+
+    /**
+     * @return The features of each track, in the order of the IDs, sent in as few batches as possible
+     */
+    public CompletableFuture<List<AudioFeatures>> getAudioFeatures(String accessToken, List<String> trackIds) {
+        return audioFeatures.loadAll(accessToken, trackIds);
+    }
+
+    /**
+     * @return The tracks saved in the user's library, most recently saved first
+     */
+    public CompletableFuture<List<TrackAnalysis>> getSavedTracks(String accessToken) {
+        return getAllPages(accessToken, "/me/tracks");
+    }
+
+    /**
+     * @param timeRange {@code short_term}, {@code medium_term} or {@code long_term}
+     * @return The user's top tracks
+     */
+    public CompletableFuture<List<TrackAnalysis>> getTopTracks(String accessToken, String timeRange) {
+        return getAllPages(accessToken, "/me/top/tracks?time_range=" + encode(timeRange));
+    }
+
+    /**
+     * @return The endpoint of the current user's profile
+     */
+    public String getProfileUrl() {
+        return apiUrl + "/me";
+    }
+
+    /**
+     * @return Requests sent, including retries
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * @return Requests answered with 429
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // Paging
+
+    /**
+     * Fetch the first page, then all remaining pages concurrently, paced by
+     * the rate limit.
+     */
+    private CompletableFuture<List<TrackAnalysis>> getAllPages(String accessToken, String path) {
+        return send(accessToken, pageUrl(path, 0), SpotifyJsonDecoder::readTrackPage).thenCompose(first -> {
+            List<CompletableFuture<SpotifyJsonDecoder.Page>> rest = new ArrayList<>();
+            for (int offset = PAGE_SIZE; offset < first.getTotal(); offset += PAGE_SIZE) {
+                rest.add(send(accessToken, pageUrl(path, offset), SpotifyJsonDecoder::readTrackPage));
+            }
+            return CompletableFuture.allOf(rest.toArray(new CompletableFuture[0])).thenApply(done -> {
+                List<TrackAnalysis> all = new ArrayList<>(first.getTotal());
+                all.addAll(first.getItems());
+                for (CompletableFuture<SpotifyJsonDecoder.Page> page : rest) {
+                    all.addAll(page.join().getItems());
+                }
+                return all;
+            });
+        });
+    }
+
+    private String pageUrl(String path, int offset) {
+        return apiUrl + path + (path.indexOf('?') < 0 ? "?" : "&") + "limit=" + PAGE_SIZE + "&offset=" + offset;
+    }
+
+    // Sending
+
+    private <T> CompletableFuture<T> send(String accessToken, String url, Decoder<T> decoder) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .header("Authorization", "Bearer " + accessToken)
+                .GET()
+                .build();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        schedule(request, decoder, result, 0);
+        return result;
+    }
+
+    /**
+     * Send the request once the rate limit allows.
+     */
+    private <T> void schedule(HttpRequest request, Decoder<T> decoder, CompletableFuture<T> result, int retries) {
+        long delay = rateLimit.reserve();
+        if (delay <= 0) {
+            dispatch(request, decoder, result, retries);
+        } else {
+            scheduler.schedule(() -> dispatch(request, decoder, result, retries), delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private <T> void dispatch(HttpRequest request, Decoder<T> decoder, CompletableFuture<T> result, int retries) {
+        // A 429 may have paused the limit after this request was scheduled
+        long paused = rateLimit.pauseRemaining();
+        if (paused > 0) {
+            scheduler.schedule(() -> schedule(request, decoder, result, retries), paused, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        requests.increment();
+        long start = System.nanoTime();
+        String operation = request.uri().getPath().substring(apiPathLength);
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream()).whenComplete((response, failure) -> {
+            metrics.upstreamFinished("spotify", operation, failure == null && response.statusCode() == 200,
+                    System.nanoTime() - start);
+            if (failure != null) {
+                result.completeExceptionally(failure);
+                return;
+            }
+            try (InputStream body = response.body()) {
+                int status = response.statusCode();
+                if (status == 429) {
+                    throttled.increment();
+                    long retryAfter = retryAfterSeconds(response);
+                    rateLimit.pause(TimeUnit.SECONDS.toNanos(retryAfter));
+                    if (retries >= maxRetries) {
+                        throw new SpotifyApiException("Spotify rate limit still exceeded after "
+                                + retries + " retries", status);
+                    }
+                    logger.warn("Spotify rate limit exceeded, retrying {} in {} s", request.uri().getPath(),
+                            retryAfter);
+                    scheduler.schedule(() -> schedule(request, decoder, result, retries + 1),
+                            retryAfter, TimeUnit.SECONDS);
+                    return;
+                }
+                if (status != 200) {
+                    throw new SpotifyApiException("Spotify " + request.uri().getPath()
+                            + " failed with status " + status, status);
+                }
+                result.complete(decoder.decode(body));
+            } catch (IOException e) {
+                result.completeExceptionally(new UncheckedIOException(e));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    private static long retryAfterSeconds(HttpResponse<?> response) {
+        try {
+            return response.headers().firstValue("Retry-After")
+                    .map(value -> Math.max(0, Long.parseLong(value.trim())))
+                    .orElse(DEFAULT_RETRY_AFTER_SECONDS);
+        } catch (NumberFormatException e) {
+            return DEFAULT_RETRY_AFTER_SECONDS;
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes a response body.
+     */
+    private interface Decoder<T> {
+        T decode(InputStream body) throws IOException;
+    }
+
+    // Batching
+
+    /**
+     * Collects single-ID lookups of one batch endpoint into requests of up to
+     * {@code maxIds} IDs per access token. A batch is sent when it is full or
+     * when the batch window has passed since its first lookup.
+     */
+    private final class Batcher<T> {
+        private final String path;
+        private final int maxIds;
+        private final Decoder<List<T>> decoder;
+        // Guarded by this
+        private final Map<String, Batch<T>> open = new HashMap<>();
+
+        Batcher(String path, int maxIds, Decoder<List<T>> decoder) {
+            this.path = path;
+            this.maxIds = maxIds;
+            this.decoder = decoder;
+        }
+
+        CompletableFuture<T> load(String accessToken, String id) {
+            CompletableFuture<T> result;
+            Batch<T> full = null;
+            synchronized (this) {
+                Batch<T> batch = open.get(accessToken);
+                if (batch == null) {
+                    Batch<T> started = new Batch<>(accessToken);
+                    batch = started;
+                    open.put(accessToken, started);
+                    scheduler.schedule(() -> flush(started), batchWindowNanos, TimeUnit.NANOSECONDS);
+                }
+                result = batch.ids.computeIfAbsent(id, key -> new CompletableFuture<>());
+                if (batch.ids.size() >= maxIds) {
+                    open.remove(accessToken);
+                    full = batch;
+                }
+            }
+            if (full != null) {
+                send(full);
+            }
+            return result.copy();
+        }
+
+        CompletableFuture<List<T>> loadAll(String accessToken, List<String> ids) {
+            List<CompletableFuture<T>> results = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                results.add(load(accessToken, id));
+            }
+            return CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).thenApply(done -> {
+                List<T> all = new ArrayList<>(results.size());
+                for (CompletableFuture<T> result : results) {
+                    all.add(result.join());
+                }
+                return all;
+            });
+        }
+
+        private void flush(Batch<T> batch) {
+            synchronized (this) {
+                // Already sent if it filled up
+                if (!open.remove(batch.accessToken, batch)) {
+                    return;
+                }
+            }
+            send(batch);
+        }
+
+        private void send(Batch<T> batch) {
+            List<String> ids = new ArrayList<>(batch.ids.keySet());
+            String url = apiUrl + path + "?ids=" + encode(String.join(",", ids));
+            SpotifyWebApiClient.this.send(batch.accessToken, url, decoder).whenComplete((values, failure) -> {
+                for (int i = 0; i < ids.size(); i++) {
+                    CompletableFuture<T> result = batch.ids.get(ids.get(i));
+                    if (failure != null) {
+                        result.completeExceptionally(failure);
+                    } else {
+                        // Spotify answers in the order asked, with null for unknown IDs
+                        result.complete(i < values.size() ? values.get(i) : null);
+                    }
+                }
+            });
+        }
+    }
+
+    private static final class Batch<T> {
+        final String accessToken;
+        // In the order the IDs are sent; guarded by the batcher until the batch is sent
+        final Map<String, CompletableFuture<T>> ids = new LinkedHashMap<>();
+
+        Batch(String accessToken) {
+            this.accessToken = accessToken;
+        }
+    }
+}
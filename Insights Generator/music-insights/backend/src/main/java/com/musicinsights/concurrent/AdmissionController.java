@@ -0,0 +1,394 @@
+package com.musicinsights.concurrent;
+
+import com.musicinsights.config.TuningConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Admits upload analyses against a budget of bytes in flight and a concurrency
+ * limit that adapts to observed latency, so a burst of uploads is queued
+ * briefly and then shed instead of exhausting heap, disk or CPU.
+ *
+ * <p>An upload is admitted while fewer analyses than the limit are in flight
+ * and its bytes fit the budget; one upload is always admitted when nothing
+ * else is in flight, however large. Others wait in arrival order for up to
+ * {@code queueTimeoutMillis}, and are shed with an
+ * {@link AdmissionRejectedException} once that passes or when
+ * {@code maxQueued} are already waiting.</p>
+ *
+ * <p>The limit follows a gradient of analysis time per byte: a short-term
+ * average is compared with a long-term one, and while the short-term one stays
+ * within a tolerance of it the limit grows by about its square root per
+ * update; as analyses slow down, because they queue for cores, it shrinks in
+ * proportion. An upload abandoned before its analysis started, because its
+ * request timed out in the queue or the pool refused it, cuts the limit
+ * multiplicatively.</p>
+ *
+ * <p>A permit is held until the analysis actually finishes: an analysis that
+ * keeps running after its request timed out still counts against the limit
+ * and the byte budget.</p>
+ */
+public class AdmissionController {
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionController.class);
+
+    // Below this size fixed costs dominate, so smaller uploads are timed as if this large
+    private static final long MIN_SAMPLE_BYTES = 256 * 1024;
+    private static final double SHORT_WEIGHT = 0.2;
+    private static final int LONG_WINDOW = 100;
+    // Slowdown over the long-term average tolerated before the limit shrinks
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+    private static final int MAX_RETRY_AFTER_SECONDS = 30;
+
+    private final long maxBytes;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueued;
+    private final long queueTimeoutMillis;
+    private final LongSupplier nanoTime;
+    private final Scheduler scheduler;
+    // Runs the scheduler unless one was given
+    private final ScheduledThreadPoolExecutor timer;
+
+    // Guarded by this
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private long inFlightBytes;
+    private double shortNanosPerByte;
+    private double longNanosPerByte;
+    private double meanSeconds;
+    private long admitted;
+    private long queued;
+    private long shed;
+    private long abandoned;
+
+    @Inject
+    public AdmissionController(TuningConfig tuning) {
+        this(tuning.getAdmissionMaxBytes(), tuning.getAdmissionInitialLimit(), tuning.getAdmissionMinLimit(),
+                tuning.getAdmissionMaxLimit(), tuning.getAdmissionMaxQueued(),
+                tuning.getAdmissionQueueTimeoutMillis());
+    }
+
+    /**
+     * @param maxBytes Budget of upload bytes in flight
+     * @param initialLimit Concurrency limit to start from
+     * @param minLimit Lowest the limit adapts to
+     * @param maxLimit Highest the limit adapts to
+     * @param maxQueued Uploads that may wait for admission at once
+     * @param queueTimeoutMillis How long an upload waits before it is shed
+     */
+    public AdmissionController(long maxBytes, int initialLimit, int minLimit, int maxLimit, int maxQueued,
+                               long queueTimeoutMillis) {
+        this(maxBytes, initialLimit, minLimit, maxLimit, maxQueued, queueTimeoutMillis, System::nanoTime, null);
+    }
+
+    /**
+     * @param scheduler Runs the expiry of waiting uploads, or null for a timer thread
+     */
+    AdmissionController(long maxBytes, int initialLimit, int minLimit, int maxLimit, int maxQueued,
+                        long queueTimeoutMillis, LongSupplier nanoTime, Scheduler scheduler) {
+        this.maxBytes = maxBytes;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.nanoTime = nanoTime;
+        if (scheduler == null) {
+            ScheduledThreadPoolExecutor executor =
+                    new ScheduledThreadPoolExecutor(1, BoundedExecutor.namedThreads("admission"));
+            executor.setRemoveOnCancelPolicy(true);
+            this.timer = executor;
+            this.scheduler = (task, delayMillis) -> executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.timer = null;
+            this.scheduler = scheduler;
+        }
+        logger.info("Admitting uploads within {} bytes and a concurrency limit of {} ({} to {})",
+                maxBytes, (int) limit, this.minLimit, this.maxLimit);
+    }
+
+    /**
+     * Runs a task after a delay.
+     */
+    interface Scheduler {
+        /**
+         * @return Cancels the task
+         */
+        Future<?> schedule(Runnable task, long delayMillis);
+    }
+
+    /**
+     * A slot held by an admitted upload. Exactly one of {@link #complete()},
+     * {@link #abandon()} and {@link #cancel()} takes effect; later calls are
+     * ignored.
+     */
+    public final class Permit {
+        private final long bytes;
+        private final long admittedAt = nanoTime.getAsLong();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Release the slot once the analysis finished, whatever its outcome, timing it.
+         */
+        public void complete() {
+            if (released.compareAndSet(false, true)) {
+                onComplete(this, nanoTime.getAsLong() - admittedAt);
+            }
+        }
+
+        /**
+         * Release the slot of an analysis that never started because the server
+         * could not get to it: its request timed out first or the pool refused it.
+         */
+        public void abandon() {
+            if (released.compareAndSet(false, true)) {
+                onAbandon(this);
+            }
+        }
+
+        /**
+         * Release the slot of an upload that never reached analysis for reasons of
+         * its own, such as a body that was too large or malformed. The limit is
+         * left as it is.
+         */
+        public void cancel() {
+            if (released.compareAndSet(false, true)) {
+                onCancel(this);
+            }
+        }
+    }
+
+    /**
+     * Ask to admit an upload.
+     *
+     * @param bytes Size of the upload
+     * @return Completes with a permit once admitted, or with an
+     *         {@link AdmissionRejectedException} when the upload is shed
+     */
+    public CompletableFuture<Permit> acquire(long bytes) {
+        Waiter waiter;
+        synchronized (this) {
+            if (waiters.isEmpty() && fits(bytes)) {
+                return CompletableFuture.completedFuture(admit(bytes));
+            }
+            if (waiters.size() >= maxQueued) {
+                shed++;
+                return CompletableFuture.failedFuture(reject());
+            }
+            waiter = new Waiter(bytes);
+            waiters.addLast(waiter);
+            queued++;
+        }
+        waiter.timeout = scheduler.schedule(() -> expire(waiter), queueTimeoutMillis);
+        return waiter.future;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized long getInFlightBytes() {
+        return inFlightBytes;
+    }
+
+    public synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    public synchronized long getAdmittedCount() {
+        return admitted;
+    }
+
+    /**
+     * @return Uploads that had to wait before they were admitted or shed
+     */
+    public synchronized long getQueuedCount() {
+        return queued;
+    }
+
+    public synchronized long getShedCount() {
+        return shed;
+    }
+
+    /**
+     * @return Admitted uploads whose analysis never started because their request
+     *         timed out in the queue or the pool refused it
+     */
+    public synchronized long getAbandonedCount() {
+        return abandoned;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    private boolean fits(long bytes) {
+        if (inFlight == 0) {
+            return true;
+        }
+        return inFlight < (int) limit && inFlightBytes + bytes <= maxBytes;
+    }
+
+    private Permit admit(long bytes) {
+        inFlight++;
+        inFlightBytes += bytes;
+        admitted++;
+        return new Permit(bytes);
+    }
+
+    private AdmissionRejectedException reject() {
+        // Time for the work ahead to drain at the current limit
+        double drainSeconds = meanSeconds * (inFlight + waiters.size()) / Math.max(1, limit);
+        int retryAfter = (int) Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, Math.ceil(drainSeconds)));
+        return new AdmissionRejectedException("Upload analysis is at capacity", retryAfter);
+    }
+
+    private void expire(Waiter waiter) {
+        AdmissionRejectedException rejection;
+        List<Waiter> ready;
+        synchronized (this) {
+            if (!waiters.remove(waiter)) {
+                return;
+            }
+            shed++;
+            rejection = reject();
+            // Smaller uploads behind this one may fit now
+            ready = drain();
+        }
+        waiter.future.completeExceptionally(rejection);
+        resume(ready);
+    }
+
+    private void onComplete(Permit permit, long nanos) {
+        List<Waiter> ready;
+        synchronized (this) {
+            int busy = inFlight;
+            release(permit);
+            adapt(nanos, permit.bytes, busy);
+            ready = drain();
+        }
+        resume(ready);
+    }
+
+    private void onAbandon(Permit permit) {
+        List<Waiter> ready;
+        synchronized (this) {
+            release(permit);
+            abandoned++;
+            limit = Math.max(minLimit, limit * BACKOFF);
+            ready = drain();
+        }
+        resume(ready);
+    }
+
+    private void onCancel(Permit permit) {
+        List<Waiter> ready;
+        synchronized (this) {
+            release(permit);
+            ready = drain();
+        }
+        resume(ready);
+    }
+
+    private void release(Permit permit) {
+        inFlight--;
+        inFlightBytes -= permit.bytes;
+    }
+
+    /**
+     * Move the limit along the gradient of time per byte.
+     *
+     * @param busy Analyses in flight when this one finished
+     */
+    private void adapt(long nanos, long bytes, int busy) {
+        if (nanos <= 0) {
+            // Too fast to time; a zero sample would make the gradient undefined
+            return;
+        }
+        double sample = nanos / (double) Math.max(bytes, MIN_SAMPLE_BYTES);
+        meanSeconds = meanSeconds == 0 ? nanos / 1e9 : meanSeconds + SHORT_WEIGHT * (nanos / 1e9 - meanSeconds);
+        if (longNanosPerByte == 0) {
+            shortNanosPerByte = sample;
+            longNanosPerByte = sample;
+        } else {
+            shortNanosPerByte += SHORT_WEIGHT * (sample - shortNanosPerByte);
+            longNanosPerByte += (sample - longNanosPerByte) / LONG_WINDOW;
+            // After an overload the long-term average lags far behind; let it catch up
+            if (longNanosPerByte > 2 * shortNanosPerByte) {
+                longNanosPerByte = (longNanosPerByte + shortNanosPerByte) / 2;
+            }
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longNanosPerByte / shortNanosPerByte));
+        double target = limit * gradient + Math.sqrt(limit);
+        if (target > limit && busy < limit / 2) {
+            // Only a limit that is being used has shown it can grow
+            target = limit;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, limit + SMOOTHING * (target - limit)));
+    }
+
+    /**
+     * @return Waiters admitted, in order, until the first that does not fit
+     */
+    private List<Waiter> drain() {
+        List<Waiter> ready = new ArrayList<>();
+        while (!waiters.isEmpty() && fits(waiters.peekFirst().bytes)) {
+            Waiter waiter = waiters.removeFirst();
+            waiter.permit = admit(waiter.bytes);
+            ready.add(waiter);
+        }
+        return ready;
+    }
+
+    private static void resume(List<Waiter> ready) {
+        for (Waiter waiter : ready) {
+            Future<?> timeout = waiter.timeout;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            waiter.future.complete(waiter.permit);
+        }
+    }
+
+    /**
+     * An upload waiting for admission.
+     */
+    private final class Waiter {
+        final long bytes;
+        final CompletableFuture<Permit> future = new CompletableFuture<>();
+        Permit permit;
+        volatile Future<?> timeout;
+
+        Waiter(long bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.musicinsights.concurrent;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown when the {@link AdmissionController} sheds a request, with how long
+ * the client should wait before retrying.
+ */
+public class AdmissionRejectedException extends RejectedExecutionException {
+    private final int retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return Seconds until enough in-flight work is expected to have drained
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
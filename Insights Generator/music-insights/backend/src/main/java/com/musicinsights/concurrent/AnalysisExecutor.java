@@ -0,0 +1,22 @@
+package com.musicinsights.concurrent;
+
+import com.musicinsights.config.TuningConfig;
+
+import javax.inject.Inject;
+
+/**
+ * Bounded pool for CPU-heavy audio analysis, shared by uploads and batch uploads.
+ * Size it to the cores, so throughput is set by this pool rather than by the
+ * number of HTTP worker threads.
+ */
+public class AnalysisExecutor extends BoundedExecutor {
+
+    @Inject
+    public AnalysisExecutor(TuningConfig tuning) {
+        this(tuning.getAnalysisThreads(), tuning.getAnalysisQueueSize());
+    }
+
+    public AnalysisExecutor(int threads, int queueSize) {
+        super("analysis", threads, queueSize);
+    }
+}
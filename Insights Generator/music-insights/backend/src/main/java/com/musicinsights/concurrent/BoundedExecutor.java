@@ -0,0 +1,70 @@
+package com.musicinsights.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-size thread pool with a bounded queue.
+ *
+ * <p>When the queue is full, submissions fail with a
+ * {@link RejectedExecutionException} instead of queueing without limit, so
+ * callers can shed load or run the task themselves.</p>
+ */
+public abstract class BoundedExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(BoundedExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+
+    protected BoundedExecutor(String name, int threads, int queueSize) {
+        int poolSize = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), namedThreads(name),
+                new ThreadPoolExecutor.AbortPolicy());
+        logger.info("Started {} pool with {} threads and a queue of {}", name, poolSize, queueSize);
+    }
+
+    public ExecutorService getExecutorService() {
+        return executor;
+    }
+
+    /**
+     * @return Number of threads in the pool
+     */
+    public int getThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return A factory for daemon threads named {@code <prefix>-<n>}
+     */
+    public static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,133 @@
+package com.musicinsights.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calls to a failing dependency so callers fail fast instead of waiting
+ * for timeouts.
+ *
+ * <p>After {@code failureThreshold} consecutive failures the breaker opens and
+ * refuses calls. Once {@code openMillis} have passed it lets one probe call
+ * through: success closes it, failure opens it again.</p>
+ *
+ * <p>Each change of state starts a new generation, and a call only counts
+ * toward the generation it was permitted in. A call that started before the
+ * breaker opened and finishes afterwards is ignored, so a late success cannot
+ * close a breaker that newer failures opened.</p>
+ */
+public class CircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * Returned by {@link #tryAcquire()} when a call is refused.
+     */
+    public static final long REFUSED = -1;
+
+    /**
+     * Breaker states.
+     */
+    public enum State {
+        /** Calls pass. */
+        CLOSED,
+        /** Calls are refused. */
+        OPEN,
+        /** One probe call is being let through. */
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoTime;
+    private State state = State.CLOSED;
+    private long generation;
+    private int consecutiveFailures;
+    private long openedAt;
+    private long rejected;
+
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this(name, failureThreshold, openMillis, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, int failureThreshold, long openMillis, LongSupplier nanoTime) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Ask to make a call. Every permitted call must be followed by
+     * {@link #onSuccess(long)} or {@link #onFailure(long)} with the returned
+     * generation.
+     *
+     * @return The generation the call was permitted in, or {@link #REFUSED} if
+     *         the breaker is open and the call should not be made
+     */
+    public synchronized long tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return generation;
+            case OPEN:
+                if (nanoTime.getAsLong() - openedAt >= openNanos) {
+                    transition(State.HALF_OPEN);
+                    return generation;
+                }
+                rejected++;
+                return REFUSED;
+            default:
+                // A probe is already in flight
+                rejected++;
+                return REFUSED;
+        }
+    }
+
+    /**
+     * @param permitted Generation returned by {@link #tryAcquire()} for the call
+     */
+    public synchronized void onSuccess(long permitted) {
+        if (permitted != generation) {
+            return;
+        }
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            logger.info("Circuit {} closed", name);
+            transition(State.CLOSED);
+        }
+    }
+
+    /**
+     * @param permitted Generation returned by {@link #tryAcquire()} for the call
+     */
+    public synchronized void onFailure(long permitted) {
+        if (permitted != generation) {
+            return;
+        }
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            logger.warn("Circuit {} opened after {} consecutive failures", name, consecutiveFailures);
+            transition(State.OPEN);
+            openedAt = nanoTime.getAsLong();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return Calls refused since the breaker was created
+     */
+    public synchronized long getRejectedCount() {
+        return rejected;
+    }
+
+    private void transition(State next) {
+        state = next;
+        generation++;
+    }
+}
@@ -0,0 +1,36 @@
+package com.musicinsights.concurrent;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Waiting on futures from request threads.
+ */
+public final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * Wait for a future like {@link CompletableFuture#join}, but give up when the
+     * waiting thread is interrupted, as a timed-out request's task is. The future
+     * itself is left running, since other callers may share it.
+     *
+     * @return The future's result
+     * @throws CompletionException if the future completed exceptionally, with its failure as the cause
+     * @throws CancellationException if the thread was interrupted while waiting; its interrupt
+     *                               status is set again
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a result");
+        }
+    }
+}
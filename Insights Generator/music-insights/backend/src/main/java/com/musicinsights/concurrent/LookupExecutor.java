@@ -0,0 +1,22 @@
+package com.musicinsights.concurrent;
+
+import com.musicinsights.config.TuningConfig;
+
+import javax.inject.Inject;
+
+/**
+ * Bounded pool for requests that mostly wait on the Python analytics service,
+ * such as search and URL analysis. Its threads are cheap to block, so it is
+ * larger than the analysis pool and kept apart from it.
+ */
+public class LookupExecutor extends BoundedExecutor {
+
+    @Inject
+    public LookupExecutor(TuningConfig tuning) {
+        this(tuning.getLookupThreads(), tuning.getLookupQueueSize());
+    }
+
+    public LookupExecutor(int threads, int queueSize) {
+        super("lookup", threads, queueSize);
+    }
+}
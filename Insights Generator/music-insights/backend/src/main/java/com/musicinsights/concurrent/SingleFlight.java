@@ -0,0 +1,77 @@
+package com.musicinsights.concurrent;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key into one call.
+ *
+ * <p>The first caller for a key starts the call; callers that arrive while it
+ * is in flight receive the same result instead of starting their own. The key
+ * is forgotten as soon as the call completes, so results are never cached.</p>
+ *
+ * @param <K> Key type
+ * @param <V> Result type
+ */
+public class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+
+    /**
+     * Run a call, or join the one already in flight for the key.
+     *
+     * @param key Identifies calls that return the same result
+     * @param call Starts the call
+     * @return The call's result; each caller gets its own future, so cancelling
+     *         one does not affect the others
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            shared.incrementAndGet();
+            return existing.copy();
+        }
+
+        calls.incrementAndGet();
+        try {
+            call.get().whenComplete((value, failure) -> {
+                inFlight.remove(key, flight);
+                if (failure != null) {
+                    flight.completeExceptionally(failure);
+                } else {
+                    flight.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+        }
+        return flight.copy();
+    }
+
+    /**
+     * @return Calls actually made
+     */
+    public long getCallCount() {
+        return calls.get();
+    }
+
+    /**
+     * @return Calls saved by joining one already in flight
+     */
+    public long getSharedCount() {
+        return shared.get();
+    }
+
+    /**
+     * @return Keys with a call in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
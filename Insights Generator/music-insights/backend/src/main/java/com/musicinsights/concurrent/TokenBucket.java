@@ -0,0 +1,88 @@
+package com.musicinsights.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limit that hands out permits at a steady rate with bursts of up to
+ * {@code capacity}.
+ *
+ * <p>Callers reserve a permit and are told how long to wait before using it,
+ * so they can schedule the call instead of blocking a thread. Reservations
+ * beyond the available permits queue up behind each other at the refill rate.
+ * {@link #pause} stops all permits for a while, as when the remote side says to
+ * back off.</p>
+ */
+public class TokenBucket {
+    private final double permitsPerNano;
+    private final double capacity;
+    private final LongSupplier nanoTime;
+
+    // Guarded by this; permits go negative while reservations are queued
+    private double permits;
+    private long refilledAt;
+    private long pausedUntil;
+
+    /**
+     * @param permitsPerSecond Steady rate of permits
+     * @param capacity Permits that can be used at once after a quiet period
+     */
+    public TokenBucket(double permitsPerSecond, int capacity) {
+        this(permitsPerSecond, capacity, System::nanoTime);
+    }
+
+    TokenBucket(double permitsPerSecond, int capacity, LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, capacity);
+        this.permits = this.capacity;
+        this.refilledAt = nanoTime.getAsLong();
+        // nanoTime may be negative, so no pause is "until now" rather than "until 0"
+        this.pausedUntil = refilledAt;
+    }
+
+    /**
+     * Reserve one permit.
+     *
+     * @return Nanoseconds to wait before using it
+     */
+    public synchronized long reserve() {
+        long now = nanoTime.getAsLong();
+        refill(now);
+        permits -= 1;
+        long start = Math.max(now, refilledAt);
+        long queued = permits >= 0 ? 0 : (long) Math.ceil(-permits / permitsPerNano);
+        return start - now + queued;
+    }
+
+    /**
+     * Hand out no permits for a while. Permits do not accumulate during the
+     * pause, and queued reservations resume at the refill rate after it.
+     */
+    public synchronized void pause(long nanos) {
+        long now = nanoTime.getAsLong();
+        refill(now);
+        long until = now + nanos;
+        if (until - pausedUntil > 0) {
+            pausedUntil = until;
+        }
+        if (pausedUntil - refilledAt > 0) {
+            refilledAt = pausedUntil;
+        }
+        permits = Math.min(permits, 0);
+    }
+
+    /**
+     * @return Nanoseconds left of the current pause, or 0
+     */
+    public synchronized long pauseRemaining() {
+        return Math.max(0, pausedUntil - nanoTime.getAsLong());
+    }
+
+    private void refill(long now) {
+        if (now - refilledAt > 0) {
+            permits = Math.min(capacity, permits + (now - refilledAt) * permitsPerNano);
+            refilledAt = now;
+        }
+    }
+}
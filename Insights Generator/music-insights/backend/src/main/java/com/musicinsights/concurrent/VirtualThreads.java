@@ -0,0 +1,52 @@
+package com.musicinsights.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads on JDKs that have them (21 and later), while the
+ * project still compiles for Java 11.
+ */
+public final class VirtualThreads {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private static final Method NEW_PER_TASK_EXECUTOR = findPerTaskExecutor();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return Whether this JDK supports virtual threads
+     */
+    public static boolean isSupported() {
+        return NEW_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * @return An executor that starts a new virtual thread for each task, or null if
+     *         this JDK has no virtual threads
+     */
+    public static ExecutorService newPerTaskExecutor() {
+        if (NEW_PER_TASK_EXECUTOR == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) NEW_PER_TASK_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Could not create a virtual thread executor: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static Method findPerTaskExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -2,12 +2,26 @@ package com.musicinsights.config;
 
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
 
+import com.musicinsights.cache.AnalysisCache;
+import com.musicinsights.cache.SearchCache;
+import com.musicinsights.cache.SpotifyTokenCache;
+import com.musicinsights.cache.VerifiedTokenCache;
+import com.musicinsights.client.PythonAnalyticsClient;
+import com.musicinsights.client.SpotifyAccountsClient;
+import com.musicinsights.client.SpotifyWebApiClient;
+import com.musicinsights.concurrent.AdmissionController;
+import com.musicinsights.concurrent.AnalysisExecutor;
+import com.musicinsights.concurrent.LookupExecutor;
+import com.musicinsights.metrics.MetricsRegistry;
 import com.musicinsights.service.AnalysisService;
 import com.musicinsights.service.AuthenticationService;
 import com.musicinsights.service.MusicService;
 import com.musicinsights.service.impl.AnalysisServiceImpl;
 import com.musicinsights.service.impl.AuthenticationServiceImpl;
 import com.musicinsights.service.impl.MusicServiceImpl;
+import com.musicinsights.similarity.TrackCatalog;
+import com.musicinsights.store.RefreshTokenStore;
+import com.musicinsights.store.RefreshTokenStoreFactory;
 
 import javax.inject.Singleton;
 
@@ -21,8 +35,22 @@ public class ApplicationBinder extends AbstractBinder {
         bind(AuthenticationServiceImpl.class).to(AuthenticationService.class).in(Singleton.class);
         bind(MusicServiceImpl.class).to(MusicService.class).in(Singleton.class);
         bind(AnalysisServiceImpl.class).to(AnalysisService.class).in(Singleton.class);
+        bind(AnalysisCache.class).to(AnalysisCache.class).in(Singleton.class);
+        bind(SearchCache.class).to(SearchCache.class).in(Singleton.class);
+        bind(VerifiedTokenCache.class).to(VerifiedTokenCache.class).in(Singleton.class);
+        bind(SpotifyTokenCache.class).to(SpotifyTokenCache.class).in(Singleton.class);
+        bind(TrackCatalog.class).to(TrackCatalog.class).in(Singleton.class);
+        bind(AdmissionController.class).to(AdmissionController.class).in(Singleton.class);
+        bind(AnalysisExecutor.class).to(AnalysisExecutor.class).in(Singleton.class);
+        bind(LookupExecutor.class).to(LookupExecutor.class).in(Singleton.class);
+        bind(MetricsRegistry.class).to(MetricsRegistry.class).in(Singleton.class);
+        bind(PythonAnalyticsClient.class).to(PythonAnalyticsClient.class).in(Singleton.class);
+        bind(SpotifyAccountsClient.class).to(SpotifyAccountsClient.class).in(Singleton.class);
+        bind(SpotifyWebApiClient.class).to(SpotifyWebApiClient.class).in(Singleton.class);
+        bindFactory(RefreshTokenStoreFactory.class, Singleton.class).to(RefreshTokenStore.class).in(Singleton.class);
         
         // Bind configuration
         bind(ApplicationConfig.class).to(ApplicationConfig.class).in(Singleton.class);
+        bind(TuningConfig.class).to(TuningConfig.class).in(Singleton.class);
     }
 }
@@ -0,0 +1,594 @@
+package com.musicinsights.config;
+
+import com.musicinsights.Main;
+import com.musicinsights.similarity.TrackCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Performance and resource tuning settings.
+ *
+ * <p>Values are read from {@code application.properties} on the classpath and can
+ * be overridden with JVM system properties of the same name (for example
+ * {@code -Dupload.spool.dir=/dev/shm}). Every setting has a default, so the file
+ * does not need to list them.</p>
+ */
+public class TuningConfig {
+    private static final Logger logger = LoggerFactory.getLogger(TuningConfig.class);
+
+    private final Properties properties;
+
+    public TuningConfig() {
+        this(loadApplicationProperties());
+    }
+
+    public TuningConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    // Upload spooling
+
+    /**
+     * @return Directory large uploads are spooled to, e.g. a tmpfs mount
+     */
+    public Path getSpoolDirectory() {
+        return Paths.get(getString("upload.spool.dir", System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @return Uploads up to this many bytes are kept in pooled memory instead of on disk
+     */
+    public int getSpoolMemoryThreshold() {
+        return getInt("upload.spool.memoryThreshold", 1024 * 1024);
+    }
+
+    /**
+     * @return Maximum number of idle spool buffers kept for reuse
+     */
+    public int getSpoolBufferPoolSize() {
+        return getInt("upload.spool.bufferPoolSize", 16);
+    }
+
+    /**
+     * @return Largest uploaded file in bytes, counted as it is spooled; applies to
+     *         single uploads and to every file of a batch
+     */
+    public long getUploadMaxFileBytes() {
+        return getLong("upload.maxFileBytes", 10L * 1024 * 1024);
+    }
+
+    /**
+     * @return Bytes a multipart part is held in memory before the multipart reader moves it to a file;
+     *         defaults to the spool memory threshold, and -1 keeps every part in memory
+     */
+    public int getMultipartBufferThreshold() {
+        return getInt("multipart.bufferThreshold", getSpoolMemoryThreshold());
+    }
+
+    /**
+     * @return Directory the multipart reader writes larger parts to; defaults to the spool directory
+     */
+    public Path getMultipartTempDirectory() {
+        return Paths.get(getString("multipart.tempDir", getSpoolDirectory().toString()));
+    }
+
+    // Request size limits
+
+    /**
+     * @return Bytes of a single file upload request: a 10 MB file and its multipart envelope
+     */
+    public long getUploadMaxRequestBytes() {
+        return getLong("limits.uploadRequestBytes", 10L * 1024 * 1024 + 64 * 1024);
+    }
+
+    /**
+     * @return Bytes of a batch upload request
+     */
+    public long getBatchMaxRequestBytes() {
+        return getLong("limits.batchRequestBytes", 1024L * 1024 * 1024);
+    }
+
+    /**
+     * @return Bytes of any other request; 0 or less disables the limit
+     */
+    public long getMaxRequestBytes() {
+        return getLong("limits.requestBytes", 1024 * 1024);
+    }
+
+    // Audio analysis
+
+    /**
+     * @return Whether long uploads are analyzed in parallel segments
+     */
+    public boolean isParallelAnalysisEnabled() {
+        return getBoolean("analysis.parallel.enabled", true);
+    }
+
+    /**
+     * @return Worker threads for parallel analysis; defaults to the number of cores
+     */
+    public int getAnalysisParallelism() {
+        return getInt("analysis.parallel.threads", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return Tracks at least this long are analyzed in parallel
+     */
+    public int getParallelAnalysisMinSeconds() {
+        return getInt("analysis.parallel.minSeconds", 120);
+    }
+
+    /**
+     * @return Length of each parallel analysis segment
+     */
+    public int getAnalysisSegmentSeconds() {
+        return getInt("analysis.parallel.segmentSeconds", 30);
+    }
+
+    // Request handling
+
+    /**
+     * @return Threads that Jersey requests run on: POOL or VIRTUAL
+     */
+    public Main.ExecutionMode getServerExecutionMode() {
+        String value = getString("server.executionMode", "POOL");
+        try {
+            return Main.ExecutionMode.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid value for server.executionMode: '{}', using POOL", value);
+            return Main.ExecutionMode.POOL;
+        }
+    }
+
+    /**
+     * @return Size of the HTTP worker pool; 0 keeps Grizzly's default
+     */
+    public int getServerWorkerThreads() {
+        return getInt("server.workerThreads", 0);
+    }
+
+    /**
+     * @return Threads of the pool that runs upload analyses; defaults to the number of cores
+     */
+    public int getAnalysisThreads() {
+        return getInt("analysis.pool.threads", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return Analyses queued for that pool before uploads are turned away
+     */
+    public int getAnalysisQueueSize() {
+        return getInt("analysis.pool.queueSize", 64);
+    }
+
+    /**
+     * @return Threads of the pool that runs search and URL analysis requests
+     */
+    public int getLookupThreads() {
+        return getInt("lookup.pool.threads", 32);
+    }
+
+    /**
+     * @return Requests queued for that pool before they are turned away
+     */
+    public int getLookupQueueSize() {
+        return getInt("lookup.pool.queueSize", 256);
+    }
+
+    /**
+     * @return Seconds an upload analysis may take before the request fails with 504
+     */
+    public int getUploadTimeoutSeconds() {
+        return getInt("timeout.upload.seconds", 120);
+    }
+
+    /**
+     * @return Seconds a URL analysis may take before the request fails with 504
+     */
+    public int getUrlAnalysisTimeoutSeconds() {
+        return getInt("timeout.url.seconds", 60);
+    }
+
+    /**
+     * @return Seconds a search may take before the request fails with 504
+     */
+    public int getSearchTimeoutSeconds() {
+        return getInt("timeout.search.seconds", 15);
+    }
+
+    /**
+     * @return Maximum number of files in one batch upload
+     */
+    public int getBatchMaxFiles() {
+        return getInt("batch.maxFiles", 100);
+    }
+
+    // Upload admission
+
+    /**
+     * @return Bytes of uploads that may be analysed at once
+     */
+    public long getAdmissionMaxBytes() {
+        return getLong("admission.maxBytes", 256L * 1024 * 1024);
+    }
+
+    /**
+     * @return Uploads analysed at once before the limit adapts; defaults to the analysis threads
+     */
+    public int getAdmissionInitialLimit() {
+        return getInt("admission.initialLimit", getAnalysisThreads());
+    }
+
+    /**
+     * @return Lowest that limit shrinks to under load
+     */
+    public int getAdmissionMinLimit() {
+        return getInt("admission.minLimit", 1);
+    }
+
+    /**
+     * @return Highest that limit grows to; defaults to twice the analysis threads
+     */
+    public int getAdmissionMaxLimit() {
+        return getInt("admission.maxLimit", 2 * getAnalysisThreads());
+    }
+
+    /**
+     * @return Uploads that may wait for admission before more are shed
+     */
+    public int getAdmissionMaxQueued() {
+        return getInt("admission.maxQueued", 32);
+    }
+
+    /**
+     * @return Milliseconds an upload waits for admission before it is shed with 503
+     */
+    public long getAdmissionQueueTimeoutMillis() {
+        return getLong("admission.queueTimeoutMs", 500);
+    }
+
+    // Python analytics client
+
+    /**
+     * @return Milliseconds allowed to connect to the Python analytics service
+     */
+    public long getPythonConnectTimeoutMillis() {
+        return getLong("python.connectTimeoutMs", 1000);
+    }
+
+    /**
+     * @return Milliseconds a Python search may take before falling back
+     */
+    public long getPythonSearchTimeoutMillis() {
+        return getLong("python.timeout.searchMs", 3000);
+    }
+
+    /**
+     * @return Milliseconds a Python URL analysis may take before falling back
+     */
+    public long getPythonUrlTimeoutMillis() {
+        return getLong("python.timeout.urlMs", 30_000);
+    }
+
+    /**
+     * @return Maximum calls to the Python service in flight; further calls fall back at once
+     */
+    public int getPythonMaxConcurrentCalls() {
+        return getInt("python.maxConcurrentCalls", 32);
+    }
+
+    /**
+     * @return Consecutive failures that open the Python service's circuit breaker
+     */
+    public int getPythonCircuitFailureThreshold() {
+        return getInt("python.circuit.failureThreshold", 5);
+    }
+
+    /**
+     * @return Milliseconds the breaker stays open before a probe call is let through
+     */
+    public long getPythonCircuitOpenMillis() {
+        return getLong("python.circuit.openMs", 10_000);
+    }
+
+    // Fingerprinting
+
+    /**
+     * @return Maximum number of landmarks held by the fingerprint index, about 10 bytes each
+     */
+    public long getFingerprintMaxPostings() {
+        return getLong("fingerprint.maxPostings", 20_000_000L);
+    }
+
+    /**
+     * @return Seconds of audio fingerprinted when looking up similar tracks
+     */
+    public int getFingerprintQuerySeconds() {
+        return getInt("fingerprint.querySeconds", 10);
+    }
+
+    /**
+     * @return Whether analyzed uploads are added to the fingerprint index, after their response
+     */
+    public boolean isFingerprintUploadsEnabled() {
+        return getBoolean("fingerprint.indexUploads", false);
+    }
+
+    /**
+     * @return Analyzed uploads that may wait to be fingerprinted; further uploads are not indexed
+     */
+    public int getFingerprintQueueSize() {
+        return getInt("fingerprint.indexQueueSize", 8);
+    }
+
+    // Feature similarity
+
+    /**
+     * @return Links per node of the HNSW similarity graph; layer 0 keeps twice as many
+     */
+    public int getHnswM() {
+        return getInt("similarity.hnsw.m", 16);
+    }
+
+    /**
+     * @return Candidates kept while adding a track to the HNSW graph
+     */
+    public int getHnswEfConstruction() {
+        return getInt("similarity.hnsw.efConstruction", 200);
+    }
+
+    /**
+     * @return Candidates kept while searching the HNSW graph
+     */
+    public int getHnswEfSearch() {
+        return getInt("similarity.hnsw.efSearch", 64);
+    }
+
+    /**
+     * @return Length of the optional embedding appended to each track's feature vector
+     */
+    public int getSimilarityEmbeddingDimensions() {
+        return getInt("similarity.embeddingDimensions", 0);
+    }
+
+    /**
+     * @return How similarity vectors are compressed: NONE, INT8 or PQ
+     */
+    public TrackCatalog.Quantization getSimilarityQuantization() {
+        String value = getString("similarity.quantization", "NONE");
+        try {
+            return TrackCatalog.Quantization.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid value for similarity.quantization: '{}', using NONE", value);
+            return TrackCatalog.Quantization.NONE;
+        }
+    }
+
+    /**
+     * @return Product-quantization subspaces, which is also the bytes stored per track;
+     *         0 picks one per two dimensions
+     */
+    public int getPqSubspaces() {
+        return getInt("similarity.pq.subspaces", 0);
+    }
+
+    /**
+     * @return Tracks collected before the quantizer is trained and the index rebuilt
+     */
+    public int getQuantizationTrainSize() {
+        return getInt("similarity.quantization.trainSize", 10_000);
+    }
+
+    /**
+     * @return Whether quantized search candidates are re-ranked with exact off-heap vectors; this keeps
+     *         a float32 copy of every vector, so it costs more memory per track than it saves
+     */
+    public boolean isSimilarityRerankEnabled() {
+        return getBoolean("similarity.rerank", false);
+    }
+
+    // Analysis result cache
+
+    /**
+     * @return Size budget in bytes of the in-memory analysis cache; 0 disables it
+     */
+    public long getAnalysisCacheMemoryBytes() {
+        return getLong("cache.analysis.memoryBytes", 32L * 1024 * 1024);
+    }
+
+    /**
+     * @return Directory analysis results are persisted to, or null to keep them in memory only
+     */
+    public Path getAnalysisCacheDirectory() {
+        String dir = getString("cache.analysis.dir", null);
+        return dir == null ? null : Paths.get(dir);
+    }
+
+    /**
+     * @return Size budget in bytes of the on-disk analysis cache
+     */
+    public long getAnalysisCacheDiskBytes() {
+        return getLong("cache.analysis.diskBytes", 512L * 1024 * 1024);
+    }
+
+    // Search result cache
+
+    /**
+     * @return Maximum number of cached searches; 0 disables the cache
+     */
+    public int getSearchCacheMaxEntries() {
+        return getInt("cache.search.maxEntries", 10_000);
+    }
+
+    /**
+     * @return Seconds search results are served without asking the search backend again
+     */
+    public long getSearchCacheTtlSeconds() {
+        return getLong("cache.search.ttlSeconds", 300);
+    }
+
+    /**
+     * @return Seconds after the TTL stale results are served while they are refreshed in the background
+     */
+    public long getSearchCacheStaleWhileRevalidateSeconds() {
+        return getLong("cache.search.staleWhileRevalidateSeconds", 3600);
+    }
+
+    /**
+     * @return Seconds after the TTL stale results are served when the search backend fails
+     */
+    public long getSearchCacheStaleIfErrorSeconds() {
+        return getLong("cache.search.staleIfErrorSeconds", 86_400);
+    }
+
+    // Verified token cache
+
+    /**
+     * @return Maximum number of verified JWT tokens remembered; 0 verifies every request
+     */
+    public int getTokenCacheMaxEntries() {
+        return getInt("auth.tokenCache.maxEntries", 10_000);
+    }
+
+    // Spotify accounts
+
+    /**
+     * @return Base URL of the Spotify accounts service, which can point at a local stub
+     */
+    public String getSpotifyAccountsUrl() {
+        return getString("spotify.accountsUrl", "https://accounts.spotify.com");
+    }
+
+    /**
+     * @return Milliseconds a call to the Spotify accounts service may take
+     */
+    public long getSpotifyTimeoutMillis() {
+        return getLong("spotify.timeoutMs", 5000);
+    }
+
+    /**
+     * @return Maximum number of users whose Spotify access tokens are cached
+     */
+    public int getSpotifyTokenCacheMaxEntries() {
+        return getInt("spotify.tokenCache.maxEntries", 10_000);
+    }
+
+    /**
+     * @return Seconds before a Spotify access token expires that it is refreshed instead of served
+     */
+    public long getSpotifyTokenRefreshMarginSeconds() {
+        return getLong("spotify.tokenCache.refreshMarginSeconds", 60);
+    }
+
+    /**
+     * @return Directory of the shared Spotify refresh-token log, or null to keep tokens in memory only
+     */
+    public Path getRefreshTokenDirectory() {
+        String dir = getString("spotify.refreshTokens.dir", null);
+        return dir == null ? null : Paths.get(dir);
+    }
+
+    /**
+     * @return Size in bytes above which the refresh-token log is compacted once mostly superseded
+     */
+    public long getRefreshTokenCompactionBytes() {
+        return getLong("spotify.refreshTokens.compactionBytes", 1024 * 1024);
+    }
+
+    // Spotify Web API client
+
+    /**
+     * @return Base URL of the Spotify Web API, which can point at a local stub
+     */
+    public String getSpotifyApiUrl() {
+        return getString("spotify.apiUrl", "https://api.spotify.com/v1");
+    }
+
+    /**
+     * @return Steady rate of requests sent to the Spotify Web API
+     */
+    public int getSpotifyApiRequestsPerSecond() {
+        return getInt("spotify.api.requestsPerSecond", 10);
+    }
+
+    /**
+     * @return Requests that may be sent at once after a quiet period
+     */
+    public int getSpotifyApiBurst() {
+        return getInt("spotify.api.burst", 20);
+    }
+
+    /**
+     * @return Milliseconds single track and audio-feature lookups are collected into one batch request
+     */
+    public long getSpotifyApiBatchWindowMillis() {
+        return getLong("spotify.api.batchWindowMs", 10);
+    }
+
+    /**
+     * @return Retries of a request the Web API answers with 429
+     */
+    public int getSpotifyApiMaxRetries() {
+        return getInt("spotify.api.maxRetries", 3);
+    }
+
+    // Property access
+
+    protected String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = properties.getProperty(key);
+        }
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    protected int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid integer for {}: '{}', using {}", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    protected long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid number for {}: '{}', using {}", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    protected boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    private static Properties loadApplicationProperties() {
+        Properties props = new Properties();
+        try (InputStream in = TuningConfig.class.getClassLoader().getResourceAsStream("application.properties")) {
+            if (in != null) {
+                props.load(in);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read application.properties, using tuning defaults: {}", e.getMessage());
+        }
+        return props;
+    }
+}
@@ -0,0 +1,113 @@
+package com.musicinsights.filter;
+
+import com.musicinsights.concurrent.AdmissionController;
+import com.musicinsights.concurrent.AdmissionRejectedException;
+import com.musicinsights.config.TuningConfig;
+import com.musicinsights.model.ErrorResponse;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Admits upload requests with the {@link AdmissionController} before their body
+ * is read, so a shed upload costs neither heap nor spool space.
+ *
+ * <p>Requests to methods marked {@link Admitted} wait here for a permit, for at
+ * most the admission queue timeout, and are budgeted by their
+ * {@code Content-Length}, or by their request size limit without one. A shed
+ * request gets 503 with a {@code Retry-After} and the connection is closed, so
+ * none of its body is read.</p>
+ *
+ * <p>The resource takes the permit with {@link #takePermit} once it hands the
+ * upload to analysis, and releases it when the analysis finishes. A permit the
+ * resource did not take, because the body could not be read or the request was
+ * invalid, is released when the response is sent.</p>
+ */
+@Provider
+@Admitted
+@Priority(Priorities.USER)
+public class AdmissionFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionFilter.class);
+    private static final String PERMIT = AdmissionFilter.class.getName() + ".permit";
+
+    private final AdmissionController admission;
+    private final long uploadMaxBytes;
+    private final long batchMaxBytes;
+
+    @Inject
+    public AdmissionFilter(AdmissionController admission, TuningConfig tuning) {
+        this(admission, tuning.getUploadMaxRequestBytes(), tuning.getBatchMaxRequestBytes());
+    }
+
+    /**
+     * @param uploadMaxBytes Budget of a single file upload without a {@code Content-Length}
+     * @param batchMaxBytes Budget of a batch upload without a {@code Content-Length}
+     */
+    public AdmissionFilter(AdmissionController admission, long uploadMaxBytes, long batchMaxBytes) {
+        this.admission = admission;
+        this.uploadMaxBytes = uploadMaxBytes;
+        this.batchMaxBytes = batchMaxBytes;
+    }
+
+    /**
+     * Take over the permit of an admitted request; the caller must release it.
+     *
+     * @return The permit, or null if the request holds none
+     */
+    public static AdmissionController.Permit takePermit(ContainerRequestContext requestContext) {
+        Object permit = requestContext.getProperty(PERMIT);
+        if (permit == null) {
+            return null;
+        }
+        requestContext.removeProperty(PERMIT);
+        return (AdmissionController.Permit) permit;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        String path = ((ContainerRequest) requestContext).getPath(true);
+        long length = requestContext.getLength();
+        long bytes = length > 0 ? length : path.startsWith("analyze/batch") ? batchMaxBytes : uploadMaxBytes;
+        try {
+            requestContext.setProperty(PERMIT, admission.acquire(bytes).get());
+        } catch (ExecutionException e) {
+            int retryAfter = e.getCause() instanceof AdmissionRejectedException
+                    ? ((AdmissionRejectedException) e.getCause()).getRetryAfterSeconds() : 1;
+            logger.warn("Request to {} shed: {}", path, e.getCause().getMessage());
+            requestContext.abortWith(serverBusy(retryAfter));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            requestContext.abortWith(serverBusy(1));
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        AdmissionController.Permit permit = takePermit(requestContext);
+        if (permit != null) {
+            permit.cancel();
+        }
+    }
+
+    private static Response serverBusy(int retryAfterSeconds) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .header("Connection", "close")
+                .type(MediaType.APPLICATION_JSON)
+                .entity(new ErrorResponse("Server is busy, please retry"))
+                .build();
+    }
+}
@@ -1,9 +1,13 @@
 package com.musicinsights.filter;
 
+import com.musicinsights.cache.VerifiedTokenCache;
 import com.musicinsights.config.ApplicationConfig;
 import com.musicinsights.model.UserPrincipal;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.WeakKeyException;
@@ -13,6 +17,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Priority;
+import javax.crypto.SecretKey;
 import javax.inject.Inject;
 import javax.ws.rs.Priorities;
 import javax.ws.rs.container.ContainerRequestContext;
@@ -23,10 +28,7 @@ import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.ext.Provider;
 import java.io.IOException;
 import java.security.Principal;
-import java.security.Key;
 import java.util.List;
-import io.jsonwebtoken.SignatureAlgorithm;
-import javax.crypto.SecretKey;
 
 /**
  * JWT Authentication Filter that validates the token from the Authorization header.
@@ -45,21 +47,29 @@ public class AuthenticationFilter implements ContainerRequestFilter {
             "swagger.json",
             "swagger.yaml"
     };
+    /** Public only as themselves, not as prefixes of other paths. */
+    private static final String[] PUBLIC_EXACT_PATHS = {
+            "metrics"
+    };
 
-    // The key is now non-final and assigned in the constructor
-    private SecretKey key;
+    private final JwtParser parser;
+    private final VerifiedTokenCache tokenCache;
 
     @Inject
-    public AuthenticationFilter(ApplicationConfig config) {
-        try {
-            // Decode the Base64 key provided by ApplicationConfig
-            byte[] decodedSecret = Decoders.BASE64.decode(config.getJwtSecret());
-            this.key = Keys.hmacShaKeyFor(decodedSecret);
-            logger.info("AuthenticationFilter initialized using configured JWT secret.");
-        } catch (DecodingException | WeakKeyException e) {
-            logger.error("FATAL: AuthenticationFilter failed to initialize key from config ({}). Token validation will be unreliable.", e.getMessage());
-            this.key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
-        }
+    public AuthenticationFilter(ApplicationConfig config, VerifiedTokenCache tokenCache) {
+        this(signingKey(config), tokenCache);
+    }
+
+    /**
+     * @param key The key tokens are signed with
+     * @param tokenCache Tokens already verified, consulted before verifying a token
+     */
+    public AuthenticationFilter(SecretKey key, VerifiedTokenCache tokenCache) {
+        // Parsers are immutable and thread-safe, so one serves every request
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
+        this.tokenCache = tokenCache;
     }
 
     @Override
@@ -82,18 +92,57 @@ public class AuthenticationFilter implements ContainerRequestFilter {
 
         String token = authorizationHeader.substring(AUTHENTICATION_SCHEME.length()).trim();
 
+        UserPrincipal principal;
         try {
-            validateToken(token);
-            setSecurityContext(requestContext, token);
-        } catch (Exception e) {
+            principal = authenticate(token);
+        } catch (JwtException | IllegalArgumentException e) {
             logger.error("Authentication error: {}", e.getMessage());
             abortWithUnauthorized(requestContext);
+            return;
         }
+        setSecurityContext(requestContext, principal);
+    }
+
+    private static SecretKey signingKey(ApplicationConfig config) {
+        try {
+            // Decode the Base64 key provided by ApplicationConfig
+            byte[] decodedSecret = Decoders.BASE64.decode(config.getJwtSecret());
+            SecretKey key = Keys.hmacShaKeyFor(decodedSecret);
+            logger.info("AuthenticationFilter initialized using configured JWT secret.");
+            return key;
+        } catch (DecodingException | WeakKeyException e) {
+            logger.error("FATAL: AuthenticationFilter failed to initialize key from config ({}). Token validation will be unreliable.", e.getMessage());
+            return Keys.secretKeyFor(SignatureAlgorithm.HS256);
+        }
+    }
+
+    /**
+     * Verify a token once; repeat requests with it are answered from the cache
+     * until it expires.
+     *
+     * @return The token's user
+     * @throws JwtException If the token is malformed, badly signed or expired
+     */
+    private UserPrincipal authenticate(String token) {
+        UserPrincipal principal = tokenCache.get(token);
+        if (principal != null) {
+            return principal;
+        }
+
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        principal = new UserPrincipal(claims.getSubject(), claims.get("roles", List.class));
+        tokenCache.put(token, principal, claims.getExpiration());
+        return principal;
     }
 
     private boolean isPublicPath(String path) {
         if (path == null) return false;
         String normalized = path.startsWith("/") ? path.substring(1) : path;
+        for (String publicPath : PUBLIC_EXACT_PATHS) {
+            if (normalized.equals(publicPath)) {
+                return true;
+            }
+        }
         for (String publicPath : PUBLIC_PATHS) {
             if (normalized.startsWith(publicPath)) {
                 return true;
@@ -116,37 +165,17 @@ public class AuthenticationFilter implements ContainerRequestFilter {
         );
     }
 
-    private void validateToken(String token) throws Exception {
-        try {
-            Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token);
-        } catch (Exception e) {
-            throw new Exception("Invalid or expired token", e);
-        }
-    }
-
-    private void setSecurityContext(ContainerRequestContext requestContext, String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-
-        String username = claims.getSubject();
-        List<String> roles = claims.get("roles", List.class);
-
+    private void setSecurityContext(ContainerRequestContext requestContext, UserPrincipal principal) {
         final SecurityContext currentSecurityContext = requestContext.getSecurityContext();
         requestContext.setSecurityContext(new SecurityContext() {
             @Override
             public Principal getUserPrincipal() {
-                return new UserPrincipal(username, roles);
+                return principal;
             }
 
             @Override
             public boolean isUserInRole(String role) {
-                return roles != null && roles.contains(role);
+                return principal.isUserInRole(role);
             }
 
             @Override
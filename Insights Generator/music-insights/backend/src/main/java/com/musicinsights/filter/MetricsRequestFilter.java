@@ -0,0 +1,34 @@
+package com.musicinsights.filter;
+
+import com.musicinsights.metrics.MetricsRegistry;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Marks when a request arrives, before it is matched or authenticated, so
+ * {@link MetricsResponseFilter} can record how long it took.
+ */
+@Provider
+@PreMatching
+@Priority(0)
+public class MetricsRequestFilter implements ContainerRequestFilter {
+    static final String START_PROPERTY = MetricsRequestFilter.class.getName() + ".start";
+
+    private final MetricsRegistry metrics;
+
+    @Inject
+    public MetricsRequestFilter(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        requestContext.setProperty(START_PROPERTY, System.nanoTime());
+        metrics.requestStarted();
+    }
+}
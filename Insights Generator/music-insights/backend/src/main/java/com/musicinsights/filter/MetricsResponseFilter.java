@@ -0,0 +1,45 @@
+package com.musicinsights.filter;
+
+import com.musicinsights.metrics.MetricsRegistry;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Records the latency of each response by resource method and status class,
+ * including requests rejected before reaching a resource.
+ *
+ * <p>Latency runs until the response headers are ready; streamed bodies are
+ * written after it.</p>
+ */
+@Provider
+@Priority(0)
+public class MetricsResponseFilter implements ContainerResponseFilter {
+    private final MetricsRegistry metrics;
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Inject
+    public MetricsResponseFilter(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object start = requestContext.getProperty(MetricsRequestFilter.START_PROPERTY);
+        if (!(start instanceof Long)) {
+            return;
+        }
+        // Record each request once, even if the response is filtered again after an error
+        requestContext.removeProperty(MetricsRequestFilter.START_PROPERTY);
+        metrics.requestFinished(resourceInfo.getResourceMethod(), requestContext.getMethod(),
+                responseContext.getStatus(), System.nanoTime() - (Long) start);
+    }
+}
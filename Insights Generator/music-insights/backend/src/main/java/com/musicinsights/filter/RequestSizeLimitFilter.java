@@ -0,0 +1,148 @@
+package com.musicinsights.filter;
+
+import com.musicinsights.config.TuningConfig;
+import com.musicinsights.model.ErrorResponse;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Limits the size of request bodies as they are read, so an oversized upload
+ * is turned away after at most its limit in bytes instead of being buffered to
+ * completion by the multipart reader.
+ *
+ * <p>A request whose {@code Content-Length} is over its limit gets 413 before
+ * any of its body is read. Otherwise the body stream is counted, and reading
+ * past the limit, as a chunked body or a multipart part without a size may,
+ * fails the request with 413 where it stands. Either way the response closes
+ * the connection, so the rest of the body is never read.</p>
+ */
+@Provider
+@Priority(Priorities.AUTHENTICATION - 100)
+public class RequestSizeLimitFilter implements ContainerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(RequestSizeLimitFilter.class);
+
+    private final long uploadMaxBytes;
+    private final long batchMaxBytes;
+    private final long defaultMaxBytes;
+
+    @Inject
+    public RequestSizeLimitFilter(TuningConfig tuning) {
+        this(tuning.getUploadMaxRequestBytes(), tuning.getBatchMaxRequestBytes(), tuning.getMaxRequestBytes());
+    }
+
+    /**
+     * @param uploadMaxBytes Limit of single file uploads
+     * @param batchMaxBytes Limit of batch uploads
+     * @param defaultMaxBytes Limit of every other request
+     */
+    public RequestSizeLimitFilter(long uploadMaxBytes, long batchMaxBytes, long defaultMaxBytes) {
+        this.uploadMaxBytes = uploadMaxBytes;
+        this.batchMaxBytes = batchMaxBytes;
+        this.defaultMaxBytes = defaultMaxBytes;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        String path = ((ContainerRequest) requestContext).getPath(true);
+        long limit = limitFor(path);
+        if (limit <= 0) {
+            return;
+        }
+
+        long length = requestContext.getLength();
+        if (length > limit) {
+            logger.warn("Request to {} rejected: Content-Length {} exceeds {} bytes", path, length, limit);
+            requestContext.abortWith(tooLarge(limit));
+            return;
+        }
+        requestContext.setEntityStream(new LimitedInputStream(requestContext.getEntityStream(), limit, path));
+    }
+
+    private long limitFor(String path) {
+        if (path.startsWith("analyze/upload")) {
+            return uploadMaxBytes;
+        }
+        if (path.startsWith("analyze/batch")) {
+            return batchMaxBytes;
+        }
+        return defaultMaxBytes;
+    }
+
+    private static Response tooLarge(long limit) {
+        return Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE)
+                .header("Connection", "close")
+                .type(MediaType.APPLICATION_JSON)
+                .entity(new ErrorResponse("Request body exceeds maximum of " + limit + " bytes"))
+                .build();
+    }
+
+    /**
+     * Fails the request once more than its limit has been read.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private final String path;
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit, String path) {
+            super(in);
+            this.limit = limit;
+            this.path = path;
+            // One byte over the limit is read to tell a body of exactly the limit from a larger one
+            this.remaining = limit + 1;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(long bytes) {
+            remaining -= bytes;
+            if (remaining <= 0) {
+                logger.warn("Request to {} aborted: body exceeds {} bytes", path, limit);
+                // Unchecked, so the multipart parser does not turn it into a 400
+                throw new WebApplicationException(tooLarge(limit));
+            }
+        }
+    }
+}
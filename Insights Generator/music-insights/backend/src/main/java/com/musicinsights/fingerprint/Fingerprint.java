@@ -0,0 +1,55 @@
+package com.musicinsights.fingerprint;
+
+import java.util.Arrays;
+
+/**
+ * The landmark hashes of one recording, in the order they were extracted.
+ *
+ * <p>Each landmark is a hash of a pair of spectral peaks and the analysis frame
+ * of the first peak. Both are kept in parallel primitive arrays.</p>
+ */
+public final class Fingerprint {
+    private long[] hashes = new long[256];
+    private int[] frames = new int[256];
+    private int size;
+    private final double frameSeconds;
+
+    /**
+     * @param frameSeconds Time between analysis frames
+     */
+    public Fingerprint(double frameSeconds) {
+        this.frameSeconds = frameSeconds;
+    }
+
+    void add(long hash, int frame) {
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            frames = Arrays.copyOf(frames, size * 2);
+        }
+        hashes[size] = hash;
+        frames[size] = frame;
+        size++;
+    }
+
+    /**
+     * @return Number of landmarks
+     */
+    public int size() {
+        return size;
+    }
+
+    public long hashAt(int i) {
+        return hashes[i];
+    }
+
+    /**
+     * @return Analysis frame of the landmark's anchor peak
+     */
+    public int frameAt(int i) {
+        return frames[i];
+    }
+
+    public double getFrameSeconds() {
+        return frameSeconds;
+    }
+}
@@ -0,0 +1,345 @@
+package com.musicinsights.fingerprint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index from landmark hashes to the tracks and frames they occur at.
+ *
+ * <p>Hashes are kept in an open-addressing table of {@code long} keys. Each slot
+ * owns a posting list: an {@code int[]} of (track, frame) pairs that grows by
+ * doubling. Nothing is boxed, so a posting costs 8 bytes plus growth slack, and
+ * the total number of postings is capped to bound the footprint.</p>
+ *
+ * <p>A query looks up every landmark of the sample and votes for
+ * (track, frame offset) pairs; a true match piles its votes on one offset while
+ * chance collisions spread theirs out. Votes on the two neighbouring offsets are
+ * counted too, so samples that are not hop-aligned with the indexed audio still
+ * match. Queries run concurrently with each other; adding a track blocks them
+ * briefly.</p>
+ */
+public class FingerprintIndex {
+    private static final long EMPTY = -1L;
+    private static final int INITIAL_POSTING_INTS = 4;
+
+    private final long maxPostings;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] keys;
+    private int[][] postings;
+    private int[] lengths;
+    private int occupied;
+    private long postingCount;
+    private int trackCount;
+
+    /**
+     * @param maxPostings Maximum number of landmarks held across all tracks
+     */
+    public FingerprintIndex(long maxPostings) {
+        this.maxPostings = maxPostings;
+        allocate(1 << 16);
+    }
+
+    /**
+     * A track that matched a query.
+     */
+    public static final class Match {
+        private final int track;
+        private final int votes;
+        private final int offsetFrames;
+
+        Match(int track, int votes, int offsetFrames) {
+            this.track = track;
+            this.votes = votes;
+            this.offsetFrames = offsetFrames;
+        }
+
+        /**
+         * @return Number assigned to the track by {@link #add}
+         */
+        public int getTrack() {
+            return track;
+        }
+
+        /**
+         * @return Landmarks of the query that line up with the track
+         */
+        public int getVotes() {
+            return votes;
+        }
+
+        /**
+         * @return Frame of the track the query's first frame lines up with
+         */
+        public int getOffsetFrames() {
+            return offsetFrames;
+        }
+    }
+
+    /**
+     * Add a track's landmarks to the index.
+     *
+     * @param fingerprint The track's fingerprint
+     * @return The number assigned to the track, counting from 0
+     * @throws IllegalStateException if the track would take the index over its posting limit
+     */
+    public int add(Fingerprint fingerprint) {
+        lock.writeLock().lock();
+        try {
+            if (postingCount + fingerprint.size() > maxPostings) {
+                throw new IllegalStateException("Fingerprint index is full (" + postingCount + " postings)");
+            }
+            int track = trackCount++;
+            for (int i = 0; i < fingerprint.size(); i++) {
+                int slot = slotFor(fingerprint.hashAt(i));
+                int length = lengths[slot];
+                int[] list = postings[slot];
+                if (list == null) {
+                    list = postings[slot] = new int[INITIAL_POSTING_INTS];
+                } else if (length == list.length) {
+                    list = postings[slot] = Arrays.copyOf(list, length * 2);
+                }
+                list[length] = track;
+                list[length + 1] = fingerprint.frameAt(i);
+                lengths[slot] = length + 2;
+            }
+            postingCount += fingerprint.size();
+            return track;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the tracks a sample was taken from.
+     *
+     * @param sample Fingerprint of the sample
+     * @param minVotes Minimum number of aligned landmarks for a match
+     * @param limit Maximum number of matches
+     * @return Matches by descending vote count
+     */
+    public List<Match> query(Fingerprint sample, int minVotes, int limit) {
+        VoteCounter votes = new VoteCounter(Math.max(64, sample.size() * 4));
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < sample.size(); i++) {
+                int slot = find(sample.hashAt(i));
+                if (slot < 0) {
+                    continue;
+                }
+                int[] list = postings[slot];
+                int length = lengths[slot];
+                int frame = sample.frameAt(i);
+                for (int p = 0; p < length; p += 2) {
+                    votes.increment(list[p], list[p + 1] - frame);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return votes.best(minVotes, limit);
+    }
+
+    public int getTrackCount() {
+        lock.readLock().lock();
+        try {
+            return trackCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getPostingCount() {
+        lock.readLock().lock();
+        try {
+            return postingCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Approximate heap footprint of the hash table and posting lists in bytes
+     */
+    public long getMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = keys.length * (8L + 8L + 4L);
+            for (int[] list : postings) {
+                if (list != null) {
+                    bytes += 16L + 4L * list.length;
+                }
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Hash table
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        postings = new int[capacity][];
+        lengths = new int[capacity];
+        occupied = 0;
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slotFor(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (occupied + 1 > keys.length - (keys.length >> 2)) {
+            grow();
+            return slotFor(key);
+        }
+        keys[slot] = key;
+        occupied++;
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[][] oldPostings = postings;
+        int[] oldLengths = lengths;
+        allocate(oldKeys.length * 2);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) {
+                continue;
+            }
+            int slot = mix(oldKeys[i]) & mask;
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            postings[slot] = oldPostings[i];
+            lengths[slot] = oldLengths[i];
+            occupied++;
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Per-query vote counts keyed by (track, offset), in an open-addressing table
+     * of packed {@code long} keys.
+     */
+    private static final class VoteCounter {
+        private long[] keys;
+        private int[] counts;
+        private int size;
+
+        VoteCounter(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected) * 2 - 1) << 1;
+            keys = new long[capacity];
+            counts = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        void increment(int track, int offset) {
+            long key = pack(track, offset);
+            int slot = slot(keys, key);
+            if (keys[slot] == EMPTY) {
+                if (size + 1 > keys.length / 2) {
+                    rehash();
+                    slot = slot(keys, key);
+                }
+                keys[slot] = key;
+                size++;
+            }
+            counts[slot]++;
+        }
+
+        int get(int track, int offset) {
+            int slot = slot(keys, pack(track, offset));
+            return keys[slot] == EMPTY ? 0 : counts[slot];
+        }
+
+        List<Match> best(int minVotes, int limit) {
+            // Best offset per track; tracks are few compared with (track, offset) pairs
+            List<Match> matches = new ArrayList<>();
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == EMPTY) {
+                    continue;
+                }
+                int track = (int) (keys[i] >>> 32);
+                int offset = (int) keys[i];
+                int score = counts[i] + get(track, offset - 1) + get(track, offset + 1);
+                if (score < minVotes) {
+                    continue;
+                }
+                boolean replaced = false;
+                for (int m = 0; m < matches.size(); m++) {
+                    Match match = matches.get(m);
+                    if (match.track == track) {
+                        if (score > match.votes || (score == match.votes && offset < match.offsetFrames)) {
+                            matches.set(m, new Match(track, score, offset));
+                        }
+                        replaced = true;
+                        break;
+                    }
+                }
+                if (!replaced) {
+                    matches.add(new Match(track, score, offset));
+                }
+            }
+            matches.sort((a, b) -> a.votes != b.votes
+                    ? Integer.compare(b.votes, a.votes)
+                    : Integer.compare(a.track, b.track));
+            return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            counts = new int[keys.length];
+            Arrays.fill(keys, EMPTY);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = slot(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int slot(long[] keys, long key) {
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static long pack(int track, int offset) {
+            return ((long) track << 32) | (offset & 0xFFFFFFFFL);
+        }
+    }
+}
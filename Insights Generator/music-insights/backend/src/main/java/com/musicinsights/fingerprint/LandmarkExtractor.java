@@ -0,0 +1,148 @@
+package com.musicinsights.fingerprint;
+
+import com.musicinsights.audio.SpectrumListener;
+
+/**
+ * Builds a constellation fingerprint from a {@link com.musicinsights.audio.StftEngine} pass.
+ *
+ * <p>The spectrum is split into logarithmic bands and the strongest bin of each
+ * band is a candidate peak. A candidate becomes a peak when it is the loudest in
+ * its band over {@value #PEAK_RADIUS} frames either side, which keeps the peak
+ * density roughly constant regardless of level. Each peak then anchors up to
+ * {@value #FAN_OUT} landmarks with the next peaks in its target zone; a landmark
+ * hash packs the two peak bins and the frame distance between them:</p>
+ *
+ * <pre>
+ *   bits 20-29: anchor bin   bits 10-19: target bin   bits 0-9: frame delta
+ * </pre>
+ *
+ * <p>Peaks are decided {@value #PEAK_RADIUS} frames late, so the last frames of a
+ * stream contribute no peaks. Extraction allocates nothing per frame.</p>
+ */
+public final class LandmarkExtractor implements SpectrumListener {
+    /** Frames either side a peak must dominate within its band. */
+    static final int PEAK_RADIUS = 6;
+    /** Landmarks anchored at each peak. */
+    static final int FAN_OUT = 3;
+    /** Largest frame distance between an anchor and its target. */
+    static final int MAX_DELTA_FRAMES = 64;
+    /** Largest bin distance between an anchor and its target. */
+    static final int MAX_DELTA_BINS = 128;
+    /** Peaks quieter than this (about -80 dBFS) are ignored. */
+    private static final double MIN_MAGNITUDE = 1e-4;
+    private static final int[] BAND_EDGES = {2, 10, 20, 40, 80, 160, 320, 512};
+    private static final int BIN_MASK = 0x3FF;
+
+    private final Fingerprint fingerprint;
+    private final int bands;
+    private final int window = 2 * PEAK_RADIUS + 1;
+    private final double[][] bandMagnitude;
+    private final int[][] bandBin;
+    private long frames;
+
+    // Recent peaks waiting for targets, oldest first, in a ring buffer
+    private final int[] peakFrame;
+    private final int[] peakBin;
+    private final int[] peakFanOut;
+    private int peakStart;
+    private int peakCount;
+
+    /**
+     * @param fftSize FFT size of the engine feeding this extractor; at most 1024
+     * @param hopSize Hop size of the engine
+     * @param sampleRate Sample rate of the analysed stream
+     */
+    public LandmarkExtractor(int fftSize, int hopSize, int sampleRate) {
+        if (fftSize / 2 > BIN_MASK) {
+            throw new IllegalArgumentException("FFT size too large for landmark hashes: " + fftSize);
+        }
+        this.fingerprint = new Fingerprint((double) hopSize / sampleRate);
+        int count = 0;
+        while (count + 1 < BAND_EDGES.length && BAND_EDGES[count + 1] <= fftSize / 2) {
+            count++;
+        }
+        this.bands = count;
+        this.bandMagnitude = new double[bands][window];
+        this.bandBin = new int[bands][window];
+        int capacity = (MAX_DELTA_FRAMES + PEAK_RADIUS + 1) * bands;
+        this.peakFrame = new int[capacity];
+        this.peakBin = new int[capacity];
+        this.peakFanOut = new int[capacity];
+    }
+
+    /**
+     * @return The landmarks extracted so far
+     */
+    public Fingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public void onSamples(float[] samples, int length, long position) {
+    }
+
+    @Override
+    public void onSpectrum(double[] magnitudes, long frameIndex) {
+        int slot = (int) (frames % window);
+        for (int b = 0; b < bands; b++) {
+            int best = BAND_EDGES[b];
+            for (int k = BAND_EDGES[b] + 1; k < BAND_EDGES[b + 1]; k++) {
+                if (magnitudes[k] > magnitudes[best]) {
+                    best = k;
+                }
+            }
+            bandMagnitude[b][slot] = magnitudes[best];
+            bandBin[b][slot] = best;
+        }
+        frames++;
+        if (frames >= window) {
+            pickPeaks(frames - 1 - PEAK_RADIUS);
+        }
+    }
+
+    private void pickPeaks(long center) {
+        int centerSlot = (int) (center % window);
+        for (int b = 0; b < bands; b++) {
+            double magnitude = bandMagnitude[b][centerSlot];
+            if (magnitude < MIN_MAGNITUDE) {
+                continue;
+            }
+            boolean peak = true;
+            for (int i = 0; i < window && peak; i++) {
+                double other = bandMagnitude[b][i];
+                // Ties go to the earliest frame
+                long frame = center - PEAK_RADIUS + ((i - centerSlot + PEAK_RADIUS + window) % window);
+                peak = other < magnitude || (other == magnitude && frame >= center);
+            }
+            if (peak) {
+                addPeak((int) center, bandBin[b][centerSlot]);
+            }
+        }
+    }
+
+    private void addPeak(int frame, int bin) {
+        // Drop anchors that can no longer reach a target
+        while (peakCount > 0 && frame - peakFrame[peakStart] > MAX_DELTA_FRAMES) {
+            peakStart = (peakStart + 1) % peakFrame.length;
+            peakCount--;
+        }
+        for (int i = 0; i < peakCount; i++) {
+            int a = (peakStart + i) % peakFrame.length;
+            int delta = frame - peakFrame[a];
+            if (delta > 0 && peakFanOut[a] > 0 && Math.abs(bin - peakBin[a]) <= MAX_DELTA_BINS) {
+                long hash = ((long) (peakBin[a] & BIN_MASK) << 20) | ((bin & BIN_MASK) << 10) | delta;
+                fingerprint.add(hash, peakFrame[a]);
+                peakFanOut[a]--;
+            }
+        }
+        if (peakCount == peakFrame.length) {
+            peakStart = (peakStart + 1) % peakFrame.length;
+            peakCount--;
+        }
+        int slot = (peakStart + peakCount) % peakFrame.length;
+        peakFrame[slot] = frame;
+        peakBin[slot] = bin;
+        peakFanOut[slot] = FAN_OUT;
+        peakCount++;
+    }
+}
@@ -0,0 +1,123 @@
+package com.musicinsights.fingerprint;
+
+import java.util.Arrays;
+import java.util.function.IntSupplier;
+
+/**
+ * IDs and descriptions of the tracks in a {@link FingerprintIndex}, kept in
+ * arrays indexed by the track numbers the index assigns.
+ *
+ * <p>Track numbers are dense, so each field is one array slot per track. Lookups
+ * by ID go through an open-addressing table of track numbers, probed by the ID's
+ * hash and resolved against the ID array, so nothing is boxed and no entry
+ * objects are kept per track.</p>
+ */
+public class TrackDirectory {
+    private static final int EMPTY = -1;
+
+    private String[] ids = new String[64];
+    private String[] titles = new String[64];
+    private String[] artists = new String[64];
+    private String[] albums = new String[64];
+    private int[] slots = newSlots(128);
+    private int count;
+
+    /**
+     * @return Whether a track is known under {@code id}
+     */
+    public synchronized boolean contains(String id) {
+        return slots[slotFor(id)] != EMPTY;
+    }
+
+    /**
+     * Add a track unless one is already known under its ID.
+     *
+     * @param numbering Adds the track to the index and returns its number; only
+     *                  called, under this directory's lock, if the ID is new
+     * @return false if a track was already known under the ID
+     * @throws IllegalStateException if {@code numbering} does, e.g. because the index is full
+     */
+    public synchronized boolean add(String id, String title, String artist, String album, IntSupplier numbering) {
+        int slot = slotFor(id);
+        if (slots[slot] != EMPTY) {
+            return false;
+        }
+        int number = numbering.getAsInt();
+        if (number >= ids.length) {
+            int capacity = Math.max(number + 1, ids.length * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            artists = Arrays.copyOf(artists, capacity);
+            albums = Arrays.copyOf(albums, capacity);
+        }
+        ids[number] = id;
+        titles[number] = title;
+        artists[number] = artist;
+        albums[number] = album;
+        slots[slot] = number;
+        if (++count * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * @return The ID of track {@code number}, or null if it has not been added
+     */
+    public synchronized String getId(int number) {
+        return number < ids.length ? ids[number] : null;
+    }
+
+    public synchronized String getTitle(int number) {
+        return titles[number];
+    }
+
+    public synchronized String getArtist(int number) {
+        return artists[number];
+    }
+
+    public synchronized String getAlbum(int number) {
+        return albums[number];
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * @return The slot holding {@code id}'s track number, or the empty slot it would go in
+     */
+    private int slotFor(String id) {
+        int mask = slots.length - 1;
+        int slot = mix(id.hashCode()) & mask;
+        while (slots[slot] != EMPTY && !ids[slots[slot]].equals(id)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        int[] old = slots;
+        slots = newSlots(capacity);
+        int mask = capacity - 1;
+        for (int number : old) {
+            if (number != EMPTY) {
+                int slot = mix(ids[number].hashCode()) & mask;
+                while (slots[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = number;
+            }
+        }
+    }
+
+    private static int[] newSlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        return slots;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
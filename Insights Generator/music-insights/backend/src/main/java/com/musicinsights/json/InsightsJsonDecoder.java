@@ -0,0 +1,252 @@
+package com.musicinsights.json;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.musicinsights.model.AudioFeatures;
+import com.musicinsights.model.SimilarTrack;
+import com.musicinsights.model.TrackAnalysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodes track JSON token by token into typed models, without building the
+ * document as a String or a tree of maps first. It reads Python analytics
+ * responses and the analyses {@link TrackAnalysis#writeJson} writes.
+ *
+ * <p>Field names are accepted in snake_case, as the Python service sends them,
+ * or camelCase. Unknown fields are skipped, and null or missing fields keep
+ * their defaults.</p>
+ */
+public final class InsightsJsonDecoder {
+
+    private InsightsJsonDecoder() {
+    }
+
+    /**
+     * @return The tracks of a JSON array
+     */
+    public static List<TrackAnalysis> readTracks(InputStream in) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            List<TrackAnalysis> tracks = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                tracks.add(readTrack(reader));
+            }
+            reader.endArray();
+            return tracks;
+        }
+    }
+
+    /**
+     * @return The track of a JSON object
+     */
+    public static TrackAnalysis readTrack(InputStream in) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return readTrack(reader);
+        }
+    }
+
+    static TrackAnalysis readTrack(JsonReader reader) throws IOException {
+        TrackAnalysis.Builder track = TrackAnalysis.builder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    track.id(reader.nextString());
+                    break;
+                case "title":
+                    track.title(reader.nextString());
+                    break;
+                case "artist":
+                    track.artist(reader.nextString());
+                    break;
+                case "album":
+                    track.album(reader.nextString());
+                    break;
+                case "genre":
+                    track.genre(readStrings(reader));
+                    break;
+                case "year":
+                    track.year((int) reader.nextDouble());
+                    break;
+                case "duration":
+                    track.duration(reader.nextString());
+                    break;
+                case "popularity":
+                    track.popularity((int) reader.nextDouble());
+                    break;
+                case "audio_features":
+                case "audioFeatures":
+                    track.audioFeatures(readAudioFeatures(reader));
+                    break;
+                case "similar_tracks":
+                case "similarTracks":
+                    track.similarTracks(readSimilarTracks(reader));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return track.build();
+    }
+
+    private static AudioFeatures readAudioFeatures(JsonReader reader) throws IOException {
+        AudioFeatures.Builder features = AudioFeatures.builder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "duration":
+                    features.duration(reader.nextDouble());
+                    break;
+                case "tempo":
+                    features.tempo(reader.nextDouble());
+                    break;
+                case "key":
+                    features.key(reader.nextString());
+                    break;
+                case "mode":
+                    features.mode(reader.nextString());
+                    break;
+                case "time_signature":
+                case "timeSignature":
+                    features.timeSignature((int) reader.nextDouble());
+                    break;
+                case "energy":
+                    features.energy(reader.nextDouble());
+                    break;
+                case "danceability":
+                    features.danceability(reader.nextDouble());
+                    break;
+                case "valence":
+                    features.valence(reader.nextDouble());
+                    break;
+                case "acousticness":
+                    features.acousticness(reader.nextDouble());
+                    break;
+                case "instrumentalness":
+                    features.instrumentalness(reader.nextDouble());
+                    break;
+                case "liveness":
+                    features.liveness(reader.nextDouble());
+                    break;
+                case "speechiness":
+                    features.speechiness(reader.nextDouble());
+                    break;
+                case "loudness":
+                    features.loudness(reader.nextDouble());
+                    break;
+                case "spectral_centroid":
+                case "spectralCentroid":
+                    features.spectralCentroid(reader.nextDouble());
+                    break;
+                case "spectral_rolloff":
+                case "spectralRolloff":
+                    features.spectralRolloff(reader.nextDouble());
+                    break;
+                case "spectral_flux":
+                case "spectralFlux":
+                    features.spectralFlux(reader.nextDouble());
+                    break;
+                case "zero_crossing_rate":
+                case "zeroCrossingRate":
+                    features.zeroCrossingRate(reader.nextDouble());
+                    break;
+                case "embedding":
+                    features.embedding(readFloats(reader));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return features.build();
+    }
+
+    private static List<SimilarTrack> readSimilarTracks(JsonReader reader) throws IOException {
+        List<SimilarTrack> tracks = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String id = null;
+            String trackName = null;
+            String artist = null;
+            String album = null;
+            double match = 0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "id":
+                        id = reader.nextString();
+                        break;
+                    case "name":
+                        trackName = reader.nextString();
+                        break;
+                    case "artist":
+                        artist = reader.nextString();
+                        break;
+                    case "album":
+                        album = reader.nextString();
+                        break;
+                    case "match":
+                        match = reader.nextDouble();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            tracks.add(new SimilarTrack(id, trackName, artist, album, match));
+        }
+        reader.endArray();
+        return tracks;
+    }
+
+    private static float[] readFloats(JsonReader reader) throws IOException {
+        float[] values = new float[16];
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = (float) reader.nextDouble();
+        }
+        reader.endArray();
+        return Arrays.copyOf(values, count);
+    }
+
+    private static List<String> readStrings(JsonReader reader) throws IOException {
+        List<String> values = new ArrayList<>();
+        if (reader.peek() == JsonToken.STRING) {
+            values.add(reader.nextString());
+            return values;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            values.add(reader.nextString());
+        }
+        reader.endArray();
+        return values;
+    }
+}
@@ -0,0 +1,20 @@
+package com.musicinsights.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * A model that writes its own JSON field by field, without reflection or an
+ * intermediate map. Response entities of this type are written by
+ * {@link JsonWritableBodyWriter}.
+ */
+public interface JsonWritable {
+
+    /**
+     * Write this object as one JSON object.
+     *
+     * @param json The generator to write to
+     */
+    void writeJson(JsonGenerator json) throws IOException;
+}
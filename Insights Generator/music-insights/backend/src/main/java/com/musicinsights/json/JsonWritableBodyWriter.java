@@ -0,0 +1,38 @@
+package com.musicinsights.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Writes {@link JsonWritable} response entities straight to the response
+ * stream. It is more specific than Jackson's provider for these types, so
+ * Jersey picks it for them and leaves other entities to Jackson.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class JsonWritableBodyWriter implements MessageBodyWriter<JsonWritable> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return JsonWritable.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void writeTo(JsonWritable value, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+                        OutputStream entityStream) throws IOException, WebApplicationException {
+        try (JsonGenerator json = JsonWriters.generator(entityStream)) {
+            value.writeJson(json);
+        }
+    }
+}
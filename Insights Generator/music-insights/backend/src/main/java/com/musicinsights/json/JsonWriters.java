@@ -0,0 +1,90 @@
+package com.musicinsights.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * The shared {@link JsonFactory} and helpers for {@link JsonWritable} models.
+ */
+public final class JsonWriters {
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    private JsonWriters() {
+    }
+
+    /**
+     * @return A UTF-8 generator over the stream; closing it does not close the stream
+     */
+    public static JsonGenerator generator(OutputStream out) throws IOException {
+        return FACTORY.createGenerator(out);
+    }
+
+    /**
+     * @return The value as UTF-8 JSON
+     */
+    public static byte[] toBytes(JsonWritable value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        try (JsonGenerator json = generator(out)) {
+            value.writeJson(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Write a string field, leaving it out if the value is null.
+     */
+    public static void writeString(JsonGenerator json, String name, String value) throws IOException {
+        if (value != null) {
+            json.writeStringField(name, value);
+        }
+    }
+
+    /**
+     * Write a number field, leaving it out if the value is NaN.
+     */
+    public static void writeNumber(JsonGenerator json, String name, double value) throws IOException {
+        if (!Double.isNaN(value)) {
+            json.writeNumberField(name, value);
+        }
+    }
+
+    /**
+     * Write an array of objects, leaving it out if the list is null.
+     */
+    public static void writeArray(JsonGenerator json, String name, List<? extends JsonWritable> values)
+            throws IOException {
+        if (values == null) {
+            return;
+        }
+        json.writeArrayFieldStart(name);
+        for (JsonWritable value : values) {
+            value.writeJson(json);
+        }
+        json.writeEndArray();
+    }
+
+    /**
+     * Write an array of strings, leaving it out if the list is null.
+     */
+    public static void writeStrings(JsonGenerator json, String name, List<String> values) throws IOException {
+        if (values == null) {
+            return;
+        }
+        json.writeArrayFieldStart(name);
+        for (String value : values) {
+            json.writeString(value);
+        }
+        json.writeEndArray();
+    }
+}
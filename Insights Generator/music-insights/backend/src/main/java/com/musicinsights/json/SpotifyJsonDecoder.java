@@ -0,0 +1,317 @@
+package com.musicinsights.json;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.musicinsights.model.AudioFeatures;
+import com.musicinsights.model.TrackAnalysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decodes Spotify Web API responses token by token into typed models.
+ *
+ * <p>Spotify track objects become {@link TrackAnalysis} metadata and audio
+ * features objects become {@link AudioFeatures}, with the pitch class and
+ * modality spelled out as the rest of the API does. Unknown fields are
+ * skipped, and null entries of batch responses stay null so results line up
+ * with the IDs requested.</p>
+ */
+public final class SpotifyJsonDecoder {
+    private static final String[] KEYS = {"C", "C#", "D", "D#", "E", "F", "F#", "G", "G#", "A", "A#", "B"};
+
+    private SpotifyJsonDecoder() {
+    }
+
+    /**
+     * One page of a paged response.
+     */
+    public static final class Page {
+        private final List<TrackAnalysis> items;
+        private final int total;
+
+        Page(List<TrackAnalysis> items, int total) {
+            this.items = items;
+            this.total = total;
+        }
+
+        public List<TrackAnalysis> getItems() {
+            return items;
+        }
+
+        /**
+         * @return Items across all pages
+         */
+        public int getTotal() {
+            return total;
+        }
+    }
+
+    /**
+     * @return The tracks of a {@code {"tracks": [...]}} batch response
+     */
+    public static List<TrackAnalysis> readTracks(InputStream in) throws IOException {
+        try (JsonReader reader = reader(in)) {
+            List<TrackAnalysis> tracks = Collections.emptyList();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("tracks") && reader.peek() != JsonToken.NULL) {
+                    tracks = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        tracks.add(readTrackOrNull(reader));
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return tracks;
+        }
+    }
+
+    /**
+     * @return The features of a {@code {"audio_features": [...]}} batch response
+     */
+    public static List<AudioFeatures> readAudioFeatures(InputStream in) throws IOException {
+        try (JsonReader reader = reader(in)) {
+            List<AudioFeatures> features = Collections.emptyList();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("audio_features") && reader.peek() != JsonToken.NULL) {
+                    features = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        features.add(readAudioFeaturesOrNull(reader));
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return features;
+        }
+    }
+
+    /**
+     * Read a page whose items are tracks, as from {@code /me/top/tracks}, or
+     * wrap them in {@code {"track": ...}}, as from {@code /me/tracks}.
+     */
+    public static Page readTrackPage(InputStream in) throws IOException {
+        try (JsonReader reader = reader(in)) {
+            List<TrackAnalysis> items = new ArrayList<>();
+            int total = 0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else if (name.equals("items")) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        TrackAnalysis track = readItem(reader);
+                        if (track != null) {
+                            items.add(track);
+                        }
+                    }
+                    reader.endArray();
+                } else if (name.equals("total")) {
+                    total = reader.nextInt();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return new Page(items, total);
+        }
+    }
+
+    private static TrackAnalysis readItem(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        // Saved-track items wrap the track; other pages list tracks directly
+        TrackAnalysis.Builder track = TrackAnalysis.builder();
+        TrackAnalysis wrapped = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("track")) {
+                wrapped = readTrackOrNull(reader);
+            } else {
+                readTrackField(reader, name, track);
+            }
+        }
+        reader.endObject();
+        return wrapped != null ? wrapped : track.build();
+    }
+
+    private static TrackAnalysis readTrackOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        TrackAnalysis.Builder track = TrackAnalysis.builder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            readTrackField(reader, reader.nextName(), track);
+        }
+        reader.endObject();
+        return track.build();
+    }
+
+    private static void readTrackField(JsonReader reader, String name, TrackAnalysis.Builder track)
+            throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return;
+        }
+        switch (name) {
+            case "id":
+                track.id(reader.nextString());
+                break;
+            case "name":
+                track.title(reader.nextString());
+                break;
+            case "artists":
+                track.artist(readArtists(reader));
+                break;
+            case "album":
+                readAlbum(reader, track);
+                break;
+            case "duration_ms":
+                long seconds = Math.round(reader.nextLong() / 1000.0);
+                track.duration(String.format("%d:%02d", seconds / 60, seconds % 60));
+                break;
+            case "popularity":
+                track.popularity(reader.nextInt());
+                break;
+            default:
+                reader.skipValue();
+        }
+    }
+
+    /**
+     * @return The artists' names joined with commas
+     */
+    private static String readArtists(JsonReader reader) throws IOException {
+        StringBuilder names = new StringBuilder();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("name") && reader.peek() == JsonToken.STRING) {
+                    if (names.length() > 0) {
+                        names.append(", ");
+                    }
+                    names.append(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+        return names.toString();
+    }
+
+    private static void readAlbum(JsonReader reader, TrackAnalysis.Builder track) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() != JsonToken.STRING) {
+                reader.skipValue();
+            } else if (name.equals("name")) {
+                track.album(reader.nextString());
+            } else if (name.equals("release_date")) {
+                // "1999", "1999-10" or "1999-10-12"
+                String date = reader.nextString();
+                if (date.length() >= 4) {
+                    try {
+                        track.year(Integer.parseInt(date.substring(0, 4)));
+                    } catch (NumberFormatException e) {
+                        // Leave the year unset
+                    }
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static AudioFeatures readAudioFeaturesOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        AudioFeatures.Builder features = AudioFeatures.builder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "duration_ms":
+                    features.duration(reader.nextLong() / 1000.0);
+                    break;
+                case "tempo":
+                    features.tempo(reader.nextDouble());
+                    break;
+                case "key":
+                    // Pitch class, or -1 when no key was detected
+                    int key = reader.nextInt();
+                    features.key(key >= 0 && key < KEYS.length ? KEYS[key] : null);
+                    break;
+                case "mode":
+                    features.mode(reader.nextInt() == 1 ? "major" : "minor");
+                    break;
+                case "time_signature":
+                    features.timeSignature(reader.nextInt());
+                    break;
+                case "energy":
+                    features.energy(reader.nextDouble());
+                    break;
+                case "danceability":
+                    features.danceability(reader.nextDouble());
+                    break;
+                case "valence":
+                    features.valence(reader.nextDouble());
+                    break;
+                case "acousticness":
+                    features.acousticness(reader.nextDouble());
+                    break;
+                case "instrumentalness":
+                    features.instrumentalness(reader.nextDouble());
+                    break;
+                case "liveness":
+                    features.liveness(reader.nextDouble());
+                    break;
+                case "speechiness":
+                    features.speechiness(reader.nextDouble());
+                    break;
+                case "loudness":
+                    features.loudness(reader.nextDouble());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return features.build();
+    }
+
+    private static JsonReader reader(InputStream in) {
+        return new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,123 @@
+package com.musicinsights.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the manner of
+ * HdrHistogram.
+ *
+ * <p>Latencies are counted in microseconds. Each power of two is split into 16
+ * linear sub-buckets, so a bucket's bounds are within 6.25% of any value in it,
+ * from 1 us up to about 12 days. Recording is one atomic increment of a
+ * fixed-size array and adds no allocation or locking to the request path.</p>
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final long MAX_MICROS = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sumNanos = new LongAdder();
+
+    /**
+     * @param nanos A latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.min(MAX_MICROS, Math.max(0, nanos) / 1000);
+        counts.incrementAndGet(index(micros));
+        sumNanos.add(Math.max(0, nanos));
+    }
+
+    /**
+     * @return Counts of every bucket, read without stopping recording
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, sumNanos.sum());
+    }
+
+    static int index(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (micros >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return The largest value in microseconds counted in a bucket
+     */
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Bucket counts at one moment.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long sumNanos;
+        private final long count;
+
+        Snapshot(long[] counts, long sumNanos) {
+            this.counts = counts;
+            this.sumNanos = sumNanos;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getSumSeconds() {
+            return sumNanos / 1e9;
+        }
+
+        /**
+         * @return Latencies recorded that were no more than the bound, to bucket precision
+         */
+        public long countAtOrBelow(double seconds) {
+            long micros = (long) (seconds * TimeUnit.SECONDS.toMicros(1));
+            long total = 0;
+            for (int i = 0; i < counts.length && upperBound(i) <= micros; i++) {
+                total += counts[i];
+            }
+            return total;
+        }
+
+        /**
+         * @param quantile Between 0 and 1
+         * @return The latency in seconds that the quantile of recorded latencies do not exceed,
+         *         to bucket precision; 0 when nothing was recorded
+         */
+        public double valueAtQuantile(double quantile) {
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(1, rank) && counts[i] > 0) {
+                    return (upperBound(i) + 1) / 1e6;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.musicinsights.metrics;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms of the requests the server handles and of the calls it
+ * makes to upstream services, with the number of requests in flight.
+ *
+ * <p>Histograms are created on first use and found through concurrent maps, so
+ * recording takes no lock.</p>
+ */
+public class MetricsRegistry {
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+    private static final Route UNMATCHED = new Route("unmatched");
+
+    private final Map<Method, Route> routes = new ConcurrentHashMap<>();
+    private final Map<String, Upstream> upstreams = new ConcurrentHashMap<>();
+    private final LongAdder inFlight = new LongAdder();
+
+    public void requestStarted() {
+        inFlight.increment();
+    }
+
+    /**
+     * @param resourceMethod The resource method that handled the request, or null if none matched
+     * @param httpMethod The request method
+     * @param status The response status
+     * @param nanos Time from the request's arrival to its response
+     */
+    public void requestFinished(Method resourceMethod, String httpMethod, int status, long nanos) {
+        inFlight.decrement();
+        Route route = resourceMethod == null
+                ? UNMATCHED
+                : routes.computeIfAbsent(resourceMethod,
+                        method -> new Route(method.getDeclaringClass().getSimpleName() + "." + method.getName()));
+        route.histogram(httpMethod, status).record(nanos);
+    }
+
+    /**
+     * @param service The upstream service, such as {@code python} or {@code spotify}
+     * @param operation The call made
+     * @param success Whether the call succeeded
+     * @param nanos Time the call took
+     */
+    public void upstreamFinished(String service, String operation, boolean success, long nanos) {
+        Upstream upstream = upstreams.get(service + ' ' + operation);
+        if (upstream == null) {
+            upstream = upstreams.computeIfAbsent(service + ' ' + operation,
+                    key -> new Upstream(service, operation));
+        }
+        (success ? upstream.success : upstream.failure).record(nanos);
+    }
+
+    public long getRequestsInFlight() {
+        return inFlight.sum();
+    }
+
+    /**
+     * Write the request and upstream metrics.
+     */
+    public void write(PrometheusWriter out) {
+        out.family("musicinsights_http_requests_in_flight", "gauge", "Requests being handled");
+        out.sample("musicinsights_http_requests_in_flight", getRequestsInFlight());
+
+        String requestName = "musicinsights_http_request_duration_seconds";
+        out.family(requestName, "histogram",
+                "Time from request arrival to response, by resource method and status class");
+        forEachRequest((route, method, status, snapshot) -> out.histogram(requestName, snapshot,
+                "route", route, "method", method, "status", status));
+        String requestQuantiles = "musicinsights_http_request_duration_quantile_seconds";
+        out.family(requestQuantiles, "gauge", "Percentiles of request latency since start");
+        forEachRequest((route, method, status, snapshot) -> out.quantiles(requestQuantiles, snapshot,
+                "route", route, "method", method, "status", status));
+
+        String upstreamName = "musicinsights_upstream_request_duration_seconds";
+        out.family(upstreamName, "histogram", "Time taken by calls to upstream services, by outcome");
+        for (Upstream upstream : upstreams.values()) {
+            out.histogram(upstreamName, upstream.success.snapshot(),
+                    "service", upstream.service, "operation", upstream.operation, "outcome", "success");
+            out.histogram(upstreamName, upstream.failure.snapshot(),
+                    "service", upstream.service, "operation", upstream.operation, "outcome", "failure");
+        }
+    }
+
+    private void forEachRequest(RequestVisitor visitor) {
+        forEachRequest(UNMATCHED, visitor);
+        for (Route route : routes.values()) {
+            forEachRequest(route, visitor);
+        }
+    }
+
+    private static void forEachRequest(Route route, RequestVisitor visitor) {
+        for (Map.Entry<String, AtomicReferenceArray<LatencyHistogram>> entry : route.byMethod.entrySet()) {
+            for (int i = 0; i < STATUS_CLASSES.length; i++) {
+                LatencyHistogram histogram = entry.getValue().get(i);
+                if (histogram != null) {
+                    visitor.visit(route.name, entry.getKey(), STATUS_CLASSES[i], histogram.snapshot());
+                }
+            }
+        }
+    }
+
+    private interface RequestVisitor {
+        void visit(String route, String method, String status, LatencyHistogram.Snapshot snapshot);
+    }
+
+    /**
+     * Histograms of one resource method, by HTTP method and status class.
+     */
+    private static final class Route {
+        final String name;
+        final Map<String, AtomicReferenceArray<LatencyHistogram>> byMethod = new ConcurrentHashMap<>();
+
+        Route(String name) {
+            this.name = name;
+        }
+
+        LatencyHistogram histogram(String httpMethod, int status) {
+            AtomicReferenceArray<LatencyHistogram> byStatus = byMethod.get(httpMethod);
+            if (byStatus == null) {
+                byStatus = byMethod.computeIfAbsent(httpMethod,
+                        method -> new AtomicReferenceArray<>(STATUS_CLASSES.length));
+            }
+            int statusClass = Math.min(STATUS_CLASSES.length, Math.max(1, status / 100)) - 1;
+            LatencyHistogram histogram = byStatus.get(statusClass);
+            if (histogram == null) {
+                byStatus.compareAndSet(statusClass, null, new LatencyHistogram());
+                histogram = byStatus.get(statusClass);
+            }
+            return histogram;
+        }
+    }
+
+    private static final class Upstream {
+        final String service;
+        final String operation;
+        final LatencyHistogram success = new LatencyHistogram();
+        final LatencyHistogram failure = new LatencyHistogram();
+
+        Upstream(String service, String operation) {
+            this.service = service;
+            this.operation = operation;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.musicinsights.metrics;
+
+/**
+ * Writes metrics in the Prometheus text exposition format, version 0.0.4.
+ *
+ * <p>Labels are given as alternating names and values.</p>
+ */
+public class PrometheusWriter {
+    /** Content type of the format. */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /** Upper bounds in seconds of the latency buckets exported for histograms. */
+    private static final double[] LATENCY_BOUNDS = {
+        0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60
+    };
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final StringBuilder out = new StringBuilder(8192);
+
+    /**
+     * Start a metric family.
+     *
+     * @param type {@code counter}, {@code gauge} or {@code histogram}
+     */
+    public PrometheusWriter family(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, double value, String... labels) {
+        out.append(name);
+        appendLabels(labels, null, null);
+        out.append(' ').append(format(value)).append('\n');
+        return this;
+    }
+
+    /**
+     * Write the buckets, sum and count of a histogram family started with {@link #family}.
+     */
+    public PrometheusWriter histogram(String name, LatencyHistogram.Snapshot snapshot, String... labels) {
+        for (double bound : LATENCY_BOUNDS) {
+            out.append(name).append("_bucket");
+            appendLabels(labels, "le", format(bound));
+            out.append(' ').append(snapshot.countAtOrBelow(bound)).append('\n');
+        }
+        out.append(name).append("_bucket");
+        appendLabels(labels, "le", "+Inf");
+        out.append(' ').append(snapshot.getCount()).append('\n');
+        sample(name + "_sum", snapshot.getSumSeconds(), labels);
+        sample(name + "_count", snapshot.getCount(), labels);
+        return this;
+    }
+
+    /**
+     * Write the 50th to 99.9th percentiles of a histogram to a gauge family started with {@link #family}.
+     */
+    public PrometheusWriter quantiles(String name, LatencyHistogram.Snapshot snapshot, String... labels) {
+        for (double quantile : QUANTILES) {
+            out.append(name);
+            appendLabels(labels, "quantile", format(quantile));
+            out.append(' ').append(format(snapshot.valueAtQuantile(quantile))).append('\n');
+        }
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void appendLabels(String[] labels, String extraName, String extraValue) {
+        if (labels.length == 0 && extraName == null) {
+            return;
+        }
+        out.append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(labels[i]).append("=\"");
+            escape(labels[i + 1]);
+            out.append('"');
+        }
+        if (extraName != null) {
+            if (labels.length > 0) {
+                out.append(',');
+            }
+            out.append(extraName).append("=\"").append(extraValue).append('"');
+        }
+        out.append('}');
+    }
+
+    private void escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
@@ -0,0 +1,302 @@
+package com.musicinsights.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.musicinsights.json.JsonWritable;
+import com.musicinsights.json.JsonWriters;
+
+import java.io.IOException;
+
+/**
+ * Audio features of a track, as reported by the Python analytics service or
+ * measured from an upload. The spectral statistics are only measured from
+ * uploads; they are NaN otherwise and left out of the JSON.
+ */
+public final class AudioFeatures implements JsonWritable {
+    private final double duration;
+    private final double tempo;
+    private final String key;
+    private final String mode;
+    private final int timeSignature;
+    private final double energy;
+    private final double danceability;
+    private final double valence;
+    private final double acousticness;
+    private final double instrumentalness;
+    private final double liveness;
+    private final double speechiness;
+    private final double loudness;
+    private final double spectralCentroid;
+    private final double spectralRolloff;
+    private final double spectralFlux;
+    private final double zeroCrossingRate;
+    private final float[] embedding;
+
+    private AudioFeatures(Builder builder) {
+        this.duration = builder.duration;
+        this.tempo = builder.tempo;
+        this.key = builder.key;
+        this.mode = builder.mode;
+        this.timeSignature = builder.timeSignature;
+        this.energy = builder.energy;
+        this.danceability = builder.danceability;
+        this.valence = builder.valence;
+        this.acousticness = builder.acousticness;
+        this.instrumentalness = builder.instrumentalness;
+        this.liveness = builder.liveness;
+        this.speechiness = builder.speechiness;
+        this.loudness = builder.loudness;
+        this.spectralCentroid = builder.spectralCentroid;
+        this.spectralRolloff = builder.spectralRolloff;
+        this.spectralFlux = builder.spectralFlux;
+        this.zeroCrossingRate = builder.zeroCrossingRate;
+        this.embedding = builder.embedding;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return Length in seconds
+     */
+    public double getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return Beats per minute
+     */
+    public double getTempo() {
+        return tempo;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return "major" or "minor"
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    public int getTimeSignature() {
+        return timeSignature;
+    }
+
+    public double getEnergy() {
+        return energy;
+    }
+
+    public double getDanceability() {
+        return danceability;
+    }
+
+    public double getValence() {
+        return valence;
+    }
+
+    public double getAcousticness() {
+        return acousticness;
+    }
+
+    public double getInstrumentalness() {
+        return instrumentalness;
+    }
+
+    public double getLiveness() {
+        return liveness;
+    }
+
+    public double getSpeechiness() {
+        return speechiness;
+    }
+
+    /**
+     * @return Loudness in dB
+     */
+    public double getLoudness() {
+        return loudness;
+    }
+
+    /**
+     * @return Mean spectral centroid in Hz, or NaN if not measured
+     */
+    public double getSpectralCentroid() {
+        return spectralCentroid;
+    }
+
+    /**
+     * @return Mean 85% spectral rolloff in Hz, or NaN if not measured
+     */
+    public double getSpectralRolloff() {
+        return spectralRolloff;
+    }
+
+    public double getSpectralFlux() {
+        return spectralFlux;
+    }
+
+    public double getZeroCrossingRate() {
+        return zeroCrossingRate;
+    }
+
+    /**
+     * @return Learned embedding of the track, or null if the service sent none; do not modify
+     */
+    public float[] getEmbedding() {
+        return embedding;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("duration", duration);
+        json.writeNumberField("tempo", tempo);
+        JsonWriters.writeString(json, "key", key);
+        JsonWriters.writeString(json, "mode", mode);
+        json.writeNumberField("time_signature", timeSignature);
+        json.writeNumberField("energy", energy);
+        json.writeNumberField("danceability", danceability);
+        json.writeNumberField("valence", valence);
+        json.writeNumberField("acousticness", acousticness);
+        json.writeNumberField("instrumentalness", instrumentalness);
+        json.writeNumberField("liveness", liveness);
+        json.writeNumberField("speechiness", speechiness);
+        json.writeNumberField("loudness", loudness);
+        JsonWriters.writeNumber(json, "spectralCentroid", spectralCentroid);
+        JsonWriters.writeNumber(json, "spectralRolloff", spectralRolloff);
+        JsonWriters.writeNumber(json, "spectralFlux", spectralFlux);
+        JsonWriters.writeNumber(json, "zeroCrossingRate", zeroCrossingRate);
+        if (embedding != null) {
+            json.writeArrayFieldStart("embedding");
+            for (float value : embedding) {
+                json.writeNumber(value);
+            }
+            json.writeEndArray();
+        }
+        json.writeEndObject();
+    }
+
+    /**
+     * Builds {@link AudioFeatures}; unset numbers are 0, and unset spectral statistics NaN.
+     */
+    public static final class Builder {
+        private double duration;
+        private double tempo;
+        private String key;
+        private String mode;
+        private int timeSignature;
+        private double energy;
+        private double danceability;
+        private double valence;
+        private double acousticness;
+        private double instrumentalness;
+        private double liveness;
+        private double speechiness;
+        private double loudness;
+        private double spectralCentroid = Double.NaN;
+        private double spectralRolloff = Double.NaN;
+        private double spectralFlux = Double.NaN;
+        private double zeroCrossingRate = Double.NaN;
+        private float[] embedding;
+
+        private Builder() {
+        }
+
+        public Builder duration(double duration) {
+            this.duration = duration;
+            return this;
+        }
+
+        public Builder tempo(double tempo) {
+            this.tempo = tempo;
+            return this;
+        }
+
+        public Builder key(String key) {
+            this.key = key;
+            return this;
+        }
+
+        public Builder mode(String mode) {
+            this.mode = mode;
+            return this;
+        }
+
+        public Builder timeSignature(int timeSignature) {
+            this.timeSignature = timeSignature;
+            return this;
+        }
+
+        public Builder energy(double energy) {
+            this.energy = energy;
+            return this;
+        }
+
+        public Builder danceability(double danceability) {
+            this.danceability = danceability;
+            return this;
+        }
+
+        public Builder valence(double valence) {
+            this.valence = valence;
+            return this;
+        }
+
+        public Builder acousticness(double acousticness) {
+            this.acousticness = acousticness;
+            return this;
+        }
+
+        public Builder instrumentalness(double instrumentalness) {
+            this.instrumentalness = instrumentalness;
+            return this;
+        }
+
+        public Builder liveness(double liveness) {
+            this.liveness = liveness;
+            return this;
+        }
+
+        public Builder speechiness(double speechiness) {
+            this.speechiness = speechiness;
+            return this;
+        }
+
+        public Builder loudness(double loudness) {
+            this.loudness = loudness;
+            return this;
+        }
+
+        public Builder spectralCentroid(double spectralCentroid) {
+            this.spectralCentroid = spectralCentroid;
+            return this;
+        }
+
+        public Builder spectralRolloff(double spectralRolloff) {
+            this.spectralRolloff = spectralRolloff;
+            return this;
+        }
+
+        public Builder spectralFlux(double spectralFlux) {
+            this.spectralFlux = spectralFlux;
+            return this;
+        }
+
+        public Builder zeroCrossingRate(double zeroCrossingRate) {
+            this.zeroCrossingRate = zeroCrossingRate;
+            return this;
+        }
+
+        public Builder embedding(float[] embedding) {
+            this.embedding = embedding;
+            return this;
+        }
+
+        public AudioFeatures build() {
+            return new AudioFeatures(this);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.musicinsights.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.musicinsights.json.JsonWritable;
+import com.musicinsights.json.JsonWriters;
+
+import java.io.IOException;
+
+/**
+ * Metadata read from an audio file: its descriptive tags and its stream format.
+ */
+public final class AudioMetadata implements JsonWritable {
+    private final String title;
+    private final String artist;
+    private final String album;
+    private final int year;
+    private final int durationSeconds;
+    private final int bitrateKbps;
+    private final int sampleRate;
+    private final int channels;
+
+    public AudioMetadata(String title, String artist, String album, int year, int durationSeconds,
+                         int bitrateKbps, int sampleRate, int channels) {
+        this.title = title;
+        this.artist = artist;
+        this.album = album;
+        this.year = year;
+        this.durationSeconds = durationSeconds;
+        this.bitrateKbps = bitrateKbps;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getArtist() {
+        return artist;
+    }
+
+    public String getAlbum() {
+        return album;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    /**
+     * @return Bitrate of the decoded stream in kbit/s
+     */
+    public int getBitrateKbps() {
+        return bitrateKbps;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        JsonWriters.writeString(json, "title", title);
+        JsonWriters.writeString(json, "artist", artist);
+        JsonWriters.writeString(json, "album", album);
+        json.writeNumberField("year", year);
+        json.writeNumberField("duration", durationSeconds);
+        json.writeNumberField("bitrate", bitrateKbps);
+        json.writeNumberField("sampleRate", sampleRate);
+        json.writeNumberField("channels", channels);
+        json.writeEndObject();
+    }
+}
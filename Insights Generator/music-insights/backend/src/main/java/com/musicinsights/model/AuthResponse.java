@@ -1,11 +1,16 @@
 package com.musicinsights.model;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.musicinsights.json.JsonWritable;
+import com.musicinsights.json.JsonWriters;
+
+import java.io.IOException;
 import java.util.List;
 
 /**
  * Represents an authentication response containing a JWT token.
  */
-public class AuthResponse {
+public class AuthResponse implements JsonWritable {
     private String token;
     private String tokenType = "Bearer";
     private String username;
@@ -52,4 +57,14 @@ public class AuthResponse {
     public void setRoles(List<String> roles) {
         this.roles = roles;
     }
+
+    @Override
+    public void writeJson(JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        JsonWriters.writeString(json, "token", token);
+        JsonWriters.writeString(json, "tokenType", tokenType);
+        JsonWriters.writeString(json, "username", username);
+        JsonWriters.writeStrings(json, "roles", roles);
+        json.writeEndObject();
+    }
 }
@@ -0,0 +1,36 @@
+package com.musicinsights.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.musicinsights.json.JsonWritable;
+
+import java.io.IOException;
+
+/**
+ * The body of an error response.
+ */
+public final class ErrorResponse implements JsonWritable {
+    private final String error;
+    private final long timestamp;
+
+    public ErrorResponse(String error) {
+        this.error = error;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("error", error);
+        // A string, as clients have always received it
+        json.writeStringField("timestamp", Long.toString(timestamp));
+        json.writeEndObject();
+    }
+}
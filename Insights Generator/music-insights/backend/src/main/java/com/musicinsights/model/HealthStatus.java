@@ -0,0 +1,42 @@
+package com.musicinsights.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.musicinsights.json.JsonWritable;
+
+import java.io.IOException;
+
+/**
+ * The body of a health check response.
+ */
+public final class HealthStatus implements JsonWritable {
+    private final String status;
+    private final String service;
+    private final long timestamp;
+
+    public HealthStatus(String status, String service) {
+        this.status = status;
+        this.service = service;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("status", status);
+        json.writeStringField("service", service);
+        json.writeNumberField("timestamp", timestamp);
+        json.writeEndObject();
+    }
+}
@@ -0,0 +1,38 @@
+package com.musicinsights.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.musicinsights.json.JsonWritable;
+
+import java.io.IOException;
+
+/**
+ * A predicted label, such as a genre or mood, with its confidence.
+ */
+public final class Prediction implements JsonWritable {
+    private final String label;
+    private final double confidence;
+
+    public Prediction(String label, double confidence) {
+        this.label = label;
+        this.confidence = confidence;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return Confidence from 0 to 1
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("label", label);
+        json.writeNumberField("confidence", confidence);
+        json.writeEndObject();
+    }
+}
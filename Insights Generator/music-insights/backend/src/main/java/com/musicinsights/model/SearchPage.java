@@ -0,0 +1,46 @@
+package com.musicinsights.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.musicinsights.json.JsonWritable;
+import com.musicinsights.json.JsonWriters;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The results of a track search.
+ */
+public final class SearchPage implements JsonWritable {
+    private final String query;
+    private final List<TrackAnalysis> results;
+
+    /**
+     * @param query The query as the client sent it
+     * @param results Matching tracks; not copied, as search results are shared and never modified
+     */
+    public SearchPage(String query, List<TrackAnalysis> results) {
+        this.query = query;
+        this.results = results;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public List<TrackAnalysis> getResults() {
+        return results;
+    }
+
+    public int getCount() {
+        return results.size();
+    }
+
+    @Override
+    public void writeJson(JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        JsonWriters.writeString(json, "query", query);
+        JsonWriters.writeArray(json, "results", results);
+        json.writeNumberField("count", results.size());
+        json.writeEndObject();
+    }
+}
@@ -0,0 +1,70 @@
+package com.musicinsights.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.musicinsights.json.JsonWritable;
+import com.musicinsights.json.JsonWriters;
+
+import java.io.IOException;
+
+/**
+ * A track similar to an analyzed one, with how closely it matches.
+ */
+public final class SimilarTrack implements JsonWritable {
+    private final String id;
+    private final String name;
+    private final String artist;
+    private final String album;
+    private final double match;
+
+    /**
+     * @param id The track ID, or null if the track is not in the catalog
+     */
+    public SimilarTrack(String id, String name, String artist, String album, double match) {
+        this.id = id;
+        this.name = name;
+        this.artist = artist;
+        this.album = album;
+        this.match = match;
+    }
+
+    /**
+     * @return A copy with another match score
+     */
+    public SimilarTrack withMatch(double match) {
+        return new SimilarTrack(id, name, artist, album, match);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getArtist() {
+        return artist;
+    }
+
+    public String getAlbum() {
+        return album;
+    }
+
+    /**
+     * @return Similarity from 0 to 1
+     */
+    public double getMatch() {
+        return match;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        JsonWriters.writeString(json, "id", id);
+        JsonWriters.writeString(json, "name", name);
+        JsonWriters.writeString(json, "artist", artist);
+        JsonWriters.writeString(json, "album", album);
+        json.writeNumberField("match", match);
+        json.writeEndObject();
+    }
+}
@@ -0,0 +1,42 @@
+package com.musicinsights.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.musicinsights.json.JsonWritable;
+import com.musicinsights.json.JsonWriters;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The tracks most similar to a track.
+ */
+public final class SimilarTracksPage implements JsonWritable {
+    private final String trackId;
+    private final List<SimilarTrack> similarTracks;
+
+    public SimilarTracksPage(String trackId, List<SimilarTrack> similarTracks) {
+        this.trackId = trackId;
+        this.similarTracks = similarTracks;
+    }
+
+    public String getTrackId() {
+        return trackId;
+    }
+
+    public List<SimilarTrack> getSimilarTracks() {
+        return similarTracks;
+    }
+
+    public int getCount() {
+        return similarTracks.size();
+    }
+
+    @Override
+    public void writeJson(JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        JsonWriters.writeString(json, "trackId", trackId);
+        JsonWriters.writeArray(json, "similarTracks", similarTracks);
+        json.writeNumberField("count", similarTracks.size());
+        json.writeEndObject();
+    }
+}
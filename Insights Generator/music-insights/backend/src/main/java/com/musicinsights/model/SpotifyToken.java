@@ -0,0 +1,66 @@
+package com.musicinsights.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.musicinsights.json.JsonWritable;
+import com.musicinsights.json.JsonWriters;
+
+import java.io.IOException;
+
+/**
+ * A Spotify access token, with field names as Spotify sends them.
+ *
+ * <p>A refresh may also return a new refresh token, which replaces the old one.
+ * It is kept for the server and never written to JSON.</p>
+ */
+public final class SpotifyToken implements JsonWritable {
+    private final String accessToken;
+    private final String tokenType;
+    private final long expiresIn;
+    private final String refreshToken;
+
+    /**
+     * @param expiresIn Seconds until the token expires
+     */
+    public SpotifyToken(String accessToken, String tokenType, long expiresIn) {
+        this(accessToken, tokenType, expiresIn, null);
+    }
+
+    /**
+     * @param expiresIn Seconds until the token expires
+     * @param refreshToken Refresh token issued with the access token, or null if the old one stays valid
+     */
+    public SpotifyToken(String accessToken, String tokenType, long expiresIn, String refreshToken) {
+        this.accessToken = accessToken;
+        this.tokenType = tokenType;
+        this.expiresIn = expiresIn;
+        this.refreshToken = refreshToken;
+    }
+
+    public String getAccessToken() {
+        return accessToken;
+    }
+
+    public String getTokenType() {
+        return tokenType;
+    }
+
+    public long getExpiresIn() {
+        return expiresIn;
+    }
+
+    /**
+     * @return The refresh token issued with this access token, or null if there is none
+     */
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        JsonWriters.writeString(json, "access_token", accessToken);
+        JsonWriters.writeString(json, "token_type", tokenType);
+        json.writeNumberField("expires_in", expiresIn);
+        json.writeEndObject();
+    }
+}
@@ -0,0 +1,35 @@
+package com.musicinsights.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.musicinsights.json.JsonWritable;
+
+import java.io.IOException;
+
+/**
+ * Whether an action succeeded, with a message for the user.
+ */
+public final class StatusMessage implements JsonWritable {
+    private final boolean success;
+    private final String message;
+
+    public StatusMessage(boolean success, String message) {
+        this.success = success;
+        this.message = message;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        json.writeBooleanField("success", success);
+        json.writeStringField("message", message);
+        json.writeEndObject();
+    }
+}
@@ -0,0 +1,36 @@
+package com.musicinsights.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.musicinsights.json.JsonWritable;
+import com.musicinsights.json.JsonWriters;
+
+import java.io.IOException;
+
+/**
+ * The result of validating a JWT token.
+ */
+public final class TokenValidation implements JsonWritable {
+    private final boolean valid;
+    private final String username;
+
+    public TokenValidation(boolean valid, String username) {
+        this.valid = valid;
+        this.username = username;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        json.writeBooleanField("valid", valid);
+        JsonWriters.writeString(json, "username", username);
+        json.writeEndObject();
+    }
+}
@@ -0,0 +1,201 @@
+package com.musicinsights.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.musicinsights.json.JsonWritable;
+import com.musicinsights.json.JsonWriters;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A track with its metadata, audio features and similar tracks. Search results
+ * and track details carry only the metadata; absent parts are left out of the
+ * JSON.
+ */
+public final class TrackAnalysis implements JsonWritable {
+    private final String id;
+    private final String title;
+    private final String artist;
+    private final String album;
+    private final List<String> genre;
+    private final int year;
+    private final String duration;
+    private final Integer popularity;
+    private final AudioFeatures audioFeatures;
+    private final List<SimilarTrack> similarTracks;
+
+    private TrackAnalysis(Builder builder) {
+        this.id = builder.id;
+        this.title = builder.title;
+        this.artist = builder.artist;
+        this.album = builder.album;
+        this.genre = builder.genre;
+        this.year = builder.year;
+        this.duration = builder.duration;
+        this.popularity = builder.popularity;
+        this.audioFeatures = builder.audioFeatures;
+        this.similarTracks = builder.similarTracks;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return A builder holding this analysis's values
+     */
+    public Builder toBuilder() {
+        return new Builder()
+                .id(id)
+                .title(title)
+                .artist(artist)
+                .album(album)
+                .genre(genre)
+                .year(year)
+                .duration(duration)
+                .popularity(popularity)
+                .audioFeatures(audioFeatures)
+                .similarTracks(similarTracks);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getArtist() {
+        return artist;
+    }
+
+    public String getAlbum() {
+        return album;
+    }
+
+    public List<String> getGenre() {
+        return genre;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * @return Length formatted as m:ss
+     */
+    public String getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return Popularity from 0 to 100, or null if unknown
+     */
+    public Integer getPopularity() {
+        return popularity;
+    }
+
+    public AudioFeatures getAudioFeatures() {
+        return audioFeatures;
+    }
+
+    public List<SimilarTrack> getSimilarTracks() {
+        return similarTracks;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        JsonWriters.writeString(json, "id", id);
+        JsonWriters.writeString(json, "title", title);
+        JsonWriters.writeString(json, "artist", artist);
+        JsonWriters.writeString(json, "album", album);
+        JsonWriters.writeStrings(json, "genre", genre);
+        json.writeNumberField("year", year);
+        JsonWriters.writeString(json, "duration", duration);
+        if (popularity != null) {
+            json.writeNumberField("popularity", popularity);
+        }
+        if (audioFeatures != null) {
+            json.writeFieldName("audioFeatures");
+            audioFeatures.writeJson(json);
+        }
+        JsonWriters.writeArray(json, "similarTracks", similarTracks);
+        json.writeEndObject();
+    }
+
+    /**
+     * Builds {@link TrackAnalysis}; lists are stored unmodifiable.
+     */
+    public static final class Builder {
+        private String id;
+        private String title;
+        private String artist;
+        private String album;
+        private List<String> genre;
+        private int year;
+        private String duration;
+        private Integer popularity;
+        private AudioFeatures audioFeatures;
+        private List<SimilarTrack> similarTracks;
+
+        private Builder() {
+        }
+
+        public Builder id(String id) {
+            this.id = id;
+            return this;
+        }
+
+        public Builder title(String title) {
+            this.title = title;
+            return this;
+        }
+
+        public Builder artist(String artist) {
+            this.artist = artist;
+            return this;
+        }
+
+        public Builder album(String album) {
+            this.album = album;
+            return this;
+        }
+
+        public Builder genre(List<String> genre) {
+            this.genre = genre != null ? Collections.unmodifiableList(genre) : null;
+            return this;
+        }
+
+        public Builder year(int year) {
+            this.year = year;
+            return this;
+        }
+
+        public Builder duration(String duration) {
+            this.duration = duration;
+            return this;
+        }
+
+        public Builder popularity(Integer popularity) {
+            this.popularity = popularity;
+            return this;
+        }
+
+        public Builder audioFeatures(AudioFeatures audioFeatures) {
+            this.audioFeatures = audioFeatures;
+            return this;
+        }
+
+        public Builder similarTracks(List<SimilarTrack> similarTracks) {
+            this.similarTracks = similarTracks != null ? Collections.unmodifiableList(similarTracks) : null;
+            return this;
+        }
+
+        public TrackAnalysis build() {
+            return new TrackAnalysis(this);
+        }
+    }
+}
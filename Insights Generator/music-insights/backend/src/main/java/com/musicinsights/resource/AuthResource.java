@@ -1,8 +1,17 @@
 package com.musicinsights.resource;
 
+import com.musicinsights.cache.SpotifyTokenCache;
+import com.musicinsights.client.SpotifyAccountsClient;
+import com.musicinsights.client.SpotifyWebApiClient;
 import com.musicinsights.model.AuthResponse;
+import com.musicinsights.model.ErrorResponse;
+import com.musicinsights.model.HealthStatus;
 import com.musicinsights.model.LoginRequest;
+import com.musicinsights.model.SpotifyToken;
+import com.musicinsights.model.StatusMessage;
+import com.musicinsights.model.TokenValidation;
 import com.musicinsights.service.AuthenticationService;
+import com.musicinsights.store.RefreshTokenStore;
 import com.musicinsights.config.ApplicationConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,9 +25,9 @@ import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.Form;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Base64;
+import java.util.concurrent.CompletionException;
 
 /**
  * REST API resource for authentication endpoints.
@@ -31,14 +40,22 @@ public class AuthResource {
     
     private final AuthenticationService authService;
     private final ApplicationConfig config;
+    private final SpotifyAccountsClient spotifyAccounts;
+    private final SpotifyWebApiClient spotifyApi;
+    private final SpotifyTokenCache spotifyTokens;
+    private final RefreshTokenStore refreshTokens;
     private final Client httpClient = ClientBuilder.newClient();
-    // In-memory store: spotify_user_id -> refresh_token
-    private static final Map<String, String> SPOTIFY_REFRESH_TOKENS = new HashMap<>();
     
     @Inject
-    public AuthResource(AuthenticationService authService, ApplicationConfig config) {
+    public AuthResource(AuthenticationService authService, ApplicationConfig config,
+                        SpotifyAccountsClient spotifyAccounts, SpotifyWebApiClient spotifyApi,
+                        SpotifyTokenCache spotifyTokens, RefreshTokenStore refreshTokens) {
         this.authService = authService;
         this.config = config;
+        this.spotifyAccounts = spotifyAccounts;
+        this.spotifyApi = spotifyApi;
+        this.spotifyTokens = spotifyTokens;
+        this.refreshTokens = refreshTokens;
     }
     
     /**
@@ -106,11 +123,7 @@ public class AuthResource {
             String token = authHeader.substring("Bearer ".length()).trim();
             String username = authService.validateToken(token);
             
-            Map<String, Object> response = new HashMap<>();
-            response.put("valid", true);
-            response.put("username", username);
-            
-            return Response.ok(response).build();
+            return Response.ok(new TokenValidation(true, username)).build();
             
         } catch (SecurityException e) {
             logger.error("Token validation failed: {}", e.getMessage());
@@ -135,11 +148,7 @@ public class AuthResource {
     public Response logout() {
         logger.info("Logout request");
         
-        Map<String, Object> response = new HashMap<>();
-        response.put("success", true);
-        response.put("message", "Logged out successfully");
-        
-        return Response.ok(response).build();
+        return Response.ok(new StatusMessage(true, "Logged out successfully")).build();
     }
     
     // --- Spotify OAuth ---
@@ -151,7 +160,7 @@ public class AuthResource {
         String scope = "user-read-email user-read-private user-top-read user-read-recently-played playlist-read-private user-library-read";        String state = redirectAfter != null ? redirectAfter : "";
         logger.info("Spotify login init - redirectUri from config: {}", redirectUri);
 
-        String authorizeUrl = UriBuilder.fromUri("https://accounts.spotify.com/authorize")
+        String authorizeUrl = UriBuilder.fromUri(spotifyAccounts.getAccountsUrl() + "/authorize")
                 .queryParam("client_id", clientId)
                 .queryParam("response_type", "code")
                 .queryParam("redirect_uri", redirectUri)
@@ -184,7 +193,7 @@ public class AuthResource {
 
             String basic = Base64.getEncoder().encodeToString((config.getSpotifyClientId() + ":" + config.getSpotifyClientSecret()).getBytes());
 
-            Response tokenResp = httpClient.target("https://accounts.spotify.com/api/token")
+            Response tokenResp = httpClient.target(spotifyAccounts.getTokenUrl())
                     .request(MediaType.APPLICATION_JSON)
                     .header("Authorization", "Basic " + basic)
                     .post(Entity.entity(form, MediaType.APPLICATION_FORM_URLENCODED_TYPE));
@@ -203,7 +212,7 @@ public class AuthResource {
             String refreshToken = (String) tokenJson.get("refresh_token");
 
             // Fetch user profile
-            Response meResp = httpClient.target("https://api.spotify.com/v1/me")
+            Response meResp = httpClient.target(spotifyApi.getProfileUrl())
                     .request(MediaType.APPLICATION_JSON)
                     .header("Authorization", "Bearer " + accessToken)
                     .get();
@@ -224,8 +233,11 @@ public class AuthResource {
             }
 
             if (refreshToken != null && !refreshToken.isEmpty()) {
-                SPOTIFY_REFRESH_TOKENS.put(spotifyUserId, refreshToken);
+                refreshTokens.put(spotifyUserId, refreshToken);
             }
+            Object expiresIn = tokenJson.get("expires_in");
+            spotifyTokens.put(spotifyUserId, new SpotifyToken(accessToken, (String) tokenJson.get("token_type"),
+                    expiresIn instanceof Number ? ((Number) expiresIn).longValue() : 0));
 
             String appJwt = authService.issueToken(spotifyUserId);
 
@@ -266,39 +278,29 @@ public class AuthResource {
                         .build();
             }
 
-            String refreshToken = SPOTIFY_REFRESH_TOKENS.get(spotifyUserId);
+            String refreshToken = refreshTokens.get(spotifyUserId);
             if (refreshToken == null) {
                 return Response.status(Response.Status.UNAUTHORIZED)
                         .entity(createErrorResponse("No Spotify link for this user"))
                         .build();
             }
 
-            Form form = new Form()
-                    .param("grant_type", "refresh_token")
-                    .param("refresh_token", refreshToken);
-
-            String basic = Base64.getEncoder().encodeToString((config.getSpotifyClientId() + ":" + config.getSpotifyClientSecret()).getBytes());
-
-            Response tokenResp = httpClient.target("https://accounts.spotify.com/api/token")
-                    .request(MediaType.APPLICATION_JSON)
-                    .header("Authorization", "Basic " + basic)
-                    .post(Entity.entity(form, MediaType.APPLICATION_FORM_URLENCODED_TYPE));
-
-            if (tokenResp.getStatus() != 200) {
-                String errBody;
-                try { errBody = tokenResp.readEntity(String.class); } catch (Exception ex) { errBody = "<no body>"; }
-                logger.error("Spotify refresh failed. Status: {} Body: {}", tokenResp.getStatus(), errBody);
-                return Response.status(Response.Status.BAD_GATEWAY)
-                        .entity(createErrorResponse("Failed to refresh Spotify token"))
-                        .build();
-            }
-
-            Map tokenJson = tokenResp.readEntity(Map.class);
-            Map<String, Object> out = new HashMap<>();
-            out.put("access_token", tokenJson.get("access_token"));
-            out.put("token_type", tokenJson.get("token_type"));
-            out.put("expires_in", tokenJson.get("expires_in"));
-            return Response.ok(out).build();
+            // Served from the cache until shortly before it expires; concurrent refreshes share one exchange
+            SpotifyToken token = spotifyTokens.get(spotifyUserId, id -> spotifyAccounts.refresh(refreshToken)
+                    .thenApply(refreshed -> {
+                        // Spotify may rotate the refresh token; the old one stops working
+                        String rotated = refreshed.getRefreshToken();
+                        if (rotated != null && !rotated.equals(refreshToken)) {
+                            refreshTokens.put(id, rotated);
+                        }
+                        return refreshed;
+                    })).join();
+            return Response.ok(token).build();
+        } catch (CompletionException e) {
+            logger.error("Error refreshing Spotify access token: {}", e.getCause().getMessage());
+            return Response.status(Response.Status.BAD_GATEWAY)
+                    .entity(createErrorResponse("Failed to refresh Spotify token"))
+                    .build();
         } catch (Exception e) {
             logger.error("Error providing Spotify access token", e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -315,20 +317,12 @@ public class AuthResource {
     @GET
     @Path("/health")
     public Response health() {
-        Map<String, Object> response = new HashMap<>();
-        response.put("status", "healthy");
-        response.put("service", "authentication");
-        response.put("timestamp", System.currentTimeMillis());
-        
-        return Response.ok(response).build();
+        return Response.ok(new HealthStatus("healthy", "authentication")).build();
     }
     
     // Helper methods
     
-    private Map<String, String> createErrorResponse(String message) {
-        Map<String, String> error = new HashMap<>();
-        error.put("error", message);
-        error.put("timestamp", String.valueOf(System.currentTimeMillis()));
-        return error;
+    private ErrorResponse createErrorResponse(String message) {
+        return new ErrorResponse(message);
     }
 }
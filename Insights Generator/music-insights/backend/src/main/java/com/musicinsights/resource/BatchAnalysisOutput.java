@@ -0,0 +1,250 @@
+package com.musicinsights.resource;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.musicinsights.audio.UnsupportedAudioFormatException;
+import com.musicinsights.concurrent.AdmissionController;
+import com.musicinsights.json.JsonWritable;
+import com.musicinsights.json.JsonWriters;
+import com.musicinsights.model.TrackAnalysis;
+import com.musicinsights.service.MusicService;
+import com.musicinsights.spool.UploadTooLargeException;
+import org.glassfish.jersey.media.multipart.FormDataBodyPart;
+import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Analyzes the files of a batch upload concurrently and writes one JSON line per
+ * file as soon as its analysis completes, in completion order.
+ *
+ * <p>At most {@code window} files of the batch are in flight at a time, so one
+ * large batch cannot fill the shared analysis queue. Each line carries the file's
+ * index in the request, so clients can match results to files.</p>
+ *
+ * <p>The batch's admission permit is completed once the output is written and
+ * every analysis that started has finished, including ones cancelled because
+ * the client went away, since cancelling does not stop CPU-bound work.</p>
+ */
+class BatchAnalysisOutput implements StreamingOutput {
+    private static final Logger logger = LoggerFactory.getLogger(BatchAnalysisOutput.class);
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final List<FormDataBodyPart> files;
+    private final MusicService musicService;
+    private final ExecutorService executor;
+    private final int window;
+    private final FileValidator validator;
+    private final AdmissionController.Permit permit;
+    // The writer and each started analysis hold the permit until they are done
+    private final AtomicInteger holders = new AtomicInteger(1);
+
+    /**
+     * Checks a file before it is analyzed.
+     */
+    interface FileValidator {
+        /**
+         * @return Why the file cannot be analyzed, or null if it can
+         */
+        UploadRejection validate(String fileName, long fileSize, String contentType);
+    }
+
+    /**
+     * @param permit Admission permit of the batch, or null if it holds none
+     */
+    BatchAnalysisOutput(List<FormDataBodyPart> files, MusicService musicService, ExecutorService executor,
+                        int window, FileValidator validator, AdmissionController.Permit permit) {
+        this.files = files;
+        this.musicService = musicService;
+        this.executor = executor;
+        this.window = Math.max(1, window);
+        this.validator = validator;
+        this.permit = permit;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        CompletionService<Line> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Line>> pending = new ArrayList<>();
+        List<Task> tasks = new ArrayList<>();
+        int next = 0;
+        int running = 0;
+        int succeeded = 0;
+        long start = System.nanoTime();
+        try {
+            while (next < files.size() || running > 0) {
+                while (next < files.size() && running < window) {
+                    Task task = new Task(next);
+                    tasks.add(task);
+                    try {
+                        pending.add(completion.submit(task));
+                        running++;
+                    } catch (RejectedExecutionException e) {
+                        if (running > 0) {
+                            // Pool is full; wait for one of this batch's files to finish
+                            task.discard();
+                            break;
+                        }
+                        // Pool is full of other requests' work; analyze on this thread
+                        succeeded += writeLine(output, task.call());
+                    }
+                    next++;
+                }
+                if (running == 0) {
+                    continue;
+                }
+                Line line;
+                try {
+                    line = completion.take().get();
+                } catch (ExecutionException e) {
+                    // analyze() reports failures as lines; anything else is a bug
+                    throw new IllegalStateException("Batch analysis task failed", e.getCause());
+                }
+                running--;
+                succeeded += writeLine(output, line);
+            }
+            logger.info("Batch of {} files analyzed ({} succeeded) in {} ms", files.size(), succeeded,
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch analysis interrupted", e);
+        } finally {
+            // Stop remaining work if the client went away or the batch failed
+            for (Future<Line> future : pending) {
+                future.cancel(true);
+            }
+            for (Task task : tasks) {
+                task.discard();
+            }
+            release();
+        }
+    }
+
+    private void release() {
+        if (holders.decrementAndGet() == 0 && permit != null) {
+            permit.complete();
+        }
+    }
+
+    /**
+     * @return 1 if the line reports a successful analysis, else 0
+     */
+    private int writeLine(OutputStream output, Line line) throws IOException {
+        try (JsonGenerator json = JsonWriters.generator(output)) {
+            line.writeJson(json);
+        }
+        output.write(NEWLINE);
+        output.flush();
+        return line.analysis != null ? 1 : 0;
+    }
+
+    private Line analyze(int index, FormDataBodyPart part) {
+        FormDataContentDisposition disposition = part.getFormDataContentDisposition();
+        String fileName = disposition.getFileName();
+        long fileSize = disposition.getSize();
+        String contentType = part.getMediaType() != null ? part.getMediaType().toString() : null;
+
+        UploadRejection rejection = validator.validate(fileName, fileSize, contentType);
+        if (rejection != null) {
+            return new Line(index, fileName, null, rejection.getMessage());
+        }
+        try (InputStream in = part.getValueAs(InputStream.class)) {
+            TrackAnalysis analysis = musicService.analyzeAudio(in, fileName, fileSize, contentType);
+            return new Line(index, fileName, analysis, null);
+        } catch (Exception e) {
+            UnsupportedAudioFormatException unsupported = UnsupportedAudioFormatException.causeOf(e);
+            if (unsupported != null) {
+                return new Line(index, fileName, null, unsupported.getMessage());
+            }
+            UploadTooLargeException tooLarge = UploadTooLargeException.causeOf(e);
+            if (tooLarge != null) {
+                return new Line(index, fileName, null, tooLarge.getMessage());
+            }
+            logger.error("Error analyzing batch file {}: {}", fileName, e.getMessage());
+            return new Line(index, fileName, null, "Failed to analyze file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The analysis of one file, which holds the permit from when it is created
+     * until it finishes or is discarded before it starts.
+     */
+    private final class Task implements Callable<Line> {
+        private final int index;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        Task(int index) {
+            this.index = index;
+            holders.incrementAndGet();
+        }
+
+        @Override
+        public Line call() {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                return analyze(index, files.get(index));
+            } finally {
+                release();
+            }
+        }
+
+        /**
+         * Drop the task if it has not started.
+         */
+        void discard() {
+            if (claimed.compareAndSet(false, true)) {
+                release();
+            }
+        }
+    }
+
+    /**
+     * The result line of one file: its analysis or an error.
+     */
+    private static final class Line implements JsonWritable {
+        final int index;
+        final String fileName;
+        final TrackAnalysis analysis;
+        final String error;
+
+        Line(int index, String fileName, TrackAnalysis analysis, String error) {
+            this.index = index;
+            this.fileName = fileName;
+            this.analysis = analysis;
+            this.error = error;
+        }
+
+        @Override
+        public void writeJson(JsonGenerator json) throws IOException {
+            json.writeStartObject();
+            json.writeNumberField("index", index);
+            JsonWriters.writeString(json, "fileName", fileName);
+            if (analysis != null) {
+                json.writeStringField("status", "ok");
+                json.writeFieldName("analysis");
+                analysis.writeJson(json);
+            } else {
+                json.writeStringField("status", "error");
+                json.writeStringField("error", error);
+            }
+            json.writeEndObject();
+        }
+    }
+}
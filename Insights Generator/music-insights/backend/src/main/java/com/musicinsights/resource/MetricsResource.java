@@ -0,0 +1,149 @@
+package com.musicinsights.resource;
+
+import com.musicinsights.cache.AnalysisCache;
+import com.musicinsights.cache.SearchCache;
+import com.musicinsights.cache.SpotifyTokenCache;
+import com.musicinsights.cache.VerifiedTokenCache;
+import com.musicinsights.client.PythonAnalyticsClient;
+import com.musicinsights.client.SpotifyWebApiClient;
+import com.musicinsights.concurrent.AdmissionController;
+import com.musicinsights.concurrent.CircuitBreaker;
+import com.musicinsights.concurrent.SingleFlight;
+import com.musicinsights.metrics.MetricsRegistry;
+import com.musicinsights.metrics.PrometheusWriter;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import java.util.Locale;
+
+/**
+ * Prometheus scrape endpoint: request and upstream latency, requests in
+ * flight, upload admission, cache hits and misses, and the state of the Python
+ * service's circuit breaker and request coalescing.
+ *
+ * <p>Every value is read from counters the request path updates without
+ * locking.</p>
+ */
+@Path("/metrics")
+public class MetricsResource {
+    private final MetricsRegistry metrics;
+    private final AnalysisCache analysisCache;
+    private final SearchCache searchCache;
+    private final VerifiedTokenCache tokenCache;
+    private final SpotifyTokenCache spotifyTokens;
+    private final PythonAnalyticsClient pythonClient;
+    private final SpotifyWebApiClient spotifyApi;
+    private final AdmissionController admission;
+
+    @Inject
+    public MetricsResource(MetricsRegistry metrics, AnalysisCache analysisCache, SearchCache searchCache,
+                           VerifiedTokenCache tokenCache, SpotifyTokenCache spotifyTokens,
+                           PythonAnalyticsClient pythonClient, SpotifyWebApiClient spotifyApi,
+                           AdmissionController admission) {
+        this.metrics = metrics;
+        this.analysisCache = analysisCache;
+        this.searchCache = searchCache;
+        this.tokenCache = tokenCache;
+        this.spotifyTokens = spotifyTokens;
+        this.pythonClient = pythonClient;
+        this.spotifyApi = spotifyApi;
+        this.admission = admission;
+    }
+
+    @GET
+    @Produces(PrometheusWriter.CONTENT_TYPE)
+    public Response scrape() {
+        PrometheusWriter out = new PrometheusWriter();
+        metrics.write(out);
+        writeAdmission(out);
+        writeCaches(out);
+        writeUpstreams(out);
+        return Response.ok(out.toString(), PrometheusWriter.CONTENT_TYPE).build();
+    }
+
+    private void writeAdmission(PrometheusWriter out) {
+        out.family("musicinsights_admission_limit", "gauge", "Upload analyses currently allowed at once");
+        out.sample("musicinsights_admission_limit", admission.getLimit());
+        out.family("musicinsights_admission_in_flight", "gauge", "Upload analyses admitted and not yet finished");
+        out.sample("musicinsights_admission_in_flight", admission.getInFlight());
+        out.family("musicinsights_admission_in_flight_bytes", "gauge", "Bytes of those uploads");
+        out.sample("musicinsights_admission_in_flight_bytes", admission.getInFlightBytes());
+        out.family("musicinsights_admission_queued", "gauge", "Uploads waiting for admission");
+        out.sample("musicinsights_admission_queued", admission.getQueued());
+
+        String decisions = "musicinsights_admission_total";
+        out.family(decisions, "counter", "Uploads by how admission went");
+        out.sample(decisions, admission.getAdmittedCount(), "result", "admitted");
+        out.sample(decisions, admission.getQueuedCount(), "result", "queued");
+        out.sample(decisions, admission.getShedCount(), "result", "shed");
+        out.sample(decisions, admission.getAbandonedCount(), "result", "abandoned");
+    }
+
+    private void writeCaches(PrometheusWriter out) {
+        String lookups = "musicinsights_cache_lookups_total";
+        out.family(lookups, "counter", "Cache lookups by result");
+        out.sample(lookups, analysisCache.getHitCount(), "cache", "analysis", "result", "hit");
+        out.sample(lookups, analysisCache.getDiskHitCount(), "cache", "analysis", "result", "disk_hit");
+        out.sample(lookups, analysisCache.getMissCount(), "cache", "analysis", "result", "miss");
+        out.sample(lookups, searchCache.getHitCount(), "cache", "search", "result", "hit");
+        out.sample(lookups, searchCache.getStaleHitCount(), "cache", "search", "result", "stale_hit");
+        out.sample(lookups, searchCache.getStaleIfErrorCount(), "cache", "search", "result", "stale_if_error");
+        out.sample(lookups, searchCache.getMissCount(), "cache", "search", "result", "miss");
+        out.sample(lookups, tokenCache.getHitCount(), "cache", "verified_token", "result", "hit");
+        out.sample(lookups, tokenCache.getMissCount(), "cache", "verified_token", "result", "miss");
+        out.sample(lookups, spotifyTokens.getHitCount(), "cache", "spotify_token", "result", "hit");
+        out.sample(lookups, spotifyTokens.getMissCount(), "cache", "spotify_token", "result", "miss");
+
+        String entries = "musicinsights_cache_entries";
+        out.family(entries, "gauge", "Entries held by each cache");
+        out.sample(entries, analysisCache.getMemoryEntryCount(), "cache", "analysis");
+        out.sample(entries, searchCache.size(), "cache", "search");
+        out.sample(entries, tokenCache.size(), "cache", "verified_token");
+        out.sample(entries, spotifyTokens.size(), "cache", "spotify_token");
+
+        String evictions = "musicinsights_cache_evictions_total";
+        out.family(evictions, "counter", "Entries dropped to stay within a cache's budget");
+        out.sample(evictions, analysisCache.getEvictionCount(), "cache", "analysis");
+        out.sample(evictions, searchCache.getEvictionCount(), "cache", "search");
+
+        out.family("musicinsights_search_cache_refreshes_total", "counter",
+                "Background refreshes of stale search results");
+        out.sample("musicinsights_search_cache_refreshes_total", searchCache.getRefreshCount());
+    }
+
+    private void writeUpstreams(PrometheusWriter out) {
+        String inFlight = "musicinsights_upstream_calls_in_flight";
+        out.family(inFlight, "gauge", "Calls to upstream services in flight");
+        out.sample(inFlight, pythonClient.getCallsInFlight(), "service", "python");
+
+        CircuitBreaker breaker = pythonClient.getCircuitBreaker();
+        CircuitBreaker.State state = breaker.getState();
+        String breakerState = "musicinsights_circuit_breaker_state";
+        out.family(breakerState, "gauge", "1 for the state a circuit breaker is in");
+        for (CircuitBreaker.State candidate : CircuitBreaker.State.values()) {
+            out.sample(breakerState, candidate == state ? 1 : 0,
+                    "service", "python", "state", candidate.name().toLowerCase(Locale.ROOT));
+        }
+        out.family("musicinsights_circuit_breaker_rejected_total", "counter",
+                "Calls refused while a circuit breaker was open");
+        out.sample("musicinsights_circuit_breaker_rejected_total", breaker.getRejectedCount(), "service", "python");
+
+        String flights = "musicinsights_coalesced_calls_total";
+        out.family(flights, "counter", "Calls made, and calls saved by joining one already in flight");
+        writeFlights(out, flights, "python_search", pythonClient.getSearchFlights());
+        writeFlights(out, flights, "spotify_token_refresh", spotifyTokens.getRefreshFlights());
+
+        String spotify = "musicinsights_spotify_api_requests_total";
+        out.family(spotify, "counter", "Spotify Web API requests sent, and those answered with 429");
+        out.sample(spotify, spotifyApi.getRequestCount(), "result", "sent");
+        out.sample(spotify, spotifyApi.getThrottledCount(), "result", "throttled");
+    }
+
+    private static void writeFlights(PrometheusWriter out, String name, String flight, SingleFlight<?, ?> flights) {
+        out.sample(name, flights.getCallCount(), "flight", flight, "result", "called");
+        out.sample(name, flights.getSharedCount(), "flight", flight, "result", "shared");
+    }
+}
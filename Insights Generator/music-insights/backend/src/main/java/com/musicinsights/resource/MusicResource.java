@@ -1,22 +1,62 @@
 package com.musicinsights.resource;
 
+import com.musicinsights.audio.UnsupportedAudioFormatException;
+import com.musicinsights.concurrent.AdmissionController;
+import com.musicinsights.concurrent.AnalysisExecutor;
+import com.musicinsights.concurrent.BoundedExecutor;
+import com.musicinsights.concurrent.LookupExecutor;
+import com.musicinsights.config.TuningConfig;
+import com.musicinsights.filter.AdmissionFilter;
+import com.musicinsights.filter.Admitted;
+import com.musicinsights.model.ErrorResponse;
+import com.musicinsights.model.HealthStatus;
+import com.musicinsights.model.SearchPage;
+import com.musicinsights.model.SimilarTrack;
+import com.musicinsights.model.SimilarTracksPage;
+import com.musicinsights.model.TrackAnalysis;
 import com.musicinsights.service.MusicService;
+import com.musicinsights.spool.UploadTooLargeException;
+import org.glassfish.jersey.media.multipart.FormDataBodyPart;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
+import org.glassfish.jersey.media.multipart.FormDataMultiPart;
 import org.glassfish.jersey.media.multipart.FormDataParam;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.InputStream;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * REST API resource for music analysis endpoints.
+ *
+ * <p>Uploads, URL analysis and search run asynchronously: the HTTP worker thread
+ * hands the request to a bounded pool and returns at once. A request that finds
+ * its pool full gets 503, and one that runs past its timeout gets 504.</p>
+ *
+ * <p>Uploads are first admitted by the {@link AdmissionController}, which
+ * budgets the bytes and number of analyses in flight. The {@link AdmissionFilter}
+ * asks for admission before the body is read, so an upload it sheds gets 503
+ * with a {@code Retry-After} sized to the work ahead of it without being read.
+ * The permit is held until the analysis finishes, even past its request's
+ * timeout.</p>
  */
 @Path("/analyze")
 @Produces(MediaType.APPLICATION_JSON)
@@ -24,19 +64,44 @@ public class MusicResource {
     private static final Logger logger = LoggerFactory.getLogger(MusicResource.class);
     
     private final MusicService musicService;
+    private final AnalysisExecutor analysisExecutor;
+    private final LookupExecutor lookupExecutor;
+    private final long maxFileBytes;
+    private final int maxBatchFiles;
+    private final int uploadTimeoutSeconds;
+    private final int urlTimeoutSeconds;
+    private final int searchTimeoutSeconds;
     
-    // Maximum file size: 10MB
-    private static final long MAX_FILE_SIZE = 10 * 1024 * 1024;
+    // Newline-delimited JSON, one document per line
+    private static final String NDJSON = "application/x-ndjson";
     
-    // Allowed audio file types
+    // Audio file types the in-process analyzer decodes
     private static final String[] ALLOWED_TYPES = {
-        "audio/mpeg", "audio/mp3", "audio/wav", "audio/ogg", 
-        "audio/flac", "audio/m4a", "audio/aac"
+        "audio/wav", "audio/x-wav", "audio/wave", "audio/vnd.wave"
     };
     
+    // Compressed audio, which is turned away before it is read
+    private static final String[] COMPRESSED_TYPES = {
+        "audio/mpeg", "audio/mp3", "audio/ogg", "audio/flac",
+        "audio/x-flac", "audio/m4a", "audio/x-m4a", "audio/mp4", "audio/aac"
+    };
+    private static final String[] COMPRESSED_EXTENSIONS = {
+        ".mp3", ".ogg", ".flac", ".m4a", ".aac"
+    };
+    private static final String UNSUPPORTED_FORMAT =
+            "Unsupported audio format: only uncompressed WAV files can be analyzed";
+    
     @Inject
-    public MusicResource(MusicService musicService) {
+    public MusicResource(MusicService musicService, AnalysisExecutor analysisExecutor,
+                         LookupExecutor lookupExecutor, TuningConfig tuning) {
         this.musicService = musicService;
+        this.analysisExecutor = analysisExecutor;
+        this.lookupExecutor = lookupExecutor;
+        this.maxFileBytes = tuning.getUploadMaxFileBytes();
+        this.maxBatchFiles = tuning.getBatchMaxFiles();
+        this.uploadTimeoutSeconds = tuning.getUploadTimeoutSeconds();
+        this.urlTimeoutSeconds = tuning.getUrlAnalysisTimeoutSeconds();
+        this.searchTimeoutSeconds = tuning.getSearchTimeoutSeconds();
     }
     
     /**
@@ -44,15 +109,24 @@ public class MusicResource {
      *
      * @param fileInputStream The input stream of the uploaded file
      * @param fileMetaData The metadata of the uploaded file
-     * @return Analysis results
+     * @param requestContext Holds the admission permit
+     * @param asyncResponse Resumed with the analysis results
      */
     @POST
     @Path("/upload")
     @Consumes(MediaType.MULTIPART_FORM_DATA)
-    public Response uploadAndAnalyze(
+    @Admitted
+    public void uploadAndAnalyze(
             @FormDataParam("file") InputStream fileInputStream,
-            @FormDataParam("file") FormDataContentDisposition fileMetaData) {
-        
+            @FormDataParam("file") FormDataContentDisposition fileMetaData,
+            @Context ContainerRequestContext requestContext,
+            @Suspended AsyncResponse asyncResponse) {
+        AdmissionController.Permit permit = AdmissionFilter.takePermit(requestContext);
+        resumeAsync(asyncResponse, analysisExecutor, uploadTimeoutSeconds, "File analysis", permit,
+                () -> analyzeUpload(fileInputStream, fileMetaData));
+    }
+
+    private Response analyzeUpload(InputStream fileInputStream, FormDataContentDisposition fileMetaData) {
         logger.info("File upload request: {}", fileMetaData != null ? fileMetaData.getFileName() : "unknown");
         
         try {
@@ -67,28 +141,37 @@ public class MusicResource {
             long fileSize = fileMetaData.getSize();
             String contentType = fileMetaData.getType();
             
-            // Validate file size
-            if (fileSize > MAX_FILE_SIZE) {
-                return Response.status(Response.Status.BAD_REQUEST)
-                        .entity(createErrorResponse("File size exceeds maximum limit of 10MB"))
-                        .build();
-            }
-            
-            // Validate file type
-            if (!isValidAudioFile(fileName, contentType)) {
-                return Response.status(Response.Status.BAD_REQUEST)
-                        .entity(createErrorResponse("Invalid file type. Only audio files are allowed"))
+            // Validate file size and type
+            UploadRejection rejection = validateUpload(fileName, fileSize, contentType);
+            if (rejection != null) {
+                return Response.status(rejection.getStatus())
+                        .entity(createErrorResponse(rejection.getMessage()))
                         .build();
             }
             
             // Analyze the audio file
-            Map<String, Object> analysis = musicService.analyzeAudio(
+            TrackAnalysis analysis = musicService.analyzeAudio(
                     fileInputStream, fileName, fileSize, contentType);
             
             logger.info("File analyzed successfully: {}", fileName);
             return Response.ok(analysis).build();
             
         } catch (Exception e) {
+            UnsupportedAudioFormatException unsupported = UnsupportedAudioFormatException.causeOf(e);
+            if (unsupported != null) {
+                logger.info("Rejected upload {}: {}", fileMetaData.getFileName(), unsupported.getMessage());
+                return Response.status(Response.Status.UNSUPPORTED_MEDIA_TYPE)
+                        .entity(createErrorResponse(unsupported.getMessage()))
+                        .build();
+            }
+            UploadTooLargeException tooLarge = UploadTooLargeException.causeOf(e);
+            if (tooLarge != null) {
+                // The declared size was missing or understated; the spooler counted the bytes
+                logger.info("Rejected upload {}: {}", fileMetaData.getFileName(), tooLarge.getMessage());
+                return Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE)
+                        .entity(createErrorResponse(tooLarge.getMessage()))
+                        .build();
+            }
             logger.error("Error analyzing uploaded file: {}", e.getMessage(), e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(createErrorResponse("Failed to analyze file: " + e.getMessage()))
@@ -96,6 +179,58 @@ public class MusicResource {
         }
     }
 
+    /**
+     * Upload and analyze many audio files at once.
+     *
+     * <p>Files are analyzed concurrently on the shared analysis pool. The response is
+     * newline-delimited JSON with one line per file, written as soon as that file's
+     * analysis completes: {@code {"index", "fileName", "status": "ok", "analysis"}}
+     * or {@code {"index", "fileName", "status": "error", "error"}}.</p>
+     *
+     * <p>The batch holds one admission permit until its last line is written.</p>
+     *
+     * @param multiPart The multipart body; every part with a file name is analyzed
+     * @param requestContext Holds the admission permit
+     * @return Streamed analysis results
+     */
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces({NDJSON, MediaType.APPLICATION_JSON})
+    @Admitted
+    public Response analyzeBatch(FormDataMultiPart multiPart, @Context ContainerRequestContext requestContext) {
+        List<FormDataBodyPart> files = new ArrayList<>();
+        if (multiPart != null) {
+            for (List<FormDataBodyPart> parts : multiPart.getFields().values()) {
+                for (FormDataBodyPart part : parts) {
+                    if (part.getFormDataContentDisposition() != null
+                            && part.getFormDataContentDisposition().getFileName() != null) {
+                        files.add(part);
+                    }
+                }
+            }
+        }
+        logger.info("Batch upload request: {} files", files.size());
+
+        if (files.isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(createErrorResponse("No files uploaded"))
+                    .build();
+        }
+        if (files.size() > maxBatchFiles) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(createErrorResponse("Batch exceeds maximum of " + maxBatchFiles + " files"))
+                    .build();
+        }
+
+        BatchAnalysisOutput output = new BatchAnalysisOutput(files, musicService,
+                analysisExecutor.getExecutorService(), analysisExecutor.getThreads(), this::validateUpload,
+                AdmissionFilter.takePermit(requestContext));
+        return Response.ok(output, NDJSON).build();
+    }
+
     /**
      * Analyze a track by its ID.
      *
@@ -114,7 +249,7 @@ public class MusicResource {
                         .build();
             }
 
-            Map<String, Object> analysis = musicService.analyzeTrackById(trackId);
+            TrackAnalysis analysis = musicService.analyzeTrackById(trackId);
             return Response.ok(analysis).build();
 
         } catch (Exception e) {
@@ -129,11 +264,15 @@ public class MusicResource {
      * Search for music tracks.
      *
      * @param query The search query
-     * @return List of matching tracks
+     * @param asyncResponse Resumed with the list of matching tracks
      */
     @GET
     @Path("/search")
-    public Response searchTracks(@QueryParam("q") String query) {
+    public void searchTracks(@QueryParam("q") String query, @Suspended AsyncResponse asyncResponse) {
+        resumeAsync(asyncResponse, lookupExecutor, searchTimeoutSeconds, "Search", null, () -> search(query));
+    }
+
+    private Response search(String query) {
         logger.info("Search request: {}", query);
         
         try {
@@ -143,15 +282,13 @@ public class MusicResource {
                         .build();
             }
             
-            List<Map<String, Object>> results = musicService.searchTracks(query);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("query", query);
-            response.put("results", results);
-            response.put("count", results.size());
+            List<TrackAnalysis> results = musicService.searchTracks(query);
             
-            return Response.ok(response).build();
+            return Response.ok(new SearchPage(query, results)).build();
             
+        } catch (CancellationException e) {
+            // Interrupted by the timeout, which has already answered the request
+            throw e;
         } catch (Exception e) {
             logger.error("Error searching tracks: {}", e.getMessage(), e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -164,12 +301,17 @@ public class MusicResource {
      * Analyze a track from a URL.
      *
      * @param request The request containing the URL
-     * @return Analysis results
+     * @param asyncResponse Resumed with the analysis results
      */
     @POST
     @Path("/url")
     @Consumes(MediaType.APPLICATION_JSON)
-    public Response analyzeFromUrl(Map<String, String> request) {
+    public void analyzeFromUrl(Map<String, String> request, @Suspended AsyncResponse asyncResponse) {
+        resumeAsync(asyncResponse, lookupExecutor, urlTimeoutSeconds, "URL analysis", null,
+                () -> analyzeUrl(request));
+    }
+
+    private Response analyzeUrl(Map<String, String> request) {
         String url = request != null ? request.get("url") : null;
         logger.info("URL analysis request: {}", url);
         
@@ -187,11 +329,14 @@ public class MusicResource {
                         .build();
             }
             
-            Map<String, Object> analysis = musicService.analyzeFromUrl(url);
+            TrackAnalysis analysis = musicService.analyzeFromUrl(url);
             
             logger.info("URL analyzed successfully: {}", url);
             return Response.ok(analysis).build();
             
+        } catch (CancellationException e) {
+            // Interrupted by the timeout, which has already answered the request
+            throw e;
         } catch (Exception e) {
             logger.error("Error analyzing URL: {}", e.getMessage(), e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -218,7 +363,7 @@ public class MusicResource {
                         .build();
             }
             
-            Map<String, Object> track = musicService.getTrackDetails(trackId);
+            TrackAnalysis track = musicService.getTrackDetails(trackId);
             
             return Response.ok(track).build();
             
@@ -248,14 +393,9 @@ public class MusicResource {
                         .build();
             }
             
-            List<Map<String, Object>> similarTracks = musicService.getSimilarTracks(trackId);
+            List<SimilarTrack> similarTracks = musicService.getSimilarTracks(trackId);
             
-            Map<String, Object> response = new HashMap<>();
-            response.put("trackId", trackId);
-            response.put("similarTracks", similarTracks);
-            response.put("count", similarTracks.size());
-            
-            return Response.ok(response).build();
+            return Response.ok(new SimilarTracksPage(trackId, similarTracks)).build();
             
         } catch (Exception e) {
             logger.error("Error getting similar tracks: {}", e.getMessage(), e);
@@ -273,40 +413,131 @@ public class MusicResource {
     @GET
     @Path("/health")
     public Response health() {
-        Map<String, Object> response = new HashMap<>();
-        response.put("status", "healthy");
-        response.put("service", "music-analysis");
-        response.put("timestamp", System.currentTimeMillis());
-        
-        return Response.ok(response).build();
+        return Response.ok(new HealthStatus("healthy", "music-analysis")).build();
     }
     
     // Helper methods
+
+    /**
+     * Run a request on a pool and resume the suspended response with its result.
+     * The task is cancelled if it runs past the timeout; the interrupt frees a lookup
+     * thread that is waiting on an upstream call, which gives up with a
+     * {@link CancellationException}.
+     *
+     * <p>An admission permit is completed when the task finishes, even after a
+     * timeout, since cancelling does not stop CPU-bound work; it is abandoned if
+     * the task never starts.</p>
+     *
+     * @param operation Name of the operation, for error messages
+     * @param permit Admission permit of the request, or null if it needs none
+     */
+    private void resumeAsync(AsyncResponse asyncResponse, BoundedExecutor executor, int timeoutSeconds,
+                             String operation, AdmissionController.Permit permit, Callable<Response> task) {
+        AtomicReference<Future<?>> future = new AtomicReference<>();
+        // Claimed by whichever comes first: the task starting or the request timing out
+        AtomicBoolean started = new AtomicBoolean();
+        asyncResponse.setTimeout(timeoutSeconds, TimeUnit.SECONDS);
+        asyncResponse.setTimeoutHandler(response -> {
+            logger.warn("{} timed out after {} s", operation, timeoutSeconds);
+            response.resume(Response.status(Response.Status.GATEWAY_TIMEOUT)
+                    .entity(createErrorResponse(operation + " timed out"))
+                    .build());
+            Future<?> running = future.get();
+            if (running != null) {
+                running.cancel(true);
+            }
+            if (started.compareAndSet(false, true) && permit != null) {
+                permit.abandon();
+            }
+        });
+
+        try {
+            future.set(executor.getExecutorService().submit(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    asyncResponse.resume(task.call());
+                } catch (Exception e) {
+                    asyncResponse.resume(e);
+                } finally {
+                    if (permit != null) {
+                        permit.complete();
+                    }
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            logger.warn("{} rejected: {} pool is full", operation, executor.getClass().getSimpleName());
+            if (permit != null) {
+                permit.abandon();
+            }
+            asyncResponse.resume(serverBusy(1));
+        }
+    }
+
+    private Response serverBusy(int retryAfterSeconds) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .entity(createErrorResponse("Server is busy, please retry"))
+                .build();
+    }
+
+    /**
+     * @return Why an upload cannot be analyzed, or null if it can
+     */
+    private UploadRejection validateUpload(String fileName, long fileSize, String contentType) {
+        if (maxFileBytes > 0 && fileSize > maxFileBytes) {
+            return new UploadRejection(Response.Status.BAD_REQUEST,
+                    "File size exceeds maximum limit of " + maxFileBytes + " bytes");
+        }
+        if (isCompressedAudio(fileName, contentType)) {
+            return new UploadRejection(Response.Status.UNSUPPORTED_MEDIA_TYPE, UNSUPPORTED_FORMAT);
+        }
+        if (!isValidAudioFile(fileName, contentType)) {
+            return new UploadRejection(Response.Status.BAD_REQUEST,
+                    "Invalid file type. Only audio files are allowed");
+        }
+        return null;
+    }
+    
+    /**
+     * @return Whether the file name or content type names a compressed audio format,
+     *         which the analyzer cannot decode
+     */
+    static boolean isCompressedAudio(String fileName, String contentType) {
+        if (fileName != null) {
+            String lowerFileName = fileName.toLowerCase();
+            for (String extension : COMPRESSED_EXTENSIONS) {
+                if (lowerFileName.endsWith(extension)) {
+                    return true;
+                }
+            }
+        }
+        return contentType != null && matchesType(contentType, COMPRESSED_TYPES);
+    }
     
-    private boolean isValidAudioFile(String fileName, String contentType) {
+    static boolean isValidAudioFile(String fileName, String contentType) {
         if (fileName == null) {
             return false;
         }
         
-        // Check file extension
-        String lowerFileName = fileName.toLowerCase();
-        boolean hasValidExtension = lowerFileName.endsWith(".mp3") || 
-                                   lowerFileName.endsWith(".wav") ||
-                                   lowerFileName.endsWith(".ogg") ||
-                                   lowerFileName.endsWith(".flac") ||
-                                   lowerFileName.endsWith(".m4a") ||
-                                   lowerFileName.endsWith(".aac");
-        
         // Check content type if available
-        if (contentType != null) {
-            for (String allowedType : ALLOWED_TYPES) {
-                if (contentType.toLowerCase().contains(allowedType.toLowerCase())) {
-                    return true;
-                }
-            }
+        if (contentType != null && matchesType(contentType, ALLOWED_TYPES)) {
+            return true;
         }
         
-        return hasValidExtension;
+        // Check file extension
+        return fileName.toLowerCase().endsWith(".wav");
+    }
+    
+    private static boolean matchesType(String contentType, String[] types) {
+        String lowerType = contentType.toLowerCase();
+        for (String type : types) {
+            if (lowerType.contains(type)) {
+                return true;
+            }
+        }
+        return false;
     }
     
     private boolean isValidUrl(String url) {
@@ -319,10 +550,7 @@ public class MusicResource {
         return lowerUrl.startsWith("http://") || lowerUrl.startsWith("https://");
     }
     
-    private Map<String, String> createErrorResponse(String message) {
-        Map<String, String> error = new HashMap<>();
-        error.put("error", message);
-        error.put("timestamp", String.valueOf(System.currentTimeMillis()));
-        return error;
+    private ErrorResponse createErrorResponse(String message) {
+        return new ErrorResponse(message);
     }
 }
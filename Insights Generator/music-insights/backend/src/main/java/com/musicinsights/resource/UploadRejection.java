@@ -0,0 +1,25 @@
+package com.musicinsights.resource;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * Why an upload is turned away before any of it is read, and the status a
+ * single upload answers with.
+ */
+final class UploadRejection {
+    private final Response.Status status;
+    private final String message;
+
+    UploadRejection(Response.Status status, String message) {
+        this.status = status;
+        this.message = message;
+    }
+
+    Response.Status getStatus() {
+        return status;
+    }
+
+    String getMessage() {
+        return message;
+    }
+}
@@ -1,50 +1,134 @@
 package com.musicinsights.service;
 
-import java.util.Map;
+import com.musicinsights.audio.ByteBufferChannel;
+import com.musicinsights.model.AudioFeatures;
+import com.musicinsights.model.AudioMetadata;
+import com.musicinsights.model.Prediction;
+import com.musicinsights.model.SimilarTrack;
+import com.musicinsights.model.TrackAnalysis;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
 
 /**
  * Service interface for analyzing music and audio files.
+ *
+ * <p>The channel-based methods are the primary API: they decode the audio in
+ * fixed-size PCM frames, so memory use per call does not grow with the file size.
+ * The {@link InputStream} and {@code byte[]} overloads are adapters over them.
+ * Channels and streams are owned by the caller and are not closed.</p>
  */
 public interface AnalysisService {
-    
+
     /**
-     * Analyze audio features from the given data.
+     * Analyze audio features from the given stream.
      *
-     * @param audioData The audio data to analyze
-     * @return A map containing the analysis results
+     * @param audio The audio data to analyze
+     * @return The measured audio features
      */
-    Map<String, Object> analyzeAudioFeatures(byte[] audioData);
-    
+    AudioFeatures analyzeAudioFeatures(ReadableByteChannel audio);
+
     /**
-     * Extract metadata from the audio file.
+     * Extract metadata from the audio stream.
      *
-     * @param audioData The audio data to extract metadata from
-     * @return A map containing the extracted metadata
+     * @param audio The audio data to extract metadata from
+     * @return The extracted metadata
      */
-    Map<String, Object> extractMetadata(byte[] audioData);
-    
+    AudioMetadata extractMetadata(ReadableByteChannel audio);
+
     /**
      * Get genre predictions for the audio.
      *
-     * @param audioData The audio data to analyze
-     * @return A map containing genre predictions with confidence scores
+     * @param audio The audio data to analyze
+     * @return Genre predictions, most confident first
      */
-    Map<String, Double> predictGenre(byte[] audioData);
-    
+    List<Prediction> predictGenre(ReadableByteChannel audio);
+
     /**
      * Get mood/emotion predictions for the audio.
      *
-     * @param audioData The audio data to analyze
-     * @return A map containing mood predictions with confidence scores
+     * @param audio The audio data to analyze
+     * @return Mood predictions, most confident first
      */
-    Map<String, Double> predictMood(byte[] audioData);
-    
+    List<Prediction> predictMood(ReadableByteChannel audio);
+
     /**
      * Get similar tracks based on audio features.
      *
-     * @param audioData The audio data to find similar tracks for
+     * @param audio The audio data to find similar tracks for
      * @param limit Maximum number of similar tracks to return
-     * @return A list of similar tracks with similarity scores
+     * @return Similar tracks, best match first
+     */
+    List<SimilarTrack> findSimilarTracks(ReadableByteChannel audio, int limit);
+
+    /**
+     * Add a track to the set {@link #findSimilarTracks} matches against.
+     *
+     * @param audio The track's audio data
+     * @param trackId Identifier of the track; a track already indexed under it is skipped
+     * @param track The track's analysis; its title, artist and album are returned with matches
+     */
+    void indexTrack(ReadableByteChannel audio, String trackId, TrackAnalysis track);
+
+    /**
+     * Analyze audio features of a complete file held in memory or memory-mapped.
+     * Implementations may use the random access to analyze segments in parallel.
+     *
+     * @param audio The file contents, from the buffer's position to its limit
+     * @return The measured audio features
      */
-    Map<String, Object> findSimilarTracks(byte[] audioData, int limit);
+    default AudioFeatures analyzeAudioFeatures(ByteBuffer audio) {
+        return analyzeAudioFeatures(new ByteBufferChannel(audio));
+    }
+
+    default void indexTrack(ByteBuffer audio, String trackId, TrackAnalysis track) {
+        indexTrack(new ByteBufferChannel(audio), trackId, track);
+    }
+
+    // Stream adapters
+
+    default AudioFeatures analyzeAudioFeatures(InputStream audio) {
+        return analyzeAudioFeatures(Channels.newChannel(audio));
+    }
+
+    default AudioMetadata extractMetadata(InputStream audio) {
+        return extractMetadata(Channels.newChannel(audio));
+    }
+
+    default List<Prediction> predictGenre(InputStream audio) {
+        return predictGenre(Channels.newChannel(audio));
+    }
+
+    default List<Prediction> predictMood(InputStream audio) {
+        return predictMood(Channels.newChannel(audio));
+    }
+
+    default List<SimilarTrack> findSimilarTracks(InputStream audio, int limit) {
+        return findSimilarTracks(Channels.newChannel(audio), limit);
+    }
+
+    // Byte array adapters, reading the array in place without copying it
+
+    default AudioFeatures analyzeAudioFeatures(byte[] audioData) {
+        return analyzeAudioFeatures(new ByteBufferChannel(ByteBuffer.wrap(audioData)));
+    }
+
+    default AudioMetadata extractMetadata(byte[] audioData) {
+        return extractMetadata(new ByteBufferChannel(ByteBuffer.wrap(audioData)));
+    }
+
+    default List<Prediction> predictGenre(byte[] audioData) {
+        return predictGenre(new ByteBufferChannel(ByteBuffer.wrap(audioData)));
+    }
+
+    default List<Prediction> predictMood(byte[] audioData) {
+        return predictMood(new ByteBufferChannel(ByteBuffer.wrap(audioData)));
+    }
+
+    default List<SimilarTrack> findSimilarTracks(byte[] audioData, int limit) {
+        return findSimilarTracks(new ByteBufferChannel(ByteBuffer.wrap(audioData)), limit);
+    }
 }
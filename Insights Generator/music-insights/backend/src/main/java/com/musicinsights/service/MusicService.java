@@ -1,8 +1,10 @@
 package com.musicinsights.service;
 
+import com.musicinsights.model.SimilarTrack;
+import com.musicinsights.model.TrackAnalysis;
+
 import java.io.InputStream;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Service interface for music-related operations.
@@ -15,7 +17,7 @@ public interface MusicService {
      * @param query The search query
      * @return A list of matching tracks
      */
-    List<Map<String, Object>> searchTracks(String query);
+    List<TrackAnalysis> searchTracks(String query);
     
     /**
      * Get track details by ID.
@@ -23,10 +25,12 @@ public interface MusicService {
      * @param trackId The track ID
      * @return The track details
      */
-    Map<String, Object> getTrackDetails(String trackId);
+    TrackAnalysis getTrackDetails(String trackId);
     
     /**
-     * Analyze an audio file.
+     * Analyze an audio file. Only uncompressed WAV files are decoded; others fail
+     * with an {@link com.musicinsights.audio.UnsupportedAudioFormatException} in
+     * the cause chain.
      *
      * @param fileStream The input stream of the audio file
      * @param fileName The name of the file
@@ -34,7 +38,7 @@ public interface MusicService {
      * @param contentType The content type of the file
      * @return The analysis results
      */
-    Map<String, Object> analyzeAudio(InputStream fileStream, String fileName, long fileSize, String contentType);
+    TrackAnalysis analyzeAudio(InputStream fileStream, String fileName, long fileSize, String contentType);
     
     /**
      * Get similar tracks based on a track ID.
@@ -42,7 +46,7 @@ public interface MusicService {
      * @param trackId The track ID
      * @return A list of similar tracks
      */
-    List<Map<String, Object>> getSimilarTracks(String trackId);
+    List<SimilarTrack> getSimilarTracks(String trackId);
     
     /**
      * Analyze a track from a URL.
@@ -50,7 +54,7 @@ public interface MusicService {
      * @param url The URL of the track
      * @return The analysis results
      */
-    Map<String, Object> analyzeFromUrl(String url);
+    TrackAnalysis analyzeFromUrl(String url);
 
     /**
      * Analyze a track by its ID.
@@ -58,5 +62,5 @@ public interface MusicService {
      * @param trackId The track ID
      * @return The analysis results
      */
-    Map<String, Object> analyzeTrackById(String trackId);
+    TrackAnalysis analyzeTrackById(String trackId);
 }
@@ -1,10 +1,33 @@
 package com.musicinsights.service.impl;
 
+import com.musicinsights.audio.ByteBufferChannel;
+import com.musicinsights.audio.FeatureAccumulator;
+import com.musicinsights.audio.ParallelFeatureAnalyzer;
+import com.musicinsights.audio.PcmFormat;
+import com.musicinsights.audio.PcmFrameReader;
+import com.musicinsights.audio.StftEngine;
+import com.musicinsights.audio.UnsupportedAudioFormatException;
+import com.musicinsights.config.TuningConfig;
+import com.musicinsights.fingerprint.Fingerprint;
+import com.musicinsights.fingerprint.FingerprintIndex;
+import com.musicinsights.fingerprint.LandmarkExtractor;
+import com.musicinsights.fingerprint.TrackDirectory;
+import com.musicinsights.model.AudioFeatures;
+import com.musicinsights.model.AudioMetadata;
+import com.musicinsights.model.Prediction;
+import com.musicinsights.model.SimilarTrack;
+import com.musicinsights.model.TrackAnalysis;
 import com.musicinsights.service.AnalysisService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Implementation of the AnalysisService interface.
@@ -13,57 +36,115 @@ import java.util.*;
 public class AnalysisServiceImpl implements AnalysisService {
     private static final Logger logger = LoggerFactory.getLogger(AnalysisServiceImpl.class);
     
+    /** Aligned landmarks needed before a track counts as similar. */
+    private static final int MIN_MATCH_VOTES = 5;
+    /** Share of the sample's landmarks that must line up; chance alignments stay around 3%. */
+    private static final double MIN_MATCH_FRACTION = 0.08;
+    
+    private final boolean parallelEnabled;
+    private final int parallelMinSeconds;
+    private final ForkJoinPool analysisPool;
+    private final ParallelFeatureAnalyzer parallelAnalyzer;
+    private final FingerprintIndex fingerprintIndex;
+    private final long querySamples;
+    private final TrackDirectory indexedTracks = new TrackDirectory();
+    
+    @Inject
+    public AnalysisServiceImpl(TuningConfig tuning) {
+        this.parallelEnabled = tuning.isParallelAnalysisEnabled();
+        this.parallelMinSeconds = tuning.getParallelAnalysisMinSeconds();
+        this.analysisPool = new ForkJoinPool(Math.max(1, tuning.getAnalysisParallelism()));
+        this.parallelAnalyzer = new ParallelFeatureAnalyzer(analysisPool, tuning.getAnalysisSegmentSeconds());
+        this.fingerprintIndex = new FingerprintIndex(tuning.getFingerprintMaxPostings());
+        this.querySamples = (long) tuning.getFingerprintQuerySeconds() * StftEngine.ANALYSIS_SAMPLE_RATE;
+    }
+    
     @Override
-    public Map<String, Object> analyzeAudioFeatures(byte[] audioData) {
-        logger.info("Analyzing audio features for {} bytes of data", audioData.length);
+    public AudioFeatures analyzeAudioFeatures(ReadableByteChannel audio) {
+        StftEngine engine = new StftEngine();
+        PcmFrameReader reader = new PcmFrameReader(audio, engine.getHopSize());
+        FeatureAccumulator accumulator;
+        PcmFormat format;
+        long start = System.nanoTime();
+        try {
+            format = reader.format();
+            int sampleRate = reader.decimateTo(StftEngine.ANALYSIS_SAMPLE_RATE);
+            accumulator = new FeatureAccumulator(sampleRate, engine.getFftSize(), engine.getHopSize());
+            engine.process(reader, accumulator, 0);
+        } catch (IOException e) {
+            throw readFailure("Error reading audio stream", e);
+        }
+        logger.info("Analyzed audio features for {} bytes of data ({}) in {} ms",
+                reader.getBytesRead(), format, (System.nanoTime() - start) / 1_000_000);
         
-        // In production, this would perform actual audio analysis
-        // For demo, return mock features
-        Map<String, Object> features = new HashMap<>();
-        Random random = new Random();
+        return toAudioFeatures(accumulator);
+    }
+    
+    @Override
+    public AudioFeatures analyzeAudioFeatures(ByteBuffer audio) {
+        if (!parallelEnabled) {
+            return analyzeAudioFeatures(new ByteBufferChannel(audio));
+        }
+        PcmFormat format;
+        try {
+            format = new PcmFrameReader(new ByteBufferChannel(audio)).format();
+        } catch (IOException e) {
+            throw readFailure("Error reading audio header", e);
+        }
+        double bytesPerSecond = (double) format.getSampleRate() * format.getBlockAlign();
+        if (audio.remaining() / bytesPerSecond < parallelMinSeconds) {
+            return analyzeAudioFeatures(new ByteBufferChannel(audio));
+        }
         
-        features.put("tempo", 80 + random.nextInt(100));
-        features.put("key", getRandomKey());
-        features.put("mode", random.nextBoolean() ? "major" : "minor");
-        features.put("energy", random.nextDouble());
-        features.put("danceability", random.nextDouble());
-        features.put("valence", random.nextDouble());
-        features.put("acousticness", random.nextDouble());
-        features.put("instrumentalness", random.nextDouble());
-        features.put("liveness", random.nextDouble() * 0.3);
-        features.put("speechiness", random.nextDouble() * 0.5);
-        features.put("loudness", -30 - random.nextDouble() * 20);
-        
-        return features;
+        long start = System.nanoTime();
+        FeatureAccumulator accumulator;
+        try {
+            accumulator = parallelAnalyzer.analyze(audio);
+        } catch (IOException e) {
+            throw readFailure("Error reading audio stream", e);
+        }
+        logger.info("Analyzed audio features for {} bytes of data ({}) in parallel in {} ms",
+                audio.remaining(), format, (System.nanoTime() - start) / 1_000_000);
+        
+        return toAudioFeatures(accumulator);
     }
     
     @Override
-    public Map<String, Object> extractMetadata(byte[] audioData) {
-        logger.info("Extracting metadata from {} bytes of data", audioData.length);
-        
-        // In production, this would extract actual metadata from the audio file
-        // For demo, return mock metadata
-        Map<String, Object> metadata = new HashMap<>();
-        
-        metadata.put("title", "Unknown Track");
-        metadata.put("artist", "Unknown Artist");
-        metadata.put("album", "Unknown Album");
-        metadata.put("year", 2023);
-        metadata.put("duration", 180);
-        metadata.put("bitrate", 320);
-        metadata.put("sampleRate", 44100);
-        metadata.put("channels", 2);
-        
-        return metadata;
+    public AudioMetadata extractMetadata(ReadableByteChannel audio) {
+        PcmFrameReader reader = new PcmFrameReader(audio);
+        PcmFormat format;
+        double duration;
+        try {
+            format = reader.format();
+            duration = format.getDurationSeconds();
+            if (duration < 0) {
+                // No length in the header: count the samples instead
+                float[] frame = new float[PcmFrameReader.DEFAULT_FRAME_SIZE];
+                long samples = 0;
+                int n;
+                while ((n = reader.read(frame)) > 0) {
+                    samples += n;
+                }
+                duration = (double) samples / format.getSampleRate();
+            }
+        } catch (IOException e) {
+            throw readFailure("Error reading audio stream", e);
+        }
+        logger.info("Extracted metadata from {} bytes of data ({})", reader.getBytesRead(), format);
+        
+        // Tags are not parsed yet, so descriptive fields stay unknown
+        return new AudioMetadata("Unknown Track", "Unknown Artist", "Unknown Album", 2023,
+                (int) Math.round(duration), format.getSampleRate() * format.getBlockAlign() * 8 / 1000,
+                format.getSampleRate(), format.getChannels());
     }
     
     @Override
-    public Map<String, Double> predictGenre(byte[] audioData) {
-        logger.info("Predicting genre for {} bytes of data", audioData.length);
+    public List<Prediction> predictGenre(ReadableByteChannel audio) {
+        logger.info("Predicting genre for audio stream");
         
         // In production, this would use ML models to predict genre
         // For demo, return mock predictions
-        Map<String, Double> genrePredictions = new LinkedHashMap<>();
+        List<Prediction> genrePredictions = new ArrayList<>();
         Random random = new Random();
         
         String[] genres = {"Rock", "Pop", "Hip-Hop", "Jazz", "Electronic", "Classical", "R&B", "Metal"};
@@ -74,7 +155,7 @@ public class AnalysisServiceImpl implements AnalysisService {
         double totalConfidence = 1.0;
         for (int i = 0; i < 3 && i < selectedGenres.size(); i++) {
             double confidence = totalConfidence * (0.4 + random.nextDouble() * 0.4);
-            genrePredictions.put(selectedGenres.get(i), confidence);
+            genrePredictions.add(new Prediction(selectedGenres.get(i), confidence));
             totalConfidence -= confidence;
         }
         
@@ -82,12 +163,12 @@ public class AnalysisServiceImpl implements AnalysisService {
     }
     
     @Override
-    public Map<String, Double> predictMood(byte[] audioData) {
-        logger.info("Predicting mood for {} bytes of data", audioData.length);
+    public List<Prediction> predictMood(ReadableByteChannel audio) {
+        logger.info("Predicting mood for audio stream");
         
         // In production, this would use ML models to predict mood
         // For demo, return mock predictions
-        Map<String, Double> moodPredictions = new LinkedHashMap<>();
+        List<Prediction> moodPredictions = new ArrayList<>();
         Random random = new Random();
         
         String[] moods = {"Happy", "Sad", "Energetic", "Calm", "Angry", "Romantic", "Melancholic", "Uplifting"};
@@ -98,7 +179,7 @@ public class AnalysisServiceImpl implements AnalysisService {
         double totalConfidence = 1.0;
         for (int i = 0; i < 3 && i < selectedMoods.size(); i++) {
             double confidence = totalConfidence * (0.3 + random.nextDouble() * 0.5);
-            moodPredictions.put(selectedMoods.get(i), confidence);
+            moodPredictions.add(new Prediction(selectedMoods.get(i), confidence));
             totalConfidence -= confidence;
         }
         
@@ -106,39 +187,123 @@ public class AnalysisServiceImpl implements AnalysisService {
     }
     
     @Override
-    public Map<String, Object> findSimilarTracks(byte[] audioData, int limit) {
-        logger.info("Finding similar tracks for {} bytes of data (limit: {})", audioData.length, limit);
+    public List<SimilarTrack> findSimilarTracks(ReadableByteChannel audio, int limit) {
+        logger.info("Finding similar tracks for audio stream (limit: {})", limit);
         
-        // In production, this would use audio fingerprinting and similarity algorithms
-        // For demo, return mock similar tracks
-        Map<String, Object> result = new HashMap<>();
-        List<Map<String, Object>> similarTracks = new ArrayList<>();
-        Random random = new Random();
+        long start = System.nanoTime();
+        Fingerprint sample = fingerprint(audio, querySamples);
+        int minVotes = Math.max(MIN_MATCH_VOTES, (int) Math.ceil(sample.size() * MIN_MATCH_FRACTION));
+        List<FingerprintIndex.Match> matches = fingerprintIndex.query(sample, minVotes, limit);
         
-        for (int i = 0; i < Math.min(limit, 10); i++) {
-            Map<String, Object> track = new HashMap<>();
-            track.put("id", "track_" + (i + 1));
-            track.put("title", "Similar Track " + (i + 1));
-            track.put("artist", "Artist " + (i + 1));
-            track.put("album", "Album " + (i + 1));
-            track.put("similarity", 0.95 - (i * 0.05) - random.nextDouble() * 0.05);
-            similarTracks.add(track);
+        List<SimilarTrack> similarTracks = new ArrayList<>();
+        for (FingerprintIndex.Match match : matches) {
+            int number = match.getTrack();
+            String id = indexedTracks.getId(number);
+            if (id == null) {
+                // Added concurrently and not described yet
+                continue;
+            }
+            logger.debug("Track {} matched {} landmarks at {} s", id, match.getVotes(),
+                    match.getOffsetFrames() * sample.getFrameSeconds());
+            similarTracks.add(new SimilarTrack(id, indexedTracks.getTitle(number), indexedTracks.getArtist(number),
+                    indexedTracks.getAlbum(number), Math.min(1.0, (double) match.getVotes() / sample.size())));
         }
+        logger.info("Matched {} landmarks against {} indexed tracks in {} ms: {} matches",
+                sample.size(), fingerprintIndex.getTrackCount(), (System.nanoTime() - start) / 1_000_000,
+                similarTracks.size());
         
-        // Sort by similarity
-        similarTracks.sort((a, b) -> 
-            Double.compare((Double) b.get("similarity"), (Double) a.get("similarity")));
-        
-        result.put("tracks", similarTracks);
-        result.put("count", similarTracks.size());
-        
-        return result;
+        return similarTracks;
+    }
+    
+    @Override
+    public void indexTrack(ReadableByteChannel audio, String trackId, TrackAnalysis track) {
+        if (indexedTracks.contains(trackId)) {
+            logger.debug("Track {} is already fingerprinted", trackId);
+            return;
+        }
+        Fingerprint fingerprint = fingerprint(audio, Long.MAX_VALUE);
+        try {
+            if (!indexedTracks.add(trackId, track.getTitle(), track.getArtist(), track.getAlbum(),
+                    () -> fingerprintIndex.add(fingerprint))) {
+                logger.debug("Track {} was fingerprinted concurrently", trackId);
+                return;
+            }
+        } catch (IllegalStateException e) {
+            logger.warn("Not fingerprinting track {}: {}", trackId, e.getMessage());
+            return;
+        }
+        logger.info("Fingerprinted track {} with {} landmarks ({} postings, ~{} KB indexed)",
+                trackId, fingerprint.size(), fingerprintIndex.getPostingCount(),
+                fingerprintIndex.getMemoryBytes() / 1024);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        analysisPool.shutdownNow();
     }
     
     // Helper methods
     
-    private String getRandomKey() {
-        String[] keys = {"C", "C#", "D", "D#", "E", "F", "F#", "G", "G#", "A", "A#", "B"};
-        return keys[new Random().nextInt(keys.length)];
+    private static RuntimeException readFailure(String message, IOException e) {
+        // Unsupported formats are the client's error, reported to it by the caller
+        if (!(e instanceof UnsupportedAudioFormatException)) {
+            logger.error("{}: {}", message, e.getMessage());
+        }
+        return new RuntimeException("Failed to read audio stream", e);
+    }
+    
+    /**
+     * Extract the landmark fingerprint of up to {@code maxSamples} samples at the analysis rate.
+     */
+    private Fingerprint fingerprint(ReadableByteChannel audio, long maxSamples) {
+        StftEngine engine = new StftEngine();
+        PcmFrameReader reader = new PcmFrameReader(audio, engine.getHopSize());
+        try {
+            int sampleRate = reader.decimateTo(StftEngine.ANALYSIS_SAMPLE_RATE);
+            LandmarkExtractor extractor = new LandmarkExtractor(engine.getFftSize(), engine.getHopSize(), sampleRate);
+            engine.process(reader, extractor, 0, maxSamples);
+            return extractor.getFingerprint();
+        } catch (IOException e) {
+            throw readFailure("Error reading audio stream", e);
+        }
+    }
+    
+    /**
+     * Build the audio features from measured statistics. Danceability, valence and
+     * acousticness are heuristics over the measured values; instrumentalness,
+     * liveness and speechiness are still mock values, and the meter is not detected.
+     */
+    private AudioFeatures toAudioFeatures(FeatureAccumulator accumulator) {
+        Random random = new Random();
+        
+        double tempo = accumulator.getTempo();
+        boolean major = accumulator.isMajor();
+        double centroid = accumulator.getSpectralCentroid();
+        double rolloff = accumulator.getSpectralRolloff();
+        double tempoFit = 1 - Math.min(1, Math.abs(tempo - 120) / 60);
+        
+        return AudioFeatures.builder()
+                .duration(accumulator.getDurationSeconds())
+                .tempo(tempo)
+                .key(accumulator.getKeyName())
+                .mode(major ? "major" : "minor")
+                .timeSignature(4)
+                .energy(Math.min(1.0, accumulator.getRms() * Math.sqrt(2)))
+                .loudness(accumulator.getLoudnessDb())
+                .spectralCentroid(centroid)
+                .spectralRolloff(rolloff)
+                .spectralFlux(accumulator.getSpectralFlux())
+                .zeroCrossingRate(accumulator.getZeroCrossingRate())
+                .danceability(clamp(0.2 + 0.6 * accumulator.getBeatRegularity() + 0.2 * tempoFit))
+                .valence(clamp(0.5 * (major ? 0.7 : 0.3) + 0.5 * Math.min(1, centroid / 3000)))
+                .acousticness(clamp(1 - rolloff / 8000))
+                .instrumentalness(random.nextDouble())
+                .liveness(random.nextDouble() * 0.3)
+                .speechiness(random.nextDouble() * 0.5)
+                .build();
+    }
+    
+    private static double clamp(double value) {
+        return Math.max(0, Math.min(1, value));
     }
 }
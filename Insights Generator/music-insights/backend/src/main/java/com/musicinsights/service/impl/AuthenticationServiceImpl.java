@@ -5,6 +5,7 @@ import com.musicinsights.model.AuthResponse;
 import com.musicinsights.model.LoginRequest;
 import com.musicinsights.service.AuthenticationService;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -43,6 +44,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     
     private final ApplicationConfig config;
     private final Key key;
+    private final JwtParser parser;
     
     @Inject
     public AuthenticationServiceImpl(ApplicationConfig config) {
@@ -68,6 +70,9 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         }
         
         this.key = tempKey;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
     }
     
     @Override
@@ -105,12 +110,8 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     @Override
     public String validateToken(String token) throws SecurityException {
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-            
+            Claims claims = parser.parseClaimsJws(token).getBody();
+
             return claims.getSubject();
         } catch (Exception e) {
             logger.error("Token validation failed: {}", e.getMessage());
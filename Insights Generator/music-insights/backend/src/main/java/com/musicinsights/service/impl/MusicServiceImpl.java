@@ -1,26 +1,36 @@
 package com.musicinsights.service.impl;
 
-import com.musicinsights.config.ApplicationConfig;
+import com.musicinsights.audio.UnsupportedAudioFormatException;
+import com.musicinsights.cache.AnalysisCache;
+import com.musicinsights.cache.SearchCache;
+import com.musicinsights.client.PythonAnalyticsClient;
+import com.musicinsights.concurrent.BoundedExecutor;
+import com.musicinsights.concurrent.Futures;
+import com.musicinsights.config.TuningConfig;
+import com.musicinsights.model.AudioFeatures;
+import com.musicinsights.model.SimilarTrack;
+import com.musicinsights.model.TrackAnalysis;
+import com.musicinsights.service.AnalysisService;
 import com.musicinsights.service.MusicService;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.musicinsights.similarity.TrackCatalog;
+import com.musicinsights.spool.SpooledUpload;
+import com.musicinsights.spool.UploadSpooler;
+import com.musicinsights.spool.UploadTooLargeException;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.client.Entity;
-import javax.ws.rs.client.WebTarget;
-import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.Response;
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Type;
-import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation of the MusicService interface.
@@ -28,220 +38,287 @@ import java.util.*;
  */
 public class MusicServiceImpl implements MusicService {
     private static final Logger logger = LoggerFactory.getLogger(MusicServiceImpl.class);
+    private static final int SIMILAR_TRACKS_LIMIT = 5;
     
-    private final ApplicationConfig config;
-    private final Client httpClient;
-    private final Gson gson;
+    private final AnalysisService analysisService;
+    private final AnalysisCache analysisCache;
+    private final SearchCache searchCache;
+    private final TrackCatalog trackCatalog;
+    private final UploadSpooler spooler;
+    // Fingerprints analyzed uploads one at a time after their response; null when indexing is off
+    private final ExecutorService fingerprinter;
+    private final PythonAnalyticsClient pythonClient;
     
     @Inject
-    public MusicServiceImpl(ApplicationConfig config) {
-        this.config = config;
-        this.httpClient = ClientBuilder.newClient();
-        this.gson = new Gson();
+    public MusicServiceImpl(TuningConfig tuning, AnalysisService analysisService, AnalysisCache analysisCache,
+                            SearchCache searchCache, TrackCatalog trackCatalog,
+                            PythonAnalyticsClient pythonClient) {
+        this.analysisService = analysisService;
+        this.analysisCache = analysisCache;
+        this.searchCache = searchCache;
+        this.trackCatalog = trackCatalog;
+        this.spooler = new UploadSpooler(tuning.getSpoolDirectory(),
+                tuning.getSpoolMemoryThreshold(), tuning.getSpoolBufferPoolSize(), tuning.getUploadMaxFileBytes());
+        this.fingerprinter = tuning.isFingerprintUploadsEnabled()
+                ? new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(Math.max(1, tuning.getFingerprintQueueSize())),
+                        BoundedExecutor.namedThreads("fingerprint"), new ThreadPoolExecutor.AbortPolicy())
+                : null;
+        this.pythonClient = pythonClient;
     }
     
     @Override
-    public Map<String, Object> analyzeTrackById(String trackId) {
+    public TrackAnalysis analyzeTrackById(String trackId) {
         logger.info("Analyzing track by ID: {}", trackId);
         // For demo purposes, generate analysis based on ID
-        return generateMockAnalysis("track_" + trackId);
+        TrackAnalysis analysis = generateMockAnalysis("track_" + trackId).id(trackId).build();
+        trackCatalog.add(trackId, analysis);
+        return analysis;
     }
     
     @Override
-    public List<Map<String, Object>> searchTracks(String query) {
+    public List<TrackAnalysis> searchTracks(String query) {
         logger.info("Searching for tracks with query: {}", query);
         
-        try {
-            String pythonServiceUrl = config.getPythonServiceUrl();
-            WebTarget target = httpClient.target(pythonServiceUrl)
-                    .path("/analyze/search")
-                    .queryParam("q", query);
-            
-            Response response = target.request(MediaType.APPLICATION_JSON).get();
-            
-            if (response.getStatus() == 200) {
-                String jsonResponse = response.readEntity(String.class);
-                Type listType = new TypeToken<List<Map<String, Object>>>(){}.getType();
-                return gson.fromJson(jsonResponse, listType);
-            } else {
-                logger.error("Failed to search tracks. Status: {}", response.getStatus());
-                return getMockSearchResults(query);
-            }
-        } catch (Exception e) {
-            logger.error("Error searching tracks: {}", e.getMessage());
-            return getMockSearchResults(query);
-        }
+        // Cached results are served while they refresh, and instead of mock data if Python fails
+        return searchCache.get(PythonAnalyticsClient.normalizeQuery(query), pythonClient::search,
+                () -> getMockSearchResults(query));
     }
     
     @Override
-    public Map<String, Object> getTrackDetails(String trackId) {
+    public TrackAnalysis getTrackDetails(String trackId) {
         logger.info("Getting track details for ID: {}", trackId);
         
         // For demo purposes, return mock data
-        Map<String, Object> track = new HashMap<>();
-        track.put("id", trackId);
-        track.put("title", "Sample Track " + trackId);
-        track.put("artist", "Sample Artist");
-        track.put("album", "Sample Album");
-        track.put("year", 2023);
-        track.put("duration", "3:45");
-        track.put("genre", Arrays.asList("Pop", "Electronic"));
-        
-        return track;
+        return TrackAnalysis.builder()
+                .id(trackId)
+                .title("Sample Track " + trackId)
+                .artist("Sample Artist")
+                .album("Sample Album")
+                .year(2023)
+                .duration("3:45")
+                .genre(Arrays.asList("Pop", "Electronic"))
+                .build();
     }
     
     @Override
-    public Map<String, Object> analyzeAudio(InputStream fileStream, String fileName, 
-                                           long fileSize, String contentType) {
+    public TrackAnalysis analyzeAudio(InputStream fileStream, String fileName,
+                                      long fileSize, String contentType) {
         logger.info("Analyzing audio file: {} (size: {} bytes)", fileName, fileSize);
         
-        File tempFile = null;
+        SpooledUpload upload = null;
         try {
-            // Save the uploaded file temporarily
-            tempFile = File.createTempFile("upload_", "_" + fileName);
-            try (FileOutputStream fos = new FileOutputStream(tempFile)) {
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                while ((bytesRead = fileStream.read(buffer)) != -1) {
-                    fos.write(buffer, 0, bytesRead);
-                }
+            upload = spooler.spool(fileStream);
+            // The spooler hashes the content, so a re-upload is answered without decoding
+            TrackAnalysis cached = analysisCache.get(upload.digest());
+            String trackId = "upload_" + upload.digest().substring(0, 16);
+            if (cached != null) {
+                logger.info("Returning cached analysis for {} ({})", fileName, upload.digest());
+                // Results read back from the disk tier after a restart are not in the catalog yet
+                trackCatalog.add(trackId, cached);
+                // The cache is keyed by content, so the title comes from this upload's name
+                return cached.toBuilder().title(titleOf(fileName)).build();
             }
             
-            // For demo purposes, return mock analysis data
-            // In production, send to Python service for real analysis
-            return generateMockAnalysis(fileName);
+            // Decode straight from the pooled buffer or the memory-mapped spool file;
+            // long tracks are split into segments and analyzed in parallel
+            AudioFeatures features = analysisService.analyzeAudioFeatures(upload.view());
+            
+            // Descriptive fields are still mock data until the Python service is wired in
+            TrackAnalysis analysis = generateMockAnalysis(fileName)
+                    .id(trackId)
+                    .audioFeatures(features)
+                    .duration(formatDuration(features.getDuration()))
+                    .build();
+            analysisCache.put(upload.digest(), analysis);
+            trackCatalog.add(trackId, analysis);
+            
+            if (fingerprinter != null && fingerprintLater(upload, trackId, analysis)) {
+                // The fingerprint task closes the upload when it is done
+                upload = null;
+            }
+            return analysis;
             
         } catch (Exception e) {
+            IOException rejected = UnsupportedAudioFormatException.causeOf(e);
+            if (rejected == null) {
+                rejected = UploadTooLargeException.causeOf(e);
+            }
+            if (rejected != null) {
+                // Nothing was measured, so nothing is cached or indexed
+                logger.info("Not analyzing {}: {}", fileName, rejected.getMessage());
+                throw new RuntimeException("Failed to analyze audio file", e);
+            }
             logger.error("Error analyzing audio file: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to analyze audio file", e);
         } finally {
-            // Clean up temporary file
-            if (tempFile != null && tempFile.exists()) {
-                try {
-                    Files.delete(tempFile.toPath());
-                } catch (Exception e) {
-                    logger.warn("Failed to delete temporary file: {}", tempFile.getAbsolutePath());
-                }
+            if (upload != null) {
+                upload.close();
+            }
+        }
+    }
+    
+    /**
+     * Add an analyzed upload to the fingerprint index on the fingerprint thread,
+     * so the second decode it takes is not part of the request.
+     *
+     * @return true if the task now owns the upload, false if the queue was full
+     */
+    private boolean fingerprintLater(SpooledUpload upload, String trackId, TrackAnalysis analysis) {
+        try {
+            fingerprinter.execute(new FingerprintTask(upload, trackId, analysis));
+            return true;
+        } catch (RejectedExecutionException e) {
+            logger.debug("Fingerprint queue is full, not indexing {}", trackId);
+            return false;
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (fingerprinter != null) {
+            for (Runnable task : fingerprinter.shutdownNow()) {
+                ((FingerprintTask) task).upload.close();
+            }
+        }
+    }
+    
+    /**
+     * Fingerprints one analyzed upload and then closes it.
+     */
+    private final class FingerprintTask implements Runnable {
+        private final SpooledUpload upload;
+        private final String trackId;
+        private final TrackAnalysis analysis;
+        
+        FingerprintTask(SpooledUpload upload, String trackId, TrackAnalysis analysis) {
+            this.upload = upload;
+            this.trackId = trackId;
+            this.analysis = analysis;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                analysisService.indexTrack(upload.view(), trackId, analysis);
+            } catch (Exception e) {
+                logger.warn("Could not fingerprint upload {}: {}", trackId, e.getMessage());
+            } finally {
+                upload.close();
             }
         }
     }
     
     @Override
-    public List<Map<String, Object>> getSimilarTracks(String trackId) {
+    public List<SimilarTrack> getSimilarTracks(String trackId) {
         logger.info("Getting similar tracks for ID: {}", trackId);
         
-        List<Map<String, Object>> similarTracks = new ArrayList<>();
+        List<SimilarTrack> catalogMatches = trackCatalog.similarTo(trackId, SIMILAR_TRACKS_LIMIT);
+        if (catalogMatches != null) {
+            return catalogMatches;
+        }
         
-        for (int i = 1; i <= 5; i++) {
-            Map<String, Object> track = new HashMap<>();
-            track.put("id", "similar_" + i);
-            track.put("name", "Similar Track " + i);
-            track.put("artist", "Similar Artist " + i);
-            track.put("album", "Similar Album " + i);
-            track.put("match", 0.95 - (i * 0.1));
-            similarTracks.add(track);
+        // Tracks that were never analyzed still get placeholder results
+        List<SimilarTrack> similarTracks = new ArrayList<>();
+        
+        for (int i = 1; i <= SIMILAR_TRACKS_LIMIT; i++) {
+            similarTracks.add(new SimilarTrack("similar_" + i, "Similar Track " + i, "Similar Artist " + i,
+                    "Similar Album " + i, 0.95 - (i * 0.1)));
         }
         
         return similarTracks;
     }
     
     @Override
-    public Map<String, Object> analyzeFromUrl(String url) {
+    public TrackAnalysis analyzeFromUrl(String url) {
         logger.info("Analyzing track from URL: {}", url);
         
         try {
-            String pythonServiceUrl = config.getPythonServiceUrl();
-            WebTarget target = httpClient.target(pythonServiceUrl)
-                    .path("/analyze/url");
-            
-            Map<String, String> requestBody = new HashMap<>();
-            requestBody.put("url", url);
-            
-            Response response = target.request(MediaType.APPLICATION_JSON)
-                    .post(Entity.json(requestBody));
-            
-            if (response.getStatus() == 200) {
-                String jsonResponse = response.readEntity(String.class);
-                Type mapType = new TypeToken<Map<String, Object>>(){}.getType();
-                return gson.fromJson(jsonResponse, mapType);
-            } else {
-                logger.error("Failed to analyze URL. Status: {}", response.getStatus());
-                return generateMockAnalysis("url_track");
-            }
-        } catch (Exception e) {
-            logger.error("Error analyzing URL: {}", e.getMessage());
-            return generateMockAnalysis("url_track");
+            return Futures.await(pythonClient.analyzeUrl(url));
+        } catch (CompletionException e) {
+            logger.error("Error analyzing URL: {}", e.getCause().getMessage());
+            return generateMockAnalysis("url_track").build();
         }
     }
     
     // Helper methods
     
-    private List<Map<String, Object>> getMockSearchResults(String query) {
-        List<Map<String, Object>> results = new ArrayList<>();
+    private List<TrackAnalysis> getMockSearchResults(String query) {
+        List<TrackAnalysis> results = new ArrayList<>();
         
         for (int i = 1; i <= 5; i++) {
-            Map<String, Object> track = new HashMap<>();
-            track.put("id", String.valueOf(i));
-            track.put("title", query + " - Track " + i);
-            track.put("artist", "Artist " + i);
-            track.put("album", "Album " + i);
-            track.put("year", 2020 + i);
-            track.put("duration", String.format("%d:%02d", 3 + (i % 3), 15 + (i * 10)));
-            results.add(track);
+            results.add(TrackAnalysis.builder()
+                    .id(String.valueOf(i))
+                    .title(query + " - Track " + i)
+                    .artist("Artist " + i)
+                    .album("Album " + i)
+                    .year(2020 + i)
+                    .duration(String.format("%d:%02d", 3 + (i % 3), 15 + (i * 10)))
+                    .build());
         }
         
         return results;
     }
     
-    private Map<String, Object> generateMockAnalysis(String filename) {
+    /**
+     * @return A builder holding a mock analysis of the file, to add the ID and any measured values to
+     */
+    private TrackAnalysis.Builder generateMockAnalysis(String filename) {
         Random random = new Random();
         
         // Generate mock audio features
-        Map<String, Object> audioFeatures = new HashMap<>();
-        audioFeatures.put("duration", 180 + random.nextInt(240));
-        audioFeatures.put("tempo", 80 + random.nextInt(100));
-        audioFeatures.put("key", getRandomKey());
-        audioFeatures.put("mode", random.nextBoolean() ? "major" : "minor");
-        audioFeatures.put("time_signature", 4);
-        audioFeatures.put("energy", 0.1 + random.nextDouble() * 0.9);
-        audioFeatures.put("danceability", 0.1 + random.nextDouble() * 0.9);
-        audioFeatures.put("valence", 0.1 + random.nextDouble() * 0.9);
-        audioFeatures.put("acousticness", random.nextDouble());
-        audioFeatures.put("instrumentalness", random.nextDouble() * 0.8);
-        audioFeatures.put("liveness", random.nextDouble() * 0.3);
-        audioFeatures.put("speechiness", random.nextDouble() * 0.5);
-        audioFeatures.put("loudness", -30 - random.nextDouble() * 20);
+        AudioFeatures audioFeatures = AudioFeatures.builder()
+                .duration(180 + random.nextInt(240))
+                .tempo(80 + random.nextInt(100))
+                .key(getRandomKey())
+                .mode(random.nextBoolean() ? "major" : "minor")
+                .timeSignature(4)
+                .energy(0.1 + random.nextDouble() * 0.9)
+                .danceability(0.1 + random.nextDouble() * 0.9)
+                .valence(0.1 + random.nextDouble() * 0.9)
+                .acousticness(random.nextDouble())
+                .instrumentalness(random.nextDouble() * 0.8)
+                .liveness(random.nextDouble() * 0.3)
+                .speechiness(random.nextDouble() * 0.5)
+                .loudness(-30 - random.nextDouble() * 20)
+                .build();
         
         // Generate similar tracks
-        List<Map<String, Object>> similarTracks = new ArrayList<>();
+        List<SimilarTrack> similarTracks = new ArrayList<>();
         for (int i = 0; i < 3; i++) {
-            Map<String, Object> track = new HashMap<>();
-            track.put("name", "Similar Track " + (i + 1));
-            track.put("artist", "Similar Artist " + (i + 1));
-            track.put("album", "Similar Album " + (i + 1));
-            track.put("match", 0.6 + random.nextDouble() * 0.4);
-            similarTracks.add(track);
+            similarTracks.add(new SimilarTrack(null, "Similar Track " + (i + 1), "Similar Artist " + (i + 1),
+                    "Similar Album " + (i + 1), 0.6 + random.nextDouble() * 0.4));
         }
         
         // Sort by match percentage
-        similarTracks.sort((a, b) -> 
-            Double.compare((Double) b.get("match"), (Double) a.get("match")));
+        similarTracks.sort((a, b) -> Double.compare(b.getMatch(), a.getMatch()));
         
         // Create the main analysis result
-        Map<String, Object> analysis = new HashMap<>();
-        analysis.put("title", filename.replaceAll("\\.[^.]+$", "").replace("_", " "));
-        analysis.put("artist", getRandomArtist());
-        analysis.put("album", "Album " + (char) ('A' + random.nextInt(26)));
-        analysis.put("genre", getRandomGenres());
-        analysis.put("year", 1990 + random.nextInt(35));
-        
-        int durationSec = (int) audioFeatures.get("duration");
-        analysis.put("duration", String.format("%d:%02d", durationSec / 60, durationSec % 60));
-        analysis.put("popularity", 30 + random.nextInt(71));
-        analysis.put("audioFeatures", audioFeatures);
-        analysis.put("similarTracks", similarTracks);
-        
-        return analysis;
+        return TrackAnalysis.builder()
+                .title(titleOf(filename))
+                .artist(getRandomArtist())
+                .album("Album " + (char) ('A' + random.nextInt(26)))
+                .genre(getRandomGenres())
+                .year(1990 + random.nextInt(35))
+                .duration(formatDuration(audioFeatures.getDuration()))
+                .popularity(30 + random.nextInt(71))
+                .audioFeatures(audioFeatures)
+                .similarTracks(similarTracks);
+    }
+    
+    /**
+     * @return The title an upload is shown under: its file name without the extension
+     */
+    private static String titleOf(String fileName) {
+        return fileName.replaceAll("\\.[^.]+$", "").replace("_", " ");
+    }
+    
+    /**
+     * @return The duration formatted as m:ss
+     */
+    private static String formatDuration(double seconds) {
+        int durationSec = (int) Math.round(seconds);
+        return String.format("%d:%02d", durationSec / 60, durationSec % 60);
     }
     
     private String getRandomKey() {
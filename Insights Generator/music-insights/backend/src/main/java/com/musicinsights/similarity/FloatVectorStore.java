@@ -0,0 +1,128 @@
+package com.musicinsights.similarity;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Exact float32 vectors, on the heap or in direct (off-heap) memory.
+ *
+ * <p>Off-heap storage suits vectors that are only read occasionally, such as
+ * the exact copies used to re-rank the candidates of a compressed index: they
+ * then add nothing to the heap the garbage collector has to manage.</p>
+ */
+public class FloatVectorStore implements VectorStore {
+    private final int dimensions;
+    private final boolean direct;
+    private FloatBuffer data;
+    private int size;
+
+    /**
+     * @param dimensions Length of every vector
+     * @param direct Whether to keep the vectors in direct memory instead of on the heap
+     */
+    public FloatVectorStore(int dimensions, boolean direct) {
+        this.dimensions = dimensions;
+        this.direct = direct;
+        this.data = allocate(1024 * dimensions);
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int add(float[] vector) {
+        if ((size + 1) * dimensions > data.capacity()) {
+            FloatBuffer grown = allocate(data.capacity() * 2);
+            FloatBuffer old = data.duplicate();
+            old.clear().limit(size * dimensions);
+            grown.put(old);
+            data = grown;
+        }
+        int base = size * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            data.put(base + i, vector[i]);
+        }
+        return size++;
+    }
+
+    @Override
+    public QueryScorer scorer(float[] query) {
+        if (data.hasArray()) {
+            // Heap vectors: read the backing array without per-element buffer checks
+            float[] array = data.array();
+            return node -> {
+                int base = node * dimensions;
+                float sum = 0;
+                for (int i = 0; i < dimensions; i++) {
+                    float diff = query[i] - array[base + i];
+                    sum += diff * diff;
+                }
+                return sum;
+            };
+        }
+        return node -> {
+            int base = node * dimensions;
+            float sum = 0;
+            for (int i = 0; i < dimensions; i++) {
+                float diff = query[i] - data.get(base + i);
+                sum += diff * diff;
+            }
+            return sum;
+        };
+    }
+
+    @Override
+    public float distance(int a, int b) {
+        int baseA = a * dimensions;
+        int baseB = b * dimensions;
+        float sum = 0;
+        if (data.hasArray()) {
+            float[] array = data.array();
+            for (int i = 0; i < dimensions; i++) {
+                float diff = array[baseA + i] - array[baseB + i];
+                sum += diff * diff;
+            }
+            return sum;
+        }
+        for (int i = 0; i < dimensions; i++) {
+            float diff = data.get(baseA + i) - data.get(baseB + i);
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public void get(int node, float[] out) {
+        int base = node * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            out[i] = data.get(base + i);
+        }
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return 4L * data.capacity();
+    }
+
+    /**
+     * @return Whether the vectors are held off-heap
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    private FloatBuffer allocate(int floats) {
+        if (direct) {
+            return ByteBuffer.allocateDirect(floats * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+        return FloatBuffer.allocate(floats);
+    }
+}
@@ -0,0 +1,444 @@
+package com.musicinsights.similarity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hierarchical navigable small world graph for approximate nearest-neighbour
+ * search under squared Euclidean distance (Malkov and Yashunin, 2016).
+ *
+ * <p>Every vector is a node on layer 0 and, with geometrically falling
+ * probability, on higher layers. A search descends greedily from the top layer
+ * and then runs a best-first search on layer 0 that keeps {@code ef} candidates.
+ * Larger {@code m} and {@code ef} values trade memory and latency for recall.</p>
+ *
+ * <p>Vectors live in a {@link VectorStore}, which may be compressed; graph
+ * distances are then approximate. An optional second, exact store re-ranks the
+ * {@code ef} candidates of a search, so the results are ordered by true distance.
+ * Adjacency lists are {@code int[]} with the neighbour count in the first
+ * element. Searches hold a read lock and run concurrently; adding a vector takes
+ * the write lock.</p>
+ */
+public class HnswIndex {
+    private final int dimensions;
+    private final int m;
+    private final int maxLayer0Links;
+    private final int efConstruction;
+    private volatile int efSearch;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<Visited> visited = ThreadLocal.withInitial(Visited::new);
+
+    private final VectorStore vectors;
+    private final VectorStore exact;
+    // links[node][layer] = {count, neighbour...}
+    private int[][][] links;
+    private int size;
+    private int entryPoint = -1;
+    private int topLayer = -1;
+
+    /**
+     * @param dimensions Length of every vector
+     * @param m Links per node on the upper layers; layer 0 keeps twice as many
+     * @param efConstruction Candidates kept while linking a new node
+     * @param efSearch Candidates kept while searching; at least the number of results
+     */
+    public HnswIndex(int dimensions, int m, int efConstruction, int efSearch) {
+        this(new FloatVectorStore(dimensions, false), null, m, efConstruction, efSearch);
+    }
+
+    /**
+     * @param vectors Store the graph is built and searched with; must be empty
+     * @param exact Store of exact vectors used to re-rank search candidates, or null
+     * @param m Links per node on the upper layers; layer 0 keeps twice as many
+     * @param efConstruction Candidates kept while linking a new node
+     * @param efSearch Candidates kept while searching; at least the number of results
+     */
+    public HnswIndex(VectorStore vectors, VectorStore exact, int m, int efConstruction, int efSearch) {
+        if (m < 2) {
+            throw new IllegalArgumentException("m must be at least 2: " + m);
+        }
+        if (vectors.size() != 0 || (exact != null && exact.size() != 0)) {
+            throw new IllegalArgumentException("Vector stores must be empty");
+        }
+        this.vectors = vectors;
+        this.exact = exact;
+        this.dimensions = vectors.dimensions();
+        this.m = m;
+        this.maxLayer0Links = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.links = new int[1024][][];
+    }
+
+    /**
+     * Add a vector to the graph.
+     *
+     * @param vector The vector; it is copied
+     * @return The number assigned to the vector, counting from 0
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        lock.writeLock().lock();
+        try {
+            int node = size;
+            if (node == links.length) {
+                links = Arrays.copyOf(links, node * 2);
+            }
+            vectors.add(vector);
+            if (exact != null) {
+                exact.add(vector);
+            }
+            int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+            links[node] = new int[level + 1][];
+            for (int layer = 0; layer <= level; layer++) {
+                links[node][layer] = new int[1 + (layer == 0 ? maxLayer0Links : m)];
+            }
+            size++;
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                topLayer = level;
+                return node;
+            }
+
+            VectorStore.QueryScorer scorer = vectors.scorer(vector);
+            int current = entryPoint;
+            for (int layer = topLayer; layer > level; layer--) {
+                current = greedyClosest(scorer, current, layer);
+            }
+            for (int layer = Math.min(level, topLayer); layer >= 0; layer--) {
+                NodeHeap found = searchLayer(scorer, current, efConstruction, layer);
+                int[] candidates = drainNearestFirst(found);
+                current = candidates[0];
+                int maxLinks = layer == 0 ? maxLayer0Links : m;
+                int[] selected = selectNeighbors(node, candidates, candidates.length, m);
+                int[] own = links[node][layer];
+                for (int neighbor : selected) {
+                    own[++own[0]] = neighbor;
+                    connect(neighbor, node, layer, maxLinks);
+                }
+            }
+            if (level > topLayer) {
+                topLayer = level;
+                entryPoint = node;
+            }
+            return node;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find approximate nearest neighbours using the configured {@code efSearch}.
+     *
+     * @param query The query vector
+     * @param k Number of results
+     * @return Up to {@code k} neighbours, nearest first
+     */
+    public List<Neighbor> search(float[] query, int k) {
+        return search(query, k, efSearch);
+    }
+
+    /**
+     * Find approximate nearest neighbours.
+     *
+     * @param query The query vector
+     * @param k Number of results
+     * @param ef Candidates kept during the search; raised to {@code k} if smaller
+     * @return Up to {@code k} neighbours, nearest first
+     */
+    public List<Neighbor> search(float[] query, int k, int ef) {
+        if (query.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + query.length);
+        }
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return new ArrayList<>();
+            }
+            VectorStore.QueryScorer scorer = vectors.scorer(query);
+            int current = entryPoint;
+            for (int layer = topLayer; layer > 0; layer--) {
+                current = greedyClosest(scorer, current, layer);
+            }
+            NodeHeap found = searchLayer(scorer, current, Math.max(ef, k), 0);
+            if (exact != null) {
+                found = rerank(found, exact.scorer(query));
+            }
+            while (found.size() > k) {
+                found.pop();
+            }
+            Neighbor[] result = new Neighbor[found.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = new Neighbor(found.topNode(), found.topDistance());
+                found.pop();
+            }
+            return new ArrayList<>(Arrays.asList(result));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return A copy of the vector added as {@code node}; decoded, and so approximate,
+     *         if the index is compressed and keeps no exact vectors
+     */
+    public float[] getVector(int node) {
+        lock.readLock().lock();
+        try {
+            if (node < 0 || node >= size) {
+                throw new IndexOutOfBoundsException("No node " + node);
+            }
+            float[] vector = new float[dimensions];
+            (exact != null ? exact : vectors).get(node, vector);
+            return vector;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public int getM() {
+        return m;
+    }
+
+    public int getEfConstruction() {
+        return efConstruction;
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    public void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * @return Approximate footprint of the vectors and the graph in bytes, including
+     *         exact re-ranking vectors wherever they are held
+     */
+    public long getMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = vectors.getMemoryBytes() + 8L * links.length;
+            if (exact != null) {
+                bytes += exact.getMemoryBytes();
+            }
+            for (int node = 0; node < size; node++) {
+                bytes += 16 + 8L * links[node].length;
+                for (int[] layer : links[node]) {
+                    bytes += 16 + 4L * layer.length;
+                }
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Graph construction and search
+
+    private int greedyClosest(VectorStore.QueryScorer scorer, int start, int layer) {
+        int current = start;
+        float best = scorer.distance(current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbors = links[current][layer];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                float d = scorer.distance(neighbors[i]);
+                if (d < best) {
+                    best = d;
+                    current = neighbors[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer.
+     *
+     * @return The closest {@code ef} nodes found, farthest on top
+     */
+    private NodeHeap searchLayer(VectorStore.QueryScorer scorer, int start, int ef, int layer) {
+        Visited seen = visited.get();
+        seen.reset(size);
+        NodeHeap candidates = NodeHeap.nearestFirst(ef);
+        NodeHeap results = NodeHeap.farthestFirst(ef + 1);
+        float d = scorer.distance(start);
+        candidates.push(start, d);
+        results.push(start, d);
+        seen.mark(start);
+
+        while (!candidates.isEmpty()) {
+            int node = candidates.topNode();
+            if (candidates.topDistance() > results.topDistance() && results.size() >= ef) {
+                break;
+            }
+            candidates.pop();
+            int[] neighbors = links[node][layer];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (!seen.mark(neighbor)) {
+                    continue;
+                }
+                float nd = scorer.distance(neighbor);
+                if (results.size() < ef || nd < results.topDistance()) {
+                    candidates.push(neighbor, nd);
+                    results.push(neighbor, nd);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return The same nodes scored by exact distance, farthest on top
+     */
+    private static NodeHeap rerank(NodeHeap found, VectorStore.QueryScorer exactScorer) {
+        NodeHeap reranked = NodeHeap.farthestFirst(found.size());
+        while (!found.isEmpty()) {
+            int node = found.topNode();
+            found.pop();
+            reranked.push(node, exactScorer.distance(node));
+        }
+        return reranked;
+    }
+
+    private static int[] drainNearestFirst(NodeHeap farthestFirst) {
+        int[] nodes = new int[farthestFirst.size()];
+        for (int i = nodes.length - 1; i >= 0; i--) {
+            nodes[i] = farthestFirst.topNode();
+            farthestFirst.pop();
+        }
+        return nodes;
+    }
+
+    /**
+     * Neighbour selection heuristic: take candidates nearest first, skipping any
+     * that is closer to an already selected neighbour than to the base node, so
+     * links spread in different directions. Skipped candidates fill any places left.
+     *
+     * @param candidates Candidate nodes, nearest to {@code base} first
+     */
+    private int[] selectNeighbors(int base, int[] candidates, int count, int max) {
+        int[] selected = new int[Math.min(max, count)];
+        boolean[] taken = new boolean[count];
+        int n = 0;
+        for (int i = 0; i < count && n < selected.length; i++) {
+            int candidate = candidates[i];
+            if (candidate == base) {
+                taken[i] = true;
+                continue;
+            }
+            float toBase = vectors.distance(base, candidate);
+            boolean keep = true;
+            for (int j = 0; j < n && keep; j++) {
+                keep = vectors.distance(selected[j], candidate) >= toBase;
+            }
+            if (keep) {
+                selected[n++] = candidate;
+                taken[i] = true;
+            }
+        }
+        for (int i = 0; i < count && n < selected.length; i++) {
+            if (!taken[i]) {
+                selected[n++] = candidates[i];
+            }
+        }
+        return n == selected.length ? selected : Arrays.copyOf(selected, n);
+    }
+
+    private void connect(int node, int neighbor, int layer, int maxLinks) {
+        int[] list = links[node][layer];
+        if (list[0] < maxLinks) {
+            list[++list[0]] = neighbor;
+            return;
+        }
+        // Full: re-select among the old links and the new one, nearest first
+        int count = list[0] + 1;
+        int[] candidates = Arrays.copyOfRange(list, 1, count + 1);
+        candidates[count - 1] = neighbor;
+        float[] distances = new float[count];
+        for (int i = 0; i < count; i++) {
+            distances[i] = vectors.distance(node, candidates[i]);
+        }
+        sortByDistance(candidates, distances);
+        int[] selected = selectNeighbors(node, candidates, count, maxLinks);
+        list[0] = selected.length;
+        System.arraycopy(selected, 0, list, 1, selected.length);
+    }
+
+    private static void sortByDistance(int[] nodes, float[] distances) {
+        for (int i = 1; i < nodes.length; i++) {
+            int node = nodes[i];
+            float d = distances[i];
+            int j = i - 1;
+            while (j >= 0 && distances[j] > d) {
+                nodes[j + 1] = nodes[j];
+                distances[j + 1] = distances[j];
+                j--;
+            }
+            nodes[j + 1] = node;
+            distances[j + 1] = d;
+        }
+    }
+
+    /**
+     * Per-thread visited marks, cleared in O(1) by bumping the epoch.
+     */
+    private static final class Visited {
+        private int[] marks = new int[0];
+        private int epoch;
+
+        void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                epoch = 0;
+            }
+            epoch++;
+            if (epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        /**
+         * @return true if the node was not visited yet
+         */
+        boolean mark(int node) {
+            if (marks[node] == epoch) {
+                return false;
+            }
+            marks[node] = epoch;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.musicinsights.similarity;
+
+/**
+ * A search result: an indexed vector and its squared Euclidean distance to the query.
+ */
+public final class Neighbor {
+    private final int node;
+    private final float distance;
+
+    public Neighbor(int node, float distance) {
+        this.node = node;
+        this.distance = distance;
+    }
+
+    /**
+     * @return Number assigned to the vector when it was added
+     */
+    public int getNode() {
+        return node;
+    }
+
+    public float getDistance() {
+        return distance;
+    }
+}
@@ -0,0 +1,101 @@
+package com.musicinsights.similarity;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of (distance, node) pairs held in parallel primitive arrays.
+ * Ordered nearest-first or farthest-first depending on how it is created.
+ */
+final class NodeHeap {
+    private final boolean farthestFirst;
+    private float[] distances;
+    private int[] nodes;
+    private int size;
+
+    private NodeHeap(boolean farthestFirst, int capacity) {
+        this.farthestFirst = farthestFirst;
+        this.distances = new float[Math.max(4, capacity)];
+        this.nodes = new int[distances.length];
+    }
+
+    static NodeHeap nearestFirst(int capacity) {
+        return new NodeHeap(false, capacity);
+    }
+
+    static NodeHeap farthestFirst(int capacity) {
+        return new NodeHeap(true, capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    float topDistance() {
+        return distances[0];
+    }
+
+    int topNode() {
+        return nodes[0];
+    }
+
+    void push(int node, float distance) {
+        if (size == distances.length) {
+            distances = Arrays.copyOf(distances, size * 2);
+            nodes = Arrays.copyOf(nodes, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(distance, distances[parent])) {
+                break;
+            }
+            distances[i] = distances[parent];
+            nodes[i] = nodes[parent];
+            i = parent;
+        }
+        distances[i] = distance;
+        nodes[i] = node;
+    }
+
+    /**
+     * Remove the top entry; read it with {@link #topNode} first.
+     */
+    void pop() {
+        size--;
+        if (size == 0) {
+            return;
+        }
+        float distance = distances[size];
+        int node = nodes[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(distances[child + 1], distances[child])) {
+                child++;
+            }
+            if (!before(distances[child], distance)) {
+                break;
+            }
+            distances[i] = distances[child];
+            nodes[i] = nodes[child];
+            i = child;
+        }
+        distances[i] = distance;
+        nodes[i] = node;
+    }
+
+    private boolean before(float a, float b) {
+        return farthestFirst ? a > b : a < b;
+    }
+}
@@ -0,0 +1,73 @@
+package com.musicinsights.similarity;
+
+import java.util.Arrays;
+
+/**
+ * Vectors stored as product-quantization codes, one byte per subspace.
+ *
+ * <p>Query distances use asymmetric distance computation: the scorer builds the
+ * query's distance table to every centroid once, and each code then costs one
+ * table lookup per subspace.</p>
+ */
+public class ProductQuantizedStore implements VectorStore {
+    private static final int TABLE_STRIDE = 256;
+
+    private final ProductQuantizer quantizer;
+    private final int codeLength;
+    private byte[] codes;
+    private int size;
+
+    public ProductQuantizedStore(ProductQuantizer quantizer) {
+        this.quantizer = quantizer;
+        this.codeLength = quantizer.subspaces();
+        this.codes = new byte[1024 * codeLength];
+    }
+
+    @Override
+    public int dimensions() {
+        return quantizer.dimensions();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int add(float[] vector) {
+        if ((size + 1) * codeLength > codes.length) {
+            codes = Arrays.copyOf(codes, codes.length * 2);
+        }
+        quantizer.encode(vector, codes, size * codeLength);
+        return size++;
+    }
+
+    @Override
+    public QueryScorer scorer(float[] query) {
+        float[] table = quantizer.distanceTable(query);
+        byte[] stored = codes;
+        return node -> {
+            int base = node * codeLength;
+            float sum = 0;
+            for (int s = 0; s < codeLength; s++) {
+                sum += table[s * TABLE_STRIDE + (stored[base + s] & 0xFF)];
+            }
+            return sum;
+        };
+    }
+
+    @Override
+    public float distance(int a, int b) {
+        return quantizer.codeDistance(codes, a * codeLength, b * codeLength);
+    }
+
+    @Override
+    public void get(int node, float[] out) {
+        quantizer.decode(codes, node * codeLength, out);
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return codes.length + quantizer.getMemoryBytes();
+    }
+}
@@ -0,0 +1,215 @@
+package com.musicinsights.similarity;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Product quantizer (Jégou, Douze and Schmid, 2011).
+ *
+ * <p>A vector is split into {@code subspaces} contiguous sub-vectors and each is
+ * replaced by the index of its nearest centroid in that subspace's codebook of up
+ * to 256 entries, learned with k-means. A vector then costs one byte per subspace.
+ * A query is compared with codes through a table of its distances to every
+ * centroid, and two codes through precomputed centroid-to-centroid tables.</p>
+ */
+public final class ProductQuantizer {
+    private static final int MAX_CENTROIDS = 256;
+
+    private final int dimensions;
+    private final int[] start;
+    private final int centroids;
+    // codebooks[s][c * width(s) + i]
+    private final float[][] codebooks;
+    // centroidDistances[s][a * centroids + b]
+    private final float[][] centroidDistances;
+
+    private ProductQuantizer(int dimensions, int[] start, int centroids, float[][] codebooks) {
+        this.dimensions = dimensions;
+        this.start = start;
+        this.centroids = centroids;
+        this.codebooks = codebooks;
+        this.centroidDistances = new float[codebooks.length][centroids * centroids];
+        for (int s = 0; s < codebooks.length; s++) {
+            int width = width(s);
+            for (int a = 0; a < centroids; a++) {
+                for (int b = 0; b < centroids; b++) {
+                    centroidDistances[s][a * centroids + b] =
+                            squaredDistance(codebooks[s], a * width, codebooks[s], b * width, width);
+                }
+            }
+        }
+    }
+
+    /**
+     * Learn the codebooks.
+     *
+     * @param sample Training vectors, all of the same length
+     * @param subspaces Number of sub-vectors, and bytes per encoded vector
+     * @param iterations k-means iterations per subspace
+     * @param seed Seed for centroid initialisation
+     */
+    public static ProductQuantizer train(float[][] sample, int subspaces, int iterations, long seed) {
+        int dimensions = sample[0].length;
+        if (subspaces < 1 || subspaces > dimensions) {
+            throw new IllegalArgumentException("Subspaces must be between 1 and " + dimensions + ": " + subspaces);
+        }
+        int[] start = new int[subspaces + 1];
+        for (int s = 0; s <= subspaces; s++) {
+            start[s] = s * dimensions / subspaces;
+        }
+        int centroids = Math.min(MAX_CENTROIDS, sample.length);
+        Random random = new Random(seed);
+        float[][] codebooks = new float[subspaces][];
+        for (int s = 0; s < subspaces; s++) {
+            codebooks[s] = kMeans(sample, start[s], start[s + 1] - start[s], centroids, iterations, random);
+        }
+        return new ProductQuantizer(dimensions, start, centroids, codebooks);
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * @return Bytes per encoded vector
+     */
+    public int subspaces() {
+        return codebooks.length;
+    }
+
+    void encode(float[] vector, byte[] codes, int offset) {
+        for (int s = 0; s < codebooks.length; s++) {
+            codes[offset + s] = (byte) nearest(codebooks[s], width(s), centroids, vector, start[s]);
+        }
+    }
+
+    void decode(byte[] codes, int offset, float[] out) {
+        for (int s = 0; s < codebooks.length; s++) {
+            int width = width(s);
+            System.arraycopy(codebooks[s], (codes[offset + s] & 0xFF) * width, out, start[s], width);
+        }
+    }
+
+    /**
+     * @return The query's squared distance to every centroid, indexed {@code s * 256 + c}
+     */
+    float[] distanceTable(float[] query) {
+        float[] table = new float[codebooks.length * MAX_CENTROIDS];
+        for (int s = 0; s < codebooks.length; s++) {
+            int width = width(s);
+            for (int c = 0; c < centroids; c++) {
+                table[s * MAX_CENTROIDS + c] = squaredDistance(query, start[s], codebooks[s], c * width, width);
+            }
+        }
+        return table;
+    }
+
+    float codeDistance(byte[] codes, int a, int b) {
+        float sum = 0;
+        for (int s = 0; s < codebooks.length; s++) {
+            sum += centroidDistances[s][(codes[a + s] & 0xFF) * centroids + (codes[b + s] & 0xFF)];
+        }
+        return sum;
+    }
+
+    /**
+     * @return Bytes held by the codebooks and distance tables
+     */
+    long getMemoryBytes() {
+        long bytes = 0;
+        for (int s = 0; s < codebooks.length; s++) {
+            bytes += 4L * codebooks[s].length + 4L * centroidDistances[s].length;
+        }
+        return bytes;
+    }
+
+    private int width(int subspace) {
+        return start[subspace + 1] - start[subspace];
+    }
+
+    private static float[] kMeans(float[][] sample, int offset, int width, int k, int iterations, Random random) {
+        // k-means++ seeding
+        float[] codebook = new float[k * width];
+        float[] closest = new float[sample.length];
+        System.arraycopy(sample[random.nextInt(sample.length)], offset, codebook, 0, width);
+        for (int i = 0; i < sample.length; i++) {
+            closest[i] = squaredDistance(sample[i], offset, codebook, 0, width);
+        }
+        for (int c = 1; c < k; c++) {
+            double total = 0;
+            for (float d : closest) {
+                total += d;
+            }
+            int chosen = random.nextInt(sample.length);
+            if (total > 0) {
+                double target = random.nextDouble() * total;
+                for (int i = 0; i < sample.length; i++) {
+                    target -= closest[i];
+                    if (target <= 0) {
+                        chosen = i;
+                        break;
+                    }
+                }
+            }
+            System.arraycopy(sample[chosen], offset, codebook, c * width, width);
+            for (int i = 0; i < sample.length; i++) {
+                closest[i] = Math.min(closest[i], squaredDistance(sample[i], offset, codebook, c * width, width));
+            }
+        }
+
+        // Lloyd iterations
+        int[] assignment = new int[sample.length];
+        double[] sums = new double[k * width];
+        int[] counts = new int[k];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            Arrays.fill(sums, 0);
+            Arrays.fill(counts, 0);
+            boolean changed = false;
+            for (int i = 0; i < sample.length; i++) {
+                int c = nearest(codebook, width, k, sample[i], offset);
+                changed |= iteration == 0 || c != assignment[i];
+                assignment[i] = c;
+                counts[c]++;
+                for (int d = 0; d < width; d++) {
+                    sums[c * width + d] += sample[i][offset + d];
+                }
+            }
+            for (int c = 0; c < k; c++) {
+                if (counts[c] == 0) {
+                    // Re-seed an empty cluster with a random training point
+                    System.arraycopy(sample[random.nextInt(sample.length)], offset, codebook, c * width, width);
+                    continue;
+                }
+                for (int d = 0; d < width; d++) {
+                    codebook[c * width + d] = (float) (sums[c * width + d] / counts[c]);
+                }
+            }
+            if (!changed) {
+                break;
+            }
+        }
+        return codebook;
+    }
+
+    private static int nearest(float[] codebook, int width, int k, float[] vector, int offset) {
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for (int c = 0; c < k; c++) {
+            float d = squaredDistance(vector, offset, codebook, c * width, width);
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private static float squaredDistance(float[] a, int offsetA, float[] b, int offsetB, int width) {
+        float sum = 0;
+        for (int i = 0; i < width; i++) {
+            float diff = a[offsetA + i] - b[offsetB + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+}
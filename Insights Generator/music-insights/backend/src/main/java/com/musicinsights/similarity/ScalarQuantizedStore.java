@@ -0,0 +1,86 @@
+package com.musicinsights.similarity;
+
+import java.util.Arrays;
+
+/**
+ * Vectors stored as one byte per dimension by a {@link ScalarQuantizer}.
+ * Query distances compare the exact query with the decoded codes, through a
+ * per-query table of distances to every code value.
+ */
+public class ScalarQuantizedStore implements VectorStore {
+    private final ScalarQuantizer quantizer;
+    private final int dimensions;
+    private byte[] codes;
+    private int size;
+
+    public ScalarQuantizedStore(ScalarQuantizer quantizer) {
+        this.quantizer = quantizer;
+        this.dimensions = quantizer.dimensions();
+        this.codes = new byte[1024 * dimensions];
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int add(float[] vector) {
+        if ((size + 1) * dimensions > codes.length) {
+            codes = Arrays.copyOf(codes, codes.length * 2);
+        }
+        quantizer.encode(vector, codes, size * dimensions);
+        return size++;
+    }
+
+    @Override
+    public QueryScorer scorer(float[] query) {
+        // Distance of each query component to all 256 code values, so scoring is one lookup per dimension
+        float[] table = new float[dimensions * 256];
+        for (int d = 0; d < dimensions; d++) {
+            for (int code = 0; code < 256; code++) {
+                float diff = query[d] - quantizer.decode(d, (byte) code);
+                table[d * 256 + code] = diff * diff;
+            }
+        }
+        byte[] stored = codes;
+        return node -> {
+            int base = node * dimensions;
+            float sum = 0;
+            for (int d = 0; d < dimensions; d++) {
+                sum += table[(d << 8) + (stored[base + d] & 0xFF)];
+            }
+            return sum;
+        };
+    }
+
+    @Override
+    public float distance(int a, int b) {
+        int baseA = a * dimensions;
+        int baseB = b * dimensions;
+        float sum = 0;
+        for (int d = 0; d < dimensions; d++) {
+            float diff = quantizer.decode(d, codes[baseA + d]) - quantizer.decode(d, codes[baseB + d]);
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public void get(int node, float[] out) {
+        int base = node * dimensions;
+        for (int d = 0; d < dimensions; d++) {
+            out[d] = quantizer.decode(d, codes[base + d]);
+        }
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return codes.length + 8L * dimensions;
+    }
+}
@@ -0,0 +1,60 @@
+package com.musicinsights.similarity;
+
+import java.util.Arrays;
+
+/**
+ * Per-dimension 8-bit scalar quantizer.
+ *
+ * <p>Each dimension's training range is split into 256 equal steps and a value
+ * is stored as the index of its step, so a vector costs one byte per dimension
+ * instead of four. Values outside the training range are clamped.</p>
+ */
+public final class ScalarQuantizer {
+    private final float[] min;
+    private final float[] step;
+
+    private ScalarQuantizer(float[] min, float[] step) {
+        this.min = min;
+        this.step = step;
+    }
+
+    /**
+     * @param sample Training vectors, all of the same length
+     */
+    public static ScalarQuantizer train(float[][] sample) {
+        int dimensions = sample[0].length;
+        float[] min = new float[dimensions];
+        float[] max = new float[dimensions];
+        Arrays.fill(min, Float.MAX_VALUE);
+        Arrays.fill(max, -Float.MAX_VALUE);
+        for (float[] vector : sample) {
+            for (int d = 0; d < dimensions; d++) {
+                min[d] = Math.min(min[d], vector[d]);
+                max[d] = Math.max(max[d], vector[d]);
+            }
+        }
+        float[] step = new float[dimensions];
+        for (int d = 0; d < dimensions; d++) {
+            step[d] = max[d] > min[d] ? (max[d] - min[d]) / 256 : 1e-6f;
+        }
+        return new ScalarQuantizer(min, step);
+    }
+
+    public int dimensions() {
+        return min.length;
+    }
+
+    void encode(float[] vector, byte[] codes, int offset) {
+        for (int d = 0; d < min.length; d++) {
+            int code = (int) ((vector[d] - min[d]) / step[d]);
+            codes[offset + d] = (byte) Math.max(0, Math.min(255, code));
+        }
+    }
+
+    /**
+     * @return The centre of the step a stored code stands for
+     */
+    float decode(int dimension, byte code) {
+        return min[dimension] + ((code & 0xFF) + 0.5f) * step[dimension];
+    }
+}
@@ -0,0 +1,235 @@
+package com.musicinsights.similarity;
+
+import com.musicinsights.concurrent.BoundedExecutor;
+import com.musicinsights.config.TuningConfig;
+import com.musicinsights.model.SimilarTrack;
+import com.musicinsights.model.TrackAnalysis;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Catalog of analyzed tracks, searchable by audio feature similarity.
+ *
+ * <p>Each track's feature vector is added to an {@link HnswIndex}; a similarity
+ * lookup searches for the nearest vectors to the track's own. Tracks are added
+ * once; later analyses of the same track ID do not replace the first.</p>
+ *
+ * <p>With quantization enabled the catalog starts with exact vectors. Once it
+ * holds enough tracks to train the quantizer, a background thread trains it and
+ * builds a new index over compressed vectors (int8 or product-quantized), while
+ * tracks keep being added to and searched in the exact one. The new index then
+ * catches up with the tracks added meanwhile and replaces the exact one, and
+ * every later track is compressed as it is added. Re-ranking keeps exact copies
+ * off-heap so results are still ordered by exact distance; those copies are the
+ * full float32 vectors, so with re-ranking a track takes more memory than without
+ * quantization, only less of it on the heap.</p>
+ */
+public class TrackCatalog {
+    private static final Logger logger = LoggerFactory.getLogger(TrackCatalog.class);
+    // Tracks added during the rebuild that the new index may take on while holding the lock
+    private static final int CATCH_UP_UNDER_LOCK = 32;
+
+    /**
+     * How the vectors behind the similarity index are stored.
+     */
+    public enum Quantization {
+        /** Exact float32 vectors. */
+        NONE,
+        /** One byte per dimension. */
+        INT8,
+        /** One byte per product-quantization subspace. */
+        PQ
+    }
+
+    private final TrackVectorizer vectorizer;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final Quantization quantization;
+    private final int subspaces;
+    private final int trainSize;
+    private final boolean rerank;
+    private final ExecutorService indexBuilder;
+    private volatile HnswIndex index;
+    // Vectors of every node, in node order, until the quantized index replaces the exact one; guarded by nodes
+    private List<float[]> trainingVectors = new ArrayList<>();
+    // Whether the quantized index is being built; guarded by nodes
+    private boolean building;
+    private final Map<String, Integer> nodes = new ConcurrentHashMap<>();
+    private final Map<Integer, SimilarTrack> tracks = new ConcurrentHashMap<>();
+
+    @Inject
+    public TrackCatalog(TuningConfig tuning) {
+        this(new TrackVectorizer(tuning.getSimilarityEmbeddingDimensions()), tuning.getHnswM(),
+                tuning.getHnswEfConstruction(), tuning.getHnswEfSearch(), tuning.getSimilarityQuantization(),
+                tuning.getPqSubspaces(), tuning.getQuantizationTrainSize(), tuning.isSimilarityRerankEnabled());
+    }
+
+    public TrackCatalog(TrackVectorizer vectorizer, int m, int efConstruction, int efSearch) {
+        this(vectorizer, m, efConstruction, efSearch, Quantization.NONE, 0, 0, false);
+    }
+
+    /**
+     * @param quantization How vectors are compressed once the catalog is trained
+     * @param subspaces Product-quantization subspaces, and bytes per track; 0 for one per two
+     *                  dimensions, an 8x reduction
+     * @param trainSize Tracks collected before the quantizer is trained
+     * @param rerank Whether to keep exact vectors off-heap to re-rank search candidates, which
+     *               adds their full float32 size to every track
+     */
+    public TrackCatalog(TrackVectorizer vectorizer, int m, int efConstruction, int efSearch,
+                        Quantization quantization, int subspaces, int trainSize, boolean rerank) {
+        this.vectorizer = vectorizer;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.quantization = quantization;
+        this.subspaces = subspaces > 0
+                ? Math.min(subspaces, vectorizer.getDimensions())
+                : Math.max(1, vectorizer.getDimensions() / 2);
+        this.trainSize = Math.max(256, trainSize);
+        this.rerank = rerank;
+        this.index = new HnswIndex(vectorizer.getDimensions(), m, efConstruction, efSearch);
+        if (quantization == Quantization.NONE) {
+            trainingVectors = null;
+            indexBuilder = null;
+        } else {
+            indexBuilder = Executors.newSingleThreadExecutor(BoundedExecutor.namedThreads("similarity-index"));
+        }
+    }
+
+    /**
+     * Add an analyzed track.
+     *
+     * @param trackId The track ID
+     * @param analysis The analysis; tracks without audio features are not added
+     * @return false if the track was already in the catalog or has no audio features
+     */
+    public boolean add(String trackId, TrackAnalysis analysis) {
+        if (analysis.getAudioFeatures() == null || nodes.containsKey(trackId)) {
+            return false;
+        }
+        float[] vector = vectorizer.vectorize(analysis.getAudioFeatures());
+        SimilarTrack summary = new SimilarTrack(trackId, analysis.getTitle(), analysis.getArtist(),
+                analysis.getAlbum(), 0);
+
+        synchronized (nodes) {
+            if (nodes.containsKey(trackId)) {
+                return false;
+            }
+            int node = index.add(vector);
+            tracks.put(node, summary);
+            nodes.put(trackId, node);
+            if (trainingVectors != null) {
+                trainingVectors.add(vector);
+                if (!building && trainingVectors.size() >= trainSize) {
+                    building = true;
+                    float[][] sample = trainingVectors.toArray(new float[0][]);
+                    indexBuilder.execute(() -> buildQuantizedIndex(sample));
+                }
+            }
+        }
+        logger.debug("Added track {} to the similarity catalog ({} tracks)", trackId, nodes.size());
+        return true;
+    }
+
+    /**
+     * Find the tracks whose audio features are closest to a catalog track's.
+     *
+     * @param trackId The track ID
+     * @param limit Maximum number of tracks
+     * @return Similar tracks, most similar first, or null if the track is not in the catalog
+     */
+    public List<SimilarTrack> similarTo(String trackId, int limit) {
+        Integer node = nodes.get(trackId);
+        if (node == null) {
+            return null;
+        }
+        List<SimilarTrack> similar = new ArrayList<>();
+        for (Neighbor neighbor : index.search(index.getVector(node), limit + 1)) {
+            SimilarTrack summary = tracks.get(neighbor.getNode());
+            if (neighbor.getNode() == node || summary == null || similar.size() == limit) {
+                continue;
+            }
+            similar.add(summary.withMatch(1 / (1 + Math.sqrt(neighbor.getDistance()))));
+        }
+        return similar;
+    }
+
+    /**
+     * Train the quantizer and add the vectors to a new index in their original
+     * order, so node numbers stay the same. Tracks added meanwhile go to the old
+     * index, which searches keep using, and are then added to the new one until
+     * it has caught up; only that last step holds the catalog lock.
+     */
+    private void buildQuantizedIndex(float[][] sample) {
+        long start = System.nanoTime();
+        HnswIndex quantized;
+        try {
+            VectorStore store = quantization == Quantization.INT8
+                    ? new ScalarQuantizedStore(ScalarQuantizer.train(sample))
+                    : new ProductQuantizedStore(ProductQuantizer.train(sample, subspaces, 20, 17));
+            VectorStore exact = rerank ? new FloatVectorStore(vectorizer.getDimensions(), true) : null;
+            quantized = new HnswIndex(store, exact, m, efConstruction, efSearch);
+            for (float[] vector : sample) {
+                quantized.add(vector);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Could not build the {} similarity index; keeping exact vectors", quantization, e);
+            synchronized (nodes) {
+                trainingVectors = null;
+            }
+            return;
+        }
+
+        int added = sample.length;
+        while (true) {
+            List<float[]> pending;
+            synchronized (nodes) {
+                pending = new ArrayList<>(trainingVectors.subList(added, trainingVectors.size()));
+                if (pending.size() <= CATCH_UP_UNDER_LOCK) {
+                    for (float[] vector : pending) {
+                        quantized.add(vector);
+                    }
+                    index = quantized;
+                    trainingVectors = null;
+                    break;
+                }
+            }
+            for (float[] vector : pending) {
+                quantized.add(vector);
+            }
+            added += pending.size();
+        }
+        int floatBytes = 4 * vectorizer.getDimensions();
+        int codeBytes = quantization == Quantization.INT8 ? vectorizer.getDimensions() : subspaces;
+        logger.info("Rebuilt similarity index over {} {}-compressed vectors in {} ms ({} bytes per vector{} instead of {})",
+                quantized.size(), quantization, (System.nanoTime() - start) / 1_000_000,
+                rerank ? codeBytes + floatBytes : codeBytes, rerank ? " with exact copies for re-ranking" : "",
+                floatBytes);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public HnswIndex getIndex() {
+        return index;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (indexBuilder != null) {
+            indexBuilder.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.musicinsights.similarity;
+
+import com.musicinsights.model.AudioFeatures;
+
+import java.util.Arrays;
+
+/**
+ * Turns the audio features of a track analysis into a fixed-length vector.
+ *
+ * <p>Every feature is scaled to roughly [0, 1] so that each contributes about
+ * equally to Euclidean distance. The key is placed on the circle of fifths, so
+ * related keys end up close. The features' embedding, when present, is
+ * appended; tracks without one get zeros there.</p>
+ */
+public class TrackVectorizer {
+    private static final String[] KEYS = {"C", "C#", "D", "D#", "E", "F", "F#", "G", "G#", "A", "A#", "B"};
+    private static final int FEATURES = 12;
+
+    private final int embeddingDimensions;
+
+    /**
+     * @param embeddingDimensions Number of embedding values appended to the features
+     */
+    public TrackVectorizer(int embeddingDimensions) {
+        this.embeddingDimensions = embeddingDimensions;
+    }
+
+    public int getDimensions() {
+        return FEATURES + embeddingDimensions;
+    }
+
+    /**
+     * @param audioFeatures The audio features of an analysis
+     * @return The feature vector
+     */
+    public float[] vectorize(AudioFeatures audioFeatures) {
+        float[] vector = new float[getDimensions()];
+        vector[0] = (float) (audioFeatures.getTempo() / 200);
+        vector[1] = (float) audioFeatures.getEnergy();
+        vector[2] = (float) audioFeatures.getDanceability();
+        vector[3] = (float) audioFeatures.getValence();
+        vector[4] = (float) audioFeatures.getAcousticness();
+        vector[5] = (float) audioFeatures.getInstrumentalness();
+        vector[6] = (float) audioFeatures.getLiveness();
+        vector[7] = (float) audioFeatures.getSpeechiness();
+        vector[8] = (float) ((audioFeatures.getLoudness() + 60) / 60);
+        int key = Arrays.asList(KEYS).indexOf(audioFeatures.getKey());
+        if (key >= 0) {
+            double angle = 2 * Math.PI * ((key * 7) % 12) / 12;
+            vector[9] = (float) (0.25 * Math.cos(angle));
+            vector[10] = (float) (0.25 * Math.sin(angle));
+        }
+        vector[11] = "major".equals(audioFeatures.getMode()) ? 0.25f : 0f;
+
+        float[] embedding = audioFeatures.getEmbedding();
+        if (embedding != null) {
+            System.arraycopy(embedding, 0, vector, FEATURES, Math.min(embeddingDimensions, embedding.length));
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,47 @@
+package com.musicinsights.similarity;
+
+/**
+ * Storage for the vectors of a similarity index, addressed by insertion order.
+ *
+ * <p>Implementations may store vectors exactly or in compressed form. Distances
+ * are squared Euclidean; for compressed stores they are approximations. Stores
+ * are not thread-safe: the owning index guards them.</p>
+ */
+public interface VectorStore {
+
+    /**
+     * Computes distances from one query vector to stored vectors. Compressed
+     * stores precompute per-query tables here, so one scorer should be reused for
+     * every distance of a query (asymmetric distance computation).
+     */
+    interface QueryScorer {
+        float distance(int node);
+    }
+
+    int dimensions();
+
+    int size();
+
+    /**
+     * @param vector The vector; it is copied or encoded
+     * @return The number assigned to the vector, counting from 0
+     */
+    int add(float[] vector);
+
+    QueryScorer scorer(float[] query);
+
+    /**
+     * @return Distance between two stored vectors
+     */
+    float distance(int a, int b);
+
+    /**
+     * Copy a stored vector, decoded if the store is compressed.
+     */
+    void get(int node, float[] out);
+
+    /**
+     * @return Approximate memory held by the store in bytes, including codebooks
+     */
+    long getMemoryBytes();
+}
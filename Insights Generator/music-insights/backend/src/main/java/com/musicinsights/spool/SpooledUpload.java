@@ -0,0 +1,105 @@
+package com.musicinsights.spool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * An upload that has been received in full, either in a pooled buffer or in a
+ * spool file. Closing it returns the buffer to the pool or deletes the file.
+ */
+public class SpooledUpload implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SpooledUpload.class);
+
+    private final ByteBuffer memory;
+    private final BufferPool pool;
+    private final Path file;
+    private final FileChannel channel;
+    private final long size;
+    private final String digest;
+    private boolean closed;
+
+    private SpooledUpload(ByteBuffer memory, BufferPool pool, Path file, FileChannel channel,
+                          long size, String digest) {
+        this.memory = memory;
+        this.pool = pool;
+        this.file = file;
+        this.channel = channel;
+        this.size = size;
+        this.digest = digest;
+    }
+
+    static SpooledUpload inMemory(ByteBuffer buffer, BufferPool pool, String digest) {
+        return new SpooledUpload(buffer, pool, null, null, buffer.remaining(), digest);
+    }
+
+    static SpooledUpload onDisk(Path file, FileChannel channel, long size, String digest) {
+        return new SpooledUpload(null, null, file, channel, size, digest);
+    }
+
+    /**
+     * @return Number of bytes in the upload
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return Lower-case hex SHA-256 digest of the upload content
+     */
+    public String digest() {
+        return digest;
+    }
+
+    public boolean isInMemory() {
+        return memory != null;
+    }
+
+    /**
+     * Get a read-only view of the upload. For spooled files this is a memory-mapped
+     * view, so the content is paged in on access rather than copied onto the heap.
+     * The view must not be used after the upload is closed.
+     *
+     * @return A buffer positioned at the first byte of the upload
+     * @throws IOException if the spool file cannot be mapped
+     */
+    public ByteBuffer view() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Upload already closed");
+        }
+        if (memory != null) {
+            return memory.asReadOnlyBuffer();
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Upload too large to map: " + size + " bytes");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (memory != null) {
+            pool.release(memory);
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close spool file: {}", file);
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete spool file: {}", file);
+        }
+    }
+}
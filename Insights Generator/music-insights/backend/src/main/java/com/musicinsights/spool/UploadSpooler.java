@@ -0,0 +1,180 @@
+package com.musicinsights.spool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Receives upload streams and keeps them in memory or in a spool directory.
+ *
+ * <p>Uploads smaller than the memory threshold stay in a pooled buffer. Larger
+ * uploads are written to a file in the spool directory in threshold-sized chunks
+ * through a {@link FileChannel}, one write per chunk; when the source is itself a
+ * file the bytes are moved with {@link FileChannel#transferFrom} instead. Pointing
+ * the spool directory at a tmpfs mount keeps spilled uploads off the disk.</p>
+ *
+ * <p>The content is hashed with SHA-256 as it is spooled, so callers get a
+ * content digest without a second pass over the upload.</p>
+ *
+ * <p>An upload that grows past the file size limit while it is read fails with
+ * {@link UploadTooLargeException}; at most one more buffer of it is read, and
+ * nothing of it is kept.</p>
+ */
+public class UploadSpooler {
+    private static final Logger logger = LoggerFactory.getLogger(UploadSpooler.class);
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final Path directory;
+    private final BufferPool pool;
+    private final long maxBytes;
+
+    /**
+     * @param directory Where uploads over the memory threshold are spooled
+     * @param memoryThreshold Uploads up to this many bytes are kept in memory
+     * @param poolSize Idle buffers kept for reuse
+     * @param maxBytes Largest upload in bytes; 0 or less disables the limit
+     */
+    public UploadSpooler(Path directory, int memoryThreshold, int poolSize, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.pool = new BufferPool(memoryThreshold, poolSize);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            logger.warn("Could not create spool directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Read the stream to the end and spool it.
+     *
+     * @param in The upload stream; it is read fully but not closed
+     * @return The spooled upload, which the caller must close
+     * @throws UploadTooLargeException if the stream is longer than the file size limit
+     * @throws IOException if the stream cannot be read or the spool file written
+     */
+    public SpooledUpload spool(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = pool.acquire();
+        try {
+            boolean ended = fill(in, buffer);
+            checkSize(buffer.position());
+            if (ended) {
+                buffer.flip();
+                digest.update(buffer.array(), buffer.arrayOffset(), buffer.limit());
+                SpooledUpload upload = SpooledUpload.inMemory(buffer, pool, toHex(digest.digest()));
+                buffer = null;
+                return upload;
+            }
+            return spill(in, buffer, digest);
+        } finally {
+            if (buffer != null) {
+                pool.release(buffer);
+            }
+        }
+    }
+
+    private SpooledUpload spill(InputStream in, ByteBuffer buffer, MessageDigest digest) throws IOException {
+        Path file = Files.createTempFile(directory, "upload_", ".spool");
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = 0;
+            boolean ended = false;
+            while (true) {
+                buffer.flip();
+                digest.update(buffer.array(), buffer.arrayOffset(), buffer.limit());
+                while (buffer.hasRemaining()) {
+                    size += channel.write(buffer);
+                }
+                if (ended) {
+                    break;
+                }
+                if (in instanceof FileInputStream) {
+                    long transferred = transferAll(((FileInputStream) in).getChannel(), channel, size,
+                            maxBytes > 0 ? maxBytes - size + 1 : Long.MAX_VALUE);
+                    checkSize(size + transferred);
+                    if (transferred > 0) {
+                        // The bytes bypassed the heap; hash them from the page cache
+                        digest.update(channel.map(FileChannel.MapMode.READ_ONLY, size, transferred));
+                    }
+                    size += transferred;
+                    break;
+                }
+                buffer.clear();
+                ended = fill(in, buffer);
+                checkSize(size + buffer.position());
+            }
+            logger.debug("Spooled {} bytes to {}", size, file);
+            return SpooledUpload.onDisk(file, channel, size, toHex(digest.digest()));
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    private void checkSize(long size) throws UploadTooLargeException {
+        if (maxBytes > 0 && size > maxBytes) {
+            throw new UploadTooLargeException("File size exceeds maximum limit of " + maxBytes + " bytes");
+        }
+    }
+
+    private static long transferAll(FileChannel source, FileChannel target, long position, long limit)
+            throws IOException {
+        long transferred = 0;
+        long n;
+        while (transferred < limit
+                && (n = target.transferFrom(source, position + transferred, limit - transferred)) > 0) {
+            transferred += n;
+        }
+        return transferred;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            hex[2 * i + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Read from the stream straight into the buffer's backing array until the
+     * buffer is full or the stream ends.
+     *
+     * @return true if the stream ended before the buffer filled up
+     */
+    private static boolean fill(InputStream in, ByteBuffer buffer) throws IOException {
+        byte[] array = buffer.array();
+        while (buffer.hasRemaining()) {
+            int n = in.read(array, buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (n < 0) {
+                return true;
+            }
+            buffer.position(buffer.position() + n);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,27 @@
+package com.musicinsights.spool;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link UploadSpooler} for an upload that turns out to be larger
+ * than the file size limit once it is read, whatever size it declared.
+ */
+public class UploadTooLargeException extends IOException {
+
+    public UploadTooLargeException(String message) {
+        super(message);
+    }
+
+    /**
+     * @return The first {@code UploadTooLargeException} in the cause chain of
+     *         {@code error}, or null if there is none
+     */
+    public static UploadTooLargeException causeOf(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UploadTooLargeException) {
+                return (UploadTooLargeException) cause;
+            }
+        }
+        return null;
+    }
+}
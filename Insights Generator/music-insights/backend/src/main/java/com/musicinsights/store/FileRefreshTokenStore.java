@@ -0,0 +1,360 @@
+package com.musicinsights.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Refresh tokens kept in an append-only log file, which several instances on
+ * one host can share.
+ *
+ * <p>Each change is appended as a length-prefixed, checksummed record, and all
+ * tokens are also held in memory. Every operation takes an exclusive lock on a
+ * separate lock file and first reads the records other instances appended since
+ * it last looked, so all instances see each other's changes. A torn record at
+ * the end of the log, left by a crash mid-write, is cut off.</p>
+ *
+ * <p>Once the log is larger than {@code compactionBytes} and more than twice the
+ * size of the live records, it is compacted: the live records are written to a
+ * new file that atomically replaces the log, and a generation number in the
+ * lock file, bumped before the replacement, tells the other instances to reload
+ * it. Restart reads the compacted log sequentially.</p>
+ *
+ * <p>Files are created readable by their owner only where the file system
+ * supports POSIX permissions.</p>
+ */
+public class FileRefreshTokenStore implements RefreshTokenStore, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(FileRefreshTokenStore.class);
+    private static final String LOG_FILE = "refresh-tokens.log";
+    private static final String LOCK_FILE = "refresh-tokens.lock";
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    // Record length and checksum
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    // A JVM may hold one lock per file, so stores of the same directory in one JVM take turns
+    private static final Map<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+    private final Path logPath;
+    private final long compactionBytes;
+    private final Object monitor;
+    private final FileChannel lockChannel;
+
+    // Guarded by monitor and the file lock
+    private final Map<String, String> tokens = new HashMap<>();
+    private FileChannel logChannel;
+    private long generation;
+    private long readOffset;
+    private long liveBytes;
+
+    /**
+     * Open the store in a directory, loading the tokens already logged there.
+     *
+     * @param directory Directory of the log, created if missing
+     * @param compactionBytes Log size above which it is compacted once mostly superseded
+     */
+    public FileRefreshTokenStore(Path directory, long compactionBytes) throws IOException {
+        Files.createDirectories(directory);
+        this.logPath = directory.resolve(LOG_FILE);
+        this.compactionBytes = compactionBytes;
+        Path lockPath = directory.resolve(LOCK_FILE).toAbsolutePath().normalize();
+        this.monitor = MONITORS.computeIfAbsent(lockPath, path -> new Object());
+        createOwnerOnly(lockPath);
+        createOwnerOnly(logPath);
+        this.lockChannel = FileChannel.open(lockPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long start = System.nanoTime();
+        synchronized (monitor) {
+            try (FileLock ignored = lockChannel.lock()) {
+                generation = readGeneration();
+                logChannel = openLog();
+                catchUp();
+            }
+        }
+        logger.info("Loaded {} refresh tokens from {} ({} bytes) in {} ms", tokens.size(), logPath, readOffset,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Override
+    public String get(String userId) {
+        return locked(() -> tokens.get(userId));
+    }
+
+    @Override
+    public void put(String userId, String refreshToken) {
+        locked(() -> {
+            append(encode(PUT, userId, refreshToken));
+            return null;
+        });
+    }
+
+    @Override
+    public void remove(String userId) {
+        locked(() -> {
+            if (tokens.containsKey(userId)) {
+                append(encode(REMOVE, userId, null));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public int size() {
+        return locked(tokens::size);
+    }
+
+    /**
+     * @return Current size of the log in bytes
+     */
+    public long getLogBytes() {
+        return locked(() -> readOffset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (monitor) {
+            logChannel.close();
+            lockChannel.close();
+        }
+    }
+
+    private <T> T locked(IoSupplier<T> action) {
+        synchronized (monitor) {
+            try (FileLock ignored = lockChannel.lock()) {
+                catchUp();
+                return action.get();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Refresh token log " + logPath + " failed", e);
+            }
+        }
+    }
+
+    // Reading
+
+    /**
+     * Apply the records appended since the last call, reloading the log if
+     * another instance compacted it.
+     */
+    private void catchUp() throws IOException {
+        long current = readGeneration();
+        if (current != generation) {
+            logChannel.close();
+            logChannel = openLog();
+            generation = current;
+            tokens.clear();
+            readOffset = 0;
+            liveBytes = 0;
+        }
+
+        long size = logChannel.size();
+        if (size <= readOffset) {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(logChannel.position(readOffset)), 64 * 1024));
+        CRC32 crc = new CRC32();
+        while (readOffset < size) {
+            long remaining = size - readOffset;
+            if (remaining < RECORD_HEADER_BYTES) {
+                truncate(size);
+                return;
+            }
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length <= 0 || length > remaining - RECORD_HEADER_BYTES) {
+                truncate(size);
+                return;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                truncate(size);
+                return;
+            }
+            apply(payload, 0, length);
+            readOffset += RECORD_HEADER_BYTES + length;
+        }
+    }
+
+    /**
+     * Cut off a record torn by a crash; no writer is mid-record while the lock is held.
+     */
+    private void truncate(long size) throws IOException {
+        logger.warn("Discarding {} bytes of a torn record at the end of {}", size - readOffset, logPath);
+        logChannel.truncate(readOffset);
+    }
+
+    private void apply(byte[] bytes, int offset, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset, length));
+        byte op = in.readByte();
+        String userId = in.readUTF();
+        String previous;
+        if (op == PUT) {
+            previous = tokens.put(userId, in.readUTF());
+            liveBytes += RECORD_HEADER_BYTES + length;
+        } else {
+            previous = tokens.remove(userId);
+        }
+        if (previous != null) {
+            liveBytes -= recordBytes(userId, previous);
+        }
+    }
+
+    // Writing
+
+    private void append(byte[] record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        long position = readOffset;
+        while (buffer.hasRemaining()) {
+            position += logChannel.write(buffer, position);
+        }
+        logChannel.force(false);
+        apply(record, RECORD_HEADER_BYTES, record.length - RECORD_HEADER_BYTES);
+        readOffset = position;
+
+        if (readOffset > compactionBytes && readOffset > 2 * liveBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Replace the log with one holding only the live records.
+     */
+    private void compact() throws IOException {
+        long before = readOffset;
+        Path temp = Files.createTempFile(logPath.getParent(), "refresh-tokens", ".tmp", ownerOnly());
+        try {
+            long written = 0;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024)) {
+                for (Map.Entry<String, String> entry : tokens.entrySet()) {
+                    byte[] record = encode(PUT, entry.getKey(), entry.getValue());
+                    out.write(record);
+                    written += record.length;
+                }
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            // Bumped before the move: if this instance dies after replacing the log, the others must still
+            // reload it instead of appending to the old one, which is no longer linked
+            writeGeneration(++generation);
+            try {
+                Files.move(temp, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, logPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            logChannel.close();
+            logChannel = openLog();
+            readOffset = written;
+            liveBytes = written;
+            logger.info("Compacted {} from {} to {} bytes ({} tokens)", logPath, before, written, tokens.size());
+        } catch (IOException e) {
+            // The old log is still complete, so keep appending to it
+            logger.warn("Failed to compact {}: {}", logPath, e.getMessage());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static byte[] encode(byte op, String userId, String refreshToken) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeByte(op);
+            out.writeUTF(userId);
+            if (refreshToken != null) {
+                out.writeUTF(refreshToken);
+            }
+            byte[] record = bytes.toByteArray();
+            int length = record.length - RECORD_HEADER_BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(record, RECORD_HEADER_BYTES, length);
+            ByteBuffer.wrap(record).putInt(length).putInt((int) crc.getValue());
+            return record;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long recordBytes(String userId, String refreshToken) {
+        return encode(PUT, userId, refreshToken).length;
+    }
+
+    // Files
+
+    private FileChannel openLog() throws IOException {
+        return FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+    }
+
+    private long readGeneration() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        while (buffer.hasRemaining()) {
+            if (lockChannel.read(buffer, buffer.position()) < 0) {
+                return 0;
+            }
+        }
+        return buffer.getLong(0);
+    }
+
+    private void writeGeneration(long value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, value);
+        while (buffer.hasRemaining()) {
+            lockChannel.write(buffer, buffer.position());
+        }
+        lockChannel.force(false);
+    }
+
+    private static void createOwnerOnly(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            try {
+                Files.createFile(file, ownerOnly());
+            } catch (FileAlreadyExistsException e) {
+                // Created by another instance meanwhile
+            }
+        }
+    }
+
+    private static FileAttribute<?>[] ownerOnly() {
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))};
+        }
+        return new FileAttribute<?>[0];
+    }
+
+    private interface IoSupplier<T> {
+        T get() throws IOException;
+    }
+}
@@ -0,0 +1,32 @@
+package com.musicinsights.store;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Refresh tokens held in a concurrent map, lost on restart and private to one
+ * instance.
+ */
+public class InMemoryRefreshTokenStore implements RefreshTokenStore {
+    private final Map<String, String> tokens = new ConcurrentHashMap<>();
+
+    @Override
+    public String get(String userId) {
+        return tokens.get(userId);
+    }
+
+    @Override
+    public void put(String userId, String refreshToken) {
+        tokens.put(userId, refreshToken);
+    }
+
+    @Override
+    public void remove(String userId) {
+        tokens.remove(userId);
+    }
+
+    @Override
+    public int size() {
+        return tokens.size();
+    }
+}
@@ -0,0 +1,29 @@
+package com.musicinsights.store;
+
+/**
+ * Spotify refresh tokens by Spotify user ID.
+ *
+ * <p>Implementations are thread-safe.</p>
+ */
+public interface RefreshTokenStore {
+
+    /**
+     * @return The user's refresh token, or null if the user has not linked Spotify
+     */
+    String get(String userId);
+
+    /**
+     * Store a user's refresh token, replacing any previous one.
+     */
+    void put(String userId, String refreshToken);
+
+    /**
+     * Forget a user's refresh token.
+     */
+    void remove(String userId);
+
+    /**
+     * @return Number of users with a refresh token
+     */
+    int size();
+}
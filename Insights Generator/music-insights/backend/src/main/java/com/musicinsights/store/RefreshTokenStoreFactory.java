@@ -0,0 +1,51 @@
+package com.musicinsights.store;
+
+import com.musicinsights.config.TuningConfig;
+import org.glassfish.hk2.api.Factory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Provides the refresh-token store: a log in {@code spotify.refreshTokens.dir}
+ * when that is set, otherwise memory only.
+ */
+public class RefreshTokenStoreFactory implements Factory<RefreshTokenStore> {
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenStoreFactory.class);
+
+    private final TuningConfig tuning;
+
+    @Inject
+    public RefreshTokenStoreFactory(TuningConfig tuning) {
+        this.tuning = tuning;
+    }
+
+    @Override
+    public RefreshTokenStore provide() {
+        Path directory = tuning.getRefreshTokenDirectory();
+        if (directory != null) {
+            try {
+                return new FileRefreshTokenStore(directory, tuning.getRefreshTokenCompactionBytes());
+            } catch (IOException e) {
+                logger.error("Refresh token directory {} is unusable, keeping tokens in memory only: {}",
+                        directory, e.getMessage());
+            }
+        }
+        return new InMemoryRefreshTokenStore();
+    }
+
+    @Override
+    public void dispose(RefreshTokenStore store) {
+        if (store instanceof Closeable) {
+            try {
+                ((Closeable) store).close();
+            } catch (IOException e) {
+                logger.warn("Failed to close refresh token store: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.musicinsights.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FeatureAccumulatorTest {
+    private static final int SAMPLE_RATE = StftEngine.ANALYSIS_SAMPLE_RATE;
+
+    @Test
+    void measuresASteadySine() throws IOException {
+        double amplitude = 0.5;
+        FeatureAccumulator features = analyze(SyntheticWav.pcm16(SAMPLE_RATE, 1, 5 * SAMPLE_RATE,
+                SyntheticWav.sine(440, amplitude, SAMPLE_RATE)));
+
+        assertEquals(5.0, features.getDurationSeconds(), 1e-9);
+        assertEquals(amplitude / Math.sqrt(2), features.getRms(), 1e-3);
+        assertEquals(amplitude, features.getPeak(), 1e-3);
+        assertEquals(2.0 * 440 / SAMPLE_RATE, features.getZeroCrossingRate(), 1e-4);
+        assertEquals(440, features.getSpectralCentroid(), 40);
+        assertTrue(features.getSpectralFlux() < 0.01);
+        assertEquals("A", features.getKeyName());
+    }
+
+    @Test
+    void findsTheTempoOfRegularClicks() throws IOException {
+        // A click every half second is 120 BPM
+        int beat = SAMPLE_RATE / 2;
+        FeatureAccumulator features = analyze(SyntheticWav.pcm16(SAMPLE_RATE, 1, 20 * SAMPLE_RATE,
+                i -> 0.05 * Math.sin(2 * Math.PI * 330.0 * i / SAMPLE_RATE)
+                        + (i % beat < 200 ? 0.8 * Math.sin(2 * Math.PI * 2000.0 * i / SAMPLE_RATE) : 0)));
+
+        assertEquals(120, features.getTempo(), 1.0);
+        assertTrue(features.getBeatRegularity() > 0.9);
+    }
+
+    @Test
+    void silenceHasNoPitchOrTempo() throws IOException {
+        FeatureAccumulator features = analyze(SyntheticWav.pcm16(SAMPLE_RATE, 1, SAMPLE_RATE, i -> 0));
+
+        assertEquals(-96.0, features.getLoudnessDb(), 0);
+        assertEquals(0, features.getSpectralCentroid(), 0);
+        assertEquals(0, features.getTempo(), 0);
+        assertEquals(-1, features.getKey());
+    }
+
+    @Test
+    void mergingAdjacentRangesMatchesOnePass() throws IOException {
+        ByteBuffer wav = SyntheticWav.pcm16(SAMPLE_RATE, 1, 4 * SAMPLE_RATE,
+                SyntheticWav.sine(261.63, 0.4, SAMPLE_RATE));
+        FeatureAccumulator whole = analyze(wav.duplicate());
+
+        long split = 2L * 512 * 40;
+        FeatureAccumulator first = analyze(wav.duplicate(), 0, split);
+        first.merge(analyze(wav.duplicate(), split, Long.MAX_VALUE));
+
+        assertEquals(whole.getSamples(), first.getSamples());
+        assertEquals(whole.getFrames(), first.getFrames());
+        assertEquals(whole.getRms(), first.getRms(), 1e-9);
+        assertEquals(whole.getZeroCrossingRate(), first.getZeroCrossingRate(), 1e-9);
+        assertEquals(whole.getSpectralCentroid(), first.getSpectralCentroid(), 1e-9);
+        assertArrayEquals(whole.getOnsets(), first.getOnsets());
+    }
+
+    @Test
+    void refusesToMergeDifferentLayouts() {
+        FeatureAccumulator a = new FeatureAccumulator(SAMPLE_RATE, 1024, 512);
+        FeatureAccumulator b = new FeatureAccumulator(SAMPLE_RATE, 2048, 512);
+
+        assertThrows(IllegalArgumentException.class, () -> a.merge(b));
+    }
+
+    private static FeatureAccumulator analyze(ByteBuffer wav) throws IOException {
+        return analyze(wav, 0, Long.MAX_VALUE);
+    }
+
+    private static FeatureAccumulator analyze(ByteBuffer wav, long countFrom, long countTo) throws IOException {
+        StftEngine engine = new StftEngine();
+        PcmFrameReader reader = new PcmFrameReader(new ByteBufferChannel(wav), engine.getHopSize());
+        reader.format();
+        int sampleRate = reader.decimateTo(SAMPLE_RATE);
+        FeatureAccumulator accumulator = new FeatureAccumulator(sampleRate, engine.getFftSize(),
+                engine.getHopSize(), countFrom, countTo);
+        engine.process(reader, accumulator, 0);
+        return accumulator;
+    }
+}
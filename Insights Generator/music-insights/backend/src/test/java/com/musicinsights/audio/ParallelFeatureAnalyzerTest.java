@@ -0,0 +1,84 @@
+package com.musicinsights.audio;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelFeatureAnalyzerTest {
+    private static final int SAMPLE_RATE = 44100;
+    private static final double TOLERANCE = 1e-9;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void segmentedPassMatchesTheSequentialPass() throws IOException {
+        ByteBuffer wav = longSine(47);
+        FeatureAccumulator sequential = sequential(wav.duplicate());
+        assertTrue(sequential.getOnsets().length > 40);
+
+        for (int segmentSeconds : new int[] {5, 10, 60}) {
+            FeatureAccumulator parallel = new ParallelFeatureAnalyzer(pool, segmentSeconds).analyze(wav.duplicate());
+
+            assertEquals(sequential.getSampleRate(), parallel.getSampleRate());
+            assertEquals(sequential.getSamples(), parallel.getSamples());
+            assertEquals(sequential.getFrames(), parallel.getFrames());
+            assertEquals(sequential.getPeak(), parallel.getPeak(), 0);
+            assertEquals(sequential.getRms(), parallel.getRms(), TOLERANCE);
+            assertEquals(sequential.getZeroCrossingRate(), parallel.getZeroCrossingRate(), TOLERANCE);
+            assertEquals(sequential.getSpectralCentroid(), parallel.getSpectralCentroid(), TOLERANCE);
+            assertEquals(sequential.getSpectralRolloff(), parallel.getSpectralRolloff(), TOLERANCE);
+            assertEquals(sequential.getSpectralFlux(), parallel.getSpectralFlux(), TOLERANCE);
+            assertArrayEquals(sequential.getOnsets(), parallel.getOnsets());
+            assertEquals(sequential.getTempo(), parallel.getTempo(), 0);
+            assertEquals(sequential.getKey(), parallel.getKey());
+            assertEquals(sequential.isMajor(), parallel.isMajor());
+        }
+    }
+
+    @Test
+    void reportsAMalformedHeader() {
+        ByteBuffer notWav = ByteBuffer.wrap(new byte[4096]);
+
+        assertThrows(UnsupportedAudioFormatException.class,
+                () -> new ParallelFeatureAnalyzer(pool, 5).analyze(notWav));
+    }
+
+    /**
+     * A stereo sine chord with a noisy click on every beat, long enough for
+     * several segments and not a whole number of them.
+     */
+    private static ByteBuffer longSine(int seconds) {
+        Random random = new Random(42);
+        int beat = SAMPLE_RATE / 2;
+        return SyntheticWav.pcm16(SAMPLE_RATE, 2, seconds * SAMPLE_RATE, i -> {
+            double t = (double) i / SAMPLE_RATE;
+            double sample = 0.2 * Math.sin(2 * Math.PI * 220.0 * t) + 0.15 * Math.sin(2 * Math.PI * 329.63 * t);
+            double sinceBeat = (double) (i % beat) / SAMPLE_RATE;
+            return sample + 0.4 * Math.exp(-sinceBeat * 60) * (random.nextDouble() * 2 - 1);
+        });
+    }
+
+    private static FeatureAccumulator sequential(ByteBuffer wav) throws IOException {
+        StftEngine engine = new StftEngine();
+        PcmFrameReader reader = new PcmFrameReader(new ByteBufferChannel(wav), engine.getHopSize());
+        reader.format();
+        int sampleRate = reader.decimateTo(StftEngine.ANALYSIS_SAMPLE_RATE);
+        FeatureAccumulator accumulator = new FeatureAccumulator(sampleRate, engine.getFftSize(), engine.getHopSize());
+        engine.process(reader, accumulator, 0);
+        return accumulator;
+    }
+}
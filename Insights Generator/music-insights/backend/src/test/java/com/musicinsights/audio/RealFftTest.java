@@ -0,0 +1,70 @@
+package com.musicinsights.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RealFftTest {
+
+    @Test
+    void matchesANaiveDftForEverySize() {
+        Random random = new Random(7);
+        for (int size = 4; size <= 2048; size <<= 1) {
+            double[] input = new double[size];
+            for (int i = 0; i < size; i++) {
+                input[i] = random.nextDouble() * 2 - 1;
+            }
+            double[] magnitudes = new double[size / 2 + 1];
+            new RealFft(size).magnitudes(input, magnitudes);
+
+            double[] expected = naiveDft(input);
+            for (int k = 0; k < expected.length; k++) {
+                assertEquals(expected[k], magnitudes[k], 1e-9 * size, "size " + size + ", bin " + k);
+            }
+        }
+    }
+
+    @Test
+    void reusesItsWorkArraysAcrossCalls() {
+        RealFft fft = new RealFft(64);
+        double[] impulse = new double[64];
+        impulse[0] = 1;
+        double[] sine = new double[64];
+        for (int i = 0; i < sine.length; i++) {
+            sine[i] = Math.sin(2 * Math.PI * 5 * i / 64);
+        }
+        double[] magnitudes = new double[33];
+
+        fft.magnitudes(sine, magnitudes);
+        fft.magnitudes(impulse, magnitudes);
+
+        for (double magnitude : magnitudes) {
+            assertEquals(1.0, magnitude, 1e-12);
+        }
+    }
+
+    @Test
+    void rejectsSizesThatAreNotPowersOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new RealFft(2));
+        assertThrows(IllegalArgumentException.class, () -> new RealFft(96));
+    }
+
+    private static double[] naiveDft(double[] input) {
+        int n = input.length;
+        double[] magnitudes = new double[n / 2 + 1];
+        for (int k = 0; k <= n / 2; k++) {
+            double re = 0;
+            double im = 0;
+            for (int t = 0; t < n; t++) {
+                double angle = 2 * Math.PI * k * t / n;
+                re += input[t] * Math.cos(angle);
+                im -= input[t] * Math.sin(angle);
+            }
+            magnitudes[k] = Math.sqrt(re * re + im * im);
+        }
+        return magnitudes;
+    }
+}
@@ -0,0 +1,80 @@
+package com.musicinsights.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StftEngineTest {
+    private static final int SAMPLE_RATE = StftEngine.ANALYSIS_SAMPLE_RATE;
+
+    @Test
+    void emitsOneWindowPerHopOnceTheWindowIsFull() throws IOException {
+        int frames = 1024 + 10 * 512 + 100;
+        Recorder recorder = run(SyntheticWav.pcm16(SAMPLE_RATE, 1, frames, i -> 0.1));
+
+        assertEquals(frames, recorder.samples);
+        assertEquals(11, recorder.peaks.size());
+        for (int j = 0; j < recorder.frameIndices.size(); j++) {
+            assertEquals(j, (long) recorder.frameIndices.get(j));
+        }
+    }
+
+    @Test
+    void aFullScaleSinePeaksAtItsBinWithAmplitudeNearOne() throws IOException {
+        int bin = 40;
+        double hz = (double) bin * SAMPLE_RATE / StftEngine.DEFAULT_FFT_SIZE;
+        Recorder recorder = run(SyntheticWav.pcm16(SAMPLE_RATE, 1, SAMPLE_RATE, SyntheticWav.sine(hz, 0.9, SAMPLE_RATE)));
+
+        for (int j = 0; j < recorder.peaks.size(); j++) {
+            assertEquals(bin, (int) recorder.peakBins.get(j));
+            assertEquals(0.9, recorder.peaks.get(j), 0.01);
+        }
+    }
+
+    @Test
+    void rejectsAHopThatDoesNotDivideTheWindow() {
+        assertThrows(IllegalArgumentException.class, () -> new StftEngine(1024, 300));
+    }
+
+    private static Recorder run(ByteBuffer wav) throws IOException {
+        StftEngine engine = new StftEngine();
+        PcmFrameReader reader = new PcmFrameReader(new ByteBufferChannel(wav), engine.getHopSize());
+        reader.format();
+        reader.decimateTo(SAMPLE_RATE);
+        Recorder recorder = new Recorder();
+        engine.process(reader, recorder, 0);
+        return recorder;
+    }
+
+    private static final class Recorder implements SpectrumListener {
+        long samples;
+        final List<Long> frameIndices = new ArrayList<>();
+        final List<Integer> peakBins = new ArrayList<>();
+        final List<Double> peaks = new ArrayList<>();
+
+        @Override
+        public void onSamples(float[] frame, int length, long position) {
+            assertEquals(samples, position);
+            samples += length;
+        }
+
+        @Override
+        public void onSpectrum(double[] magnitudes, long frameIndex) {
+            int best = 0;
+            for (int k = 1; k < magnitudes.length; k++) {
+                if (magnitudes[k] > magnitudes[best]) {
+                    best = k;
+                }
+            }
+            frameIndices.add(frameIndex);
+            peakBins.add(best);
+            peaks.add(magnitudes[best]);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.musicinsights.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Builds 16-bit PCM WAV files in memory for the audio tests.
+ */
+final class SyntheticWav {
+
+    private SyntheticWav() {
+    }
+
+    /**
+     * @param signal Sample value in [-1, 1] for each frame index; every channel gets the same value
+     */
+    static ByteBuffer pcm16(int sampleRate, int channels, int frames, IntToDoubleFunction signal) {
+        int dataLength = frames * channels * 2;
+        ByteBuffer buffer = ByteBuffer.allocate(44 + dataLength).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x46464952).putInt(36 + dataLength).putInt(0x45564157);
+        buffer.putInt(0x20746d66).putInt(16).putShort((short) 1).putShort((short) channels)
+                .putInt(sampleRate).putInt(sampleRate * channels * 2)
+                .putShort((short) (channels * 2)).putShort((short) 16);
+        buffer.putInt(0x61746164).putInt(dataLength);
+        for (int i = 0; i < frames; i++) {
+            double sample = Math.max(-1, Math.min(1, signal.applyAsDouble(i)));
+            short value = (short) Math.round(sample * Short.MAX_VALUE);
+            for (int c = 0; c < channels; c++) {
+                buffer.putShort(value);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    static IntToDoubleFunction sine(double hz, double amplitude, int sampleRate) {
+        return i -> amplitude * Math.sin(2 * Math.PI * hz * i / sampleRate);
+    }
+}
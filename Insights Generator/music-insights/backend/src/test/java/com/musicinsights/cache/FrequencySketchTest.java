@@ -0,0 +1,55 @@
+package com.musicinsights.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrequencySketchTest {
+
+    @Test
+    void unseenKeyHasNoAccesses() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+
+        assertEquals(0, sketch.frequency("never"));
+    }
+
+    @Test
+    void countsAccesses() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("hot");
+        }
+        sketch.increment("cold");
+
+        assertEquals(5, sketch.frequency("hot"));
+        assertEquals(1, sketch.frequency("cold"));
+    }
+
+    @Test
+    void countersSaturateAtFifteen() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 40; i++) {
+            sketch.increment("hot");
+        }
+
+        assertEquals(15, sketch.frequency("hot"));
+    }
+
+    @Test
+    void countsAreHalvedAfterASample() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int i = 0; i < 15; i++) {
+            sketch.increment("hot");
+        }
+
+        int others = 0;
+        while (sketch.frequency("hot") == 15 && others < 100_000) {
+            sketch.increment("key-" + others++);
+        }
+
+        // The sample is ten additions per entry, fifteen of which were "hot"
+        assertTrue(others <= 64 * 10, "no reset after " + others + " additions");
+        assertTrue(sketch.frequency("hot") <= 7, "frequency " + sketch.frequency("hot"));
+    }
+}
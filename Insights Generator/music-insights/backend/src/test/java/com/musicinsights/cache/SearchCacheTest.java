@@ -0,0 +1,171 @@
+package com.musicinsights.cache;
+
+import com.musicinsights.model.TrackAnalysis;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchCacheTest {
+    private static final long TTL_SECONDS = 10;
+    private static final long STALE_WHILE_REVALIDATE_SECONDS = 5;
+    private static final long STALE_IF_ERROR_SECONDS = 60;
+
+    private static final List<TrackAnalysis> FIRST = tracks("first");
+    private static final List<TrackAnalysis> SECOND = tracks("second");
+    private static final List<TrackAnalysis> FALLBACK = tracks("fallback");
+
+    private long now;
+    private final AtomicInteger loads = new AtomicInteger();
+    private final SearchCache cache = new SearchCache(100, TTL_SECONDS, STALE_WHILE_REVALIDATE_SECONDS,
+            STALE_IF_ERROR_SECONDS, () -> now);
+
+    @Test
+    void servesAFreshResultWithoutLoading() {
+        assertSame(FIRST, cache.get("q", returning(FIRST), () -> FALLBACK));
+        advanceSeconds(TTL_SECONDS - 1);
+
+        assertSame(FIRST, cache.get("q", returning(SECOND), () -> FALLBACK));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void servesAStaleResultWhileOneBackgroundLoadRefreshesIt() {
+        cache.get("q", returning(FIRST), () -> FALLBACK);
+        advanceSeconds(TTL_SECONDS + 1);
+        CompletableFuture<List<TrackAnalysis>> refresh = new CompletableFuture<>();
+
+        assertSame(FIRST, cache.get("q", pending(refresh), () -> FALLBACK));
+        assertSame(FIRST, cache.get("q", pending(refresh), () -> FALLBACK));
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getRefreshCount());
+        assertEquals(2, cache.getStaleHitCount());
+
+        refresh.complete(SECOND);
+        assertSame(SECOND, cache.get("q", returning(FIRST), () -> FALLBACK));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void failedBackgroundRefreshIsRetried() {
+        cache.get("q", returning(FIRST), () -> FALLBACK);
+        advanceSeconds(TTL_SECONDS + 1);
+
+        assertSame(FIRST, cache.get("q", failing(), () -> FALLBACK));
+        assertSame(FIRST, cache.get("q", returning(SECOND), () -> FALLBACK));
+
+        assertEquals(2, cache.getRefreshCount());
+        assertSame(SECOND, cache.get("q", returning(FIRST), () -> FALLBACK));
+    }
+
+    @Test
+    void loadsInTheForegroundOnceStaleWhileRevalidateEnds() {
+        cache.get("q", returning(FIRST), () -> FALLBACK);
+        advanceSeconds(TTL_SECONDS + STALE_WHILE_REVALIDATE_SECONDS);
+
+        assertSame(SECOND, cache.get("q", returning(SECOND), () -> FALLBACK));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getStaleHitCount());
+    }
+
+    @Test
+    void servesAStaleResultWhenLoadingFails() {
+        cache.get("q", returning(FIRST), () -> FALLBACK);
+        advanceSeconds(TTL_SECONDS + STALE_IF_ERROR_SECONDS - 1);
+
+        assertSame(FIRST, cache.get("q", failing(), () -> FALLBACK));
+        assertEquals(1, cache.getStaleIfErrorCount());
+    }
+
+    @Test
+    void fallsBackOnceStaleIfErrorEnds() {
+        cache.get("q", returning(FIRST), () -> FALLBACK);
+        advanceSeconds(TTL_SECONDS + STALE_IF_ERROR_SECONDS);
+
+        assertSame(FALLBACK, cache.get("q", failing(), () -> FALLBACK));
+        assertEquals(0, cache.getStaleIfErrorCount());
+    }
+
+    @Test
+    void fallsBackWhenNothingIsCached() {
+        assertSame(FALLBACK, cache.get("q", failing(), () -> FALLBACK));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void disabledCacheAlwaysLoads() {
+        SearchCache disabled = new SearchCache(0, TTL_SECONDS, STALE_WHILE_REVALIDATE_SECONDS,
+                STALE_IF_ERROR_SECONDS, () -> now);
+
+        assertSame(FIRST, disabled.get("q", returning(FIRST), () -> FALLBACK));
+        assertSame(SECOND, disabled.get("q", returning(SECOND), () -> FALLBACK));
+        assertSame(FALLBACK, disabled.get("q", failing(), () -> FALLBACK));
+        assertEquals(0, disabled.size());
+    }
+
+    private void advanceSeconds(long seconds) {
+        now += TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    @Test
+    void anInterruptedCallerStopsWaitingAndLeavesTheSharedLoadRunning() throws InterruptedException {
+        CompletableFuture<List<TrackAnalysis>> load = new CompletableFuture<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger fallbacks = new AtomicInteger();
+        Thread caller = new Thread(() -> {
+            try {
+                cache.get("q", pending(load), () -> {
+                    fallbacks.incrementAndGet();
+                    return FALLBACK;
+                });
+            } catch (RuntimeException e) {
+                failure.set(e);
+            }
+        });
+        caller.start();
+        while (loads.get() == 0) {
+            Thread.sleep(1);
+        }
+
+        caller.interrupt();
+        caller.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertFalse(caller.isAlive());
+        assertTrue(failure.get() instanceof CancellationException);
+        assertEquals(0, fallbacks.get());
+        assertFalse(load.isDone());
+    }
+
+    private Function<String, CompletableFuture<List<TrackAnalysis>>> returning(List<TrackAnalysis> results) {
+        return pending(CompletableFuture.completedFuture(results));
+    }
+
+    private Function<String, CompletableFuture<List<TrackAnalysis>>> failing() {
+        return pending(CompletableFuture.failedFuture(new IllegalStateException("search backend down")));
+    }
+
+    private Function<String, CompletableFuture<List<TrackAnalysis>>> pending(
+            CompletableFuture<List<TrackAnalysis>> result) {
+        return key -> {
+            loads.incrementAndGet();
+            return result;
+        };
+    }
+
+    private static List<TrackAnalysis> tracks(String id) {
+        return Collections.singletonList(TrackAnalysis.builder().id(id).build());
+    }
+}
@@ -0,0 +1,118 @@
+package com.musicinsights.cache;
+
+import com.musicinsights.client.SpotifyAccountsClient;
+import com.musicinsights.metrics.MetricsRegistry;
+import com.musicinsights.model.SpotifyToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SpotifyTokenCacheTest {
+    private static final long MARGIN_SECONDS = 60;
+
+    private HttpServer server;
+    private SpotifyAccountsClient client;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean holdResponses;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/api/token", this::respond);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        client = new SpotifyAccountsClient("http://localhost:" + server.getAddress().getPort(), "id", "secret",
+                Duration.ofSeconds(5), new MetricsRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void servesACachedTokenUntilTheRefreshMargin() {
+        AtomicLong now = new AtomicLong();
+        SpotifyTokenCache cache = new SpotifyTokenCache(16, MARGIN_SECONDS, now::get);
+
+        assertEquals("access-1", cache.get("user", this::refresh).join().getAccessToken());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(3600 - MARGIN_SECONDS) - 1);
+        SpotifyToken cached = cache.get("user", this::refresh).join();
+        assertEquals("access-1", cached.getAccessToken());
+        assertEquals(MARGIN_SECONDS, cached.getExpiresIn());
+        assertEquals(1, calls.get());
+
+        now.incrementAndGet();
+        assertEquals("access-2", cache.get("user", this::refresh).join().getAccessToken());
+        assertEquals(2, calls.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void concurrentRequestsForOneUserShareOneRefresh() {
+        SpotifyTokenCache cache = new SpotifyTokenCache(16, MARGIN_SECONDS);
+        holdResponses = true;
+
+        List<CompletableFuture<CompletableFuture<SpotifyToken>>> requests = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            requests.add(CompletableFuture.supplyAsync(() -> cache.get("user", this::refresh)));
+        }
+        // Every get has returned while the token endpoint is still holding its response
+        List<CompletableFuture<SpotifyToken>> tokens = new ArrayList<>();
+        for (CompletableFuture<CompletableFuture<SpotifyToken>> request : requests) {
+            tokens.add(request.join());
+        }
+        release.countDown();
+
+        for (CompletableFuture<SpotifyToken> token : tokens) {
+            assertEquals("access-1", token.join().getAccessToken());
+        }
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.getRefreshFlights().getCallCount());
+        assertEquals(7, cache.getRefreshFlights().getSharedCount());
+    }
+
+    private CompletableFuture<SpotifyToken> refresh(String userId) {
+        return client.refresh("refresh-" + userId);
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        int call = calls.incrementAndGet();
+        if (holdResponses) {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] bytes = ("{\"access_token\":\"access-" + call + "\",\"token_type\":\"Bearer\",\"expires_in\":3600}")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
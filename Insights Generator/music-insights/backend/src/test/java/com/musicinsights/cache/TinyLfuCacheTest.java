@@ -0,0 +1,79 @@
+package com.musicinsights.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TinyLfuCacheTest {
+
+    @Test
+    void putGetReplaceAndRemove() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100);
+        cache.put("a", "1");
+        cache.put("a", "2");
+
+        assertEquals("2", cache.get("a"));
+        assertEquals(1, cache.size());
+        assertEquals("2", cache.remove("a"));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void staysWithinItsCapacity() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(100);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+
+        assertTrue(cache.size() <= 100, "size " + cache.size());
+    }
+
+    @Test
+    void burstOfOneOffKeysDoesNotFlushPopularOnes() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100);
+        for (int i = 0; i < 50; i++) {
+            cache.put("hot-" + i, "value");
+        }
+        // Move the last hot key out of the admission window, so reads promote it like the others
+        cache.put("filler", "value");
+        for (int read = 0; read < 3; read++) {
+            for (int i = 0; i < 50; i++) {
+                assertNotNull(cache.get("hot-" + i));
+            }
+        }
+
+        // Five times the capacity, within one sample of the sketch so counts are not aged yet
+        for (int i = 0; i < 500; i++) {
+            cache.put("once-" + i, "value");
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertNotNull(cache.get("hot-" + i), "hot-" + i);
+        }
+        assertTrue(cache.getRejectionCount() > 0);
+    }
+
+    @Test
+    void frequentlyRequestedNewcomerEvictsALessUsedEntry() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100);
+        for (int i = 0; i < 100; i++) {
+            cache.put("once-" + i, "value");
+        }
+        // Misses count toward the newcomer's frequency
+        for (int i = 0; i < 5; i++) {
+            assertNull(cache.get("wanted"));
+        }
+
+        cache.put("wanted", "value");
+        // Push it out of the admission window so it competes for the main area
+        cache.put("next", "value");
+
+        assertEquals("value", cache.get("wanted"));
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(cache.size() <= 100);
+    }
+}
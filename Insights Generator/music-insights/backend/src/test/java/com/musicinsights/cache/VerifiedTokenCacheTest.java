@@ -0,0 +1,49 @@
+package com.musicinsights.cache;
+
+import com.musicinsights.model.UserPrincipal;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class VerifiedTokenCacheTest {
+    private static final UserPrincipal USER = new UserPrincipal("user", Collections.singletonList("USER"));
+
+    @Test
+    void servesATokenUntilItExpires() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        VerifiedTokenCache cache = new VerifiedTokenCache(16, now::get);
+
+        cache.put("token", USER, new Date(now.get() + 60_000));
+        now.addAndGet(59_999);
+        assertSame(USER, cache.get("token"));
+
+        now.incrementAndGet();
+        assertNull(cache.get("token"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void doesNotCacheATokenWithoutExpiry() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(16);
+
+        cache.put("token", USER, null);
+        assertNull(cache.get("token"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void zeroEntriesDisablesTheCache() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(0);
+
+        cache.put("token", USER, new Date(System.currentTimeMillis() + 60_000));
+        assertNull(cache.get("token"));
+    }
+}
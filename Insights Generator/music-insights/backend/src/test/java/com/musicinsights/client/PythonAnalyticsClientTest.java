@@ -0,0 +1,116 @@
+package com.musicinsights.client;
+
+import com.musicinsights.concurrent.CircuitBreaker;
+import com.musicinsights.metrics.MetricsRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PythonAnalyticsClientTest {
+    private static final Duration TIMEOUT = Duration.ofMillis(500);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private HttpServer server;
+    private volatile String body;
+    private volatile int status = 200;
+    private CircuitBreaker breaker;
+    private PythonAnalyticsClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/analyze/search", this::respond);
+        server.createContext("/slow", this::respondSlowly);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        breaker = new CircuitBreaker("test", 1, 60_000);
+        client = newClient("http://localhost:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void malformedBodyDoesNotOpenTheBreaker() {
+        body = "[{\"id\": }]";
+
+        CompletionException e = assertThrows(CompletionException.class, () -> client.search("x").join());
+
+        assertInstanceOf(AnalyticsResponseException.class, e.getCause());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, client.getCallsInFlight());
+    }
+
+    @Test
+    void serverErrorOpensTheBreaker() {
+        status = 503;
+        body = "";
+
+        CompletionException e = assertThrows(CompletionException.class, () -> client.search("x").join());
+
+        assertInstanceOf(AnalyticsUnavailableException.class, e.getCause());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void slowBodyTimesOutAndReleasesItsCall() {
+        client = newClient("http://localhost:" + server.getAddress().getPort() + "/slow");
+
+        long start = System.nanoTime();
+        CompletionException e = assertThrows(CompletionException.class, () -> client.search("x").join());
+
+        assertInstanceOf(AnalyticsUnavailableException.class, e.getCause());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(0, client.getCallsInFlight());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private PythonAnalyticsClient newClient(String baseUrl) {
+        return new PythonAnalyticsClient(baseUrl, TIMEOUT, TIMEOUT, TIMEOUT, 4, breaker, new MetricsRegistry());
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Sends the headers and the start of the body, then stalls.
+     */
+    private void respondSlowly(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write("[{\"id\": ".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // The client gave up on the body
+        }
+    }
+}
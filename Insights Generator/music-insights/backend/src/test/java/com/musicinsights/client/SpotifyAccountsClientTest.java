@@ -0,0 +1,67 @@
+package com.musicinsights.client;
+
+import com.musicinsights.metrics.MetricsRegistry;
+import com.musicinsights.model.SpotifyToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SpotifyAccountsClientTest {
+    private HttpServer server;
+    private volatile String body;
+    private SpotifyAccountsClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/api/token", this::respond);
+        server.start();
+        client = new SpotifyAccountsClient("http://localhost:" + server.getAddress().getPort(), "id", "secret",
+                Duration.ofSeconds(5), new MetricsRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void refreshReturnsARotatedRefreshToken() {
+        body = "{\"access_token\":\"access\",\"token_type\":\"Bearer\",\"expires_in\":3600,"
+                + "\"refresh_token\":\"rotated\",\"scope\":\"user-read-email\"}";
+
+        SpotifyToken token = client.refresh("old").join();
+
+        assertEquals("access", token.getAccessToken());
+        assertEquals(3600, token.getExpiresIn());
+        assertEquals("rotated", token.getRefreshToken());
+    }
+
+    @Test
+    void refreshWithoutARotatedTokenKeepsNone() {
+        body = "{\"access_token\":\"access\",\"token_type\":\"Bearer\",\"expires_in\":3600}";
+
+        assertNull(client.refresh("old").join().getRefreshToken());
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.musicinsights.client;
+
+import com.musicinsights.concurrent.TokenBucket;
+import com.musicinsights.metrics.MetricsRegistry;
+import com.musicinsights.model.AudioFeatures;
+import com.musicinsights.model.TrackAnalysis;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpotifyWebApiClientTest {
+    private static final int TOTAL_SAVED = 200;
+
+    private HttpServer server;
+    private ExecutorService handlers;
+    private SpotifyWebApiClient client;
+
+    private final List<Integer> trackBatches = new CopyOnWriteArrayList<>();
+    private final List<Integer> featureBatches = new CopyOnWriteArrayList<>();
+    private final List<Long> trackRequestTimes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger throttleNext = new AtomicInteger();
+    private final AtomicInteger pagesInFlight = new AtomicInteger();
+    private final AtomicInteger maxPagesInFlight = new AtomicInteger();
+    private final CountDownLatch laterPages = new CountDownLatch(TOTAL_SAVED / 50 - 1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/", this::respond);
+        handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.start();
+        client = new SpotifyWebApiClient("http://localhost:" + server.getAddress().getPort() + "/v1",
+                Duration.ofSeconds(5), new TokenBucket(1000, 100), 20, 2, new MetricsRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    @Test
+    void coalescesTrackLookupsIntoBatchesOfFifty() {
+        List<CompletableFuture<TrackAnalysis>> tracks = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            tracks.add(client.getTrack("token", "t" + i));
+        }
+
+        for (int i = 0; i < tracks.size(); i++) {
+            assertEquals("t" + i, tracks.get(i).join().getId());
+        }
+        List<Integer> sizes = new ArrayList<>(trackBatches);
+        Collections.sort(sizes);
+        assertEquals(List.of(20, 50, 50), sizes);
+        assertEquals(3, client.getRequestCount());
+    }
+
+    @Test
+    void coalescesAudioFeatureLookupsIntoBatchesOfOneHundred() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            ids.add(Integer.toString(i));
+        }
+
+        List<AudioFeatures> features = client.getAudioFeatures("token", ids).join();
+
+        for (int i = 0; i < features.size(); i++) {
+            assertEquals(i, features.get(i).getTempo());
+        }
+        List<Integer> sizes = new ArrayList<>(featureBatches);
+        Collections.sort(sizes);
+        assertEquals(List.of(50, 100), sizes);
+    }
+
+    @Test
+    void retriesAThrottledRequestAfterRetryAfter() {
+        throttleNext.set(1);
+
+        assertEquals("t1", client.getTrack("token", "t1").join().getId());
+
+        assertEquals(2, trackRequestTimes.size());
+        long waited = trackRequestTimes.get(1) - trackRequestTimes.get(0);
+        assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(900), "retried after " + waited + " ns");
+        assertEquals(1, client.getThrottledCount());
+        assertEquals(2, client.getRequestCount());
+    }
+
+    @Test
+    void fetchesPagesAfterTheFirstConcurrently() {
+        List<TrackAnalysis> saved = client.getSavedTracks("token").join();
+
+        assertEquals(TOTAL_SAVED, saved.size());
+        for (int i = 0; i < saved.size(); i++) {
+            assertEquals("t" + i, saved.get(i).getId());
+        }
+        assertEquals(TOTAL_SAVED / 50 - 1, maxPagesInFlight.get());
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getQuery();
+        if (path.equals("/v1/tracks")) {
+            trackRequestTimes.add(System.nanoTime());
+            if (throttleNext.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 429, "{}");
+                return;
+            }
+            String[] ids = parameter(query, "ids").split(",");
+            trackBatches.add(ids.length);
+            send(exchange, 200, "{\"tracks\":[" + tracks(ids, false) + "]}");
+        } else if (path.equals("/v1/audio-features")) {
+            String[] ids = parameter(query, "ids").split(",");
+            featureBatches.add(ids.length);
+            StringBuilder body = new StringBuilder("{\"audio_features\":[");
+            for (int i = 0; i < ids.length; i++) {
+                body.append(i > 0 ? "," : "").append("{\"tempo\":").append(ids[i]).append('}');
+            }
+            send(exchange, 200, body.append("]}").toString());
+        } else if (path.equals("/v1/me/tracks")) {
+            int offset = Integer.parseInt(parameter(query, "offset"));
+            if (offset > 0) {
+                awaitOtherPages();
+            }
+            String[] ids = new String[Math.min(50, TOTAL_SAVED - offset)];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = "t" + (offset + i);
+            }
+            send(exchange, 200, "{\"items\":[" + tracks(ids, true) + "],\"total\":" + TOTAL_SAVED + "}");
+        } else {
+            send(exchange, 404, "{}");
+        }
+    }
+
+    /**
+     * Hold a later page until all later pages have been requested, so they only
+     * all complete if they are in flight together.
+     */
+    private void awaitOtherPages() {
+        maxPagesInFlight.accumulateAndGet(pagesInFlight.incrementAndGet(), Math::max);
+        laterPages.countDown();
+        try {
+            laterPages.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pagesInFlight.decrementAndGet();
+    }
+
+    private static String tracks(String[] ids, boolean wrapped) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < ids.length; i++) {
+            String track = "{\"id\":\"" + ids[i] + "\",\"name\":\"Track " + ids[i] + "\"}";
+            body.append(i > 0 ? "," : "").append(wrapped ? "{\"track\":" + track + "}" : track);
+        }
+        return body.toString();
+    }
+
+    private static String parameter(String query, String name) {
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return pair.substring(name.length() + 1);
+            }
+        }
+        throw new IllegalArgumentException("No " + name + " in " + query);
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.musicinsights.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControllerTest {
+    private static final long MB = 1024 * 1024;
+
+    private long now;
+    // Queue timeouts, fired by the test
+    private final List<FutureTask<?>> timeouts = new ArrayList<>();
+
+    @Test
+    void admitsUpToTheLimitThenQueuesInArrivalOrder() {
+        AdmissionController admission = controller(1000 * MB, 2, 1, 4, 8);
+        AdmissionController.Permit first = admission.acquire(MB).join();
+        admission.acquire(MB).join();
+
+        CompletableFuture<AdmissionController.Permit> second = admission.acquire(MB);
+        CompletableFuture<AdmissionController.Permit> third = admission.acquire(MB);
+        assertFalse(second.isDone());
+        assertEquals(2, admission.getQueued());
+        assertEquals(2, admission.getQueuedCount());
+
+        now += TimeUnit.MILLISECONDS.toNanos(100);
+        first.complete();
+
+        assertTrue(second.isDone());
+        assertFalse(third.isDone());
+        assertEquals(2, admission.getInFlight());
+        assertEquals(1, admission.getQueued());
+    }
+
+    @Test
+    void queuesUploadsThatDoNotFitTheByteBudget() {
+        AdmissionController admission = controller(100 * MB, 4, 1, 4, 8);
+        AdmissionController.Permit large = admission.acquire(60 * MB).join();
+
+        CompletableFuture<AdmissionController.Permit> waiting = admission.acquire(60 * MB);
+        assertFalse(waiting.isDone());
+
+        large.complete();
+        assertTrue(waiting.isDone());
+        assertEquals(60 * MB, admission.getInFlightBytes());
+    }
+
+    @Test
+    void admitsAnUploadLargerThanTheBudgetWhenNothingElseIsInFlight() {
+        AdmissionController admission = controller(100 * MB, 4, 1, 4, 8);
+
+        assertTrue(admission.acquire(500 * MB).isDone());
+    }
+
+    @Test
+    void shedsAWaiterWhenItsQueueTimeoutPasses() {
+        AdmissionController admission = controller(1000 * MB, 1, 1, 1, 8);
+        admission.acquire(MB).join();
+        CompletableFuture<AdmissionController.Permit> waiting = admission.acquire(MB);
+
+        fireTimeouts();
+
+        CompletionException e = assertThrows(CompletionException.class, waiting::join);
+        AdmissionRejectedException rejected = assertInstanceOf(AdmissionRejectedException.class, e.getCause());
+        assertTrue(rejected.getRetryAfterSeconds() >= 1 && rejected.getRetryAfterSeconds() <= 30);
+        assertEquals(0, admission.getQueued());
+        assertEquals(1, admission.getShedCount());
+    }
+
+    @Test
+    void shedsAtOnceWhenTheQueueIsFull() {
+        AdmissionController admission = controller(1000 * MB, 1, 1, 1, 1);
+        admission.acquire(MB).join();
+        admission.acquire(MB);
+
+        CompletableFuture<AdmissionController.Permit> shed = admission.acquire(MB);
+
+        assertTrue(shed.isCompletedExceptionally());
+        assertEquals(1, admission.getQueued());
+        assertEquals(1, admission.getShedCount());
+    }
+
+    @Test
+    void admittedWaiterIsNotShedByItsTimeout() {
+        AdmissionController admission = controller(1000 * MB, 1, 1, 1, 8);
+        AdmissionController.Permit first = admission.acquire(MB).join();
+        CompletableFuture<AdmissionController.Permit> waiting = admission.acquire(MB);
+        first.complete();
+
+        fireTimeouts();
+
+        assertFalse(waiting.isCompletedExceptionally());
+        assertEquals(0, admission.getShedCount());
+    }
+
+    @Test
+    void untimedCompletionLeavesTheLimit() {
+        AdmissionController admission = controller(1000 * MB, 4, 1, 8, 8);
+
+        admission.acquire(MB).join().complete();
+
+        assertEquals(4, admission.getLimit());
+        assertTrue(admission.acquire(MB).isDone());
+    }
+
+    @Test
+    void completeReleasesTheBudget() {
+        AdmissionController admission = controller(1000 * MB, 4, 1, 4, 8);
+        AdmissionController.Permit permit = admission.acquire(3 * MB).join();
+        assertEquals(1, admission.getInFlight());
+        assertEquals(3 * MB, admission.getInFlightBytes());
+
+        permit.complete();
+        permit.complete();
+        permit.abandon();
+
+        assertEquals(0, admission.getInFlight());
+        assertEquals(0, admission.getInFlightBytes());
+    }
+
+    @Test
+    void abandonReleasesTheBudgetAndBacksOff() {
+        AdmissionController admission = controller(1000 * MB, 4, 1, 8, 8);
+        AdmissionController.Permit permit = admission.acquire(3 * MB).join();
+
+        permit.abandon();
+        permit.complete();
+
+        assertEquals(0, admission.getInFlight());
+        assertEquals(0, admission.getInFlightBytes());
+        assertEquals(1, admission.getAbandonedCount());
+        assertEquals(3, admission.getLimit());
+    }
+
+    @Test
+    void cancelReleasesTheBudgetWithoutAdapting() {
+        AdmissionController admission = controller(1000 * MB, 4, 1, 8, 8);
+        AdmissionController.Permit permit = admission.acquire(3 * MB).join();
+
+        permit.cancel();
+
+        assertEquals(0, admission.getInFlight());
+        assertEquals(0, admission.getAbandonedCount());
+        assertEquals(4, admission.getLimit());
+    }
+
+    @Test
+    void limitGrowsWhileAnalysisTimeHoldsSteady() {
+        AdmissionController admission = controller(1000 * MB, 2, 1, 16, 8);
+
+        for (int round = 0; round < 50; round++) {
+            runRound(admission, admission.getLimit(), 100);
+        }
+
+        assertEquals(16, admission.getLimit());
+    }
+
+    @Test
+    void limitDoesNotGrowWhileMostlyUnused() {
+        AdmissionController admission = controller(1000 * MB, 8, 1, 16, 8);
+
+        for (int round = 0; round < 50; round++) {
+            runRound(admission, 1, 100);
+        }
+
+        assertEquals(8, admission.getLimit());
+    }
+
+    @Test
+    void limitShrinksAsAnalysesSlowDown() {
+        AdmissionController admission = controller(1000 * MB, 8, 1, 16, 8);
+        for (int round = 0; round < 20; round++) {
+            runRound(admission, 8, 100);
+        }
+        int steady = admission.getLimit();
+
+        // Before the long-term average takes the slower analyses as the new normal
+        for (int round = 0; round < 2; round++) {
+            runRound(admission, admission.getLimit(), 800);
+        }
+
+        assertTrue(admission.getLimit() < steady, admission.getLimit() + " is not below " + steady);
+        assertTrue(admission.getLimit() >= 1);
+    }
+
+    /**
+     * Admit uploads of 1 MB, let the clock run and complete them all.
+     */
+    private void runRound(AdmissionController admission, int uploads, long millis) {
+        List<AdmissionController.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < uploads; i++) {
+            permits.add(admission.acquire(MB).join());
+        }
+        now += TimeUnit.MILLISECONDS.toNanos(millis);
+        for (AdmissionController.Permit permit : permits) {
+            permit.complete();
+        }
+    }
+
+    private AdmissionController controller(long maxBytes, int initialLimit, int minLimit, int maxLimit,
+                                           int maxQueued) {
+        return new AdmissionController(maxBytes, initialLimit, minLimit, maxLimit, maxQueued, 500, () -> now,
+                (task, delayMillis) -> {
+                    FutureTask<?> timeout = new FutureTask<>(task, null);
+                    timeouts.add(timeout);
+                    return timeout;
+                });
+    }
+
+    private void fireTimeouts() {
+        for (FutureTask<?> timeout : new ArrayList<>(timeouts)) {
+            timeout.run();
+        }
+    }
+}
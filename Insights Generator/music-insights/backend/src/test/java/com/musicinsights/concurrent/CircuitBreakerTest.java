@@ -0,0 +1,129 @@
+package com.musicinsights.concurrent;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class CircuitBreakerTest {
+    private static final long OPEN_MILLIS = 1000;
+
+    private long now;
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        breaker = new CircuitBreaker("test", 3, OPEN_MILLIS, () -> now);
+    }
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        for (int i = 0; i < 2; i++) {
+            breaker.onFailure(breaker.tryAcquire());
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onFailure(breaker.tryAcquire());
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REFUSED, breaker.tryAcquire());
+        assertEquals(1, breaker.getRejectedCount());
+    }
+
+    @Test
+    void successResetsTheFailureCount() {
+        breaker.onFailure(breaker.tryAcquire());
+        breaker.onFailure(breaker.tryAcquire());
+        breaker.onSuccess(breaker.tryAcquire());
+        breaker.onFailure(breaker.tryAcquire());
+        breaker.onFailure(breaker.tryAcquire());
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void letsOneProbeThroughOnceOpenTimePasses() {
+        open();
+        now += TimeUnit.MILLISECONDS.toNanos(OPEN_MILLIS) - 1;
+        assertEquals(CircuitBreaker.REFUSED, breaker.tryAcquire());
+
+        now += 1;
+        long probe = breaker.tryAcquire();
+
+        assertNotEquals(CircuitBreaker.REFUSED, probe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REFUSED, breaker.tryAcquire());
+    }
+
+    @Test
+    void probeSuccessCloses() {
+        open();
+        now += TimeUnit.MILLISECONDS.toNanos(OPEN_MILLIS);
+
+        breaker.onSuccess(breaker.tryAcquire());
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertNotEquals(CircuitBreaker.REFUSED, breaker.tryAcquire());
+    }
+
+    @Test
+    void probeFailureReopens() {
+        open();
+        now += TimeUnit.MILLISECONDS.toNanos(OPEN_MILLIS);
+
+        breaker.onFailure(breaker.tryAcquire());
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        now += TimeUnit.MILLISECONDS.toNanos(OPEN_MILLIS) - 1;
+        assertEquals(CircuitBreaker.REFUSED, breaker.tryAcquire());
+    }
+
+    @Test
+    void lateSuccessDoesNotCloseAnOpenBreaker() {
+        long slowCall = breaker.tryAcquire();
+        open();
+
+        breaker.onSuccess(slowCall);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REFUSED, breaker.tryAcquire());
+    }
+
+    @Test
+    void lateSuccessDoesNotStandInForTheProbe() {
+        long slowCall = breaker.tryAcquire();
+        open();
+        now += TimeUnit.MILLISECONDS.toNanos(OPEN_MILLIS);
+        long probe = breaker.tryAcquire();
+
+        breaker.onSuccess(slowCall);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onFailure(probe);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void lateFailureDoesNotCountAfterTheBreakerCloses() {
+        long slowCall = breaker.tryAcquire();
+        open();
+        now += TimeUnit.MILLISECONDS.toNanos(OPEN_MILLIS);
+        breaker.onSuccess(breaker.tryAcquire());
+
+        breaker.onFailure(slowCall);
+        breaker.onFailure(breaker.tryAcquire());
+        breaker.onFailure(breaker.tryAcquire());
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure(breaker.tryAcquire());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
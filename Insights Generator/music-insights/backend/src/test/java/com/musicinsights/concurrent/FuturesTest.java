@@ -0,0 +1,58 @@
+package com.musicinsights.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FuturesTest {
+
+    @Test
+    void returnsTheResult() {
+        assertEquals("done", Futures.await(CompletableFuture.completedFuture("done")));
+    }
+
+    @Test
+    void reportsAFailureLikeJoin() {
+        IllegalStateException failure = new IllegalStateException("upstream down");
+
+        CompletionException thrown = assertThrows(CompletionException.class,
+                () -> Futures.await(CompletableFuture.failedFuture(failure)));
+
+        assertSame(failure, thrown.getCause());
+    }
+
+    @Test
+    void anInterruptEndsTheWaitButNotTheFuture() throws InterruptedException {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            try {
+                Futures.await(future);
+            } catch (RuntimeException e) {
+                thrown.set(e);
+                interrupted.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        waiter.start();
+
+        waiter.interrupt();
+        waiter.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertFalse(waiter.isAlive());
+        assertTrue(thrown.get() instanceof CancellationException);
+        assertTrue(interrupted.get());
+        assertFalse(future.isDone());
+    }
+}
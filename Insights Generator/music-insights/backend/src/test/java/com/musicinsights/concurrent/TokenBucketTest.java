@@ -0,0 +1,45 @@
+package com.musicinsights.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenBucketTest {
+
+    @Test
+    void aNewBucketIsNotPausedWhateverTheClockReads() {
+        for (long start : new long[] {Long.MIN_VALUE / 2, -1, 0, Long.MAX_VALUE / 2}) {
+            TokenBucket bucket = new TokenBucket(10, 2, () -> start);
+
+            assertEquals(0, bucket.pauseRemaining(), "clock at " + start);
+            assertEquals(0, bucket.reserve(), "clock at " + start);
+        }
+    }
+
+    @Test
+    void queuesReservationsBeyondTheBurstAtTheRefillRate() {
+        AtomicLong now = new AtomicLong(-TimeUnit.HOURS.toNanos(1));
+        TokenBucket bucket = new TokenBucket(10, 2, now::get);
+
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), bucket.reserve());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), bucket.reserve());
+    }
+
+    @Test
+    void aPauseHoldsBackPermitsUntilItEnds() {
+        AtomicLong now = new AtomicLong(-TimeUnit.HOURS.toNanos(1));
+        TokenBucket bucket = new TokenBucket(10, 2, now::get);
+
+        bucket.pause(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(TimeUnit.SECONDS.toNanos(1), bucket.pauseRemaining());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1100), bucket.reserve());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, bucket.pauseRemaining());
+    }
+}
@@ -0,0 +1,115 @@
+package com.musicinsights.filter;
+
+import com.musicinsights.cache.VerifiedTokenCache;
+import com.musicinsights.model.UserPrincipal;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AuthenticationFilterTest {
+    private final SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+    private final VerifiedTokenCache cache = new VerifiedTokenCache(16);
+    private final AuthenticationFilter filter = new AuthenticationFilter(key, cache);
+
+    @Test
+    void acceptsAValidTokenAndCachesIt() throws IOException {
+        String token = token(key, new Date(System.currentTimeMillis() + 60_000));
+
+        ContainerRequest request = request("api/music/search", token);
+        filter.filter(request);
+
+        assertNull(request.getAbortResponse());
+        assertEquals("user", request.getSecurityContext().getUserPrincipal().getName());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void aCachedTokenIsNotParsedAgain() throws IOException {
+        // Not a JWT at all, so only a cache hit can authenticate it
+        cache.put("opaque", new UserPrincipal("cached", Collections.singletonList("USER")),
+                new Date(System.currentTimeMillis() + 60_000));
+
+        ContainerRequest request = request("api/music/search", "opaque");
+        filter.filter(request);
+
+        assertNull(request.getAbortResponse());
+        assertEquals("cached", request.getSecurityContext().getUserPrincipal().getName());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    void neverCachesAnInvalidToken() throws IOException {
+        String badlySigned = token(Keys.secretKeyFor(SignatureAlgorithm.HS256),
+                new Date(System.currentTimeMillis() + 60_000));
+        String expired = token(key, new Date(System.currentTimeMillis() - 60_000));
+
+        for (String token : new String[] {badlySigned, expired, "not.a.jwt"}) {
+            ContainerRequest request = request("api/music/search", token);
+            filter.filter(request);
+            assertEquals(Response.Status.UNAUTHORIZED.getStatusCode(), request.getAbortResponse().getStatus());
+        }
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void acceptsButDoesNotCacheATokenWithoutExpiry() throws IOException {
+        ContainerRequest request = request("api/music/search", token(key, null));
+        filter.filter(request);
+
+        assertNull(request.getAbortResponse());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void rejectsARequestWithoutAToken() throws IOException {
+        ContainerRequest request = request("api/music/search", null);
+        filter.filter(request);
+
+        assertEquals(Response.Status.UNAUTHORIZED.getStatusCode(), request.getAbortResponse().getStatus());
+    }
+
+    @Test
+    void onlyTheMetricsPathItselfIsPublic() throws IOException {
+        ContainerRequest metrics = request("metrics", null);
+        filter.filter(metrics);
+        assertNull(metrics.getAbortResponse());
+
+        for (String path : new String[] {"metrics/other", "metricsdump"}) {
+            ContainerRequest request = request(path, null);
+            filter.filter(request);
+            assertEquals(Response.Status.UNAUTHORIZED.getStatusCode(), request.getAbortResponse().getStatus(), path);
+        }
+    }
+
+    private static String token(SecretKey key, Date expiration) {
+        return Jwts.builder()
+                .setSubject("user")
+                .claim("roles", Collections.singletonList("USER"))
+                .setExpiration(expiration)
+                .signWith(key)
+                .compact();
+    }
+
+    private static ContainerRequest request(String path, String token) {
+        ContainerRequest request = new ContainerRequest(URI.create("http://localhost/"),
+                URI.create("http://localhost/" + path), "GET", null, new MapPropertiesDelegate(), null);
+        if (token != null) {
+            request.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,61 @@
+package com.musicinsights.fingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrackDirectoryTest {
+
+    @Test
+    void describesTracksByTheirNumberAcrossGrowth() {
+        TrackDirectory directory = new TrackDirectory();
+        AtomicInteger numbers = new AtomicInteger();
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(directory.add("track-" + i, "Title " + i, "Artist " + i, "Album " + i,
+                    numbers::getAndIncrement));
+        }
+
+        assertEquals(1000, directory.size());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(directory.contains("track-" + i));
+            assertEquals("track-" + i, directory.getId(i));
+            assertEquals("Title " + i, directory.getTitle(i));
+            assertEquals("Artist " + i, directory.getArtist(i));
+            assertEquals("Album " + i, directory.getAlbum(i));
+        }
+        assertFalse(directory.contains("track-1000"));
+        assertNull(directory.getId(5000));
+    }
+
+    @Test
+    void aKnownIdIsNotNumberedAgain() {
+        TrackDirectory directory = new TrackDirectory();
+        AtomicInteger numbers = new AtomicInteger();
+        directory.add("a", "First", "Artist", "Album", numbers::getAndIncrement);
+
+        assertFalse(directory.add("a", "Second", "Artist", "Album", numbers::getAndIncrement));
+
+        assertEquals(1, numbers.get());
+        assertEquals("First", directory.getTitle(0));
+    }
+
+    @Test
+    void aFailedNumberingAddsNothing() {
+        TrackDirectory directory = new TrackDirectory();
+
+        assertThrows(IllegalStateException.class, () -> directory.add("a", "Title", "Artist", "Album", () -> {
+            throw new IllegalStateException("full");
+        }));
+
+        assertFalse(directory.contains("a"));
+        assertEquals(0, directory.size());
+        assertTrue(directory.add("a", "Title", "Artist", "Album", () -> 0));
+    }
+}
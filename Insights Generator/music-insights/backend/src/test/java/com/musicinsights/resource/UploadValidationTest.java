@@ -0,0 +1,41 @@
+package com.musicinsights.resource;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UploadValidationTest {
+
+    @Test
+    void acceptsWavByContentTypeOrExtension() {
+        assertTrue(MusicResource.isValidAudioFile("take", "audio/wav"));
+        assertTrue(MusicResource.isValidAudioFile("take", "audio/x-wav"));
+        assertTrue(MusicResource.isValidAudioFile("Live Set.WAV", null));
+        assertTrue(MusicResource.isValidAudioFile("take.wav", "application/octet-stream"));
+        assertFalse(MusicResource.isCompressedAudio("take.wav", "audio/wav"));
+    }
+
+    @Test
+    void flagsCompressedFormatsByExtension() {
+        for (String name : new String[] {"song.mp3", "song.OGG", "song.flac", "song.m4a", "song.aac"}) {
+            assertTrue(MusicResource.isCompressedAudio(name, null), name);
+            assertTrue(MusicResource.isCompressedAudio(name, "application/octet-stream"), name);
+        }
+    }
+
+    @Test
+    void flagsCompressedFormatsByContentType() {
+        assertTrue(MusicResource.isCompressedAudio("song", "audio/mpeg"));
+        assertTrue(MusicResource.isCompressedAudio("song", "audio/flac"));
+        assertTrue(MusicResource.isCompressedAudio("song.wav", "audio/mp4"));
+        assertFalse(MusicResource.isValidAudioFile("song", "audio/mpeg"));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotAudio() {
+        assertFalse(MusicResource.isValidAudioFile("notes.txt", "text/plain"));
+        assertFalse(MusicResource.isCompressedAudio("notes.txt", "text/plain"));
+        assertFalse(MusicResource.isValidAudioFile(null, "audio/wav"));
+    }
+}
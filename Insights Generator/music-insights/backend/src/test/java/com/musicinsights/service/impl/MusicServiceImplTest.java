@@ -0,0 +1,150 @@
+package com.musicinsights.service.impl;
+
+import com.musicinsights.cache.AnalysisCache;
+import com.musicinsights.cache.SearchCache;
+import com.musicinsights.client.PythonAnalyticsClient;
+import com.musicinsights.concurrent.CircuitBreaker;
+import com.musicinsights.config.TuningConfig;
+import com.musicinsights.metrics.MetricsRegistry;
+import com.musicinsights.model.TrackAnalysis;
+import com.musicinsights.similarity.TrackCatalog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToDoubleFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MusicServiceImplTest {
+    private static final int SAMPLE_RATE = 22050;
+
+    @TempDir
+    Path directory;
+
+    private AnalysisServiceImpl analysisService;
+    private AnalysisCache analysisCache;
+    private TrackCatalog trackCatalog;
+    private MusicServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        start(new Properties());
+    }
+
+    private void start(Properties properties) {
+        properties.setProperty("upload.spool.dir", directory.toString());
+        TuningConfig tuning = new TuningConfig(properties);
+        Duration timeout = Duration.ofSeconds(1);
+
+        analysisService = new AnalysisServiceImpl(tuning);
+        analysisCache = new AnalysisCache(1024 * 1024, null, 0);
+        trackCatalog = new TrackCatalog(tuning);
+        service = new MusicServiceImpl(tuning, analysisService, analysisCache, new SearchCache(tuning), trackCatalog,
+                new PythonAnalyticsClient("http://localhost:1", timeout, timeout, timeout, 1,
+                        new CircuitBreaker("test", 1, 60_000), new MetricsRegistry()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        analysisService.shutdown();
+        trackCatalog.shutdown();
+    }
+
+    @Test
+    void cachedAnalysisTakesItsTitleFromEachUpload() {
+        byte[] wav = sineWav(2);
+
+        TrackAnalysis first = service.analyzeAudio(new ByteArrayInputStream(wav), "first_take.wav", wav.length,
+                "audio/wav");
+        TrackAnalysis second = service.analyzeAudio(new ByteArrayInputStream(wav), "second_take.wav", wav.length,
+                "audio/wav");
+
+        assertEquals(1, analysisCache.getHitCount());
+        assertEquals(first.getId(), second.getId());
+        assertEquals(first.getAudioFeatures().getTempo(), second.getAudioFeatures().getTempo(), 0);
+        assertEquals("first take", first.getTitle());
+        assertEquals("second take", second.getTitle());
+    }
+
+    @Test
+    void uploadsAreNotFingerprintedByDefault() {
+        byte[] wav = melodyWav(12);
+
+        service.analyzeAudio(new ByteArrayInputStream(wav), "melody.wav", wav.length, "audio/wav");
+
+        assertEquals(0, matches(wav));
+    }
+
+    @Test
+    void uploadsAreFingerprintedAfterTheirResponseWhenEnabled() throws InterruptedException {
+        tearDown();
+        Properties properties = new Properties();
+        properties.setProperty("fingerprint.indexUploads", "true");
+        // Spilled to a spool file, which the fingerprint task must delete
+        properties.setProperty("upload.spool.memoryThreshold", "65536");
+        start(properties);
+        byte[] wav = melodyWav(12);
+
+        service.analyzeAudio(new ByteArrayInputStream(wav), "melody.wav", wav.length, "audio/wav");
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (matches(wav) == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, matches(wav));
+        assertSpoolDirectoryEmpty();
+    }
+
+    private int matches(byte[] wav) {
+        return analysisService.findSimilarTracks(wav, 5).size();
+    }
+
+    private void assertSpoolDirectoryEmpty() throws InterruptedException {
+        // The fingerprint task closes the upload once it has indexed it
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (directory.toFile().list().length > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, directory.toFile().list().length);
+    }
+
+    /**
+     * A new random tone every tenth of a second, which gives the fingerprint plenty of landmarks.
+     */
+    private static byte[] melodyWav(int seconds) {
+        Random random = new Random(3);
+        double[] tones = new double[seconds * 10];
+        for (int i = 0; i < tones.length; i++) {
+            tones[i] = 200 + random.nextInt(3000);
+        }
+        return wav(seconds, i -> 0.5 * Math.sin(2 * Math.PI * tones[i * 10 / SAMPLE_RATE] * i / SAMPLE_RATE));
+    }
+
+    private static byte[] sineWav(int seconds) {
+        return wav(seconds, i -> 0.5 * Math.sin(2 * Math.PI * 440.0 * i / SAMPLE_RATE));
+    }
+
+    private static byte[] wav(int seconds, IntToDoubleFunction signal) {
+        int frames = seconds * SAMPLE_RATE;
+        ByteBuffer buffer = ByteBuffer.allocate(44 + frames * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x46464952).putInt(36 + frames * 2).putInt(0x45564157);
+        buffer.putInt(0x20746d66).putInt(16).putShort((short) 1).putShort((short) 1)
+                .putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * 2).putShort((short) 2).putShort((short) 16);
+        buffer.putInt(0x61746164).putInt(frames * 2);
+        for (int i = 0; i < frames; i++) {
+            buffer.putShort((short) Math.round(Short.MAX_VALUE * signal.applyAsDouble(i)));
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,109 @@
+package com.musicinsights.similarity;
+
+import com.musicinsights.model.AudioFeatures;
+import com.musicinsights.model.SimilarTrack;
+import com.musicinsights.model.TrackAnalysis;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrackCatalogTest {
+    private static final int TRAIN_SIZE = 256;
+
+    private final Random random = new Random(7);
+    private TrackCatalog catalog;
+
+    @AfterEach
+    void tearDown() {
+        catalog.shutdown();
+    }
+
+    @Test
+    void quantizedIndexCatchesUpWithTracksAddedDuringTheRebuild() throws InterruptedException {
+        catalog = new TrackCatalog(new TrackVectorizer(0), 8, 64, 64, TrackCatalog.Quantization.INT8, 0,
+                TRAIN_SIZE, true);
+        HnswIndex exact = catalog.getIndex();
+
+        // Pairs of identical tracks, so each track's nearest neighbour is known
+        int pairs = TRAIN_SIZE;
+        for (int i = 0; i < pairs; i++) {
+            AudioFeatures features = randomFeatures();
+            catalog.add("a" + i, track(features));
+            catalog.add("b" + i, track(features));
+        }
+        HnswIndex quantized = awaitRebuild(exact);
+
+        assertNotSame(exact, quantized);
+        assertEquals(2 * pairs, catalog.size());
+        assertEquals(2 * pairs, quantized.size());
+        for (int i = 0; i < pairs; i++) {
+            List<SimilarTrack> similar = catalog.similarTo("a" + i, 1);
+            assertEquals("b" + i, similar.get(0).getId());
+        }
+    }
+
+    @Test
+    void tracksAddedAfterTheRebuildGoToTheQuantizedIndex() throws InterruptedException {
+        catalog = new TrackCatalog(new TrackVectorizer(0), 8, 64, 64, TrackCatalog.Quantization.PQ, 0,
+                TRAIN_SIZE, true);
+        HnswIndex exact = catalog.getIndex();
+        for (int i = 0; i < TRAIN_SIZE; i++) {
+            catalog.add("t" + i, track(randomFeatures()));
+        }
+        HnswIndex quantized = awaitRebuild(exact);
+
+        AudioFeatures features = randomFeatures();
+        assertTrue(catalog.add("late-a", track(features)));
+        assertTrue(catalog.add("late-b", track(features)));
+
+        assertSame(quantized, catalog.getIndex());
+        assertEquals(TRAIN_SIZE + 2, quantized.size());
+        assertEquals("late-b", catalog.similarTo("late-a", 1).get(0).getId());
+    }
+
+    @Test
+    void exactCatalogKeepsItsIndex() {
+        catalog = new TrackCatalog(new TrackVectorizer(0), 8, 64, 64);
+        HnswIndex exact = catalog.getIndex();
+        for (int i = 0; i < TRAIN_SIZE + 1; i++) {
+            catalog.add("t" + i, track(randomFeatures()));
+        }
+
+        assertSame(exact, catalog.getIndex());
+        assertEquals(TRAIN_SIZE + 1, exact.size());
+    }
+
+    private HnswIndex awaitRebuild(HnswIndex exact) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (catalog.getIndex() == exact && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return catalog.getIndex();
+    }
+
+    private AudioFeatures randomFeatures() {
+        return AudioFeatures.builder()
+                .tempo(60 + 140 * random.nextDouble())
+                .energy(random.nextDouble())
+                .danceability(random.nextDouble())
+                .valence(random.nextDouble())
+                .acousticness(random.nextDouble())
+                .instrumentalness(random.nextDouble())
+                .liveness(random.nextDouble())
+                .speechiness(random.nextDouble())
+                .loudness(-60 * random.nextDouble())
+                .build();
+    }
+
+    private static TrackAnalysis track(AudioFeatures features) {
+        return TrackAnalysis.builder().title("Title").artist("Artist").album("Album").audioFeatures(features).build();
+    }
+}
@@ -0,0 +1,86 @@
+package com.musicinsights.spool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UploadSpoolerTest {
+    private static final int MEMORY_THRESHOLD = 1024;
+    private static final long MAX_BYTES = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsUploadsUpToTheLimit() throws IOException {
+        UploadSpooler spooler = new UploadSpooler(directory, MEMORY_THRESHOLD, 2, MAX_BYTES);
+
+        try (SpooledUpload small = spooler.spool(stream(100))) {
+            assertTrue(small.isInMemory());
+            assertEquals(100, small.size());
+        }
+        try (SpooledUpload exact = spooler.spool(stream(MAX_BYTES))) {
+            assertFalse(exact.isInMemory());
+            assertEquals(MAX_BYTES, exact.size());
+        }
+    }
+
+    @Test
+    void rejectsAnUploadLargerThanTheLimitInMemory() {
+        UploadSpooler spooler = new UploadSpooler(directory, MEMORY_THRESHOLD, 2, 100);
+
+        assertThrows(UploadTooLargeException.class, () -> spooler.spool(stream(101)));
+    }
+
+    @Test
+    void rejectsAnUploadLargerThanTheLimitAndDeletesItsSpoolFile() throws IOException {
+        UploadSpooler spooler = new UploadSpooler(directory, MEMORY_THRESHOLD, 2, MAX_BYTES);
+
+        assertThrows(UploadTooLargeException.class, () -> spooler.spool(stream(MAX_BYTES + 1)));
+        assertNoSpoolFiles();
+    }
+
+    @Test
+    void rejectsAFileSourceLargerThanTheLimit() throws IOException {
+        UploadSpooler spooler = new UploadSpooler(directory, MEMORY_THRESHOLD, 2, MAX_BYTES);
+        Path source = Files.write(Files.createTempFile("source", ".part"), new byte[(int) MAX_BYTES * 4]);
+
+        try (InputStream in = new FileInputStream(source.toFile())) {
+            assertThrows(UploadTooLargeException.class, () -> spooler.spool(in));
+        } finally {
+            Files.delete(source);
+        }
+        assertNoSpoolFiles();
+    }
+
+    @Test
+    void zeroDisablesTheLimit() throws IOException {
+        UploadSpooler spooler = new UploadSpooler(directory, MEMORY_THRESHOLD, 2, 0);
+
+        try (SpooledUpload upload = spooler.spool(stream(MAX_BYTES * 4))) {
+            assertEquals(MAX_BYTES * 4, upload.size());
+        }
+    }
+
+    private static InputStream stream(long size) {
+        return new ByteArrayInputStream(new byte[(int) size]);
+    }
+
+    private void assertNoSpoolFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
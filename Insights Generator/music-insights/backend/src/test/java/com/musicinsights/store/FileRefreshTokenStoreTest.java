@@ -0,0 +1,149 @@
+package com.musicinsights.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileRefreshTokenStoreTest {
+    private static final long NO_COMPACTION = Long.MAX_VALUE;
+    private static final long COMPACTION_BYTES = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reloadsTokensAfterRestart() throws IOException {
+        try (FileRefreshTokenStore store = new FileRefreshTokenStore(directory, NO_COMPACTION)) {
+            store.put("alice", "a1");
+            store.put("bob", "b1");
+            store.put("alice", "a2");
+            store.remove("bob");
+            store.put("carol", "c1");
+        }
+
+        try (FileRefreshTokenStore store = new FileRefreshTokenStore(directory, NO_COMPACTION)) {
+            assertEquals("a2", store.get("alice"));
+            assertNull(store.get("bob"));
+            assertEquals("c1", store.get("carol"));
+            assertEquals(2, store.size());
+        }
+    }
+
+    @Test
+    void cutsOffATornRecordAtTheEnd() throws IOException {
+        long intact;
+        try (FileRefreshTokenStore store = new FileRefreshTokenStore(directory, NO_COMPACTION)) {
+            store.put("alice", "a1");
+            store.put("bob", "b1");
+            intact = store.getLogBytes();
+        }
+        // The header of a 100-byte record and the first few bytes of it, as a crash mid-write leaves
+        ByteBuffer torn = ByteBuffer.allocate(12).putInt(100).putInt(0).putInt(0x01020304);
+        Files.write(log(), torn.array(), StandardOpenOption.APPEND);
+
+        try (FileRefreshTokenStore store = new FileRefreshTokenStore(directory, NO_COMPACTION)) {
+            assertEquals(intact, store.getLogBytes());
+            assertEquals(intact, Files.size(log()));
+            assertEquals("a1", store.get("alice"));
+            assertEquals("b1", store.get("bob"));
+            store.put("carol", "c1");
+        }
+
+        try (FileRefreshTokenStore store = new FileRefreshTokenStore(directory, NO_COMPACTION)) {
+            assertEquals(3, store.size());
+            assertEquals("c1", store.get("carol"));
+        }
+    }
+
+    @Test
+    void cutsOffARecordWithABadChecksum() throws IOException {
+        long intact;
+        try (FileRefreshTokenStore store = new FileRefreshTokenStore(directory, NO_COMPACTION)) {
+            store.put("alice", "a1");
+            intact = store.getLogBytes();
+            store.put("bob", "b1");
+        }
+        byte[] bytes = Files.readAllBytes(log());
+        bytes[bytes.length - 1] ^= 0x55;
+        Files.write(log(), bytes);
+
+        try (FileRefreshTokenStore store = new FileRefreshTokenStore(directory, NO_COMPACTION)) {
+            assertEquals(intact, store.getLogBytes());
+            assertEquals("a1", store.get("alice"));
+            assertNull(store.get("bob"));
+        }
+    }
+
+    @Test
+    void secondStoreKeepsReadingAndWritingThroughCompaction() throws IOException {
+        try (FileRefreshTokenStore first = new FileRefreshTokenStore(directory, COMPACTION_BYTES);
+             FileRefreshTokenStore second = new FileRefreshTokenStore(directory, COMPACTION_BYTES)) {
+            int compactions = 0;
+            long previous = 0;
+            for (int i = 0; i < 200; i++) {
+                first.put("alice", "a" + i);
+                assertEquals("a" + i, second.get("alice"));
+                second.put("bob", "b" + i);
+                assertEquals("b" + i, first.get("bob"));
+                long bytes = first.getLogBytes();
+                if (bytes < previous) {
+                    compactions++;
+                }
+                previous = bytes;
+            }
+
+            assertTrue(compactions > 1, "compacted " + compactions + " times");
+            assertEquals(2, first.size());
+            assertEquals(2, second.size());
+        }
+
+        try (FileRefreshTokenStore store = new FileRefreshTokenStore(directory, COMPACTION_BYTES)) {
+            assertEquals("a199", store.get("alice"));
+            assertEquals("b199", store.get("bob"));
+            assertEquals(2, store.size());
+        }
+    }
+
+    @Test
+    void removedTokensStayRemovedAfterCompaction() throws IOException {
+        try (FileRefreshTokenStore store = new FileRefreshTokenStore(directory, COMPACTION_BYTES)) {
+            for (int i = 0; i < 20; i++) {
+                store.put("user" + i, "token" + i);
+            }
+            for (int i = 0; i < 20; i += 2) {
+                store.remove("user" + i);
+            }
+            // Superseded records push the log past twice its live size
+            boolean compacted = false;
+            long previous = store.getLogBytes();
+            for (int i = 0; i < 100; i++) {
+                store.put("user1", "token1-" + i);
+                compacted |= store.getLogBytes() < previous;
+                previous = store.getLogBytes();
+            }
+            assertTrue(compacted, "log was never compacted");
+        }
+
+        try (FileRefreshTokenStore store = new FileRefreshTokenStore(directory, COMPACTION_BYTES)) {
+            assertEquals(10, store.size());
+            for (int i = 0; i < 20; i += 2) {
+                assertNull(store.get("user" + i));
+            }
+            assertEquals("token1-99", store.get("user1"));
+            assertEquals("token3", store.get("user3"));
+        }
+    }
+
+    private Path log() {
+        return directory.resolve("refresh-tokens.log");
+    }
+}